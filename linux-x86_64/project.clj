@@ -13,6 +13,29 @@
              "--enable-native-access=ALL-UNNAMED"
              "--add-opens=java.base/java.nio=ALL-UNNAMED"
              "--add-opens=java.base/sun.nio.ch=ALL-UNNAMED"]
+  ;; DTLVForeign and ForeignTest use the FFM API, a preview API in Java 21
+  ;; and final from Java 22, so javac-foreign compiles them in steps of their
+  ;; own into a multi-release jar: a Java 21 preview class, and a Java 22 one
+  ;; in META-INF/versions/22, compiled by the java of $JAVA22_CMD, which has
+  ;; to be of JDK 22 or later
+  :manifest {"Multi-Release" "true"}
+  :profiles {:foreign    {:jvm-opts ["--enable-preview"]}
+             :foreign-21 {:java-source-paths ^:replace ["../src/java21"]
+                          :javac-options ^:replace ["-Xlint:unchecked"
+                                                    "-Xlint:-options"
+                                                    "--release" "21"
+                                                    "--enable-preview"]}
+             :foreign-22 {:java-source-paths ^:replace ["../src/java22"]
+                          :javac-options ^:replace ["-Xlint:unchecked"
+                                                    "--release" "22"]
+                          :compile-path "target/classes/META-INF/versions/22"
+                          :resource-paths ["target/classes"]
+                          :java-cmd ~(System/getenv "JAVA22_CMD")}}
+  :aliases {"javac-foreign" ["do" "javac"
+                             ["with-profile" "+foreign-21" "javac"]
+                             ["with-profile" "+foreign-22" "javac"]]
+            "test-foreign" ["with-profile" "+foreign" "run" "-m"
+                            "datalevin.dtlvnative.ForeignTest"]}
   :deploy-repositories [["clojars" {:url           "https://repo.clojars.org"
                                     :username      :env/clojars_username
                                     :password      :env/clojars_password
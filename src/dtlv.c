@@ -1,3 +1,4 @@
+#include <stdio.h>
 #include <stdlib.h>
 #include <errno.h>
 #include <string.h>
@@ -6,8 +7,13 @@
 #include <math.h>
 #if defined(_WIN32)
 #include <windows.h>
+#include <io.h>
+#include <fcntl.h>
 #else
 #include <pthread.h>
+#include <signal.h>
+#include <time.h>
+#include <unistd.h>
 #endif
 #include "dtlv.h"
 #include "llama.h"
@@ -18,22 +24,49 @@ void val_in(MDB_val *this, MDB_val *other) {
   this->mv_data = other->mv_data;
 }
 
-static int dtlv_copy_indices(size_t **dst, size_t *src, int samples) {
-  if (!dst) return EINVAL;
+// copies into the existing array when it is large enough
+static int dtlv_reuse_indices(size_t **dst, int *capacity, size_t *src,
+                              int samples) {
+  if (!dst || !capacity) return EINVAL;
   if (samples < 0) return EINVAL;
-  if (samples == 0) {
-    *dst = NULL;
-    return MDB_SUCCESS;
-  }
+  if (samples == 0) return MDB_SUCCESS;
   if (!src) return EINVAL;
   size_t bytes = (size_t)samples * sizeof(size_t);
-  size_t *copy = malloc(bytes);
-  if (!copy) return ENOMEM;
-  memcpy(copy, src, bytes);
-  *dst = copy;
+  if (samples > *capacity) {
+    size_t *copy = malloc(bytes);
+    if (!copy) return ENOMEM;
+    free(*dst);
+    *dst = copy;
+    *capacity = samples;
+  }
+  memcpy(*dst, src, bytes);
   return MDB_SUCCESS;
 }
 
+static size_t dtlv_batch_record_size(MDB_val *first, MDB_val *second) {
+  size_t size = sizeof(uint32_t) + first->mv_size;
+  if (second) size += sizeof(uint32_t) + second->mv_size;
+  return size;
+}
+
+static char *dtlv_batch_put_item(char *p, MDB_val *item) {
+  uint32_t len = (uint32_t)item->mv_size;
+  memcpy(p, &len, sizeof(uint32_t));
+  p += sizeof(uint32_t);
+  if (item->mv_size > 0) memcpy(p, item->mv_data, item->mv_size);
+  return p + item->mv_size;
+}
+
+static char *dtlv_batch_put_record(char *p, MDB_val *first, MDB_val *second) {
+  p = dtlv_batch_put_item(p, first);
+  if (second) p = dtlv_batch_put_item(p, second);
+  return p;
+}
+
+static int dtlv_batch_error(int rc) {
+  return rc > 0 ? -rc : rc;
+}
+
 #if defined(_WIN32)
 static INIT_ONCE dtlv_llama_init_once = INIT_ONCE_STATIC_INIT;
 
@@ -81,6 +114,734 @@ static void dtlv_llama_backend_ensure_init(void) {
   pthread_once(&dtlv_llama_init_once, dtlv_llama_backend_init_once);
 }
 #endif
+
+#if defined(_WIN32)
+typedef HANDLE dtlv_thread_t;
+#define DTLV_THREAD_FN(name, arg) static DWORD WINAPI name(LPVOID arg)
+#define DTLV_THREAD_RETURN return 0
+
+static int dtlv_thread_create(dtlv_thread_t *t, LPTHREAD_START_ROUTINE fn,
+                              void *arg) {
+  *t = CreateThread(NULL, 0, fn, arg, 0, NULL);
+  return *t ? 0 : (int)GetLastError();
+}
+
+static void dtlv_thread_join(dtlv_thread_t t) {
+  WaitForSingleObject(t, INFINITE);
+  CloseHandle(t);
+}
+
+static void dtlv_thread_detach(dtlv_thread_t t) { CloseHandle(t); }
+
+typedef CRITICAL_SECTION dtlv_mutex_t;
+
+static int dtlv_mutex_init(dtlv_mutex_t *m) {
+  InitializeCriticalSection(m);
+  return 0;
+}
+
+static void dtlv_mutex_lock(dtlv_mutex_t *m) { EnterCriticalSection(m); }
+
+static void dtlv_mutex_unlock(dtlv_mutex_t *m) { LeaveCriticalSection(m); }
+
+static void dtlv_mutex_destroy(dtlv_mutex_t *m) { DeleteCriticalSection(m); }
+
+typedef CONDITION_VARIABLE dtlv_cond_t;
+
+static int dtlv_cond_init(dtlv_cond_t *c) {
+  InitializeConditionVariable(c);
+  return 0;
+}
+
+static void dtlv_cond_wait(dtlv_cond_t *c, dtlv_mutex_t *m) {
+  SleepConditionVariableCS(c, m, INFINITE);
+}
+
+static void dtlv_cond_timedwait_ms(dtlv_cond_t *c, dtlv_mutex_t *m,
+                                   uint64_t ms) {
+  SleepConditionVariableCS(c, m, (DWORD)ms);
+}
+
+static void dtlv_cond_broadcast(dtlv_cond_t *c) {
+  WakeAllConditionVariable(c);
+}
+
+static void dtlv_cond_destroy(dtlv_cond_t *c) { (void)c; }
+
+typedef HANDLE dtlv_pipe_t;
+
+static int dtlv_pipe_open(dtlv_pipe_t *rd, dtlv_pipe_t *wr) {
+  return CreatePipe(rd, wr, NULL, 0) ? 0 : (int)GetLastError();
+}
+
+// reads what is available, 0 bytes at the end of the pipe
+static int dtlv_pipe_read(dtlv_pipe_t p, void *buf, size_t len, size_t *got) {
+  DWORD n;
+  if (!ReadFile(p, buf, (DWORD)len, &n, NULL)) {
+    DWORD err = GetLastError();
+    if (err != ERROR_BROKEN_PIPE) return (int)err;
+    n = 0;
+  }
+  *got = n;
+  return 0;
+}
+
+static void dtlv_pipe_close(dtlv_pipe_t p) { CloseHandle(p); }
+
+static int dtlv_fd_write(int fd, const void *buf, size_t len) {
+  const char *p = buf;
+  while (len > 0) {
+    int n = _write(fd, p, len > INT_MAX ? INT_MAX : (unsigned int)len);
+    if (n < 0) return errno;
+    p += n;
+    len -= (size_t)n;
+  }
+  return 0;
+}
+
+// tmpfile() of the MSVC CRT creates the file in the root of the current
+// drive, which is usually not writable, so the file is created in the temp
+// directory instead, and deleted when closed
+static int dtlv_tmpfile(FILE **f) {
+  char dir[MAX_PATH + 1];
+  char name[MAX_PATH + 1];
+  DWORD n = GetTempPathA(sizeof(dir), dir);
+  if (n == 0 || n > sizeof(dir)) return EIO;
+  if (GetTempFileNameA(dir, "dtl", 0, name) == 0) return EACCES;
+  int fd = _open(name, _O_RDWR | _O_BINARY | _O_TEMPORARY);
+  if (fd < 0) {
+    int rc = errno;
+    DeleteFileA(name);
+    return rc;
+  }
+  *f = _fdopen(fd, "w+b");
+  if (!*f) {
+    int rc = errno;
+    _close(fd);
+    return rc;
+  }
+  return 0;
+}
+
+// the writer of a pipe gets an error, not a signal, once the reader is gone
+static void dtlv_thread_mask_sigpipe(void) {}
+
+static int dtlv_file_seek(FILE *f, uint64_t off) {
+  return _fseeki64(f, (__int64)off, SEEK_SET) == 0 ? 0 : errno;
+}
+
+static int dtlv_file_truncate(FILE *f, uint64_t size) {
+  if (fflush(f) != 0) return errno;
+  return _chsize_s(_fileno(f), (__int64)size);
+}
+
+static int dtlv_file_sync(FILE *f) {
+  if (fflush(f) != 0) return errno;
+  return _commit(_fileno(f)) == 0 ? 0 : errno;
+}
+
+static uint64_t dtlv_clock_ms(void) { return GetTickCount64(); }
+
+static void dtlv_sleep_ms(uint64_t ms) { Sleep((DWORD)ms); }
+
+static int dtlv_getpid(void) { return (int)GetCurrentProcessId(); }
+
+static uint64_t dtlv_clock_us(void) {
+  static LARGE_INTEGER freq;
+  LARGE_INTEGER now;
+  if (freq.QuadPart == 0) QueryPerformanceFrequency(&freq);
+  QueryPerformanceCounter(&now);
+  return (uint64_t)(now.QuadPart / freq.QuadPart) * 1000000 +
+         (uint64_t)(now.QuadPart % freq.QuadPart) * 1000000 / freq.QuadPart;
+}
+
+#define DTLV_THREAD_LOCAL __declspec(thread)
+
+static uint64_t dtlv_atomic_add(volatile uint64_t *p, uint64_t n) {
+  return (uint64_t)InterlockedExchangeAdd64((volatile LONG64 *)p, (LONG64)n);
+}
+
+static uint64_t dtlv_atomic_read(volatile uint64_t *p) {
+  return (uint64_t)InterlockedCompareExchange64((volatile LONG64 *)p, 0, 0);
+}
+
+static void *dtlv_atomic_load_ptr(void *volatile *p) {
+  return InterlockedCompareExchangePointer(p, NULL, NULL);
+}
+
+static int dtlv_atomic_cas_ptr(void *volatile *p, void *expected,
+                               void *desired) {
+  return InterlockedCompareExchangePointer(p, desired, expected) == expected;
+}
+#else
+typedef pthread_t dtlv_thread_t;
+#define DTLV_THREAD_FN(name, arg) static void *name(void *arg)
+#define DTLV_THREAD_RETURN return NULL
+
+static int dtlv_thread_create(dtlv_thread_t *t, void *(*fn)(void *),
+                              void *arg) {
+  return pthread_create(t, NULL, fn, arg);
+}
+
+static void dtlv_thread_join(dtlv_thread_t t) {
+  pthread_join(t, NULL);
+}
+
+static void dtlv_thread_detach(dtlv_thread_t t) { pthread_detach(t); }
+
+typedef pthread_mutex_t dtlv_mutex_t;
+
+static int dtlv_mutex_init(dtlv_mutex_t *m) {
+  return pthread_mutex_init(m, NULL);
+}
+
+static void dtlv_mutex_lock(dtlv_mutex_t *m) { pthread_mutex_lock(m); }
+
+static void dtlv_mutex_unlock(dtlv_mutex_t *m) { pthread_mutex_unlock(m); }
+
+static void dtlv_mutex_destroy(dtlv_mutex_t *m) { pthread_mutex_destroy(m); }
+
+typedef pthread_cond_t dtlv_cond_t;
+
+static int dtlv_cond_init(dtlv_cond_t *c) { return pthread_cond_init(c, NULL); }
+
+static void dtlv_cond_wait(dtlv_cond_t *c, dtlv_mutex_t *m) {
+  pthread_cond_wait(c, m);
+}
+
+static void dtlv_cond_timedwait_ms(dtlv_cond_t *c, dtlv_mutex_t *m,
+                                   uint64_t ms) {
+  struct timespec ts;
+  clock_gettime(CLOCK_REALTIME, &ts);
+  ts.tv_sec += (time_t)(ms / 1000);
+  ts.tv_nsec += (long)(ms % 1000) * 1000000;
+  if (ts.tv_nsec >= 1000000000) {
+    ts.tv_sec++;
+    ts.tv_nsec -= 1000000000;
+  }
+  pthread_cond_timedwait(c, m, &ts);
+}
+
+static void dtlv_cond_broadcast(dtlv_cond_t *c) { pthread_cond_broadcast(c); }
+
+static void dtlv_cond_destroy(dtlv_cond_t *c) { pthread_cond_destroy(c); }
+
+typedef int dtlv_pipe_t;
+
+static int dtlv_pipe_open(dtlv_pipe_t *rd, dtlv_pipe_t *wr) {
+  int fds[2];
+  if (pipe(fds) != 0) return errno;
+  *rd = fds[0];
+  *wr = fds[1];
+  return 0;
+}
+
+// reads what is available, 0 bytes at the end of the pipe
+static int dtlv_pipe_read(dtlv_pipe_t p, void *buf, size_t len, size_t *got) {
+  for (;;) {
+    ssize_t n = read(p, buf, len);
+    if (n >= 0) {
+      *got = (size_t)n;
+      return 0;
+    }
+    if (errno != EINTR) return errno;
+  }
+}
+
+static void dtlv_pipe_close(dtlv_pipe_t p) { close(p); }
+
+static int dtlv_fd_write(int fd, const void *buf, size_t len) {
+  const char *p = buf;
+  while (len > 0) {
+    ssize_t n = write(fd, p, len);
+    if (n < 0) {
+      if (errno == EINTR) continue;
+      return errno;
+    }
+    p += n;
+    len -= (size_t)n;
+  }
+  return 0;
+}
+
+static int dtlv_tmpfile(FILE **f) {
+  *f = tmpfile();
+  return *f ? 0 : (errno ? errno : EIO);
+}
+
+// the writer of a pipe gets EPIPE, not a signal, once the reader is gone
+static void dtlv_thread_mask_sigpipe(void) {
+  sigset_t set;
+  sigemptyset(&set);
+  sigaddset(&set, SIGPIPE);
+  pthread_sigmask(SIG_BLOCK, &set, NULL);
+}
+
+static int dtlv_file_seek(FILE *f, uint64_t off) {
+  return fseeko(f, (off_t)off, SEEK_SET) == 0 ? 0 : errno;
+}
+
+static int dtlv_file_truncate(FILE *f, uint64_t size) {
+  if (fflush(f) != 0) return errno;
+  return ftruncate(fileno(f), (off_t)size) == 0 ? 0 : errno;
+}
+
+static int dtlv_file_sync(FILE *f) {
+  if (fflush(f) != 0) return errno;
+  return fsync(fileno(f)) == 0 ? 0 : errno;
+}
+
+static uint64_t dtlv_clock_ms(void) {
+  struct timespec ts;
+  clock_gettime(CLOCK_MONOTONIC, &ts);
+  return (uint64_t)ts.tv_sec * 1000 + (uint64_t)ts.tv_nsec / 1000000;
+}
+
+static void dtlv_sleep_ms(uint64_t ms) {
+  struct timespec ts;
+  ts.tv_sec = (time_t)(ms / 1000);
+  ts.tv_nsec = (long)(ms % 1000) * 1000000;
+  while (nanosleep(&ts, &ts) != 0 && errno == EINTR)
+    ;
+}
+
+static int dtlv_getpid(void) { return (int)getpid(); }
+
+static uint64_t dtlv_clock_us(void) {
+  struct timespec ts;
+  clock_gettime(CLOCK_MONOTONIC, &ts);
+  return (uint64_t)ts.tv_sec * 1000000 + (uint64_t)ts.tv_nsec / 1000;
+}
+
+#define DTLV_THREAD_LOCAL __thread
+
+static uint64_t dtlv_atomic_add(volatile uint64_t *p, uint64_t n) {
+  return __atomic_fetch_add(p, n, __ATOMIC_RELAXED);
+}
+
+static uint64_t dtlv_atomic_read(volatile uint64_t *p) {
+  return __atomic_load_n(p, __ATOMIC_RELAXED);
+}
+
+static void *dtlv_atomic_load_ptr(void *volatile *p) {
+  return __atomic_load_n(p, __ATOMIC_ACQUIRE);
+}
+
+static int dtlv_atomic_cas_ptr(void *volatile *p, void *expected,
+                               void *desired) {
+  return __atomic_compare_exchange_n(p, &expected, desired, 0,
+                                     __ATOMIC_ACQ_REL, __ATOMIC_ACQUIRE);
+}
+#endif
+
+#define DTLV_METRICS_MAX_ENVS 64
+#define DTLV_METRICS_STRIPES  16
+
+// metrics are records of a registry that are never freed: a thread that
+// has just found the record of an env may still be counting into it after
+// it is destroyed. A destroyed record is reused by a later create, if its
+// counters are large enough
+struct dtlv_metrics {
+  // the env counted, NULL while the record is free
+  void *volatile env;
+  int max_dbs;
+  size_t width;
+  size_t capacity;
+  // DTLV_METRICS_STRIPES stripes of width counters, laid out as a snapshot
+  volatile uint64_t *counters;
+};
+
+static void *volatile dtlv_metrics_envs[DTLV_METRICS_MAX_ENVS];
+static volatile uint64_t dtlv_metrics_live;
+static volatile uint64_t dtlv_metrics_threads;
+static DTLV_THREAD_LOCAL unsigned int dtlv_metrics_thread_stripe;
+// taken by create and destroy only, to register an env at most once
+static void *volatile dtlv_metrics_registry_lock;
+
+static void dtlv_metrics_registry_enter(void) {
+  while (!dtlv_atomic_cas_ptr(&dtlv_metrics_registry_lock, NULL,
+                              (void *)&dtlv_metrics_registry_lock))
+    dtlv_sleep_ms(0);
+}
+
+static void dtlv_metrics_registry_leave(void) {
+  dtlv_atomic_cas_ptr(&dtlv_metrics_registry_lock,
+                      (void *)&dtlv_metrics_registry_lock, NULL);
+}
+
+static int dtlv_metrics_on(void) {
+  return dtlv_atomic_read(&dtlv_metrics_live) != 0;
+}
+
+static dtlv_metrics *dtlv_metrics_find(MDB_env *env) {
+  for (int k = 0; k < DTLV_METRICS_MAX_ENVS; k++) {
+    dtlv_metrics *m = dtlv_atomic_load_ptr(&dtlv_metrics_envs[k]);
+    if (m && dtlv_atomic_load_ptr(&m->env) == (void *)env) return m;
+  }
+  return NULL;
+}
+
+static dtlv_metrics *dtlv_metrics_of(MDB_txn *txn) {
+  return dtlv_metrics_on() ? dtlv_metrics_find(mdb_txn_env(txn)) : NULL;
+}
+
+// threads are spread over the stripes round robin, so that concurrent
+// threads mostly add to counters of their own
+static volatile uint64_t *dtlv_metrics_stripe(dtlv_metrics *m) {
+  unsigned int s = dtlv_metrics_thread_stripe;
+  if (s == 0) {
+    s = (unsigned int)(dtlv_atomic_add(&dtlv_metrics_threads, 1) %
+                       DTLV_METRICS_STRIPES) + 1;
+    dtlv_metrics_thread_stripe = s;
+  }
+  return m->counters + (size_t)(s - 1) * m->width;
+}
+
+static volatile uint64_t *dtlv_metrics_dbi(dtlv_metrics *m, MDB_dbi dbi) {
+  if (dbi >= (MDB_dbi)m->max_dbs) return NULL;
+  return dtlv_metrics_stripe(m) + DTLV_METRICS_ENV_SIZE +
+         (size_t)dbi * DTLV_METRICS_DBI_SIZE;
+}
+
+static int dtlv_metrics_bucket(uint64_t us) {
+  if (us < 4) return (int)us;
+  int p = 2;
+  while (p < 63 && (us >> (p + 1)) != 0) p++;
+  int b = 4 + (p - 2) * 4 + (int)((us >> (p - 2)) & 3);
+  return b < DTLV_METRICS_BUCKETS ? b : DTLV_METRICS_BUCKETS - 1;
+}
+
+static void dtlv_metrics_time(dtlv_metrics *m, int count, int hist,
+                              uint64_t start) {
+  volatile uint64_t *c = dtlv_metrics_stripe(m);
+  dtlv_atomic_add(&c[count], 1);
+  dtlv_atomic_add(&c[hist + dtlv_metrics_bucket(dtlv_clock_us() - start)], 1);
+}
+
+static void dtlv_metrics_iter(MDB_cursor *cur) {
+  dtlv_metrics *m = dtlv_metrics_of(mdb_cursor_txn(cur));
+  if (!m) return;
+  volatile uint64_t *c = dtlv_metrics_dbi(m, mdb_cursor_dbi(cur));
+  if (c) dtlv_atomic_add(&c[DTLV_METRICS_ITERS], 1);
+}
+
+static void dtlv_metrics_get(MDB_txn *txn, MDB_dbi dbi, int op, int rc,
+                             MDB_val *key, MDB_val *data) {
+  dtlv_metrics *m = dtlv_metrics_find(mdb_txn_env(txn));
+  if (!m) return;
+  volatile uint64_t *c = dtlv_metrics_dbi(m, dbi);
+  if (!c) return;
+  if (op < 0 || op >= DTLV_METRICS_OPS) op = DTLV_METRICS_OPS - 1;
+  dtlv_atomic_add(&c[DTLV_METRICS_GETS + op], 1);
+  if (rc != MDB_SUCCESS) return;
+  size_t bytes = (key ? key->mv_size : 0) + (data ? data->mv_size : 0);
+  dtlv_atomic_add(&c[DTLV_METRICS_BYTES_READ], bytes);
+}
+
+static void dtlv_metrics_put(MDB_txn *txn, MDB_dbi dbi, MDB_val *key,
+                             MDB_val *data, unsigned int flags) {
+  dtlv_metrics *m = dtlv_metrics_find(mdb_txn_env(txn));
+  if (!m) return;
+  volatile uint64_t *c = dtlv_metrics_dbi(m, dbi);
+  if (!c) return;
+  // with MDB_MULTIPLE, data[1].mv_size is the number of items written
+  uint64_t n = (flags & MDB_MULTIPLE) ? data[1].mv_size : 1;
+  dtlv_atomic_add(&c[DTLV_METRICS_PUTS], n);
+  dtlv_atomic_add(&c[DTLV_METRICS_BYTES_WRITTEN],
+                  key->mv_size + data[0].mv_size * n);
+}
+
+static void dtlv_metrics_del(MDB_txn *txn, MDB_dbi dbi) {
+  dtlv_metrics *m = dtlv_metrics_find(mdb_txn_env(txn));
+  if (!m) return;
+  volatile uint64_t *c = dtlv_metrics_dbi(m, dbi);
+  if (c) dtlv_atomic_add(&c[DTLV_METRICS_DELS], 1);
+}
+
+// a free record with counters enough, else a new record in an empty slot
+static dtlv_metrics *dtlv_metrics_claim(size_t capacity, int *rc) {
+  int empty = -1;
+  for (int k = 0; k < DTLV_METRICS_MAX_ENVS; k++) {
+    dtlv_metrics *m = dtlv_atomic_load_ptr(&dtlv_metrics_envs[k]);
+    if (!m) {
+      if (empty < 0) empty = k;
+    } else if (!dtlv_atomic_load_ptr(&m->env) && m->capacity >= capacity) {
+      memset((void *)m->counters, 0, capacity * sizeof(uint64_t));
+      return m;
+    }
+  }
+  if (empty < 0) {
+    *rc = ENOSPC;
+    return NULL;
+  }
+
+  dtlv_metrics *m = calloc(1, sizeof(struct dtlv_metrics));
+  if (m) m->counters = calloc(capacity, sizeof(uint64_t));
+  if (!m || !m->counters) {
+    free(m);
+    *rc = ENOMEM;
+    return NULL;
+  }
+  m->capacity = capacity;
+  dtlv_atomic_cas_ptr(&dtlv_metrics_envs[empty], NULL, m);
+  return m;
+}
+
+int dtlv_metrics_create(dtlv_metrics **metrics, MDB_env *env, int max_dbs) {
+  if (!metrics || !env || max_dbs < 0) return EINVAL;
+
+  int rc = MDB_SUCCESS;
+  size_t width =
+    DTLV_METRICS_ENV_SIZE + (size_t)max_dbs * DTLV_METRICS_DBI_SIZE;
+  dtlv_metrics_registry_enter();
+  dtlv_metrics *m = NULL;
+  if (dtlv_metrics_find(env))
+    rc = EEXIST;
+  else
+    m = dtlv_metrics_claim(DTLV_METRICS_STRIPES * width, &rc);
+  if (m) {
+    m->max_dbs = max_dbs;
+    m->width = width;
+    // published last, once the counters are ready
+    dtlv_atomic_cas_ptr(&m->env, NULL, env);
+    dtlv_atomic_add(&dtlv_metrics_live, 1);
+    *metrics = m;
+  }
+  dtlv_metrics_registry_leave();
+  return rc;
+}
+
+int dtlv_metrics_snapshot(dtlv_metrics *metrics, uint64_t *out, size_t len,
+                          size_t *used) {
+  if (!metrics || (!out && len > 0)) return -EINVAL;
+  if (used) *used = metrics->width;
+  if (len < metrics->width) return -EMSGSIZE;
+
+  for (size_t j = 0; j < metrics->width; j++) {
+    uint64_t sum = 0;
+    for (int s = 0; s < DTLV_METRICS_STRIPES; s++)
+      sum += dtlv_atomic_read(&metrics->counters[s * metrics->width + j]);
+    out[j] = sum;
+  }
+  return (int)metrics->width;
+}
+
+void dtlv_metrics_reset(dtlv_metrics *metrics) {
+  if (!metrics) return;
+  size_t n = DTLV_METRICS_STRIPES * metrics->width;
+  // subtracts what was read, keeping the adds racing with the reset
+  for (size_t j = 0; j < n; j++) {
+    volatile uint64_t *c = &metrics->counters[j];
+    dtlv_atomic_add(c, 0 - dtlv_atomic_read(c));
+  }
+}
+
+void dtlv_metrics_destroy(dtlv_metrics *metrics) {
+  if (!metrics) return;
+  dtlv_metrics_registry_enter();
+  void *env = dtlv_atomic_load_ptr(&metrics->env);
+  if (env && dtlv_atomic_cas_ptr(&metrics->env, env, NULL))
+    dtlv_atomic_add(&dtlv_metrics_live, UINT64_MAX);
+  dtlv_metrics_registry_leave();
+}
+
+int dtlv_get(MDB_txn *txn, MDB_dbi dbi, MDB_val *key, MDB_val *data) {
+  int rc = mdb_get(txn, dbi, key, data);
+  if (dtlv_metrics_on()) dtlv_metrics_get(txn, dbi, MDB_SET, rc, key, data);
+  return rc;
+}
+
+int dtlv_put(MDB_txn *txn, MDB_dbi dbi, MDB_val *key, MDB_val *data,
+             unsigned int flags) {
+  int rc = mdb_put(txn, dbi, key, data, flags);
+  if (rc == MDB_SUCCESS && dtlv_metrics_on())
+    dtlv_metrics_put(txn, dbi, key, data, flags);
+  return rc;
+}
+
+int dtlv_del(MDB_txn *txn, MDB_dbi dbi, MDB_val *key, MDB_val *data) {
+  int rc = mdb_del(txn, dbi, key, data);
+  if (rc == MDB_SUCCESS && dtlv_metrics_on()) dtlv_metrics_del(txn, dbi);
+  return rc;
+}
+
+int dtlv_cursor_get(MDB_cursor *cur, MDB_val *key, MDB_val *data,
+                    MDB_cursor_op op) {
+  int rc = mdb_cursor_get(cur, key, data, op);
+  if (dtlv_metrics_on())
+    dtlv_metrics_get(mdb_cursor_txn(cur), mdb_cursor_dbi(cur), (int)op, rc,
+                     key, data);
+  return rc;
+}
+
+int dtlv_cursor_put(MDB_cursor *cur, MDB_val *key, MDB_val *data,
+                    unsigned int flags) {
+  int rc = mdb_cursor_put(cur, key, data, flags);
+  if (rc == MDB_SUCCESS && dtlv_metrics_on())
+    dtlv_metrics_put(mdb_cursor_txn(cur), mdb_cursor_dbi(cur), key, data,
+                     flags);
+  return rc;
+}
+
+int dtlv_cursor_del(MDB_cursor *cur, unsigned int flags) {
+  int rc = mdb_cursor_del(cur, flags);
+  if (rc == MDB_SUCCESS && dtlv_metrics_on())
+    dtlv_metrics_del(mdb_cursor_txn(cur), mdb_cursor_dbi(cur));
+  return rc;
+}
+
+int dtlv_txn_commit(MDB_txn *txn) {
+  // the txn is freed by the commit
+  dtlv_metrics *m = txn ? dtlv_metrics_of(txn) : NULL;
+  if (!m) return mdb_txn_commit(txn);
+  uint64_t start = dtlv_clock_us();
+  int rc = mdb_txn_commit(txn);
+  dtlv_metrics_time(m, DTLV_METRICS_COMMITS, DTLV_METRICS_COMMIT_HIST, start);
+  return rc;
+}
+
+int dtlv_env_sync(MDB_env *env, int force) {
+  dtlv_metrics *m = dtlv_metrics_on() ? dtlv_metrics_find(env) : NULL;
+  if (!m) return mdb_env_sync(env, force);
+  uint64_t start = dtlv_clock_us();
+  int rc = mdb_env_sync(env, force);
+  dtlv_metrics_time(m, DTLV_METRICS_SYNCS, DTLV_METRICS_SYNC_HIST, start);
+  return rc;
+}
+
+typedef struct dtlv_filter_op {
+  int op;
+  int target;
+  size_t offset;
+  size_t len;
+  const unsigned char *operand;
+} dtlv_filter_op;
+
+struct dtlv_filter {
+  unsigned char *prog;
+  dtlv_filter_op *ops;
+  int n;
+};
+
+static int dtlv_filter_leaf(int op) {
+  return op >= DTLV_FILTER_EQ && op <= DTLV_FILTER_GE;
+}
+
+int dtlv_filter_create(dtlv_filter **filter, const void *prog, size_t len) {
+  if (!filter || !prog || len == 0) return EINVAL;
+
+  dtlv_filter *f = calloc(1, sizeof(struct dtlv_filter));
+  if (!f) return ENOMEM;
+  f->prog = malloc(len);
+  // every instruction takes at least one byte
+  f->ops = calloc(len, sizeof(dtlv_filter_op));
+  if (!f->prog || !f->ops) {
+    dtlv_filter_destroy(f);
+    return ENOMEM;
+  }
+  memcpy(f->prog, prog, len);
+
+  const unsigned char *p = f->prog;
+  const unsigned char *end = f->prog + len;
+  int height = 0;
+  while (p < end) {
+    dtlv_filter_op *o = &f->ops[f->n];
+    o->op = *p++;
+    if (dtlv_filter_leaf(o->op)) {
+      uint32_t offset, size;
+      if ((size_t)(end - p) < 1 + 2 * sizeof(uint32_t)) goto invalid;
+      o->target = *p++;
+      if (o->target != DTLV_FILTER_KEY && o->target != DTLV_FILTER_VAL)
+        goto invalid;
+      memcpy(&offset, p, sizeof(uint32_t));
+      p += sizeof(uint32_t);
+      memcpy(&size, p, sizeof(uint32_t));
+      p += sizeof(uint32_t);
+      if ((size_t)(end - p) < size) goto invalid;
+      o->offset = offset;
+      o->len = size;
+      o->operand = p;
+      p += size;
+      height++;
+    } else if (o->op == DTLV_FILTER_AND || o->op == DTLV_FILTER_OR) {
+      if (height < 2) goto invalid;
+      height--;
+    } else if (o->op == DTLV_FILTER_NOT) {
+      if (height < 1) goto invalid;
+    } else {
+      goto invalid;
+    }
+    if (height > DTLV_FILTER_MAX_DEPTH) goto invalid;
+    f->n++;
+  }
+  if (height != 1) goto invalid;
+
+  *filter = f;
+  return MDB_SUCCESS;
+
+invalid:
+  dtlv_filter_destroy(f);
+  return EINVAL;
+}
+
+static int dtlv_filter_test(dtlv_filter_op *o, MDB_val *v) {
+  if (!v || v->mv_size < o->offset) return 0;
+
+  const unsigned char *data = (const unsigned char *)v->mv_data + o->offset;
+  size_t avail = v->mv_size - o->offset;
+
+  if (o->op == DTLV_FILTER_EQ)
+    return avail == o->len && memcmp(data, o->operand, o->len) == 0;
+  if (o->op == DTLV_FILTER_PREFIX)
+    return avail >= o->len && memcmp(data, o->operand, o->len) == 0;
+
+  // the field is the len bytes at offset, a shorter field sorts first
+  size_t n = avail < o->len ? avail : o->len;
+  int c = n ? memcmp(data, o->operand, n) : 0;
+  if (c == 0 && avail < o->len) c = -1;
+  switch (o->op) {
+  case DTLV_FILTER_LT: return c < 0;
+  case DTLV_FILTER_LE: return c <= 0;
+  case DTLV_FILTER_GT: return c > 0;
+  default: return c >= 0;
+  }
+}
+
+int dtlv_filter_match(dtlv_filter *filter, MDB_val *key, MDB_val *val) {
+  // the stack is local, so a filter can be shared by threads
+  int s[DTLV_FILTER_MAX_DEPTH];
+  int h = 0;
+  int i;
+
+  for (i = 0; i < filter->n; i++) {
+    dtlv_filter_op *o = &filter->ops[i];
+    switch (o->op) {
+    case DTLV_FILTER_AND:
+      h--;
+      s[h - 1] = s[h - 1] && s[h];
+      break;
+    case DTLV_FILTER_OR:
+      h--;
+      s[h - 1] = s[h - 1] || s[h];
+      break;
+    case DTLV_FILTER_NOT:
+      s[h - 1] = !s[h - 1];
+      break;
+    default:
+      s[h++] = dtlv_filter_test(o, o->target == DTLV_FILTER_KEY ? key : val);
+    }
+  }
+  return s[0] ? DTLV_TRUE : DTLV_FALSE;
+}
+
+void dtlv_filter_destroy(dtlv_filter *filter) {
+  if (filter) {
+    free(filter->ops);
+    free(filter->prog);
+    free(filter);
+  }
+}
+
 struct dtlv_key_iter {
   MDB_cursor *cur;
   MDB_txn *txn;
@@ -93,6 +854,9 @@ struct dtlv_key_iter {
   MDB_val *start_key;
   MDB_val *end_key;
   int started;
+  int pending;
+  int ended;
+  dtlv_filter *filter;
 };
 
 int dtlv_key_iter_create(dtlv_key_iter **iter, MDB_cursor *cur,
@@ -103,6 +867,20 @@ int dtlv_key_iter_create(dtlv_key_iter **iter, MDB_cursor *cur,
   i = calloc(1, sizeof(struct dtlv_key_iter));
   if (!i) return ENOMEM;
 
+  dtlv_key_iter_reset(i, cur, key, val, forward, start, end,
+                      start_key, end_key);
+
+  dtlv_metrics_iter(cur);
+  *iter = i;
+  return MDB_SUCCESS;
+}
+
+int dtlv_key_iter_reset(dtlv_key_iter *i, MDB_cursor *cur,
+                        MDB_val *key, MDB_val *val,
+                        int forward, int start, int end,
+                        MDB_val *start_key, MDB_val *end_key) {
+  if (!i) return EINVAL;
+
   i->cur = cur;
   i->txn = mdb_cursor_txn(cur);
   i->dbi = mdb_cursor_dbi(cur);
@@ -115,8 +893,9 @@ int dtlv_key_iter_create(dtlv_key_iter **iter, MDB_cursor *cur,
   i->end_key = end_key;
 
   i->started = DTLV_FALSE;
+  i->pending = DTLV_FALSE;
+  i->ended = DTLV_FALSE;
 
-  *iter = i;
   return MDB_SUCCESS;
 }
 
@@ -128,7 +907,7 @@ int key_check_back(dtlv_key_iter *iter, int op);
 int key_init(dtlv_key_iter *iter) {
   if (iter->start_key) {
     val_in(iter->key, iter->start_key);
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
     if (rc == MDB_SUCCESS) {
       if ((iter->start == DTLV_FALSE)
           && (mdb_cmp(iter->txn, iter->dbi, iter->key, iter->start_key) == 0))
@@ -144,7 +923,7 @@ int key_init(dtlv_key_iter *iter) {
 int key_init_back(dtlv_key_iter *iter) {
   if (iter->start_key) {
     val_in(iter->key, iter->start_key);
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
     if (rc == MDB_SUCCESS) {
       if ((iter->start == DTLV_TRUE)
           && (mdb_cmp(iter->txn, iter->dbi, iter->key, iter->start_key) == 0))
@@ -178,14 +957,14 @@ int key_continue_back(dtlv_key_iter *iter) {
 }
 
 int key_check(dtlv_key_iter *iter, int op) {
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, op);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
   if (rc == MDB_SUCCESS) return key_continue(iter);
   if (rc == MDB_NOTFOUND) return DTLV_FALSE;
   return rc;
 }
 
 int key_check_back(dtlv_key_iter *iter, int op) {
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, op);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
   if (rc == MDB_SUCCESS) return key_continue_back(iter);
   if (rc == MDB_NOTFOUND) return DTLV_FALSE;
   return rc;
@@ -204,21 +983,243 @@ int key_init_k(dtlv_key_iter *iter) {
 }
 
 int dtlv_key_iter_has_next(dtlv_key_iter *iter) {
-  if (iter->started == DTLV_TRUE) return key_advance(iter);
-  return key_init_k(iter);
+  if (iter->pending == DTLV_TRUE) {
+    iter->pending = DTLV_FALSE;
+    return DTLV_TRUE;
+  }
+  int rc = (iter->started == DTLV_TRUE) ? key_advance(iter)
+                                        : key_init_k(iter);
+  if (iter->filter) {
+    while (rc == DTLV_TRUE
+           && dtlv_filter_match(iter->filter, iter->key, iter->val)
+                == DTLV_FALSE)
+      rc = key_advance(iter);
+  }
+  return rc;
 }
 
-void dtlv_key_iter_destroy(dtlv_key_iter *iter) {
-  if (iter) free(iter);
+int dtlv_key_iter_set_filter(dtlv_key_iter *iter, dtlv_filter *filter) {
+  if (!iter) return EINVAL;
+  iter->filter = filter;
+  return MDB_SUCCESS;
 }
 
-struct dtlv_list_iter {
-  MDB_cursor *cur;
-  MDB_txn *txn;
-  MDB_dbi dbi;
-  MDB_val *key;
-  MDB_val *val;
-  int kforward;
+int dtlv_key_iter_next_batch(dtlv_key_iter *iter, void *buf, size_t buf_len,
+                             int max_items, int with_val, size_t *used) {
+  char *p = buf;
+  size_t left = buf_len;
+  int count = 0;
+
+  if (used) *used = 0;
+  if (!iter || !buf || max_items <= 0) return -EINVAL;
+  if (iter->ended == DTLV_TRUE) return 0;
+
+  while (count < max_items) {
+    int rc = dtlv_key_iter_has_next(iter);
+    if (rc == DTLV_FALSE) {
+      iter->ended = DTLV_TRUE;
+      break;
+    }
+    if (rc != DTLV_TRUE) return dtlv_batch_error(rc);
+
+    MDB_val *val = (with_val == DTLV_TRUE) ? iter->val : NULL;
+    size_t need = dtlv_batch_record_size(iter->key, val);
+    if (need > left) {
+      iter->pending = DTLV_TRUE;
+      if (count == 0) {
+        if (used) *used = need;
+        return -EMSGSIZE;
+      }
+      break;
+    }
+    p = dtlv_batch_put_record(p, iter->key, val);
+    left -= need;
+    count++;
+  }
+
+  if (used) *used = buf_len - left;
+  return count;
+}
+
+void dtlv_key_iter_destroy(dtlv_key_iter *iter) {
+  if (iter) free(iter);
+}
+
+typedef struct dtlv_key_range {
+  MDB_val start_key;
+  MDB_val end_key;
+  int start;
+  int end;
+} dtlv_key_range;
+
+struct dtlv_multi_range_iter {
+  MDB_cursor *cur;
+  MDB_txn *txn;
+  MDB_dbi dbi;
+  MDB_val *key;
+  MDB_val *val;
+  int forward;
+  int n;
+  int idx;
+  dtlv_key_range *ranges;
+  int started;
+  int ended;
+};
+
+int dtlv_multi_range_iter_create(dtlv_multi_range_iter **iter,
+                                 MDB_cursor *cur, MDB_val *key, MDB_val *val,
+                                 int forward, int n, int *starts, int *ends,
+                                 MDB_val *start_keys, MDB_val *end_keys) {
+  if (!iter || !cur || n < 0) return EINVAL;
+  if (n > 0 && (!start_keys || !end_keys)) return EINVAL;
+
+  dtlv_multi_range_iter *i;
+  i = calloc(1, sizeof(struct dtlv_multi_range_iter));
+  if (!i) return ENOMEM;
+
+  if (n > 0) {
+    i->ranges = malloc((size_t)n * sizeof(dtlv_key_range));
+    if (!i->ranges) {
+      free(i);
+      return ENOMEM;
+    }
+  }
+  for (int k = 0; k < n; k++) {
+    i->ranges[k].start_key = start_keys[k];
+    i->ranges[k].end_key = end_keys[k];
+    i->ranges[k].start = starts ? starts[k] : DTLV_TRUE;
+    i->ranges[k].end = ends ? ends[k] : DTLV_TRUE;
+  }
+
+  i->cur = cur;
+  i->txn = mdb_cursor_txn(cur);
+  i->dbi = mdb_cursor_dbi(cur);
+  i->key = key;
+  i->val = val;
+  i->forward = forward;
+  i->n = n;
+  i->idx = 0;
+  i->started = DTLV_FALSE;
+  i->ended = DTLV_FALSE;
+
+  dtlv_metrics_iter(cur);
+  *iter = i;
+  return MDB_SUCCESS;
+}
+
+// compare the current key with a bound in the iteration direction
+static int dtlv_multi_range_cmp(dtlv_multi_range_iter *iter, MDB_val *bound) {
+  int r = mdb_cmp(iter->txn, iter->dbi, iter->key, bound);
+  return (iter->forward == DTLV_TRUE) ? r : -r;
+}
+
+static int dtlv_multi_range_step(dtlv_multi_range_iter *iter) {
+  int op = (iter->forward == DTLV_TRUE) ? MDB_NEXT_NODUP : MDB_PREV_NODUP;
+  return dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
+}
+
+// position the cursor at the first key that is not before the start of the
+// current range
+static int dtlv_multi_range_seek(dtlv_multi_range_iter *iter) {
+  MDB_val *start_key = &iter->ranges[iter->idx].start_key;
+  int rc;
+
+  if (iter->forward == DTLV_TRUE) {
+    if (!start_key->mv_data)
+      return dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
+    val_in(iter->key, start_key);
+    return dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+  }
+
+  if (!start_key->mv_data)
+    return dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_LAST);
+  val_in(iter->key, start_key);
+  rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+  if (rc == MDB_NOTFOUND)
+    return dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_LAST);
+  if (rc != MDB_SUCCESS) return rc;
+  if (mdb_cmp(iter->txn, iter->dbi, iter->key, start_key) > 0)
+    return dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_PREV_NODUP);
+  return MDB_SUCCESS;
+}
+
+// find the next key in the ranges, starting from the current key if
+// positioned, so that a range adjacent to the previous one needs no seek
+static int dtlv_multi_range_find(dtlv_multi_range_iter *iter, int positioned) {
+  int rc;
+
+  while (iter->idx < iter->n) {
+    dtlv_key_range *range = &iter->ranges[iter->idx];
+
+    if (positioned == DTLV_FALSE) {
+      rc = dtlv_multi_range_seek(iter);
+      if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+      if (rc != MDB_SUCCESS) return rc;
+      positioned = DTLV_TRUE;
+    }
+
+    if (range->start_key.mv_data) {
+      int r = dtlv_multi_range_cmp(iter, &range->start_key);
+      if (r < 0) {
+        positioned = DTLV_FALSE;
+        continue;
+      }
+      if (r == 0 && range->start == DTLV_FALSE) {
+        rc = dtlv_multi_range_step(iter);
+        if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+        if (rc != MDB_SUCCESS) return rc;
+        continue;
+      }
+    }
+
+    if (range->end_key.mv_data) {
+      int r = dtlv_multi_range_cmp(iter, &range->end_key);
+      if (r > 0 || (r == 0 && range->end == DTLV_FALSE)) {
+        iter->idx++;
+        continue;
+      }
+    }
+    return DTLV_TRUE;
+  }
+  return DTLV_FALSE;
+}
+
+int dtlv_multi_range_iter_has_next(dtlv_multi_range_iter *iter) {
+  int rc;
+
+  if (iter->ended == DTLV_TRUE) return DTLV_FALSE;
+
+  if (iter->started == DTLV_FALSE) {
+    iter->started = DTLV_TRUE;
+    rc = dtlv_multi_range_find(iter, DTLV_FALSE);
+  } else {
+    rc = dtlv_multi_range_step(iter);
+    if (rc == MDB_SUCCESS) rc = dtlv_multi_range_find(iter, DTLV_TRUE);
+    else if (rc == MDB_NOTFOUND) rc = DTLV_FALSE;
+  }
+
+  if (rc == DTLV_FALSE) iter->ended = DTLV_TRUE;
+  return rc;
+}
+
+int dtlv_multi_range_iter_range(dtlv_multi_range_iter *iter) {
+  return iter->idx;
+}
+
+void dtlv_multi_range_iter_destroy(dtlv_multi_range_iter *iter) {
+  if (iter) {
+    free(iter->ranges);
+    free(iter);
+  }
+}
+
+struct dtlv_list_iter {
+  MDB_cursor *cur;
+  MDB_txn *txn;
+  MDB_dbi dbi;
+  MDB_val *key;
+  MDB_val *val;
+  int kforward;
   int kstart;
   int kend;
   MDB_val *start_key;
@@ -230,6 +1231,7 @@ struct dtlv_list_iter {
   MDB_val *end_val;
   int started;
   int key_ended;
+  dtlv_filter *filter;
 };
 
 int dtlv_list_iter_create(dtlv_list_iter **iter, MDB_cursor *cur,
@@ -243,6 +1245,23 @@ int dtlv_list_iter_create(dtlv_list_iter **iter, MDB_cursor *cur,
   i = calloc(1, sizeof(struct dtlv_list_iter));
   if (!i) return ENOMEM;
 
+  dtlv_list_iter_reset(i, cur, key, val, kforward, kstart, kend,
+                       start_key, end_key, vforward, vstart, vend,
+                       start_val, end_val);
+
+  dtlv_metrics_iter(cur);
+  *iter = i;
+  return MDB_SUCCESS;
+}
+
+int dtlv_list_iter_reset(dtlv_list_iter *i, MDB_cursor *cur,
+                         MDB_val *key, MDB_val *val,
+                         int kforward, int kstart, int kend,
+                         MDB_val *start_key, MDB_val *end_key,
+                         int vforward, int vstart, int vend,
+                         MDB_val *start_val, MDB_val *end_val) {
+  if (!i) return EINVAL;
+
   i->cur = cur;
   i->txn = mdb_cursor_txn(cur);
   i->dbi = mdb_cursor_dbi(cur);
@@ -262,7 +1281,6 @@ int dtlv_list_iter_create(dtlv_list_iter **iter, MDB_cursor *cur,
   i->started = DTLV_FALSE;
   i->key_ended = DTLV_FALSE;
 
-  *iter = i;
   return MDB_SUCCESS;
 }
 
@@ -279,7 +1297,7 @@ int list_advance_key(dtlv_list_iter *iter);
 int list_init_key(dtlv_list_iter *iter) {
   if (iter->start_key) {
     val_in(iter->key, iter->start_key);
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
     if (rc == MDB_SUCCESS) {
       if ((iter->kstart == DTLV_FALSE)
           && (mdb_cmp(iter->txn, iter->dbi, iter->key, iter->start_key) == 0))
@@ -295,7 +1313,7 @@ int list_init_key(dtlv_list_iter *iter) {
 int list_init_key_back(dtlv_list_iter *iter) {
   if (iter->start_key) {
     val_in(iter->key, iter->start_key);
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
     if (rc == MDB_SUCCESS) {
       if ((iter->kstart == DTLV_TRUE)
           && (mdb_cmp(iter->txn, iter->dbi, iter->key, iter->start_key) == 0))
@@ -311,7 +1329,7 @@ int list_init_key_back(dtlv_list_iter *iter) {
 int list_init_val(dtlv_list_iter *iter) {
   if (iter->start_val) {
     val_in(iter->val, iter->start_val);
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_GET_BOTH_RANGE);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_GET_BOTH_RANGE);
     if (rc == MDB_SUCCESS) {
       if ((iter->vstart == DTLV_FALSE)
           && (mdb_cmp(iter->txn, iter->dbi, iter->val, iter->start_val) == 0))
@@ -327,7 +1345,7 @@ int list_init_val(dtlv_list_iter *iter) {
 int list_init_val_back(dtlv_list_iter *iter) {
   if (iter->start_val) {
     val_in(iter->val, iter->start_val);
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_GET_BOTH_RANGE);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_GET_BOTH_RANGE);
     if (rc == MDB_SUCCESS) {
       if ((iter->vstart == DTLV_TRUE)
           && (mdb_cmp(iter->txn, iter->dbi, iter->val, iter->start_val) == 0))
@@ -377,14 +1395,14 @@ int list_key_continue_back(dtlv_list_iter *iter) {
 }
 
 int list_check_key(dtlv_list_iter *iter, int op) {
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, op);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
   if (rc == MDB_SUCCESS) return list_key_continue(iter);
   if (rc == MDB_NOTFOUND) return list_key_end(iter);
   return rc;
 }
 
 int list_check_key_back(dtlv_list_iter *iter, int op) {
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, op);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
   if (rc == MDB_SUCCESS) return list_key_continue_back(iter);
   if (rc == MDB_NOTFOUND) return list_key_end(iter);
   return rc;
@@ -452,14 +1470,14 @@ int list_val_continue_back(dtlv_list_iter *iter) {
 }
 
 int list_check_val(dtlv_list_iter *iter, int op) {
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, op);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
   if (rc == MDB_SUCCESS) return list_val_continue(iter);
   if (rc == MDB_NOTFOUND) return list_val_end(iter);
   return rc;
 }
 
 int list_check_val_back(dtlv_list_iter *iter, int op) {
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, op);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
   if (rc == MDB_SUCCESS) return list_val_continue_back(iter);
   if (rc == MDB_NOTFOUND) return list_val_end(iter);
   return rc;
@@ -473,12 +1491,27 @@ int list_advance_val_back(dtlv_list_iter *iter) {
   return list_check_val_back(iter, MDB_PREV_DUP);
 }
 
+static int list_advance(dtlv_list_iter *iter) {
+  if (iter->vforward == DTLV_TRUE) return list_advance_val(iter);
+  return list_advance_val_back(iter);
+}
+
 int dtlv_list_iter_has_next(dtlv_list_iter *iter) {
-  if (iter->started == DTLV_TRUE) {
-    if (iter->vforward == DTLV_TRUE) return list_advance_val(iter);
-    return list_advance_val_back(iter);
+  int rc = (iter->started == DTLV_TRUE) ? list_advance(iter)
+                                        : list_init_kv(iter);
+  if (iter->filter) {
+    while (rc == DTLV_TRUE
+           && dtlv_filter_match(iter->filter, iter->key, iter->val)
+                == DTLV_FALSE)
+      rc = list_advance(iter);
   }
-  return list_init_kv(iter);
+  return rc;
+}
+
+int dtlv_list_iter_set_filter(dtlv_list_iter *iter, dtlv_filter *filter) {
+  if (!iter) return EINVAL;
+  iter->filter = filter;
+  return MDB_SUCCESS;
 }
 
 void dtlv_list_iter_destroy(dtlv_list_iter *iter) {
@@ -493,6 +1526,9 @@ struct dtlv_list_val_iter {
   MDB_val *val;
   MDB_val *start_val;
   MDB_val *end_val;
+  int forward;
+  size_t limit;
+  size_t count;
 };
 
 int dtlv_list_val_iter_create(dtlv_list_val_iter **iter, MDB_cursor *cur,
@@ -503,6 +1539,19 @@ int dtlv_list_val_iter_create(dtlv_list_val_iter **iter, MDB_cursor *cur,
   i = calloc(1, sizeof(struct dtlv_list_val_iter));
   if (!i) return ENOMEM;
 
+  dtlv_list_val_iter_reset(i, cur, key, val, start_val, end_val);
+
+  dtlv_metrics_iter(cur);
+  *iter = i;
+  return MDB_SUCCESS;
+}
+
+int dtlv_list_val_iter_reset(dtlv_list_val_iter *i, MDB_cursor *cur,
+                             MDB_val *key, MDB_val *val,
+                             MDB_val *start_val,
+                             MDB_val *end_val) {
+  if (!i) return EINVAL;
+
   i->cur = cur;
   i->txn = mdb_cursor_txn(cur);
   i->dbi = mdb_cursor_dbi(cur);
@@ -510,25 +1559,37 @@ int dtlv_list_val_iter_create(dtlv_list_val_iter **iter, MDB_cursor *cur,
   i->val = val;
   i->start_val = start_val;
   i->end_val = end_val;
+  i->forward = DTLV_TRUE;
+  i->limit = 0;
+  i->count = 0;
 
-  *iter = i;
+  return MDB_SUCCESS;
+}
+
+int dtlv_list_val_iter_set_order(dtlv_list_val_iter *iter, int forward,
+                                 size_t limit) {
+  if (!iter) return EINVAL;
+  iter->forward = forward;
+  iter->limit = limit;
   return MDB_SUCCESS;
 }
 
 int list_val_val_continue(dtlv_list_val_iter *iter);
 int list_val_check_val(dtlv_list_val_iter *iter, int op);
+int list_val_val_continue_back(dtlv_list_val_iter *iter);
+int list_val_check_val_back(dtlv_list_val_iter *iter, int op);
 
 int list_val_init_val(dtlv_list_val_iter *iter) {
   if (iter->start_val) {
     val_in(iter->val, iter->start_val);
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_GET_BOTH_RANGE);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_GET_BOTH_RANGE);
     if (rc == MDB_SUCCESS) {
       return list_val_val_continue(iter);
     }
     if (rc == MDB_NOTFOUND) return DTLV_FALSE;
     return rc;
   } else {
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
     if (rc == MDB_SUCCESS) return list_val_check_val(iter, MDB_FIRST_DUP);
     if (rc == MDB_NOTFOUND) return DTLV_FALSE;
     return rc;
@@ -545,19 +1606,66 @@ int list_val_val_continue(dtlv_list_val_iter *iter) {
 }
 
 int list_val_check_val(dtlv_list_val_iter *iter, int op) {
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, op);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
   if (rc == MDB_SUCCESS) return list_val_val_continue(iter);
   if (rc == MDB_NOTFOUND) return DTLV_FALSE;
   return rc;
 }
 
+// start_val is the upper bound and end_val the lower bound going backward
+int list_val_init_val_back(dtlv_list_val_iter *iter) {
+  int rc;
+  if (iter->start_val) {
+    val_in(iter->val, iter->start_val);
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_GET_BOTH_RANGE);
+    if (rc == MDB_SUCCESS) {
+      if (mdb_cmp(iter->txn, iter->dbi, iter->val, iter->start_val) == 0)
+        return list_val_val_continue_back(iter);
+      return list_val_check_val_back(iter, MDB_PREV_DUP);
+    }
+    if (rc != MDB_NOTFOUND) return rc;
+  }
+  // no value is above start_val, start from the last one
+  rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET);
+  if (rc == MDB_SUCCESS) return list_val_check_val_back(iter, MDB_LAST_DUP);
+  if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+  return rc;
+}
+
+int list_val_val_continue_back(dtlv_list_val_iter *iter) {
+  if (iter->end_val) {
+    int r = mdb_cmp(iter->txn, iter->dbi, iter->val, iter->end_val);
+    if (r < 0) return DTLV_FALSE;
+    return DTLV_TRUE;
+  }
+  return DTLV_TRUE;
+}
+
+int list_val_check_val_back(dtlv_list_val_iter *iter, int op) {
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
+  if (rc == MDB_SUCCESS) return list_val_val_continue_back(iter);
+  if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+  return rc;
+}
+
+static int list_val_counted(dtlv_list_val_iter *iter, int rc) {
+  if (rc == DTLV_TRUE) iter->count++;
+  return rc;
+}
+
 int dtlv_list_val_iter_seek(dtlv_list_val_iter *iter, MDB_val *k) {
   val_in(iter->key, k);
-  return list_val_init_val(iter);
+  iter->count = 0;
+  if (iter->forward == DTLV_TRUE)
+    return list_val_counted(iter, list_val_init_val(iter));
+  return list_val_counted(iter, list_val_init_val_back(iter));
 }
 
 int dtlv_list_val_iter_has_next(dtlv_list_val_iter *iter) {
-  return list_val_check_val(iter, MDB_NEXT_DUP);
+  if (iter->limit > 0 && iter->count >= iter->limit) return DTLV_FALSE;
+  if (iter->forward == DTLV_TRUE)
+    return list_val_counted(iter, list_val_check_val(iter, MDB_NEXT_DUP));
+  return list_val_counted(iter, list_val_check_val_back(iter, MDB_PREV_DUP));
 }
 
 void dtlv_list_val_iter_destroy(dtlv_list_val_iter *iter) {
@@ -570,8 +1678,12 @@ struct dtlv_list_val_full_iter {
   MDB_val *val;
   size_t n;
   size_t c;
+  size_t loaded;
+  size_t total;
   const MDB_val *dup_vals;
   int fast_path;
+  int forward;
+  size_t limit;
 };
 
 int dtlv_list_val_full_iter_create(dtlv_list_val_full_iter **iter,
@@ -581,13 +1693,38 @@ int dtlv_list_val_full_iter_create(dtlv_list_val_full_iter **iter,
   i = calloc(1, sizeof(struct dtlv_list_val_full_iter));
   if (!i) return ENOMEM;
 
+  dtlv_list_val_full_iter_reset(i, cur, key, val);
+
+  dtlv_metrics_iter(cur);
+  *iter = i;
+  return MDB_SUCCESS;
+}
+
+int dtlv_list_val_full_iter_reset(dtlv_list_val_full_iter *i,
+                                  MDB_cursor *cur,
+                                  MDB_val *key, MDB_val *val) {
+  if (!i) return EINVAL;
+
   i->cur = cur;
   i->key = key;
   i->val = val;
+  i->n = 0;
+  i->c = 0;
+  i->loaded = 0;
+  i->total = 0;
   i->dup_vals = NULL;
   i->fast_path = DTLV_FALSE;
+  i->forward = DTLV_TRUE;
+  i->limit = 0;
 
-  *iter = i;
+  return MDB_SUCCESS;
+}
+
+int dtlv_list_val_full_iter_set_order(dtlv_list_val_full_iter *iter,
+                                      int forward, size_t limit) {
+  if (!iter) return EINVAL;
+  iter->forward = forward;
+  iter->limit = limit;
   return MDB_SUCCESS;
 }
 
@@ -596,13 +1733,14 @@ int dtlv_list_val_full_iter_seek(dtlv_list_val_full_iter *iter, MDB_val *k) {
   iter->dup_vals = NULL;
   iter->fast_path = DTLV_FALSE;
 
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET);
   if (rc == MDB_SUCCESS) {
 
     rc = mdb_cursor_count(iter->cur, &iter->n);
     if (rc != MDB_SUCCESS) return rc;
 
     iter->c = 1;
+    iter->loaded = 0;
     const MDB_val *vals = NULL;
     mdb_size_t total = 0;
     int frc = mdb_cursor_list_dup(iter->cur, &vals, &total);
@@ -611,6 +1749,17 @@ int dtlv_list_val_full_iter_seek(dtlv_list_val_full_iter *iter, MDB_val *k) {
       iter->fast_path = DTLV_TRUE;
       iter->n = (size_t)total;
     }
+
+    iter->total = iter->n;
+    if (iter->forward == DTLV_FALSE) {
+      if (iter->fast_path == DTLV_TRUE) {
+        *iter->val = iter->dup_vals[iter->total - 1];
+      } else {
+        rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_LAST_DUP);
+        if (rc != MDB_SUCCESS) return rc;
+      }
+    }
+    if (iter->limit > 0 && iter->n > iter->limit) iter->n = iter->limit;
     return DTLV_TRUE;
 
   }
@@ -618,21 +1767,83 @@ int dtlv_list_val_full_iter_seek(dtlv_list_val_full_iter *iter, MDB_val *k) {
   return rc;
 }
 
+// put the value at position c in val, counted from the last value going
+// backward; the cursor only ever moves in the direction of iteration
+static int dtlv_list_val_full_load(dtlv_list_val_full_iter *iter) {
+  if (iter->fast_path == DTLV_TRUE && iter->dup_vals) {
+    size_t idx = iter->c;
+    if (iter->forward == DTLV_FALSE) idx = iter->total - 1 - iter->c;
+    *iter->val = iter->dup_vals[idx];
+    return MDB_SUCCESS;
+  }
+  if (iter->loaded == iter->c) return MDB_SUCCESS;
+  int op = (iter->forward == DTLV_TRUE) ? MDB_NEXT_DUP : MDB_PREV_DUP;
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
+  if (rc == MDB_SUCCESS) iter->loaded = iter->c;
+  return rc;
+}
+
 int dtlv_list_val_full_iter_has_next(dtlv_list_val_full_iter *iter) {
   if (iter->c < iter->n) {
-    if (iter->fast_path == DTLV_TRUE && iter->dup_vals) {
-      *iter->val = iter->dup_vals[iter->c];
-      iter->c++;
-      return DTLV_TRUE;
-    }
+    int rc = dtlv_list_val_full_load(iter);
     iter->c++;
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT_DUP);
     if (rc == MDB_SUCCESS) return DTLV_TRUE;
     return rc;
   }
   return DTLV_FALSE;
 }
 
+int dtlv_list_val_full_iter_next_batch(dtlv_list_val_full_iter *iter,
+                                       void *buf, size_t buf_len,
+                                       int max_items, size_t *used) {
+  char *p = buf;
+  size_t left = buf_len;
+  int count = 0;
+
+  if (used) *used = 0;
+  if (!iter || !buf || max_items <= 0) return -EINVAL;
+
+  while (count < max_items && iter->c < iter->n) {
+    int rc = dtlv_list_val_full_load(iter);
+    if (rc != MDB_SUCCESS) return dtlv_batch_error(rc);
+
+    size_t need = dtlv_batch_record_size(iter->val, NULL);
+    if (need > left) {
+      if (count == 0) {
+        if (used) *used = need;
+        return -EMSGSIZE;
+      }
+      break;
+    }
+    p = dtlv_batch_put_record(p, iter->val, NULL);
+    left -= need;
+    iter->c++;
+    count++;
+  }
+
+  if (used) *used = buf_len - left;
+  return count;
+}
+
+int dtlv_list_val_full_iter_seek_batch(dtlv_list_val_full_iter *iter,
+                                       MDB_val *k, void *buf, size_t buf_len,
+                                       size_t *used) {
+  if (used) *used = 0;
+  if (!iter || !k || !buf) return -EINVAL;
+
+  int rc = dtlv_list_val_full_iter_seek(iter, k);
+  if (rc == DTLV_FALSE) {
+    iter->n = 0;
+    iter->c = 0;
+    return 0;
+  }
+  if (rc != DTLV_TRUE) return dtlv_batch_error(rc);
+
+  // the first value is in val already, start the batch from it
+  iter->c = 0;
+  return dtlv_list_val_full_iter_next_batch(iter, buf, buf_len, INT_MAX, used);
+}
+
 void dtlv_list_val_full_iter_destroy(dtlv_list_val_full_iter *iter) {
   if (iter) free(iter);
 }
@@ -640,7 +1851,7 @@ void dtlv_list_val_full_iter_destroy(dtlv_list_val_full_iter *iter) {
 size_t dtlv_list_val_count(MDB_cursor *cur, MDB_val *key, MDB_val *val) {
   size_t n;
 
-  int rc = mdb_cursor_get(cur, key, val, MDB_SET);
+  int rc = dtlv_cursor_get(cur, key, val, MDB_SET);
   if (rc == MDB_SUCCESS) {
     rc = mdb_cursor_count(cur, &n);
     if (rc == MDB_SUCCESS) return n;
@@ -658,6 +1869,7 @@ struct dtlv_key_rank_sample_iter {
   MDB_val *key;
   MDB_val *val;
   size_t *indices;
+  int capacity;
   int samples;
   int current;
   uint64_t lower_rank;
@@ -678,9 +1890,9 @@ static int dtlv_key_rank_sample_iter_seek_start(
   int rc;
   if (start_key && start_key->mv_size > 0) {
     val_in(iter->key, start_key);
-    rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
   } else {
-    rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
   }
 
   if (rc == MDB_NOTFOUND) return DTLV_FALSE;
@@ -716,9 +1928,9 @@ static int dtlv_key_rank_sample_iter_compute_upper(
   val_in(iter->key, end_key);
   int rc;
   if (end_key->mv_size > 0) {
-    rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
   } else {
-    rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
   }
   if (rc == MDB_NOTFOUND) return mdb_count_all(iter->txn, iter->dbi, 0, rank_out);
   if (rc != MDB_SUCCESS) return rc;
@@ -728,7 +1940,7 @@ static int dtlv_key_rank_sample_iter_compute_upper(
     return mdb_cursor_key_rank(iter->cur, iter->key, NULL, 0, rank_out);
 
   /* cmp == 0: step past the inclusive upper bound. */
-  rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT_NODUP);
+  rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT_NODUP);
   if (rc == MDB_NOTFOUND) return mdb_count_all(iter->txn, iter->dbi, 0, rank_out);
   if (rc != MDB_SUCCESS) return rc;
   return mdb_cursor_key_rank(iter->cur, iter->key, NULL, 0, rank_out);
@@ -743,12 +1955,31 @@ int dtlv_key_rank_sample_iter_create(dtlv_key_rank_sample_iter **iter,
   s = calloc(1, sizeof(struct dtlv_key_rank_sample_iter));
   if (!s) return ENOMEM;
 
-  int rc_copy = dtlv_copy_indices(&s->indices, indices, samples);
-  if (rc_copy != MDB_SUCCESS) {
+  int rc = dtlv_key_rank_sample_iter_reset(s, indices, samples, cur, key, val,
+                                           start_key, end_key);
+  if (rc != MDB_SUCCESS) {
+    free(s->indices);
     free(s);
-    return rc_copy;
+    return rc;
   }
 
+  dtlv_metrics_iter(cur);
+  *iter = s;
+  return MDB_SUCCESS;
+}
+
+int dtlv_key_rank_sample_iter_reset(dtlv_key_rank_sample_iter *s,
+                                    size_t *indices, int samples,
+                                    MDB_cursor *cur, MDB_val *key,
+                                    MDB_val *val, MDB_val *start_key,
+                                    MDB_val *end_key) {
+  if (!s) return EINVAL;
+
+  // an iterator that fails to reset returns no more samples
+  s->range_empty = DTLV_TRUE;
+  int rc = dtlv_reuse_indices(&s->indices, &s->capacity, indices, samples);
+  if (rc != MDB_SUCCESS) return rc;
+
   s->cur = cur;
   s->txn = mdb_cursor_txn(cur);
   s->dbi = mdb_cursor_dbi(cur);
@@ -758,30 +1989,19 @@ int dtlv_key_rank_sample_iter_create(dtlv_key_rank_sample_iter **iter,
   s->current = 0;
   s->lower_rank = 0;
   s->upper_rank = 0;
-  s->range_empty = DTLV_FALSE;
 
   uint64_t lower = 0;
-  int rc = dtlv_key_rank_sample_iter_compute_lower(s, start_key, end_key, &lower);
-  if (rc == DTLV_FALSE) {
-    s->range_empty = DTLV_TRUE;
-  } else if (rc != MDB_SUCCESS) {
-    free(s->indices);
-    free(s);
-    return rc;
-  } else {
-    s->lower_rank = lower;
-    uint64_t upper = 0;
-    rc = dtlv_key_rank_sample_iter_compute_upper(s, end_key, &upper);
-    if (rc != MDB_SUCCESS) {
-      free(s->indices);
-      free(s);
-      return rc;
-    }
-    s->upper_rank = upper;
-    if (s->lower_rank >= s->upper_rank) s->range_empty = DTLV_TRUE;
-  }
+  rc = dtlv_key_rank_sample_iter_compute_lower(s, start_key, end_key, &lower);
+  if (rc == DTLV_FALSE) return MDB_SUCCESS;
+  if (rc != MDB_SUCCESS) return rc;
+  s->lower_rank = lower;
+
+  uint64_t upper = 0;
+  rc = dtlv_key_rank_sample_iter_compute_upper(s, end_key, &upper);
+  if (rc != MDB_SUCCESS) return rc;
+  s->upper_rank = upper;
+  if (s->lower_rank < s->upper_rank) s->range_empty = DTLV_FALSE;
 
-  *iter = s;
   return MDB_SUCCESS;
 }
 
@@ -794,12 +2014,12 @@ static int dtlv_key_rank_sample_iter_resync(
   if (total < iter->upper_rank) iter->upper_rank = total;
   if (target >= iter->upper_rank) return MDB_NOTFOUND;
 
-  rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
+  rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
   if (rc != MDB_SUCCESS) return rc;
 
   uint64_t i = 0;
   while (i < target) {
-    rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT);
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT);
     if (rc != MDB_SUCCESS) return rc;
     i++;
   }
@@ -916,7 +2136,7 @@ static int dtlv_list_key_range_full_val_iter_accept_current(
 
 static int dtlv_list_key_range_full_val_iter_check_key(
     dtlv_list_key_range_full_val_iter *iter, int op) {
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, op);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, op);
   if (rc == MDB_SUCCESS)
     return dtlv_list_key_range_full_val_iter_accept_current(iter);
   if (rc == MDB_NOTFOUND) return dtlv_list_key_range_full_val_iter_finish(iter);
@@ -927,7 +2147,7 @@ static int dtlv_list_key_range_full_val_iter_init_key(
     dtlv_list_key_range_full_val_iter *iter) {
   if (iter->start_key) {
     val_in(iter->key, iter->start_key);
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
     if (rc == MDB_NOTFOUND) return dtlv_list_key_range_full_val_iter_finish(iter);
     if (rc != MDB_SUCCESS) return rc;
 
@@ -952,6 +2172,20 @@ int dtlv_list_key_range_full_val_iter_create(
   s = calloc(1, sizeof(struct dtlv_list_key_range_full_val_iter));
   if (!s) return ENOMEM;
 
+  dtlv_list_key_range_full_val_iter_reset(s, cur, key, val, kstart, kend,
+                                          start_key, end_key);
+
+  dtlv_metrics_iter(cur);
+  *iter = s;
+  return MDB_SUCCESS;
+}
+
+int dtlv_list_key_range_full_val_iter_reset(
+    dtlv_list_key_range_full_val_iter *s, MDB_cursor *cur,
+    MDB_val *key, MDB_val *val, int kstart, int kend,
+    MDB_val *start_key, MDB_val *end_key) {
+  if (!s) return EINVAL;
+
   s->cur = cur;
   s->txn = mdb_cursor_txn(cur);
   s->dbi = mdb_cursor_dbi(cur);
@@ -963,10 +2197,11 @@ int dtlv_list_key_range_full_val_iter_create(
   s->end_key = end_key;
   s->started = DTLV_FALSE;
   s->range_done = DTLV_FALSE;
+  s->dup_total = 0;
+  s->dup_index = 0;
   s->dup_vals = NULL;
   s->fast_path = DTLV_FALSE;
 
-  *iter = s;
   return MDB_SUCCESS;
 }
 
@@ -991,7 +2226,7 @@ int dtlv_list_key_range_full_val_iter_has_next(
       iter->dup_index++;
       return DTLV_TRUE;
     }
-    int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT_DUP);
+    int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT_DUP);
     if (rc == MDB_SUCCESS) {
       iter->dup_index++;
       return DTLV_TRUE;
@@ -1017,6 +2252,7 @@ struct dtlv_list_rank_sample_iter {
   MDB_val *key;
   MDB_val *val;
   size_t *indices;
+  int capacity;
   int samples;
   int current;
   uint64_t lower_rank;
@@ -1037,9 +2273,9 @@ static int dtlv_list_rank_sample_iter_seek_start(
   int rc;
   if (start_key) {
     val_in(iter->key, start_key);
-    rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
   } else {
-    rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
   }
   if (rc == MDB_NOTFOUND) return DTLV_FALSE;
   if (rc != MDB_SUCCESS) return rc;
@@ -1050,14 +2286,14 @@ static int dtlv_list_rank_sample_iter_seek_after_end(
     dtlv_list_rank_sample_iter *iter, MDB_val *end_key) {
   if (!end_key) return DTLV_FALSE;
   val_in(iter->key, end_key);
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
   if (rc == MDB_NOTFOUND) return DTLV_FALSE;
   if (rc != MDB_SUCCESS) return rc;
 
   int cmp = mdb_cmp(iter->txn, iter->dbi, iter->key, end_key);
   if (cmp > 0) return DTLV_TRUE;
 
-  rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT_NODUP);
+  rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT_NODUP);
   if (rc == MDB_NOTFOUND) return DTLV_FALSE;
   if (rc != MDB_SUCCESS) return rc;
   return DTLV_TRUE;
@@ -1097,7 +2333,7 @@ static int dtlv_list_rank_sample_iter_compute_upper(
 
 static int dtlv_list_rank_sample_iter_compute_tail(
     dtlv_list_rank_sample_iter *iter, uint64_t *rank_out) {
-  int rc = mdb_cursor_get(iter->cur, iter->key, iter->val, MDB_LAST);
+  int rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_LAST);
   if (rc == MDB_NOTFOUND) {
     *rank_out = 0;
     return MDB_SUCCESS;
@@ -1120,12 +2356,31 @@ int dtlv_list_rank_sample_iter_create(dtlv_list_rank_sample_iter **iter,
   s = calloc(1, sizeof(struct dtlv_list_rank_sample_iter));
   if (!s) return ENOMEM;
 
-  int rc_copy = dtlv_copy_indices(&s->indices, indices, samples);
-  if (rc_copy != MDB_SUCCESS) {
+  int rc = dtlv_list_rank_sample_iter_reset(s, indices, samples, cur, key, val,
+                                            start_key, end_key);
+  if (rc != MDB_SUCCESS) {
+    free(s->indices);
     free(s);
-    return rc_copy;
+    return rc;
   }
 
+  dtlv_metrics_iter(cur);
+  *iter = s;
+  return MDB_SUCCESS;
+}
+
+int dtlv_list_rank_sample_iter_reset(dtlv_list_rank_sample_iter *s,
+                                     size_t *indices, int samples,
+                                     MDB_cursor *cur, MDB_val *key,
+                                     MDB_val *val, MDB_val *start_key,
+                                     MDB_val *end_key) {
+  if (!s) return EINVAL;
+
+  // an iterator that fails to reset returns no more samples
+  s->range_empty = DTLV_TRUE;
+  int rc = dtlv_reuse_indices(&s->indices, &s->capacity, indices, samples);
+  if (rc != MDB_SUCCESS) return rc;
+
   s->cur = cur;
   s->txn = mdb_cursor_txn(cur);
   s->dbi = mdb_cursor_dbi(cur);
@@ -1135,38 +2390,24 @@ int dtlv_list_rank_sample_iter_create(dtlv_list_rank_sample_iter **iter,
   s->current = 0;
   s->lower_rank = 0;
   s->upper_rank = 0;
-  s->range_empty = DTLV_FALSE;
 
   uint64_t lower = 0;
-  int rc = dtlv_list_rank_sample_iter_compute_lower(
-      s, start_key, end_key, &lower);
+  rc = dtlv_list_rank_sample_iter_compute_lower(s, start_key, end_key, &lower);
+  if (rc == DTLV_FALSE) return MDB_SUCCESS;
+  if (rc != MDB_SUCCESS) return rc;
+  s->lower_rank = lower;
+
+  uint64_t upper = 0;
+  rc = dtlv_list_rank_sample_iter_compute_upper(s, end_key, &upper);
   if (rc == DTLV_FALSE) {
-    s->range_empty = DTLV_TRUE;
+    rc = dtlv_list_rank_sample_iter_compute_tail(s, &upper);
+    if (rc != MDB_SUCCESS) return rc;
   } else if (rc != MDB_SUCCESS) {
-    free(s->indices);
-    free(s);
     return rc;
-  } else {
-    s->lower_rank = lower;
-    uint64_t upper = 0;
-    rc = dtlv_list_rank_sample_iter_compute_upper(s, end_key, &upper);
-    if (rc == DTLV_FALSE) {
-      rc = dtlv_list_rank_sample_iter_compute_tail(s, &upper);
-      if (rc != MDB_SUCCESS) {
-        free(s->indices);
-        free(s);
-        return rc;
-      }
-    } else if (rc != MDB_SUCCESS) {
-      free(s->indices);
-      free(s);
-      return rc;
-    }
-    s->upper_rank = upper;
-    if (s->lower_rank >= s->upper_rank) s->range_empty = DTLV_TRUE;
   }
+  s->upper_rank = upper;
+  if (s->lower_rank < s->upper_rank) s->range_empty = DTLV_FALSE;
 
-  *iter = s;
   return MDB_SUCCESS;
 }
 
@@ -1199,6 +2440,3126 @@ void dtlv_list_rank_sample_iter_destroy(dtlv_list_rank_sample_iter *iter) {
   }
 }
 
+int dtlv_partition_range(MDB_cursor *cur, MDB_val *start_key,
+                         MDB_val *end_key, int parts, MDB_val *splits,
+                         int *n) {
+  if (!cur || !n || parts < 1 || (parts > 1 && !splits)) return EINVAL;
+  *n = 0;
+
+  MDB_val key, val, first;
+  dtlv_key_rank_sample_iter s;
+  memset(&s, 0, sizeof(s));
+  s.cur = cur;
+  s.txn = mdb_cursor_txn(cur);
+  s.dbi = mdb_cursor_dbi(cur);
+  s.key = &key;
+  s.val = &val;
+
+  uint64_t lower = 0;
+  int rc = dtlv_key_rank_sample_iter_compute_lower(&s, start_key, end_key,
+                                                   &lower);
+  if (rc == DTLV_FALSE) return MDB_SUCCESS;
+  if (rc != MDB_SUCCESS) return rc;
+  val_in(&first, &key);
+
+  uint64_t upper = 0;
+  rc = dtlv_key_rank_sample_iter_compute_upper(&s, end_key, &upper);
+  if (rc != MDB_SUCCESS) return rc;
+  if (lower >= upper) return MDB_SUCCESS;
+
+  uint64_t total = upper - lower;
+  uint64_t step = total / (uint64_t)parts;
+  uint64_t rem = total % (uint64_t)parts;
+  MDB_val *prev = &first;
+  int p;
+  for (p = 1; p < parts; p++) {
+    uint64_t rank = lower + step * p + rem * p / parts;
+    if (rank >= upper) break;
+
+    rc = mdb_cursor_get_rank(cur, rank, &key, &val, 0);
+    if (rc == MDB_NOTFOUND) break;
+    if (rc != MDB_SUCCESS) return rc;
+
+    // a key with many duplicates spans several ranks, it is not split
+    if (mdb_cmp(s.txn, s.dbi, &key, prev) <= 0) continue;
+    val_in(&splits[*n], &key);
+    prev = &splits[*n];
+    (*n)++;
+  }
+  return MDB_SUCCESS;
+}
+
+static int dtlv_agg_decode(MDB_val *v, int decode, size_t offset,
+                           uint64_t *out) {
+  if (v->mv_size < offset || v->mv_size - offset < 8) return DTLV_FALSE;
+
+  const unsigned char *b = (const unsigned char *)v->mv_data + offset;
+  uint64_t u = 0;
+  int i;
+  if (decode == DTLV_AGG_I64_LE || decode == DTLV_AGG_F64_LE) {
+    for (i = 7; i >= 0; i--) u = (u << 8) | b[i];
+  } else {
+    for (i = 0; i < 8; i++) u = (u << 8) | b[i];
+  }
+  *out = u;
+  return DTLV_TRUE;
+}
+
+static void dtlv_agg_add(dtlv_agg_result *r, MDB_val *v, int decode,
+                         size_t offset, uint64_t weight) {
+  uint64_t u;
+  if (decode == DTLV_AGG_COUNT) return;
+  if (dtlv_agg_decode(v, decode, offset, &u) == DTLV_FALSE) return;
+
+  if (decode == DTLV_AGG_I64_LE || decode == DTLV_AGG_I64_BE) {
+    int64_t x = (int64_t)u;
+    // the sum wraps around on overflow, as in Java
+    r->isum = (int64_t)((uint64_t)r->isum + u * weight);
+    if (r->decoded == 0 || x < r->imin) r->imin = x;
+    if (r->decoded == 0 || x > r->imax) r->imax = x;
+  } else {
+    double x;
+    memcpy(&x, &u, sizeof(double));
+    r->dsum += x * (double)weight;
+    if (r->decoded == 0 || x < r->dmin) r->dmin = x;
+    if (r->decoded == 0 || x > r->dmax) r->dmax = x;
+  }
+  r->decoded += weight;
+}
+
+static void dtlv_agg_merge(dtlv_agg_result *r, dtlv_agg_result *o) {
+  if (o->decoded > 0) {
+    if (r->decoded == 0 || o->imin < r->imin) r->imin = o->imin;
+    if (r->decoded == 0 || o->imax > r->imax) r->imax = o->imax;
+    if (r->decoded == 0 || o->dmin < r->dmin) r->dmin = o->dmin;
+    if (r->decoded == 0 || o->dmax > r->dmax) r->dmax = o->dmax;
+  }
+  r->count += o->count;
+  r->keys += o->keys;
+  r->decoded += o->decoded;
+  r->isum = (int64_t)((uint64_t)r->isum + (uint64_t)o->isum);
+  r->dsum += o->dsum;
+}
+
+typedef struct dtlv_agg_task {
+  MDB_env *env;
+  MDB_dbi dbi;
+  MDB_val *start_key;
+  MDB_val *end_key;
+  int start;
+  int end;
+  int decode;
+  int from_key;
+  size_t offset;
+  dtlv_agg_result result;
+  int rc;
+  uint64_t txnid; // the snapshot a worker has to scan in
+  int state;
+  int fallback;   // the calling thread scans the partition instead
+  struct dtlv_agg_task *next;
+} dtlv_agg_task;
+
+static int dtlv_agg_scan(MDB_cursor *cur, dtlv_agg_task *task) {
+  MDB_txn *txn = mdb_cursor_txn(cur);
+  MDB_dbi dbi = mdb_cursor_dbi(cur);
+  dtlv_agg_result *r = &task->result;
+  MDB_val key, val;
+  int rc;
+
+  unsigned int flags = 0;
+  rc = mdb_dbi_flags(txn, dbi, &flags);
+  if (rc != MDB_SUCCESS) return rc;
+  int dupsort = (flags & MDB_DUPSORT) ? DTLV_TRUE : DTLV_FALSE;
+  // the values need not be read when only the keys matter
+  int per_key = (dupsort == DTLV_TRUE
+                 && (task->decode == DTLV_AGG_COUNT
+                     || task->from_key == DTLV_TRUE))
+                  ? DTLV_TRUE : DTLV_FALSE;
+
+  if (task->start_key) {
+    val_in(&key, task->start_key);
+    rc = dtlv_cursor_get(cur, &key, &val, MDB_SET_RANGE);
+    if (rc == MDB_SUCCESS && task->start == DTLV_FALSE
+        && mdb_cmp(txn, dbi, &key, task->start_key) == 0)
+      rc = dtlv_cursor_get(cur, &key, &val, MDB_NEXT_NODUP);
+  } else {
+    rc = dtlv_cursor_get(cur, &key, &val, MDB_FIRST);
+  }
+
+  while (rc == MDB_SUCCESS) {
+    if (task->end_key) {
+      int c = mdb_cmp(txn, dbi, &key, task->end_key);
+      if (c > 0 || (c == 0 && task->end == DTLV_FALSE)) break;
+    }
+    r->keys++;
+
+    if (per_key == DTLV_TRUE) {
+      mdb_size_t n = 0;
+      rc = mdb_cursor_count(cur, &n);
+      if (rc != MDB_SUCCESS) return rc;
+      r->count += n;
+      dtlv_agg_add(r, &key, task->decode, task->offset, n);
+    } else {
+      for (;;) {
+        r->count++;
+        dtlv_agg_add(r, task->from_key == DTLV_TRUE ? &key : &val,
+                     task->decode, task->offset, 1);
+        if (dupsort == DTLV_FALSE) break;
+        rc = dtlv_cursor_get(cur, &key, &val, MDB_NEXT_DUP);
+        if (rc == MDB_NOTFOUND) break;
+        if (rc != MDB_SUCCESS) return rc;
+      }
+    }
+
+    rc = dtlv_cursor_get(cur, &key, &val, MDB_NEXT_NODUP);
+  }
+
+  if (rc == MDB_NOTFOUND) return MDB_SUCCESS;
+  return rc;
+}
+
+#define DTLV_AGG_QUEUED  1
+#define DTLV_AGG_RUNNING 2
+#define DTLV_AGG_DONE    3
+// pooled workers exit after being idle for this long
+#define DTLV_AGG_IDLE_MS 10000
+
+// the threads scanning partitions of dtlv_aggregate_parallel, shared by all
+// calls and environments, started as needed and never more than
+// DTLV_AGG_MAX_THREADS - 1
+typedef struct dtlv_agg_pool {
+  dtlv_mutex_t lock;
+  dtlv_cond_t queued;
+  dtlv_cond_t done;
+  dtlv_agg_task *head;
+  dtlv_agg_task *tail;
+  int workers;
+  int idle;
+} dtlv_agg_pool;
+
+static void *volatile dtlv_agg_pool_ptr;
+static void *volatile dtlv_agg_pool_init_lock;
+
+static dtlv_agg_pool *dtlv_agg_pool_get(void) {
+  dtlv_agg_pool *pool = dtlv_atomic_load_ptr(&dtlv_agg_pool_ptr);
+  if (pool) return pool;
+
+  while (!dtlv_atomic_cas_ptr(&dtlv_agg_pool_init_lock, NULL,
+                              (void *)&dtlv_agg_pool_init_lock))
+    dtlv_sleep_ms(0);
+  pool = dtlv_atomic_load_ptr(&dtlv_agg_pool_ptr);
+  if (!pool) {
+    pool = calloc(1, sizeof(dtlv_agg_pool));
+    if (pool && dtlv_mutex_init(&pool->lock) != 0) {
+      free(pool);
+      pool = NULL;
+    }
+    if (pool && dtlv_cond_init(&pool->queued) != 0) {
+      dtlv_mutex_destroy(&pool->lock);
+      free(pool);
+      pool = NULL;
+    }
+    if (pool && dtlv_cond_init(&pool->done) != 0) {
+      dtlv_cond_destroy(&pool->queued);
+      dtlv_mutex_destroy(&pool->lock);
+      free(pool);
+      pool = NULL;
+    }
+    if (pool) dtlv_atomic_cas_ptr(&dtlv_agg_pool_ptr, NULL, pool);
+  }
+  dtlv_atomic_cas_ptr(&dtlv_agg_pool_init_lock,
+                      (void *)&dtlv_agg_pool_init_lock, NULL);
+  return pool;
+}
+
+// scans the partition in a new read-only transaction, unless that does not
+// see the snapshot of the calling thread, or cannot open the DBI
+static void dtlv_agg_run(dtlv_agg_task *task) {
+  MDB_txn *txn = NULL;
+  MDB_cursor *cur = NULL;
+
+  if (mdb_txn_begin(task->env, NULL, MDB_RDONLY, &txn) != MDB_SUCCESS) {
+    task->fallback = 1;
+    return;
+  }
+  if (mdb_txn_id(txn) != task->txnid
+      || mdb_cursor_open(txn, task->dbi, &cur) != MDB_SUCCESS) {
+    task->fallback = 1;
+  } else {
+    task->rc = dtlv_agg_scan(cur, task);
+    mdb_cursor_close(cur);
+  }
+  mdb_txn_abort(txn);
+}
+
+DTLV_THREAD_FN(dtlv_agg_worker, arg) {
+  dtlv_agg_pool *pool = (dtlv_agg_pool *)arg;
+
+  dtlv_mutex_lock(&pool->lock);
+  for (;;) {
+    uint64_t deadline = dtlv_clock_us() + DTLV_AGG_IDLE_MS * 1000;
+    while (!pool->head && dtlv_clock_us() < deadline) {
+      pool->idle++;
+      dtlv_cond_timedwait_ms(&pool->queued, &pool->lock, DTLV_AGG_IDLE_MS);
+      pool->idle--;
+    }
+    dtlv_agg_task *task = pool->head;
+    if (!task) break;
+    pool->head = task->next;
+    if (!pool->head) pool->tail = NULL;
+    task->state = DTLV_AGG_RUNNING;
+    dtlv_mutex_unlock(&pool->lock);
+
+    dtlv_agg_run(task);
+
+    dtlv_mutex_lock(&pool->lock);
+    task->state = DTLV_AGG_DONE;
+    dtlv_cond_broadcast(&pool->done);
+  }
+  pool->workers--;
+  dtlv_mutex_unlock(&pool->lock);
+  DTLV_THREAD_RETURN;
+}
+
+// queues the tasks and starts workers for those no idle worker can take,
+// returns the number of tasks queued
+static int dtlv_agg_post(dtlv_agg_pool *pool, dtlv_agg_task *tasks, int n) {
+  dtlv_mutex_lock(&pool->lock);
+  int wanted = n - pool->idle;
+  while (wanted > 0 && pool->workers < DTLV_AGG_MAX_THREADS - 1) {
+    dtlv_thread_t t;
+    if (dtlv_thread_create(&t, dtlv_agg_worker, pool) != 0) break;
+    dtlv_thread_detach(t);
+    pool->workers++;
+    wanted--;
+  }
+  // without any worker the calling thread is better off scanning alone
+  if (pool->workers == 0) n = 0;
+  int p;
+  for (p = 0; p < n; p++) {
+    dtlv_agg_task *t = &tasks[p];
+    t->state = DTLV_AGG_QUEUED;
+    t->next = NULL;
+    if (pool->tail)
+      pool->tail->next = t;
+    else
+      pool->head = t;
+    pool->tail = t;
+  }
+  if (n > 0) dtlv_cond_broadcast(&pool->queued);
+  dtlv_mutex_unlock(&pool->lock);
+  return n;
+}
+
+// takes back the tasks no worker has started yet, marking them as fallback,
+// and waits for the others to finish
+static void dtlv_agg_reclaim(dtlv_agg_pool *pool, dtlv_agg_task *tasks,
+                             int n) {
+  dtlv_mutex_lock(&pool->lock);
+  dtlv_agg_task **link = &pool->head;
+  pool->tail = NULL;
+  while (*link) {
+    dtlv_agg_task *t = *link;
+    if (t >= tasks && t < tasks + n) {
+      *link = t->next;
+      t->state = DTLV_AGG_DONE;
+      t->fallback = 1;
+    } else {
+      pool->tail = t;
+      link = &t->next;
+    }
+  }
+  int p;
+  for (p = 0; p < n; p++) {
+    while (tasks[p].state != DTLV_AGG_DONE)
+      dtlv_cond_wait(&pool->done, &pool->lock);
+  }
+  dtlv_mutex_unlock(&pool->lock);
+}
+
+static int dtlv_agg_check(int decode, dtlv_agg_result *result) {
+  if (!result) return EINVAL;
+  if (decode < DTLV_AGG_COUNT || decode > DTLV_AGG_F64_BE) return EINVAL;
+  memset(result, 0, sizeof(dtlv_agg_result));
+  return MDB_SUCCESS;
+}
+
+int dtlv_aggregate(MDB_cursor *cur, MDB_val *start_key, MDB_val *end_key,
+                   int decode, int from_key, size_t offset,
+                   dtlv_agg_result *result) {
+  if (!cur) return EINVAL;
+  int rc = dtlv_agg_check(decode, result);
+  if (rc != MDB_SUCCESS) return rc;
+
+  dtlv_agg_task task;
+  memset(&task, 0, sizeof(task));
+  task.start_key = start_key;
+  task.end_key = end_key;
+  task.start = DTLV_TRUE;
+  task.end = DTLV_TRUE;
+  task.decode = decode;
+  task.from_key = from_key;
+  task.offset = offset;
+
+  rc = dtlv_agg_scan(cur, &task);
+  if (rc == MDB_SUCCESS) *result = task.result;
+  return rc;
+}
+
+int dtlv_aggregate_parallel(MDB_cursor *cur, MDB_val *start_key,
+                            MDB_val *end_key, int decode, int from_key,
+                            size_t offset, int threads,
+                            dtlv_agg_result *result) {
+  if (!cur || threads < 1) return EINVAL;
+  int rc = dtlv_agg_check(decode, result);
+  if (rc != MDB_SUCCESS) return rc;
+  if (threads > DTLV_AGG_MAX_THREADS) threads = DTLV_AGG_MAX_THREADS;
+
+  MDB_txn *txn = mdb_cursor_txn(cur);
+  MDB_env *env = mdb_txn_env(txn);
+  // a write transaction has the id of the last committed one plus 1, and
+  // its changes are invisible to the workers
+  MDB_envinfo info;
+  rc = mdb_env_info(env, &info);
+  if (rc != MDB_SUCCESS) return rc;
+  if (mdb_txn_id(txn) > info.me_last_txnid) return EINVAL;
+
+  MDB_val *splits = NULL;
+  if (threads > 1) {
+    splits = calloc((size_t)threads - 1, sizeof(MDB_val));
+    if (!splits) return ENOMEM;
+  }
+  dtlv_agg_task *tasks = calloc((size_t)threads, sizeof(dtlv_agg_task));
+  if (!tasks) {
+    rc = ENOMEM;
+    goto done;
+  }
+
+  int n = 0;
+  if (threads > 1) {
+    rc = dtlv_partition_range(cur, start_key, end_key, threads, splits, &n);
+    if (rc != MDB_SUCCESS) goto done;
+  }
+
+  int parts = n + 1;
+  int p;
+  for (p = 0; p < parts; p++) {
+    dtlv_agg_task *t = &tasks[p];
+    t->env = env;
+    t->dbi = mdb_cursor_dbi(cur);
+    t->start_key = p == 0 ? start_key : &splits[p - 1];
+    t->start = DTLV_TRUE;
+    t->end_key = p == n ? end_key : &splits[p];
+    t->end = p == n ? DTLV_TRUE : DTLV_FALSE;
+    t->decode = decode;
+    t->from_key = from_key;
+    t->offset = offset;
+    t->txnid = mdb_txn_id(txn);
+  }
+
+  // the first partition is scanned by the calling thread, the others by the
+  // pool, and those the pool could not take or scan in the same snapshot by
+  // the calling thread afterwards
+  dtlv_agg_pool *pool = n > 0 ? dtlv_agg_pool_get() : NULL;
+  int posted = pool ? dtlv_agg_post(pool, &tasks[1], n) : 0;
+  for (p = 1 + posted; p < parts; p++) tasks[p].fallback = 1;
+
+  tasks[0].rc = dtlv_agg_scan(cur, &tasks[0]);
+  if (posted > 0) dtlv_agg_reclaim(pool, &tasks[1], posted);
+
+  for (p = 1; p < parts; p++) {
+    dtlv_agg_task *t = &tasks[p];
+    if (!t->fallback) continue;
+    memset(&t->result, 0, sizeof(dtlv_agg_result));
+    t->rc = dtlv_agg_scan(cur, t);
+  }
+
+  for (p = 0; p < parts; p++) {
+    if (tasks[p].rc != MDB_SUCCESS) {
+      rc = tasks[p].rc;
+      goto done;
+    }
+    dtlv_agg_merge(result, &tasks[p].result);
+  }
+
+done:
+  free(tasks);
+  free(splits);
+  return rc;
+}
+
+struct dtlv_merge_join_iter {
+  MDB_cursor *cur1;
+  MDB_cursor *cur2;
+  MDB_txn *txn;
+  MDB_dbi dbi;
+  MDB_val *key;
+  MDB_val key2;
+  MDB_val *val1;
+  MDB_val *val2;
+  int start;
+  int end;
+  MDB_val *start_key;
+  MDB_val *end_key;
+  int dups;
+  int dupsort1;
+  int dupsort2;
+  int in_key;
+  int started;
+  int ended;
+};
+
+int dtlv_merge_join_iter_create(dtlv_merge_join_iter **iter,
+                                MDB_cursor *cur1, MDB_cursor *cur2,
+                                MDB_val *key, MDB_val *val1, MDB_val *val2,
+                                int dups, int start, int end,
+                                MDB_val *start_key, MDB_val *end_key) {
+  if (!iter || !cur1 || !cur2) return EINVAL;
+
+  unsigned int flags1 = 0;
+  unsigned int flags2 = 0;
+  int rc = mdb_dbi_flags(mdb_cursor_txn(cur1), mdb_cursor_dbi(cur1), &flags1);
+  if (rc != MDB_SUCCESS) return rc;
+  rc = mdb_dbi_flags(mdb_cursor_txn(cur2), mdb_cursor_dbi(cur2), &flags2);
+  if (rc != MDB_SUCCESS) return rc;
+
+  dtlv_merge_join_iter *i;
+  i = calloc(1, sizeof(struct dtlv_merge_join_iter));
+  if (!i) return ENOMEM;
+
+  i->cur1 = cur1;
+  i->cur2 = cur2;
+  i->txn = mdb_cursor_txn(cur1);
+  i->dbi = mdb_cursor_dbi(cur1);
+  i->key = key;
+  i->val1 = val1;
+  i->val2 = val2;
+  i->dups = dups;
+  i->dupsort1 = (flags1 & MDB_DUPSORT) ? DTLV_TRUE : DTLV_FALSE;
+  i->dupsort2 = (flags2 & MDB_DUPSORT) ? DTLV_TRUE : DTLV_FALSE;
+  i->start = start;
+  i->end = end;
+  i->start_key = start_key;
+  i->end_key = end_key;
+  i->in_key = DTLV_FALSE;
+  i->started = DTLV_FALSE;
+  i->ended = DTLV_FALSE;
+
+  dtlv_metrics_iter(cur1);
+  *iter = i;
+  return MDB_SUCCESS;
+}
+
+static int dtlv_merge_join_past_end(dtlv_merge_join_iter *iter, MDB_val *k) {
+  if (!iter->end_key) return DTLV_FALSE;
+  int r = mdb_cmp(iter->txn, iter->dbi, k, iter->end_key);
+  if (r > 0 || (r == 0 && iter->end == DTLV_FALSE)) return DTLV_TRUE;
+  return DTLV_FALSE;
+}
+
+// leapfrog: seek whichever side is behind to the key of the other side,
+// until both sides are on the same key
+static int dtlv_merge_join_find(dtlv_merge_join_iter *iter) {
+  int rc;
+
+  for (;;) {
+    if (dtlv_merge_join_past_end(iter, iter->key) == DTLV_TRUE)
+      return DTLV_FALSE;
+
+    int r = mdb_cmp(iter->txn, iter->dbi, iter->key, &iter->key2);
+    if (r == 0) {
+      iter->in_key = DTLV_TRUE;
+      return DTLV_TRUE;
+    }
+    if (r < 0) {
+      val_in(iter->key, &iter->key2);
+      rc = dtlv_cursor_get(iter->cur1, iter->key, iter->val1, MDB_SET_RANGE);
+    } else {
+      val_in(&iter->key2, iter->key);
+      rc = dtlv_cursor_get(iter->cur2, &iter->key2, iter->val2, MDB_SET_RANGE);
+    }
+    if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+    if (rc != MDB_SUCCESS) return rc;
+  }
+}
+
+static int dtlv_merge_join_init(dtlv_merge_join_iter *iter) {
+  int rc;
+
+  if (iter->start_key) {
+    val_in(iter->key, iter->start_key);
+    rc = dtlv_cursor_get(iter->cur1, iter->key, iter->val1, MDB_SET_RANGE);
+    if (rc == MDB_SUCCESS && iter->start == DTLV_FALSE
+        && mdb_cmp(iter->txn, iter->dbi, iter->key, iter->start_key) == 0)
+      rc = dtlv_cursor_get(iter->cur1, iter->key, iter->val1, MDB_NEXT_NODUP);
+  } else {
+    rc = dtlv_cursor_get(iter->cur1, iter->key, iter->val1, MDB_FIRST);
+  }
+  if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+  if (rc != MDB_SUCCESS) return rc;
+
+  val_in(&iter->key2, iter->key);
+  rc = dtlv_cursor_get(iter->cur2, &iter->key2, iter->val2, MDB_SET_RANGE);
+  if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+  if (rc != MDB_SUCCESS) return rc;
+
+  return dtlv_merge_join_find(iter);
+}
+
+// move to the next pair of values of the current key, cur2 varies fastest.
+// A side that is not dupsort has a single value: MDB_NEXT_DUP would move
+// it to the next key there
+static int dtlv_merge_join_next_dup(dtlv_merge_join_iter *iter) {
+  int rc;
+  if (iter->dupsort2 == DTLV_TRUE) {
+    rc = dtlv_cursor_get(iter->cur2, &iter->key2, iter->val2, MDB_NEXT_DUP);
+    if (rc != MDB_NOTFOUND) return rc;
+  }
+
+  if (iter->dupsort1 == DTLV_FALSE) return MDB_NOTFOUND;
+  rc = dtlv_cursor_get(iter->cur1, iter->key, iter->val1, MDB_NEXT_DUP);
+  if (rc != MDB_SUCCESS) return rc;
+
+  int op = (iter->dupsort2 == DTLV_TRUE) ? MDB_FIRST_DUP : MDB_GET_CURRENT;
+  return dtlv_cursor_get(iter->cur2, &iter->key2, iter->val2, op);
+}
+
+static int dtlv_merge_join_advance(dtlv_merge_join_iter *iter) {
+  int rc;
+
+  if (iter->dups == DTLV_TRUE) {
+    rc = dtlv_merge_join_next_dup(iter);
+    if (rc == MDB_SUCCESS) return DTLV_TRUE;
+    if (rc != MDB_NOTFOUND) return rc;
+  }
+
+  iter->in_key = DTLV_FALSE;
+  rc = dtlv_cursor_get(iter->cur1, iter->key, iter->val1, MDB_NEXT_NODUP);
+  if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+  if (rc != MDB_SUCCESS) return rc;
+  return dtlv_merge_join_find(iter);
+}
+
+int dtlv_merge_join_iter_has_next(dtlv_merge_join_iter *iter) {
+  int rc;
+
+  if (iter->ended == DTLV_TRUE) return DTLV_FALSE;
+
+  if (iter->started == DTLV_FALSE) {
+    iter->started = DTLV_TRUE;
+    rc = dtlv_merge_join_init(iter);
+  } else {
+    rc = dtlv_merge_join_advance(iter);
+  }
+
+  if (rc == DTLV_FALSE) iter->ended = DTLV_TRUE;
+  return rc;
+}
+
+void dtlv_merge_join_iter_destroy(dtlv_merge_join_iter *iter) {
+  if (iter) free(iter);
+}
+
+struct dtlv_leapfrog_iter {
+  MDB_cursor **curs;
+  MDB_txn *txn;
+  MDB_dbi dbi;
+  int n;
+  MDB_val *keys;
+  MDB_val *val;
+  MDB_val *k;
+  MDB_val *v;
+  int *ord;
+  int p;
+  int started;
+  int ended;
+};
+
+int dtlv_leapfrog_iter_create(dtlv_leapfrog_iter **iter, int n,
+                              MDB_cursor **curs, MDB_val *keys,
+                              MDB_val *val) {
+  if (!iter || !curs || n < 1) return EINVAL;
+
+  dtlv_leapfrog_iter *i;
+  i = calloc(1, sizeof(struct dtlv_leapfrog_iter));
+  if (!i) return ENOMEM;
+
+  i->curs = malloc((size_t)n * sizeof(MDB_cursor *));
+  i->k = calloc((size_t)n, sizeof(MDB_val));
+  i->v = calloc((size_t)n, sizeof(MDB_val));
+  i->ord = malloc((size_t)n * sizeof(int));
+  if (keys) i->keys = malloc((size_t)n * sizeof(MDB_val));
+  if (!i->curs || !i->k || !i->v || !i->ord || (keys && !i->keys)) {
+    dtlv_leapfrog_iter_destroy(i);
+    return ENOMEM;
+  }
+
+  memcpy(i->curs, curs, (size_t)n * sizeof(MDB_cursor *));
+  if (keys) memcpy(i->keys, keys, (size_t)n * sizeof(MDB_val));
+  i->txn = mdb_cursor_txn(curs[0]);
+  i->dbi = mdb_cursor_dbi(curs[0]);
+  i->n = n;
+  i->val = val;
+  i->started = DTLV_FALSE;
+  i->ended = DTLV_FALSE;
+
+  dtlv_metrics_iter(curs[0]);
+  *iter = i;
+  return MDB_SUCCESS;
+}
+
+// the item a cursor is on: the key, or the value in a duplicate list
+static MDB_val *dtlv_leapfrog_item(dtlv_leapfrog_iter *iter, int c) {
+  return iter->keys ? &iter->v[c] : &iter->k[c];
+}
+
+static int dtlv_leapfrog_cmp(dtlv_leapfrog_iter *iter,
+                             const MDB_val *a, const MDB_val *b) {
+  if (iter->keys) return mdb_dcmp(iter->txn, iter->dbi, a, b);
+  return mdb_cmp(iter->txn, iter->dbi, a, b);
+}
+
+static int dtlv_leapfrog_first(dtlv_leapfrog_iter *iter, int c) {
+  if (iter->keys) {
+    iter->k[c] = iter->keys[c];
+    return dtlv_cursor_get(iter->curs[c], &iter->k[c], &iter->v[c], MDB_SET);
+  }
+  return dtlv_cursor_get(iter->curs[c], &iter->k[c], &iter->v[c], MDB_FIRST);
+}
+
+// position a cursor at the first item >= target
+static int dtlv_leapfrog_seek_one(dtlv_leapfrog_iter *iter, int c,
+                                  const MDB_val *target) {
+  if (iter->keys) {
+    iter->k[c] = iter->keys[c];
+    iter->v[c] = *target;
+    return dtlv_cursor_get(iter->curs[c], &iter->k[c], &iter->v[c],
+                           MDB_GET_BOTH_RANGE);
+  }
+  iter->k[c] = *target;
+  return dtlv_cursor_get(iter->curs[c], &iter->k[c], &iter->v[c],
+                         MDB_SET_RANGE);
+}
+
+static int dtlv_leapfrog_next_one(dtlv_leapfrog_iter *iter, int c) {
+  return dtlv_cursor_get(iter->curs[c], &iter->k[c], &iter->v[c],
+                         iter->keys ? MDB_NEXT_DUP : MDB_NEXT_NODUP);
+}
+
+// order the cursors by their items, the number of cursors is small
+static void dtlv_leapfrog_sort(dtlv_leapfrog_iter *iter) {
+  int a, b;
+  for (a = 1; a < iter->n; a++) {
+    int c = iter->ord[a];
+    for (b = a; b > 0; b--) {
+      int d = iter->ord[b - 1];
+      if (dtlv_leapfrog_cmp(iter, dtlv_leapfrog_item(iter, d),
+                            dtlv_leapfrog_item(iter, c)) <= 0)
+        break;
+      iter->ord[b] = d;
+    }
+    iter->ord[b] = c;
+  }
+  iter->p = 0;
+}
+
+// with the cursors in cyclic order, the one before p holds the largest
+// item; seek each cursor in turn to it until all agree
+static int dtlv_leapfrog_search(dtlv_leapfrog_iter *iter) {
+  int n = iter->n;
+  MDB_val *max = dtlv_leapfrog_item(iter, iter->ord[(iter->p + n - 1) % n]);
+
+  for (;;) {
+    int c = iter->ord[iter->p];
+    MDB_val *x = dtlv_leapfrog_item(iter, c);
+    if (dtlv_leapfrog_cmp(iter, x, max) == 0) {
+      if (iter->val) val_in(iter->val, x);
+      return DTLV_TRUE;
+    }
+    int rc = dtlv_leapfrog_seek_one(iter, c, max);
+    if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+    if (rc != MDB_SUCCESS) return rc;
+    max = x;
+    iter->p = (iter->p + 1) % n;
+  }
+}
+
+static int dtlv_leapfrog_init(dtlv_leapfrog_iter *iter, MDB_val *target) {
+  int c, rc;
+
+  for (c = 0; c < iter->n; c++) {
+    iter->ord[c] = c;
+    rc = target ? dtlv_leapfrog_seek_one(iter, c, target)
+                : dtlv_leapfrog_first(iter, c);
+    if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+    if (rc != MDB_SUCCESS) return rc;
+  }
+  dtlv_leapfrog_sort(iter);
+  return dtlv_leapfrog_search(iter);
+}
+
+static int dtlv_leapfrog_done(dtlv_leapfrog_iter *iter, int rc) {
+  if (rc == DTLV_FALSE) iter->ended = DTLV_TRUE;
+  return rc;
+}
+
+int dtlv_leapfrog_iter_has_next(dtlv_leapfrog_iter *iter) {
+  int rc;
+
+  if (iter->ended == DTLV_TRUE) return DTLV_FALSE;
+
+  if (iter->started == DTLV_FALSE) {
+    iter->started = DTLV_TRUE;
+    return dtlv_leapfrog_done(iter, dtlv_leapfrog_init(iter, NULL));
+  }
+
+  rc = dtlv_leapfrog_next_one(iter, iter->ord[iter->p]);
+  if (rc == MDB_NOTFOUND) return dtlv_leapfrog_done(iter, DTLV_FALSE);
+  if (rc != MDB_SUCCESS) return rc;
+  iter->p = (iter->p + 1) % iter->n;
+  return dtlv_leapfrog_done(iter, dtlv_leapfrog_search(iter));
+}
+
+int dtlv_leapfrog_iter_seek(dtlv_leapfrog_iter *iter, MDB_val *target) {
+  int c, rc;
+
+  if (!target) return EINVAL;
+  if (iter->ended == DTLV_TRUE) return DTLV_FALSE;
+
+  if (iter->started == DTLV_FALSE) {
+    iter->started = DTLV_TRUE;
+    return dtlv_leapfrog_done(iter, dtlv_leapfrog_init(iter, target));
+  }
+
+  // never move a cursor backwards
+  for (c = 0; c < iter->n; c++) {
+    if (dtlv_leapfrog_cmp(iter, dtlv_leapfrog_item(iter, c), target) >= 0)
+      continue;
+    rc = dtlv_leapfrog_seek_one(iter, c, target);
+    if (rc == MDB_NOTFOUND) return dtlv_leapfrog_done(iter, DTLV_FALSE);
+    if (rc != MDB_SUCCESS) return rc;
+  }
+  dtlv_leapfrog_sort(iter);
+  return dtlv_leapfrog_done(iter, dtlv_leapfrog_search(iter));
+}
+
+int dtlv_leapfrog_iter_reset(dtlv_leapfrog_iter *iter, MDB_val *keys) {
+  if (keys) {
+    if (!iter->keys) return EINVAL;
+    memcpy(iter->keys, keys, (size_t)iter->n * sizeof(MDB_val));
+  }
+  iter->started = DTLV_FALSE;
+  iter->ended = DTLV_FALSE;
+  return MDB_SUCCESS;
+}
+
+void dtlv_leapfrog_iter_destroy(dtlv_leapfrog_iter *iter) {
+  if (iter) {
+    free(iter->curs);
+    free(iter->keys);
+    free(iter->k);
+    free(iter->v);
+    free(iter->ord);
+    free(iter);
+  }
+}
+
+struct dtlv_skip_scan_iter {
+  MDB_cursor *cur;
+  MDB_val *key;
+  MDB_val *val;
+  size_t prefix_len;
+  MDB_val *lo;
+  MDB_val *hi;
+  unsigned char *buf;
+  int started;
+  int ended;
+};
+
+int dtlv_skip_scan_iter_create(dtlv_skip_scan_iter **iter, MDB_cursor *cur,
+                               MDB_val *key, MDB_val *val, size_t prefix_len,
+                               MDB_val *lo, MDB_val *hi) {
+  if (!iter || !cur || prefix_len == 0) return EINVAL;
+
+  dtlv_skip_scan_iter *i;
+  i = calloc(1, sizeof(struct dtlv_skip_scan_iter));
+  if (!i) return ENOMEM;
+
+  i->buf = malloc(prefix_len + (lo ? lo->mv_size : 0));
+  if (!i->buf) {
+    free(i);
+    return ENOMEM;
+  }
+
+  i->cur = cur;
+  i->key = key;
+  i->val = val;
+  i->prefix_len = prefix_len;
+  i->lo = lo;
+  i->hi = hi;
+  i->started = DTLV_FALSE;
+  i->ended = DTLV_FALSE;
+
+  dtlv_metrics_iter(cur);
+  *iter = i;
+  return MDB_SUCCESS;
+}
+
+// lexicographic, a shorter value sorts first when it is a prefix
+static int dtlv_skip_scan_cmp(const unsigned char *a, size_t alen,
+                              MDB_val *b) {
+  size_t n = alen < b->mv_size ? alen : b->mv_size;
+  int r = n ? memcmp(a, b->mv_data, n) : 0;
+  if (r) return r;
+  return alen < b->mv_size ? -1 : (alen > b->mv_size ? 1 : 0);
+}
+
+// the smallest key after all the keys with the prefix of the current key,
+// or DTLV_FALSE when the prefix is all 0xff
+static int dtlv_skip_scan_next_prefix(dtlv_skip_scan_iter *iter) {
+  size_t n = iter->prefix_len;
+  memcpy(iter->buf, iter->key->mv_data, n);
+  while (n > 0) {
+    if (iter->buf[n - 1] != 0xff) {
+      iter->buf[n - 1]++;
+      iter->key->mv_data = iter->buf;
+      iter->key->mv_size = n;
+      return DTLV_TRUE;
+    }
+    n--;
+  }
+  return DTLV_FALSE;
+}
+
+static int dtlv_skip_scan_find(dtlv_skip_scan_iter *iter, int rc) {
+  size_t plen = iter->prefix_len;
+
+  for (;;) {
+    if (rc == MDB_NOTFOUND) return DTLV_FALSE;
+    if (rc != MDB_SUCCESS) return rc;
+
+    if (iter->key->mv_size < plen) {
+      rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT_NODUP);
+      continue;
+    }
+
+    const unsigned char *suffix = (const unsigned char *)iter->key->mv_data
+                                  + plen;
+    size_t slen = iter->key->mv_size - plen;
+
+    if (iter->lo && dtlv_skip_scan_cmp(suffix, slen, iter->lo) < 0) {
+      // jump to the lowest suffix of this prefix
+      memcpy(iter->buf, iter->key->mv_data, plen);
+      if (iter->lo->mv_size)
+        memcpy(iter->buf + plen, iter->lo->mv_data, iter->lo->mv_size);
+      iter->key->mv_data = iter->buf;
+      iter->key->mv_size = plen + iter->lo->mv_size;
+      rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+      continue;
+    }
+
+    if (iter->hi && dtlv_skip_scan_cmp(suffix, slen, iter->hi) > 0) {
+      // jump over the rest of this prefix
+      if (dtlv_skip_scan_next_prefix(iter) == DTLV_FALSE) return DTLV_FALSE;
+      rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_SET_RANGE);
+      continue;
+    }
+
+    return DTLV_TRUE;
+  }
+}
+
+int dtlv_skip_scan_iter_has_next(dtlv_skip_scan_iter *iter) {
+  int rc;
+
+  if (iter->ended == DTLV_TRUE) return DTLV_FALSE;
+
+  if (iter->started == DTLV_FALSE) {
+    iter->started = DTLV_TRUE;
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_FIRST);
+  } else {
+    rc = dtlv_cursor_get(iter->cur, iter->key, iter->val, MDB_NEXT_NODUP);
+  }
+
+  rc = dtlv_skip_scan_find(iter, rc);
+  if (rc == DTLV_FALSE) iter->ended = DTLV_TRUE;
+  return rc;
+}
+
+void dtlv_skip_scan_iter_destroy(dtlv_skip_scan_iter *iter) {
+  if (iter) {
+    free(iter->buf);
+    free(iter);
+  }
+}
+
+struct dtlv_reader {
+  MDB_txn *txn;
+  MDB_cursor **curs;
+  dtlv_reader *next;
+};
+
+struct dtlv_reader_pool {
+  MDB_env *env;
+  MDB_dbi *dbis;
+  int n;
+  int capacity;
+  int idle_count;
+  dtlv_reader *idle;
+  dtlv_mutex_t lock;
+};
+
+int dtlv_reader_pool_create(dtlv_reader_pool **pool, MDB_env *env,
+                            int n, MDB_dbi *dbis, int capacity) {
+  if (!pool || !env || n < 0 || (n > 0 && !dbis) || capacity < 0)
+    return EINVAL;
+
+  // a reset txn may be renewed by another thread only without TLS slots
+  unsigned int flags = 0;
+  int rc = mdb_env_get_flags(env, &flags);
+  if (rc != MDB_SUCCESS) return rc;
+  if (!(flags & (MDB_NOTLS | MDB_NOLOCK))) return EINVAL;
+
+  dtlv_reader_pool *p;
+  p = calloc(1, sizeof(struct dtlv_reader_pool));
+  if (!p) return ENOMEM;
+
+  if (n > 0) {
+    p->dbis = malloc((size_t)n * sizeof(MDB_dbi));
+    if (!p->dbis) {
+      free(p);
+      return ENOMEM;
+    }
+    memcpy(p->dbis, dbis, (size_t)n * sizeof(MDB_dbi));
+  }
+
+  rc = dtlv_mutex_init(&p->lock);
+  if (rc != 0) {
+    free(p->dbis);
+    free(p);
+    return rc;
+  }
+
+  p->env = env;
+  p->n = n;
+  p->capacity = capacity;
+  p->idle_count = 0;
+  p->idle = NULL;
+
+  *pool = p;
+  return MDB_SUCCESS;
+}
+
+static void dtlv_reader_free(dtlv_reader *r, int n) {
+  for (int i = 0; i < n; i++)
+    if (r->curs[i]) mdb_cursor_close(r->curs[i]);
+  if (r->txn) mdb_txn_abort(r->txn);
+  free(r->curs);
+  free(r);
+}
+
+static int dtlv_reader_new(dtlv_reader_pool *pool, dtlv_reader **reader) {
+  dtlv_reader *r = calloc(1, sizeof(struct dtlv_reader));
+  if (!r) return ENOMEM;
+
+  r->curs = calloc(pool->n > 0 ? (size_t)pool->n : 1, sizeof(MDB_cursor *));
+  if (!r->curs) {
+    free(r);
+    return ENOMEM;
+  }
+
+  int rc = mdb_txn_begin(pool->env, NULL, MDB_RDONLY, &r->txn);
+  if (rc != MDB_SUCCESS) {
+    r->txn = NULL;
+    dtlv_reader_free(r, 0);
+    return rc;
+  }
+
+  for (int i = 0; i < pool->n; i++) {
+    rc = mdb_cursor_open(r->txn, pool->dbis[i], &r->curs[i]);
+    if (rc != MDB_SUCCESS) {
+      r->curs[i] = NULL;
+      dtlv_reader_free(r, i);
+      return rc;
+    }
+  }
+
+  *reader = r;
+  return MDB_SUCCESS;
+}
+
+static int dtlv_reader_renew(dtlv_reader *r, int n) {
+  int rc = mdb_txn_renew(r->txn);
+  if (rc != MDB_SUCCESS) return rc;
+  for (int i = 0; i < n; i++) {
+    rc = mdb_cursor_renew(r->txn, r->curs[i]);
+    if (rc != MDB_SUCCESS) {
+      mdb_txn_reset(r->txn);
+      return rc;
+    }
+  }
+  return MDB_SUCCESS;
+}
+
+int dtlv_reader_pool_acquire(dtlv_reader_pool *pool, dtlv_reader **reader) {
+  if (!pool || !reader) return EINVAL;
+
+  dtlv_mutex_lock(&pool->lock);
+  dtlv_reader *r = pool->idle;
+  if (r) {
+    pool->idle = r->next;
+    pool->idle_count--;
+  }
+  dtlv_mutex_unlock(&pool->lock);
+
+  if (!r) return dtlv_reader_new(pool, reader);
+
+  r->next = NULL;
+  int rc = dtlv_reader_renew(r, pool->n);
+  if (rc != MDB_SUCCESS) {
+    dtlv_reader_free(r, pool->n);
+    return rc;
+  }
+
+  *reader = r;
+  return MDB_SUCCESS;
+}
+
+void dtlv_reader_pool_release(dtlv_reader_pool *pool, dtlv_reader *reader) {
+  if (!pool || !reader) return;
+
+  mdb_txn_reset(reader->txn);
+
+  dtlv_mutex_lock(&pool->lock);
+  if (pool->idle_count < pool->capacity) {
+    reader->next = pool->idle;
+    pool->idle = reader;
+    pool->idle_count++;
+    reader = NULL;
+  }
+  dtlv_mutex_unlock(&pool->lock);
+
+  if (reader) dtlv_reader_free(reader, pool->n);
+}
+
+void dtlv_reader_pool_destroy(dtlv_reader_pool *pool) {
+  if (pool) {
+    dtlv_reader *r = pool->idle;
+    while (r) {
+      dtlv_reader *next = r->next;
+      dtlv_reader_free(r, pool->n);
+      r = next;
+    }
+    dtlv_mutex_destroy(&pool->lock);
+    free(pool->dbis);
+    free(pool);
+  }
+}
+
+MDB_txn *dtlv_reader_txn(dtlv_reader *reader) {
+  return reader ? reader->txn : NULL;
+}
+
+MDB_cursor *dtlv_reader_cursor(dtlv_reader_pool *pool, dtlv_reader *reader,
+                               int i) {
+  if (!pool || !reader || i < 0 || i >= pool->n) return NULL;
+  return reader->curs[i];
+}
+
+int dtlv_reader_is_stale(dtlv_reader *reader) {
+  if (!reader) return EINVAL;
+
+  MDB_envinfo info;
+  int rc = mdb_env_info(mdb_txn_env(reader->txn), &info);
+  if (rc != MDB_SUCCESS) return rc;
+  if ((mdb_size_t)info.me_last_txnid > mdb_txn_id(reader->txn))
+    return DTLV_TRUE;
+  return DTLV_FALSE;
+}
+
+int dtlv_reader_refresh(dtlv_reader_pool *pool, dtlv_reader *reader) {
+  if (!pool || !reader) return EINVAL;
+
+  int rc = dtlv_reader_is_stale(reader);
+  if (rc != DTLV_TRUE) return rc;
+
+  mdb_txn_reset(reader->txn);
+  rc = dtlv_reader_renew(reader, pool->n);
+  if (rc != MDB_SUCCESS) return rc;
+  return DTLV_TRUE;
+}
+
+typedef struct dtlv_write_batch {
+  const unsigned char *ops;
+  size_t len;
+  int rc;
+  int done;
+  struct dtlv_write_batch *next;
+} dtlv_write_batch;
+
+struct dtlv_map_growth {
+  MDB_env *env;
+  double factor;
+  size_t ceiling;
+
+  // the gate of the read txns begun with dtlv_map_growth_txn_begin
+  dtlv_mutex_t lock;
+  dtlv_cond_t idle;
+  int readers;
+  int resizing;
+};
+
+int dtlv_map_growth_create(dtlv_map_growth **growth, MDB_env *env,
+                           double factor, size_t ceiling) {
+  if (!growth || !env || !(factor > 1.0)) return EINVAL;
+
+  dtlv_map_growth *g = calloc(1, sizeof(struct dtlv_map_growth));
+  if (!g) return ENOMEM;
+
+  g->env = env;
+  g->factor = factor;
+  g->ceiling = ceiling;
+
+  int rc = dtlv_mutex_init(&g->lock);
+  if (rc != 0) {
+    free(g);
+    return rc;
+  }
+  rc = dtlv_cond_init(&g->idle);
+  if (rc != 0) {
+    dtlv_mutex_destroy(&g->lock);
+    free(g);
+    return rc;
+  }
+
+  *growth = g;
+  return MDB_SUCCESS;
+}
+
+// read txns begun without the gate are found in the reader table, when the
+// env has one
+static int dtlv_map_growth_check_readers(MDB_env *env) {
+  int n = dtlv_reader_list(env, 0, NULL, NULL, NULL, NULL);
+  if (n <= 0) return n < 0 ? -n : MDB_SUCCESS;
+
+  int *pids = malloc((size_t)n * sizeof(int));
+  uint64_t *txnids = malloc((size_t)n * sizeof(uint64_t));
+  if (!pids || !txnids) {
+    free(pids);
+    free(txnids);
+    return ENOMEM;
+  }
+
+  int rc = MDB_SUCCESS;
+  int listed = dtlv_reader_list(env, n, pids, NULL, txnids, NULL);
+  if (listed < 0) rc = -listed;
+  if (listed > n) listed = n;
+  int pid = dtlv_getpid();
+  int i;
+  for (i = 0; rc == MDB_SUCCESS && i < listed; i++)
+    if (pids[i] == pid && txnids[i] != DTLV_READER_IDLE) rc = EBUSY;
+
+  free(pids);
+  free(txnids);
+  return rc;
+}
+
+// LMDB remaps the file on a resize, so no read txn of the process may be
+// open: gated read txns are kept from beginning while it is done
+static int dtlv_map_growth_resize(dtlv_map_growth *g, mdb_size_t size) {
+  dtlv_mutex_lock(&g->lock);
+  if (g->readers > 0 || g->resizing) {
+    dtlv_mutex_unlock(&g->lock);
+    return EBUSY;
+  }
+  g->resizing = 1;
+  dtlv_mutex_unlock(&g->lock);
+
+  int rc = dtlv_map_growth_check_readers(g->env);
+  if (rc == MDB_SUCCESS) rc = mdb_env_set_mapsize(g->env, size);
+
+  dtlv_mutex_lock(&g->lock);
+  g->resizing = 0;
+  dtlv_cond_broadcast(&g->idle);
+  dtlv_mutex_unlock(&g->lock);
+  return rc;
+}
+
+int dtlv_map_growth_grow(dtlv_map_growth *growth) {
+  if (!growth) return EINVAL;
+
+  MDB_envinfo info;
+  int rc = mdb_env_info(growth->env, &info);
+  if (rc != MDB_SUCCESS) return rc;
+  MDB_stat stat;
+  rc = mdb_env_stat(growth->env, &stat);
+  if (rc != MDB_SUCCESS) return rc;
+
+  size_t psize = stat.ms_psize;
+  size_t size = (size_t)info.me_mapsize;
+  double grown = (double)size * growth->factor;
+  size_t next = grown >= (double)SIZE_MAX ? SIZE_MAX : (size_t)grown;
+  if (next < size + psize) next = size + psize;
+  if (growth->ceiling > 0 && next > growth->ceiling) next = growth->ceiling;
+  next -= next % psize;
+  if (next <= size) return MDB_MAP_FULL;
+
+  return dtlv_map_growth_resize(growth, (mdb_size_t)next);
+}
+
+int dtlv_map_growth_txn_begin(dtlv_map_growth *growth, unsigned int flags,
+                              MDB_txn **txn) {
+  if (!growth || !txn) return EINVAL;
+
+  for (;;) {
+    dtlv_mutex_lock(&growth->lock);
+    while (growth->resizing) dtlv_cond_wait(&growth->idle, &growth->lock);
+    growth->readers++;
+    dtlv_mutex_unlock(&growth->lock);
+
+    int rc = mdb_txn_begin(growth->env, NULL, flags | MDB_RDONLY, txn);
+    if (rc == MDB_SUCCESS) return MDB_SUCCESS;
+
+    dtlv_mutex_lock(&growth->lock);
+    growth->readers--;
+    dtlv_mutex_unlock(&growth->lock);
+
+    // another process has grown the map, adopt its size if no one reads
+    if (rc != MDB_MAP_RESIZED) return rc;
+    rc = dtlv_map_growth_resize(growth, 0);
+    if (rc != MDB_SUCCESS) return rc == EBUSY ? MDB_MAP_RESIZED : rc;
+  }
+}
+
+void dtlv_map_growth_txn_end(dtlv_map_growth *growth, MDB_txn *txn) {
+  if (!growth || !txn) return;
+  mdb_txn_abort(txn);
+  dtlv_mutex_lock(&growth->lock);
+  growth->readers--;
+  dtlv_mutex_unlock(&growth->lock);
+}
+
+struct dtlv_write_combiner {
+  MDB_env *env;
+  int max_batches;
+  int nested;
+  int stopping;
+  dtlv_write_batch *head;
+  dtlv_write_batch *tail;
+  dtlv_mutex_t lock;
+  dtlv_cond_t queued;
+  dtlv_cond_t done;
+  dtlv_thread_t writer;
+  dtlv_map_growth *growth;
+  uint64_t commits;
+  uint64_t batches;
+};
+
+static int dtlv_write_read_u32(const unsigned char **p,
+                               const unsigned char *end, uint32_t *out) {
+  if ((size_t)(end - *p) < sizeof(uint32_t)) return EINVAL;
+  memcpy(out, *p, sizeof(uint32_t));
+  *p += sizeof(uint32_t);
+  return MDB_SUCCESS;
+}
+
+static int dtlv_write_read_val(const unsigned char **p,
+                               const unsigned char *end, MDB_val *v) {
+  uint32_t size;
+  int rc = dtlv_write_read_u32(p, end, &size);
+  if (rc != MDB_SUCCESS) return rc;
+  if ((size_t)(end - *p) < size) return EINVAL;
+  v->mv_size = size;
+  v->mv_data = (void *)*p;
+  *p += size;
+  return MDB_SUCCESS;
+}
+
+// apply the ops of one batch, stopping at the first failure
+static int dtlv_write_apply(MDB_txn *txn, dtlv_write_batch *b) {
+  const unsigned char *p = b->ops;
+  const unsigned char *end = b->ops + b->len;
+
+  while (p < end) {
+    int op = *p++;
+    uint32_t dbi, flags;
+    MDB_val key, val;
+    int rc = dtlv_write_read_u32(&p, end, &dbi);
+    if (rc == MDB_SUCCESS) rc = dtlv_write_read_u32(&p, end, &flags);
+    if (rc == MDB_SUCCESS) rc = dtlv_write_read_val(&p, end, &key);
+    if (rc == MDB_SUCCESS) rc = dtlv_write_read_val(&p, end, &val);
+    if (rc != MDB_SUCCESS) return rc;
+
+    if (op == DTLV_WRITE_PUT) {
+      rc = dtlv_put(txn, (MDB_dbi)dbi, &key, &val, flags);
+    } else if (op == DTLV_WRITE_DEL) {
+      rc = dtlv_del(txn, (MDB_dbi)dbi, &key, val.mv_size ? &val : NULL);
+      if (rc == MDB_NOTFOUND) rc = MDB_SUCCESS;
+    } else {
+      rc = EINVAL;
+    }
+    if (rc != MDB_SUCCESS) return rc;
+  }
+  return MDB_SUCCESS;
+}
+
+// commit a group of batches in one write txn; each batch runs in a nested
+// txn when the env allows it, otherwise the txn is redone without the
+// batch that failed. With a growth policy, the map is grown and the txn
+// redone when it is full
+static void dtlv_write_group(dtlv_write_combiner *c, dtlv_write_batch *group,
+                             dtlv_map_growth *growth) {
+  dtlv_write_batch *b;
+  for (b = group; b; b = b->next) b->rc = MDB_SUCCESS;
+
+  for (;;) {
+    MDB_txn *txn;
+    int rc = mdb_txn_begin(c->env, NULL, 0, &txn);
+    if (rc == MDB_MAP_RESIZED && growth) {
+      rc = dtlv_map_growth_resize(growth, 0);
+      if (rc == MDB_SUCCESS) continue;
+    }
+    if (rc != MDB_SUCCESS) {
+      for (b = group; b; b = b->next)
+        if (b->rc == MDB_SUCCESS) b->rc = rc;
+      return;
+    }
+
+    int redo = DTLV_FALSE;
+    int full = DTLV_FALSE;
+    for (b = group; b; b = b->next) {
+      if (b->rc != MDB_SUCCESS) continue;
+      if (c->nested) {
+        MDB_txn *child;
+        rc = mdb_txn_begin(c->env, txn, 0, &child);
+        if (rc == MDB_SUCCESS) {
+          rc = dtlv_write_apply(child, b);
+          // only the commit of the group counts as a commit in the metrics
+          if (rc == MDB_SUCCESS)
+            rc = mdb_txn_commit(child);
+          else
+            mdb_txn_abort(child);
+        }
+        b->rc = rc;
+      } else {
+        rc = dtlv_write_apply(txn, b);
+        if (rc != MDB_SUCCESS) {
+          b->rc = rc;
+          redo = DTLV_TRUE;
+          break;
+        }
+      }
+      if (rc == MDB_MAP_FULL && growth) break;
+    }
+
+    if (growth)
+      for (b = group; b; b = b->next)
+        if (b->rc == MDB_MAP_FULL) full = DTLV_TRUE;
+
+    if (full == DTLV_TRUE) {
+      mdb_txn_abort(txn);
+      if (dtlv_map_growth_grow(growth) == MDB_SUCCESS) {
+        for (b = group; b; b = b->next)
+          if (b->rc == MDB_MAP_FULL) b->rc = MDB_SUCCESS;
+      } else {
+        // at the ceiling, the batch fails as it would without growth
+        growth = NULL;
+      }
+      continue;
+    }
+
+    if (redo == DTLV_TRUE) {
+      mdb_txn_abort(txn);
+      continue;
+    }
+
+    rc = dtlv_txn_commit(txn);
+    if (rc == MDB_MAP_FULL && growth &&
+        dtlv_map_growth_grow(growth) == MDB_SUCCESS)
+      continue;
+    if (rc == MDB_SUCCESS) {
+      dtlv_mutex_lock(&c->lock);
+      c->commits++;
+      dtlv_mutex_unlock(&c->lock);
+    }
+    for (b = group; b; b = b->next)
+      if (b->rc == MDB_SUCCESS) b->rc = rc;
+    return;
+  }
+}
+
+DTLV_THREAD_FN(dtlv_write_worker, arg) {
+  dtlv_write_combiner *c = (dtlv_write_combiner *)arg;
+
+  dtlv_mutex_lock(&c->lock);
+  for (;;) {
+    while (!c->head && c->stopping != DTLV_TRUE)
+      dtlv_cond_wait(&c->queued, &c->lock);
+    if (!c->head) break;
+
+    // take up to max_batches from the queue
+    dtlv_write_batch *group = c->head;
+    dtlv_write_batch *last = group;
+    int n = 1;
+    while (last->next && (c->max_batches <= 0 || n < c->max_batches)) {
+      last = last->next;
+      n++;
+    }
+    c->head = last->next;
+    if (!c->head) c->tail = NULL;
+    last->next = NULL;
+    dtlv_map_growth *growth = c->growth;
+    dtlv_mutex_unlock(&c->lock);
+
+    dtlv_write_group(c, group, growth);
+
+    dtlv_mutex_lock(&c->lock);
+    c->batches += (uint64_t)n;
+    while (group) {
+      dtlv_write_batch *next = group->next;
+      group->done = DTLV_TRUE;
+      group = next;
+    }
+    dtlv_cond_broadcast(&c->done);
+  }
+  dtlv_mutex_unlock(&c->lock);
+
+  DTLV_THREAD_RETURN;
+}
+
+int dtlv_write_combiner_create(dtlv_write_combiner **combiner, MDB_env *env,
+                               int max_batches) {
+  if (!combiner || !env) return EINVAL;
+
+  unsigned int flags = 0;
+  int rc = mdb_env_get_flags(env, &flags);
+  if (rc != MDB_SUCCESS) return rc;
+
+  dtlv_write_combiner *c = calloc(1, sizeof(struct dtlv_write_combiner));
+  if (!c) return ENOMEM;
+
+  c->env = env;
+  c->max_batches = max_batches;
+  // LMDB does not nest write txns with MDB_WRITEMAP
+  c->nested = !(flags & MDB_WRITEMAP);
+  c->stopping = DTLV_FALSE;
+
+  rc = dtlv_mutex_init(&c->lock);
+  if (rc != 0) {
+    free(c);
+    return rc;
+  }
+  rc = dtlv_cond_init(&c->queued);
+  if (rc != 0) {
+    dtlv_mutex_destroy(&c->lock);
+    free(c);
+    return rc;
+  }
+  rc = dtlv_cond_init(&c->done);
+  if (rc != 0) {
+    dtlv_cond_destroy(&c->queued);
+    dtlv_mutex_destroy(&c->lock);
+    free(c);
+    return rc;
+  }
+  rc = dtlv_thread_create(&c->writer, dtlv_write_worker, c);
+  if (rc != 0) {
+    dtlv_cond_destroy(&c->done);
+    dtlv_cond_destroy(&c->queued);
+    dtlv_mutex_destroy(&c->lock);
+    free(c);
+    return rc;
+  }
+
+  *combiner = c;
+  return MDB_SUCCESS;
+}
+
+int dtlv_write_combiner_submit(dtlv_write_combiner *combiner,
+                               const void *ops, size_t len) {
+  if (!combiner || (!ops && len > 0)) return EINVAL;
+
+  dtlv_write_batch b;
+  b.ops = (const unsigned char *)ops;
+  b.len = len;
+  b.rc = MDB_SUCCESS;
+  b.done = DTLV_FALSE;
+  b.next = NULL;
+
+  dtlv_mutex_lock(&combiner->lock);
+  if (combiner->stopping == DTLV_TRUE) {
+    dtlv_mutex_unlock(&combiner->lock);
+    return EINVAL;
+  }
+  if (combiner->tail)
+    combiner->tail->next = &b;
+  else
+    combiner->head = &b;
+  combiner->tail = &b;
+  dtlv_cond_broadcast(&combiner->queued);
+  while (b.done != DTLV_TRUE) dtlv_cond_wait(&combiner->done, &combiner->lock);
+  dtlv_mutex_unlock(&combiner->lock);
+
+  return b.rc;
+}
+
+void dtlv_write_combiner_stats(dtlv_write_combiner *combiner,
+                               uint64_t *commits, uint64_t *batches) {
+  if (!combiner) return;
+  dtlv_mutex_lock(&combiner->lock);
+  if (commits) *commits = combiner->commits;
+  if (batches) *batches = combiner->batches;
+  dtlv_mutex_unlock(&combiner->lock);
+}
+
+void dtlv_write_combiner_set_growth(dtlv_write_combiner *combiner,
+                                    dtlv_map_growth *growth) {
+  if (!combiner) return;
+  dtlv_mutex_lock(&combiner->lock);
+  combiner->growth = growth;
+  dtlv_mutex_unlock(&combiner->lock);
+}
+
+void dtlv_write_combiner_destroy(dtlv_write_combiner *combiner) {
+  if (combiner) {
+    dtlv_mutex_lock(&combiner->lock);
+    combiner->stopping = DTLV_TRUE;
+    dtlv_cond_broadcast(&combiner->queued);
+    dtlv_mutex_unlock(&combiner->lock);
+
+    dtlv_thread_join(combiner->writer);
+
+    dtlv_cond_destroy(&combiner->done);
+    dtlv_cond_destroy(&combiner->queued);
+    dtlv_mutex_destroy(&combiner->lock);
+    free(combiner);
+  }
+}
+
+// a sorted run of records, in memory or spilled to a temporary file
+typedef struct dtlv_bulk_run {
+  FILE *file;
+  size_t next;
+  unsigned char *buf;
+  size_t cap;
+  MDB_val key;
+  MDB_val val;
+  int live;
+} dtlv_bulk_run;
+
+struct dtlv_bulk_loader {
+  MDB_env *env;
+  MDB_dbi dbi;
+  size_t budget;
+  size_t chunk;
+  unsigned char *data;
+  size_t used;
+  size_t cap;
+  size_t *recs;
+  size_t *tmp;
+  size_t n;
+  size_t rcap;
+  dtlv_bulk_run *runs;
+  int nruns;
+  int finished;
+  uint64_t written;
+};
+
+int dtlv_bulk_loader_create(dtlv_bulk_loader **loader, MDB_env *env,
+                            MDB_dbi dbi, size_t budget, size_t chunk) {
+  if (!loader || !env) return EINVAL;
+
+  dtlv_bulk_loader *l = calloc(1, sizeof(struct dtlv_bulk_loader));
+  if (!l) return ENOMEM;
+
+  l->env = env;
+  l->dbi = dbi;
+  l->budget = budget;
+  l->chunk = chunk;
+  l->finished = DTLV_FALSE;
+
+  *loader = l;
+  return MDB_SUCCESS;
+}
+
+static void dtlv_bulk_rec(dtlv_bulk_loader *l, size_t off, MDB_val *key,
+                          MDB_val *val) {
+  const unsigned char *p = l->data + off;
+  const unsigned char *end = l->data + l->used;
+  dtlv_write_read_val(&p, end, key);
+  dtlv_write_read_val(&p, end, val);
+}
+
+static int dtlv_bulk_cmp(MDB_txn *txn, MDB_dbi dbi, int dup, MDB_val *k1,
+                         MDB_val *v1, MDB_val *k2, MDB_val *v2) {
+  int c = mdb_cmp(txn, dbi, k1, k2);
+  if (c == 0 && dup) c = mdb_dcmp(txn, dbi, v1, v2);
+  return c;
+}
+
+// stable bottom-up merge sort of the record offsets
+static void dtlv_bulk_sort(dtlv_bulk_loader *l, MDB_txn *txn, int dup) {
+  size_t n = l->n;
+  size_t *a = l->recs;
+  size_t *b = l->tmp;
+
+  for (size_t width = 1; width < n; width *= 2) {
+    for (size_t lo = 0; lo < n; lo += 2 * width) {
+      size_t mid = lo + width < n ? lo + width : n;
+      size_t hi = lo + 2 * width < n ? lo + 2 * width : n;
+      size_t i = lo, j = mid, k = lo;
+      while (i < mid && j < hi) {
+        MDB_val k1, v1, k2, v2;
+        dtlv_bulk_rec(l, a[i], &k1, &v1);
+        dtlv_bulk_rec(l, a[j], &k2, &v2);
+        if (dtlv_bulk_cmp(txn, l->dbi, dup, &k1, &v1, &k2, &v2) <= 0)
+          b[k++] = a[i++];
+        else
+          b[k++] = a[j++];
+      }
+      while (i < mid) b[k++] = a[i++];
+      while (j < hi) b[k++] = a[j++];
+    }
+    size_t *t = a;
+    a = b;
+    b = t;
+  }
+
+  l->recs = a;
+  l->tmp = b;
+}
+
+static int dtlv_bulk_dup(MDB_txn *txn, MDB_dbi dbi, int *dup) {
+  unsigned int flags = 0;
+  int rc = mdb_dbi_flags(txn, dbi, &flags);
+  if (rc != MDB_SUCCESS) return rc;
+  *dup = (flags & MDB_DUPSORT) ? 1 : 0;
+  return MDB_SUCCESS;
+}
+
+// sort the buffered records and write them to a temporary file
+static int dtlv_bulk_spill(dtlv_bulk_loader *l) {
+  MDB_txn *txn;
+  int dup;
+  int rc = mdb_txn_begin(l->env, NULL, MDB_RDONLY, &txn);
+  if (rc != MDB_SUCCESS) return rc;
+  rc = dtlv_bulk_dup(txn, l->dbi, &dup);
+  if (rc == MDB_SUCCESS) dtlv_bulk_sort(l, txn, dup);
+  mdb_txn_abort(txn);
+  if (rc != MDB_SUCCESS) return rc;
+
+  dtlv_bulk_run *runs =
+      realloc(l->runs, (size_t)(l->nruns + 1) * sizeof(dtlv_bulk_run));
+  if (!runs) return ENOMEM;
+  l->runs = runs;
+
+  FILE *f = NULL;
+  rc = dtlv_tmpfile(&f);
+  if (rc != 0) return rc;
+
+  for (size_t i = 0; i < l->n; i++) {
+    MDB_val key = {0, NULL}, val = {0, NULL};
+    dtlv_bulk_rec(l, l->recs[i], &key, &val);
+    size_t size = dtlv_batch_record_size(&key, &val);
+    if (fwrite(l->data + l->recs[i], 1, size, f) != size) {
+      fclose(f);
+      return EIO;
+    }
+  }
+  if (fflush(f) != 0 || fseek(f, 0, SEEK_SET) != 0) {
+    fclose(f);
+    return EIO;
+  }
+
+  memset(&l->runs[l->nruns], 0, sizeof(dtlv_bulk_run));
+  l->runs[l->nruns].file = f;
+  l->nruns++;
+  l->used = 0;
+  l->n = 0;
+  return MDB_SUCCESS;
+}
+
+int dtlv_bulk_loader_add(dtlv_bulk_loader *loader, const void *records,
+                         size_t len) {
+  if (!loader || (!records && len > 0)) return EINVAL;
+  if (loader->finished == DTLV_TRUE) return EINVAL;
+
+  const unsigned char *start = (const unsigned char *)records;
+  const unsigned char *end = start + len;
+  const unsigned char *p = start;
+  size_t count = 0;
+
+  // check all records before taking any
+  while (p < end) {
+    MDB_val key, val;
+    int rc = dtlv_write_read_val(&p, end, &key);
+    if (rc == MDB_SUCCESS) rc = dtlv_write_read_val(&p, end, &val);
+    if (rc != MDB_SUCCESS) return rc;
+    count++;
+  }
+
+  if (loader->used + len > loader->cap) {
+    size_t cap = loader->cap ? loader->cap : 4096;
+    while (cap < loader->used + len) cap *= 2;
+    unsigned char *data = realloc(loader->data, cap);
+    if (!data) return ENOMEM;
+    loader->data = data;
+    loader->cap = cap;
+  }
+  if (loader->n + count > loader->rcap) {
+    size_t rcap = loader->rcap ? loader->rcap : 256;
+    while (rcap < loader->n + count) rcap *= 2;
+    size_t *recs = realloc(loader->recs, rcap * sizeof(size_t));
+    if (!recs) return ENOMEM;
+    loader->recs = recs;
+    size_t *tmp = realloc(loader->tmp, rcap * sizeof(size_t));
+    if (!tmp) return ENOMEM;
+    loader->tmp = tmp;
+    loader->rcap = rcap;
+  }
+
+  p = start;
+  while (p < end) {
+    MDB_val key, val;
+    loader->recs[loader->n++] = loader->used + (size_t)(p - start);
+    dtlv_write_read_val(&p, end, &key);
+    dtlv_write_read_val(&p, end, &val);
+  }
+  if (len > 0) memcpy(loader->data + loader->used, start, len);
+  loader->used += len;
+
+  size_t mem = loader->used + 2 * loader->n * sizeof(size_t);
+  if (loader->budget > 0 && mem > loader->budget) return dtlv_bulk_spill(loader);
+  return MDB_SUCCESS;
+}
+
+static int dtlv_bulk_run_grow(dtlv_bulk_run *r, size_t need) {
+  if (need <= r->cap) return MDB_SUCCESS;
+  size_t cap = r->cap ? r->cap : 256;
+  while (cap < need) cap *= 2;
+  unsigned char *buf = realloc(r->buf, cap);
+  if (!buf) return ENOMEM;
+  r->buf = buf;
+  r->cap = cap;
+  return MDB_SUCCESS;
+}
+
+// read the next record of a spilled run
+static int dtlv_bulk_run_next(dtlv_bulk_run *r) {
+  uint32_t ksize, vsize;
+
+  if (fread(&ksize, sizeof(uint32_t), 1, r->file) != 1) {
+    if (!feof(r->file)) return EIO;
+    r->live = 0;
+    return MDB_SUCCESS;
+  }
+  int rc = dtlv_bulk_run_grow(r, ksize);
+  if (rc != MDB_SUCCESS) return rc;
+  if (ksize > 0 && fread(r->buf, 1, ksize, r->file) != ksize) return EIO;
+
+  if (fread(&vsize, sizeof(uint32_t), 1, r->file) != 1) return EIO;
+  rc = dtlv_bulk_run_grow(r, (size_t)ksize + vsize);
+  if (rc != MDB_SUCCESS) return rc;
+  if (vsize > 0 && fread(r->buf + ksize, 1, vsize, r->file) != vsize)
+    return EIO;
+
+  r->key.mv_size = ksize;
+  r->key.mv_data = r->buf;
+  r->val.mv_size = vsize;
+  r->val.mv_data = r->buf + ksize;
+  r->live = 1;
+  return MDB_SUCCESS;
+}
+
+static int dtlv_bulk_advance(dtlv_bulk_loader *l, int i) {
+  dtlv_bulk_run *r = &l->runs[i];
+  if (r->file) return dtlv_bulk_run_next(r);
+  if (r->next >= l->n) {
+    r->live = 0;
+    return MDB_SUCCESS;
+  }
+  dtlv_bulk_rec(l, l->recs[r->next++], &r->key, &r->val);
+  r->live = 1;
+  return MDB_SUCCESS;
+}
+
+static int dtlv_bulk_put(dtlv_bulk_loader *l, MDB_txn **txn, int dup,
+                         size_t *pending, MDB_val *key, MDB_val *val) {
+  int rc = dtlv_put(*txn, l->dbi, key, val, dup ? MDB_APPENDDUP : MDB_APPEND);
+  // not after the last entry of the DBI, so it cannot be appended
+  if (rc == MDB_KEYEXIST) rc = dtlv_put(*txn, l->dbi, key, val, 0);
+  if (rc != MDB_SUCCESS) return rc;
+
+  l->written++;
+  if (l->chunk > 0 && ++(*pending) >= l->chunk) {
+    rc = dtlv_txn_commit(*txn);
+    *txn = NULL;
+    if (rc != MDB_SUCCESS) return rc;
+    rc = mdb_txn_begin(l->env, NULL, 0, txn);
+    if (rc != MDB_SUCCESS) {
+      *txn = NULL;
+      return rc;
+    }
+    *pending = 0;
+  }
+  return MDB_SUCCESS;
+}
+
+int dtlv_bulk_loader_finish(dtlv_bulk_loader *loader, uint64_t *written) {
+  if (!loader || loader->finished == DTLV_TRUE) return EINVAL;
+  loader->finished = DTLV_TRUE;
+
+  MDB_txn *txn;
+  int dup;
+  int rc = mdb_txn_begin(loader->env, NULL, 0, &txn);
+  if (rc != MDB_SUCCESS) return rc;
+  rc = dtlv_bulk_dup(txn, loader->dbi, &dup);
+  if (rc != MDB_SUCCESS) goto fail;
+
+  // the records still in memory are the last run
+  dtlv_bulk_sort(loader, txn, dup);
+  dtlv_bulk_run *runs =
+      realloc(loader->runs, (size_t)(loader->nruns + 1) * sizeof(dtlv_bulk_run));
+  if (!runs) {
+    rc = ENOMEM;
+    goto fail;
+  }
+  loader->runs = runs;
+  memset(&loader->runs[loader->nruns], 0, sizeof(dtlv_bulk_run));
+  loader->nruns++;
+
+  for (int i = 0; i < loader->nruns; i++) {
+    rc = dtlv_bulk_advance(loader, i);
+    if (rc != MDB_SUCCESS) goto fail;
+  }
+
+  // of equal records, only the last added is written
+  unsigned char *last = NULL;
+  size_t last_cap = 0;
+  MDB_val lkey = {0, NULL}, lval = {0, NULL};
+  int has_last = 0;
+  size_t pending = 0;
+
+  for (;;) {
+    int min = -1;
+    for (int i = 0; i < loader->nruns; i++) {
+      dtlv_bulk_run *r = &loader->runs[i];
+      if (!r->live) continue;
+      if (min < 0 ||
+          dtlv_bulk_cmp(txn, loader->dbi, dup, &r->key, &r->val,
+                        &loader->runs[min].key, &loader->runs[min].val) < 0)
+        min = i;
+    }
+    if (min < 0) break;
+
+    dtlv_bulk_run *r = &loader->runs[min];
+    if (has_last &&
+        dtlv_bulk_cmp(txn, loader->dbi, dup, &lkey, &lval, &r->key,
+                      &r->val) != 0) {
+      rc = dtlv_bulk_put(loader, &txn, dup, &pending, &lkey, &lval);
+      if (rc != MDB_SUCCESS) break;
+    }
+
+    size_t need = r->key.mv_size + r->val.mv_size;
+    if (need > last_cap) {
+      unsigned char *buf = realloc(last, need);
+      if (!buf) {
+        rc = ENOMEM;
+        break;
+      }
+      last = buf;
+      last_cap = need;
+    }
+    if (r->key.mv_size) memcpy(last, r->key.mv_data, r->key.mv_size);
+    if (r->val.mv_size)
+      memcpy(last + r->key.mv_size, r->val.mv_data, r->val.mv_size);
+    lkey.mv_size = r->key.mv_size;
+    lkey.mv_data = last;
+    lval.mv_size = r->val.mv_size;
+    lval.mv_data = last + r->key.mv_size;
+    has_last = 1;
+
+    rc = dtlv_bulk_advance(loader, min);
+    if (rc != MDB_SUCCESS) break;
+  }
+  if (rc == MDB_SUCCESS && has_last)
+    rc = dtlv_bulk_put(loader, &txn, dup, &pending, &lkey, &lval);
+  free(last);
+  if (rc != MDB_SUCCESS) goto fail;
+
+  rc = dtlv_txn_commit(txn);
+  if (written) *written = loader->written;
+  return rc;
+
+fail:
+  if (txn) mdb_txn_abort(txn);
+  if (written) *written = loader->written;
+  return rc;
+}
+
+void dtlv_bulk_loader_destroy(dtlv_bulk_loader *loader) {
+  if (loader) {
+    for (int i = 0; i < loader->nruns; i++) {
+      if (loader->runs[i].file) fclose(loader->runs[i].file);
+      free(loader->runs[i].buf);
+    }
+    free(loader->runs);
+    free(loader->data);
+    free(loader->recs);
+    free(loader->tmp);
+    free(loader);
+  }
+}
+
+// stable bottom-up merge sort of the key indices, returns the sorted array
+static int *dtlv_multi_get_sort(MDB_txn *txn, MDB_dbi dbi, MDB_val *keys,
+                                int *a, int *b, int n) {
+  for (int width = 1; width < n; width *= 2) {
+    for (int lo = 0; lo < n; lo += 2 * width) {
+      int mid = lo + width < n ? lo + width : n;
+      int hi = lo + 2 * width < n ? lo + 2 * width : n;
+      int i = lo, j = mid, k = lo;
+      while (i < mid && j < hi) {
+        if (mdb_cmp(txn, dbi, &keys[a[i]], &keys[a[j]]) <= 0)
+          b[k++] = a[i++];
+        else
+          b[k++] = a[j++];
+      }
+      while (i < mid) b[k++] = a[i++];
+      while (j < hi) b[k++] = a[j++];
+    }
+    int *t = a;
+    a = b;
+    b = t;
+  }
+  return a;
+}
+
+int dtlv_multi_get(MDB_cursor *cur, int n, MDB_val *keys, MDB_val *vals,
+                   int *found) {
+  if (found) *found = 0;
+  if (!cur || n < 0 || (n > 0 && (!keys || !vals))) return EINVAL;
+  if (n == 0) return MDB_SUCCESS;
+
+  MDB_txn *txn = mdb_cursor_txn(cur);
+  MDB_dbi dbi = mdb_cursor_dbi(cur);
+
+  int *order = malloc(2 * (size_t)n * sizeof(int));
+  if (!order) return ENOMEM;
+  for (int i = 0; i < n; i++) order[i] = i;
+
+  int *sorted = order;
+  for (int i = 1; i < n; i++) {
+    if (mdb_cmp(txn, dbi, &keys[i - 1], &keys[i]) > 0) {
+      sorted = dtlv_multi_get_sort(txn, dbi, keys, order, order + n, n);
+      break;
+    }
+  }
+
+  // in key order, each lookup starts from the page of the previous one
+  int rc = MDB_SUCCESS;
+  int hits = 0;
+  int prev = -1;
+  for (int j = 0; j < n; j++) {
+    int i = sorted[j];
+    if (prev >= 0 && mdb_cmp(txn, dbi, &keys[prev], &keys[i]) == 0) {
+      vals[i] = vals[prev];
+      if (vals[i].mv_data) hits++;
+      continue;
+    }
+
+    MDB_val key = keys[i];
+    rc = dtlv_cursor_get(cur, &key, &vals[i], MDB_SET_KEY);
+    if (rc == MDB_SUCCESS) {
+      hits++;
+    } else if (rc == MDB_NOTFOUND) {
+      vals[i].mv_size = 0;
+      vals[i].mv_data = NULL;
+      rc = MDB_SUCCESS;
+    } else {
+      break;
+    }
+    prev = i;
+  }
+
+  free(order);
+  if (found) *found = hits;
+  return rc;
+}
+
+int dtlv_multi_get_batch(MDB_cursor *cur, int n, MDB_val *keys, void *buf,
+                         size_t buf_len, size_t *used) {
+  if (used) *used = 0;
+  if (!cur || n < 0 || (n > 0 && !keys) || (!buf && buf_len > 0))
+    return -EINVAL;
+  if (n == 0) return 0;
+
+  MDB_val *vals = malloc((size_t)n * sizeof(MDB_val));
+  if (!vals) return -ENOMEM;
+
+  int found;
+  int rc = dtlv_multi_get(cur, n, keys, vals, &found);
+  if (rc != MDB_SUCCESS) {
+    free(vals);
+    return dtlv_batch_error(rc);
+  }
+
+  size_t need = 0;
+  for (int i = 0; i < n; i++)
+    need += sizeof(uint32_t) + (vals[i].mv_data ? vals[i].mv_size : 0);
+  if (need > buf_len) {
+    free(vals);
+    if (used) *used = need;
+    return -EMSGSIZE;
+  }
+
+  char *p = buf;
+  for (int i = 0; i < n; i++) {
+    if (vals[i].mv_data) {
+      p = dtlv_batch_put_item(p, &vals[i]);
+    } else {
+      uint32_t absent = DTLV_MULTI_GET_ABSENT;
+      memcpy(p, &absent, sizeof(uint32_t));
+      p += sizeof(uint32_t);
+    }
+  }
+
+  free(vals);
+  if (used) *used = need;
+  return found;
+}
+
+int dtlv_put_batch(MDB_txn *txn, MDB_dbi dbi, const void *records, size_t len,
+                   unsigned int flags, size_t *written) {
+  if (written) *written = 0;
+  if (!txn || (!records && len > 0) || (flags & MDB_MULTIPLE)) return EINVAL;
+
+  const unsigned char *start = (const unsigned char *)records;
+  const unsigned char *end = start + len;
+  const unsigned char *p = start;
+
+  // check all records before writing any
+  while (p < end) {
+    MDB_val key, val;
+    int rc = dtlv_write_read_val(&p, end, &key);
+    if (rc == MDB_SUCCESS) rc = dtlv_write_read_val(&p, end, &val);
+    if (rc != MDB_SUCCESS) return rc;
+  }
+
+  unsigned int db_flags = 0;
+  int rc = mdb_dbi_flags(txn, dbi, &db_flags);
+  if (rc != MDB_SUCCESS) return rc;
+  int fixed = (db_flags & MDB_DUPFIXED) ? 1 : 0;
+
+  MDB_cursor *cur;
+  rc = mdb_cursor_open(txn, dbi, &cur);
+  if (rc != MDB_SUCCESS) return rc;
+
+  unsigned char *vals = NULL;
+  size_t cap = 0;
+  size_t count = 0;
+
+  p = start;
+  while (p < end && rc == MDB_SUCCESS) {
+    MDB_val key = {0, NULL}, val = {0, NULL};
+    dtlv_write_read_val(&p, end, &key);
+    dtlv_write_read_val(&p, end, &val);
+
+    // the following records of the same key and value size form a run
+    size_t run = 1;
+    const unsigned char *q = p;
+    while (fixed && val.mv_size > 0 && q < end) {
+      const unsigned char *r = q;
+      MDB_val k = {0, NULL}, v = {0, NULL};
+      dtlv_write_read_val(&r, end, &k);
+      dtlv_write_read_val(&r, end, &v);
+      if (v.mv_size != val.mv_size || mdb_cmp(txn, dbi, &key, &k) != 0) break;
+      run++;
+      q = r;
+    }
+
+    if (run == 1) {
+      rc = dtlv_cursor_put(cur, &key, &val, flags);
+      if (rc == MDB_SUCCESS) count++;
+      continue;
+    }
+
+    // MDB_MULTIPLE takes the values of a run contiguously
+    size_t need = run * val.mv_size;
+    if (need > cap) {
+      unsigned char *grown = realloc(vals, need);
+      if (!grown) {
+        rc = ENOMEM;
+        break;
+      }
+      vals = grown;
+      cap = need;
+    }
+    memcpy(vals, val.mv_data, val.mv_size);
+    for (size_t i = 1; i < run; i++) {
+      MDB_val k = {0, NULL}, v = {0, NULL};
+      dtlv_write_read_val(&p, end, &k);
+      dtlv_write_read_val(&p, end, &v);
+      memcpy(vals + i * val.mv_size, v.mv_data, v.mv_size);
+    }
+
+    MDB_val data[2];
+    data[0].mv_size = val.mv_size;
+    data[0].mv_data = vals;
+    data[1].mv_size = run;
+    data[1].mv_data = NULL;
+    rc = dtlv_cursor_put(cur, &key, data, flags | MDB_MULTIPLE);
+    if (rc == MDB_SUCCESS) count += run;
+  }
+
+  mdb_cursor_close(cur);
+  free(vals);
+  if (written) *written = count;
+  return rc;
+}
+
+int dtlv_map_growth_write(dtlv_map_growth *growth, const void *ops,
+                          size_t len) {
+  if (!growth || (!ops && len > 0)) return EINVAL;
+
+  dtlv_write_batch b;
+  memset(&b, 0, sizeof(b));
+  b.ops = (const unsigned char *)ops;
+  b.len = len;
+
+  for (;;) {
+    MDB_txn *txn;
+    int rc = mdb_txn_begin(growth->env, NULL, 0, &txn);
+    if (rc == MDB_MAP_RESIZED) {
+      // another process has grown the map, adopt its size
+      rc = dtlv_map_growth_resize(growth, 0);
+      if (rc == MDB_SUCCESS) continue;
+    }
+    if (rc != MDB_SUCCESS) return rc;
+
+    rc = dtlv_write_apply(txn, &b);
+    if (rc == MDB_SUCCESS)
+      rc = dtlv_txn_commit(txn);
+    else
+      mdb_txn_abort(txn);
+    if (rc != MDB_MAP_FULL) return rc;
+
+    rc = dtlv_map_growth_grow(growth);
+    if (rc != MDB_SUCCESS) return rc;
+  }
+}
+
+void dtlv_map_growth_destroy(dtlv_map_growth *growth) {
+  if (!growth) return;
+  dtlv_cond_destroy(&growth->idle);
+  dtlv_mutex_destroy(&growth->lock);
+  free(growth);
+}
+
+typedef struct dtlv_copy_job {
+  MDB_env *env;
+  dtlv_pipe_t wr;
+  unsigned int flags;
+  int rc;
+} dtlv_copy_job;
+
+DTLV_THREAD_FN(dtlv_copy_worker, arg) {
+  dtlv_copy_job *job = (dtlv_copy_job *)arg;
+  dtlv_thread_mask_sigpipe();
+  job->rc = mdb_env_copyfd2(job->env, job->wr, job->flags);
+  // the reader sees the end of the pipe
+  dtlv_pipe_close(job->wr);
+  DTLV_THREAD_RETURN;
+}
+
+int dtlv_env_copy_sink(MDB_env *env, unsigned int flags, size_t rate,
+                       dtlv_copy_sink sink, void *ctx) {
+  if (!env || !sink) return EINVAL;
+
+  size_t cap = 64 * 1024;
+  if (rate > 0 && rate < cap) cap = rate;
+  unsigned char *buf = malloc(cap);
+  if (!buf) return ENOMEM;
+
+  dtlv_pipe_t rd = 0;
+  dtlv_copy_job job;
+  job.env = env;
+  job.flags = flags;
+  job.rc = MDB_SUCCESS;
+  int rc = dtlv_pipe_open(&rd, &job.wr);
+  if (rc != 0) {
+    free(buf);
+    return rc;
+  }
+
+  // LMDB writes the copy into the pipe on its own thread, while this one
+  // paces the reads, so a throttled sink also throttles the reads of the
+  // data file
+  dtlv_thread_t worker;
+  rc = dtlv_thread_create(&worker, dtlv_copy_worker, &job);
+  if (rc != 0) {
+    dtlv_pipe_close(job.wr);
+    dtlv_pipe_close(rd);
+    free(buf);
+    return rc;
+  }
+
+  uint64_t start = dtlv_clock_ms();
+  uint64_t sent = 0;
+  for (;;) {
+    size_t got = 0;
+    rc = dtlv_pipe_read(rd, buf, cap, &got);
+    if (rc != 0 || got == 0) break;
+
+    sent += got;
+    if (rate > 0) {
+      uint64_t due = sent * 1000 / rate;
+      uint64_t elapsed = dtlv_clock_ms() - start;
+      if (due > elapsed) dtlv_sleep_ms(due - elapsed);
+    }
+
+    rc = sink(ctx, buf, got);
+    if (rc != 0) break;
+  }
+
+  // an early stop fails the pending writes of the worker
+  dtlv_pipe_close(rd);
+  dtlv_thread_join(worker);
+  free(buf);
+
+  return rc != 0 ? rc : job.rc;
+}
+
+static int dtlv_copy_to_fd(void *ctx, const void *data, size_t len) {
+  return dtlv_fd_write(*(int *)ctx, data, len);
+}
+
+int dtlv_env_copy_fd(MDB_env *env, int fd, unsigned int flags, size_t rate) {
+  if (fd < 0) return EINVAL;
+  return dtlv_env_copy_sink(env, flags, rate, dtlv_copy_to_fd, &fd);
+}
+
+static const char dtlv_delta_magic[8] = {'D', 'T', 'L', 'V', 'D', 'L', 'T', '1'};
+static const char dtlv_manifest_magic[8] = {'D', 'T', 'L', 'V', 'M', 'A', 'N', '1'};
+#define DTLV_DELTA_HEADER 24
+#define DTLV_MANIFEST_HEADER 32
+#define DTLV_DELTA_END UINT64_MAX
+
+// the splitmix64 finalizer
+static uint64_t dtlv_mix64(uint64_t x) {
+  x ^= x >> 30;
+  x *= 0xbf58476d1ce4e5b9ULL;
+  x ^= x >> 27;
+  x *= 0x94d049bb133111ebULL;
+  x ^= x >> 31;
+  return x;
+}
+
+static uint64_t dtlv_page_hash(const unsigned char *page, size_t psize) {
+  uint64_t h = 0x9e3779b97f4a7c15ULL;
+  size_t i = 0;
+  for (; i + sizeof(uint64_t) <= psize; i += sizeof(uint64_t)) {
+    uint64_t w;
+    memcpy(&w, page + i, sizeof(uint64_t));
+    h = dtlv_mix64(h ^ w);
+  }
+  if (i < psize) {
+    uint64_t w = 0;
+    memcpy(&w, page + i, psize - i);
+    h = dtlv_mix64(h ^ w);
+  }
+  return h;
+}
+
+typedef struct dtlv_backup_state {
+  dtlv_copy_sink sink;
+  void *ctx;
+  size_t psize;
+  unsigned char *rec; // page number then page, as written to the delta
+  size_t fill;
+  FILE *old;
+  uint64_t old_pages;
+  FILE *manifest;
+  uint64_t pgno;
+  uint64_t id;
+  uint64_t written;
+} dtlv_backup_state;
+
+static int dtlv_backup_page(dtlv_backup_state *st) {
+  unsigned char *page = st->rec + sizeof(uint64_t);
+  uint64_t h = dtlv_page_hash(page, st->psize);
+
+  // the old hashes are read in step with the pages
+  int changed = 1;
+  if (st->old && st->pgno < st->old_pages) {
+    uint64_t prev;
+    if (fread(&prev, sizeof(uint64_t), 1, st->old) != 1) return MDB_INVALID;
+    changed = prev != h;
+  }
+  // meta pages always go, to carry the txn of the snapshot
+  if (st->pgno < 2) changed = 1;
+
+  if (fwrite(&h, sizeof(uint64_t), 1, st->manifest) != 1) return errno;
+  st->id = dtlv_mix64(st->id ^ h);
+
+  if (changed) {
+    memcpy(st->rec, &st->pgno, sizeof(uint64_t));
+    int rc = st->sink(st->ctx, st->rec, sizeof(uint64_t) + st->psize);
+    if (rc != 0) return rc;
+    st->written++;
+  }
+  st->pgno++;
+  st->fill = 0;
+  return MDB_SUCCESS;
+}
+
+static int dtlv_backup_sink(void *ctx, const void *data, size_t len) {
+  dtlv_backup_state *st = (dtlv_backup_state *)ctx;
+  const unsigned char *p = data;
+  while (len > 0) {
+    size_t n = st->psize - st->fill;
+    if (n > len) n = len;
+    memcpy(st->rec + sizeof(uint64_t) + st->fill, p, n);
+    st->fill += n;
+    p += n;
+    len -= n;
+    if (st->fill == st->psize) {
+      int rc = dtlv_backup_page(st);
+      if (rc != MDB_SUCCESS) return rc;
+    }
+  }
+  return MDB_SUCCESS;
+}
+
+static int dtlv_manifest_header(FILE *f, size_t psize, uint64_t *pages,
+                                uint64_t *id) {
+  unsigned char head[DTLV_MANIFEST_HEADER];
+  uint32_t size;
+  if (fread(head, sizeof(head), 1, f) != 1) return MDB_INVALID;
+  if (memcmp(head, dtlv_manifest_magic, 8) != 0) return MDB_INVALID;
+  memcpy(&size, head + 8, sizeof(uint32_t));
+  if (size != psize) return MDB_INCOMPATIBLE;
+  memcpy(pages, head + 16, sizeof(uint64_t));
+  memcpy(id, head + 24, sizeof(uint64_t));
+  return MDB_SUCCESS;
+}
+
+int dtlv_env_diff_backup(MDB_env *env, const char *manifest, size_t rate,
+                         dtlv_copy_sink sink, void *ctx, uint64_t *pages) {
+  if (pages) *pages = 0;
+  if (!env || !manifest || !sink) return EINVAL;
+
+  MDB_stat stat;
+  int rc = mdb_env_stat(env, &stat);
+  if (rc != MDB_SUCCESS) return rc;
+
+  dtlv_backup_state st;
+  memset(&st, 0, sizeof(st));
+  st.sink = sink;
+  st.ctx = ctx;
+  st.psize = stat.ms_psize;
+
+  size_t len = strlen(manifest);
+  char *tmp = malloc(len + 5);
+  if (!tmp) return ENOMEM;
+  memcpy(tmp, manifest, len);
+  memcpy(tmp + len, ".tmp", 5);
+
+  uint64_t base = 0;
+  st.old = fopen(manifest, "rb");
+  if (st.old) {
+    rc = dtlv_manifest_header(st.old, st.psize, &st.old_pages, &base);
+    if (rc != MDB_SUCCESS) goto done;
+  } else if (errno != ENOENT) {
+    rc = errno;
+    goto done;
+  }
+
+  st.rec = malloc(sizeof(uint64_t) + st.psize);
+  if (!st.rec) {
+    rc = ENOMEM;
+    goto done;
+  }
+
+  // the header of the new manifest is written last, when its id is known
+  unsigned char head[DTLV_MANIFEST_HEADER];
+  memset(head, 0, sizeof(head));
+  st.manifest = fopen(tmp, "wb");
+  if (!st.manifest) {
+    rc = errno;
+    goto done;
+  }
+  if (fwrite(head, sizeof(head), 1, st.manifest) != 1) {
+    rc = errno;
+    goto done;
+  }
+
+  uint32_t psize = (uint32_t)st.psize;
+  uint32_t kind = st.old ? DTLV_BACKUP_DIFF : DTLV_BACKUP_FULL;
+  memcpy(head, dtlv_delta_magic, 8);
+  memcpy(head + 8, &psize, sizeof(uint32_t));
+  memcpy(head + 12, &kind, sizeof(uint32_t));
+  memcpy(head + 16, &base, sizeof(uint64_t));
+  rc = sink(ctx, head, DTLV_DELTA_HEADER);
+  if (rc != 0) goto done;
+
+  // a plain copy keeps the page numbers of the data file
+  rc = dtlv_env_copy_sink(env, 0, rate, dtlv_backup_sink, &st);
+  if (rc != MDB_SUCCESS) goto done;
+  if (st.fill != 0) {
+    rc = MDB_INVALID;
+    goto done;
+  }
+  st.id = dtlv_mix64(st.id ^ st.pgno);
+
+  uint64_t trailer[3] = {DTLV_DELTA_END, st.pgno, st.id};
+  rc = sink(ctx, trailer, sizeof(trailer));
+  if (rc != 0) goto done;
+
+  memcpy(head, dtlv_manifest_magic, 8);
+  memcpy(head + 8, &psize, sizeof(uint32_t));
+  memset(head + 12, 0, sizeof(uint32_t));
+  memcpy(head + 16, &st.pgno, sizeof(uint64_t));
+  memcpy(head + 24, &st.id, sizeof(uint64_t));
+  rc = dtlv_file_seek(st.manifest, 0);
+  if (rc != 0) goto done;
+  if (fwrite(head, sizeof(head), 1, st.manifest) != 1) {
+    rc = errno;
+    goto done;
+  }
+  rc = dtlv_file_sync(st.manifest);
+  if (rc != 0) goto done;
+  FILE *done_manifest = st.manifest;
+  st.manifest = NULL;
+  if (fclose(done_manifest) != 0) {
+    rc = errno;
+    goto done;
+  }
+  if (st.old) {
+    fclose(st.old);
+    st.old = NULL;
+  }
+#if defined(_WIN32)
+  remove(manifest);
+#endif
+  if (rename(tmp, manifest) != 0) rc = errno;
+  if (pages) *pages = st.written;
+
+done:
+  if (st.old) fclose(st.old);
+  if (st.manifest) fclose(st.manifest);
+  if (rc != MDB_SUCCESS) remove(tmp);
+  free(st.rec);
+  free(tmp);
+  return rc;
+}
+
+// the id of a data file, as the backup that wrote it computed it
+static int dtlv_backup_file_id(FILE *f, size_t psize, unsigned char *page,
+                               uint64_t *id) {
+  uint64_t h = 0;
+  uint64_t n = 0;
+  int rc = dtlv_file_seek(f, 0);
+  if (rc != 0) return rc;
+  for (;;) {
+    size_t got = fread(page, 1, psize, f);
+    if (got == 0) break;
+    if (got != psize) return MDB_INCOMPATIBLE;
+    h = dtlv_mix64(h ^ dtlv_page_hash(page, psize));
+    n++;
+  }
+  if (ferror(f)) return EIO;
+  *id = dtlv_mix64(h ^ n);
+  return MDB_SUCCESS;
+}
+
+static int dtlv_backup_apply(FILE *data, FILE *in, uint32_t psize,
+                             unsigned char *page, uint64_t *id) {
+  for (;;) {
+    uint64_t pgno;
+    if (fread(&pgno, sizeof(uint64_t), 1, in) != 1) return MDB_INVALID;
+    if (pgno == DTLV_DELTA_END) break;
+    if (fread(page, psize, 1, in) != 1) return MDB_INVALID;
+    int rc = dtlv_file_seek(data, pgno * psize);
+    if (rc != 0) return rc;
+    if (fwrite(page, psize, 1, data) != 1) return errno;
+  }
+
+  uint64_t npages;
+  if (fread(&npages, sizeof(uint64_t), 1, in) != 1) return MDB_INVALID;
+  if (fread(id, sizeof(uint64_t), 1, in) != 1) return MDB_INVALID;
+  return dtlv_file_truncate(data, npages * psize);
+}
+
+int dtlv_backup_restore(const char *path, int n, const char **deltas) {
+  if (!path || n < 0 || (n > 0 && !deltas)) return EINVAL;
+
+  FILE *data = NULL;
+  unsigned char *page = NULL;
+  uint32_t psize = 0;
+  uint64_t id = 0;
+  int known = DTLV_FALSE;
+  int rc = MDB_SUCCESS;
+
+  for (int i = 0; i < n && rc == MDB_SUCCESS; i++) {
+    FILE *in = fopen(deltas[i], "rb");
+    if (!in) {
+      rc = errno;
+      break;
+    }
+
+    unsigned char head[DTLV_DELTA_HEADER];
+    uint32_t size, kind;
+    uint64_t base;
+    if (fread(head, sizeof(head), 1, in) != 1 ||
+        memcmp(head, dtlv_delta_magic, 8) != 0) {
+      rc = MDB_INVALID;
+      goto next;
+    }
+    memcpy(&size, head + 8, sizeof(uint32_t));
+    memcpy(&kind, head + 12, sizeof(uint32_t));
+    memcpy(&base, head + 16, sizeof(uint64_t));
+    if (size == 0 || (kind != DTLV_BACKUP_FULL &&
+                      kind != DTLV_BACKUP_DIFF)) {
+      rc = MDB_INVALID;
+      goto next;
+    }
+
+    if (!page) {
+      psize = size;
+      page = malloc(psize);
+      if (!page) {
+        rc = ENOMEM;
+        goto next;
+      }
+    } else if (size != psize) {
+      rc = MDB_INCOMPATIBLE;
+      goto next;
+    }
+
+    if (!data) {
+      data = fopen(path, kind == DTLV_BACKUP_FULL ? "w+b" : "r+b");
+      if (!data) {
+        rc = errno;
+        goto next;
+      }
+    } else if (kind == DTLV_BACKUP_FULL) {
+      rc = dtlv_file_truncate(data, 0);
+      if (rc != 0) goto next;
+    }
+
+    // a delta only applies to the state its backup started from
+    if (kind == DTLV_BACKUP_DIFF) {
+      if (known != DTLV_TRUE) {
+        rc = dtlv_backup_file_id(data, psize, page, &id);
+        if (rc != MDB_SUCCESS) goto next;
+      }
+      if (id != base) {
+        rc = MDB_INCOMPATIBLE;
+        goto next;
+      }
+    }
+
+    rc = dtlv_backup_apply(data, in, psize, page, &id);
+    known = DTLV_TRUE;
+
+  next:
+    fclose(in);
+  }
+
+  if (data) {
+    if (rc == MDB_SUCCESS) rc = dtlv_file_sync(data);
+    if (fclose(data) != 0 && rc == MDB_SUCCESS) rc = errno;
+  }
+  free(page);
+  return rc;
+}
+
+typedef struct dtlv_reader_scan {
+  uint64_t last;
+  uint64_t max_lag;
+  int max;
+  int n;
+  int *pids;
+  uint64_t *tids;
+  uint64_t *txnids;
+  uint64_t *lags;
+  uint64_t oldest;
+  int lagging;
+  int active;
+  uint64_t snapshot;
+} dtlv_reader_scan;
+
+// parses a line of mdb_reader_list, "pid thread(hex) txnid" or "pid thread -"
+// for an idle slot; the header and the "(no ...)" lines do not parse
+static int dtlv_reader_line(const char *msg, void *ctx) {
+  dtlv_reader_scan *s = ctx;
+  int pid;
+  unsigned long long tid;
+  char txn[32];
+  if (sscanf(msg, "%d %llx %31s", &pid, &tid, txn) != 3) return 0;
+
+  uint64_t txnid = DTLV_READER_IDLE;
+  uint64_t lag = 0;
+  if (txn[0] != '-') {
+    txnid = strtoull(txn, NULL, 10);
+    if (s->last > txnid) lag = s->last - txnid;
+    if (s->active == 0 || txnid < s->snapshot) s->snapshot = txnid;
+    s->active++;
+  }
+  if (lag > s->oldest) s->oldest = lag;
+  if (lag > s->max_lag) s->lagging++;
+
+  if (s->n < s->max) {
+    if (s->pids) s->pids[s->n] = pid;
+    if (s->tids) s->tids[s->n] = (uint64_t)tid;
+    if (s->txnids) s->txnids[s->n] = txnid;
+    if (s->lags) s->lags[s->n] = lag;
+  }
+  s->n++;
+  return 0;
+}
+
+static int dtlv_reader_scan_env(MDB_env *env, dtlv_reader_scan *s) {
+  MDB_envinfo info;
+  int rc = mdb_env_info(env, &info);
+  if (rc != MDB_SUCCESS) return rc;
+  s->last = (uint64_t)info.me_last_txnid;
+  rc = mdb_reader_list(env, dtlv_reader_line, s);
+  return rc < 0 ? EINVAL : MDB_SUCCESS;
+}
+
+int dtlv_reader_list(MDB_env *env, int max, int *pids, uint64_t *tids,
+                     uint64_t *txnids, uint64_t *lags) {
+  if (!env || max < 0) return -EINVAL;
+
+  dtlv_reader_scan s;
+  memset(&s, 0, sizeof(s));
+  s.max = max;
+  s.pids = pids;
+  s.tids = tids;
+  s.txnids = txnids;
+  s.lags = lags;
+  int rc = dtlv_reader_scan_env(env, &s);
+  if (rc != MDB_SUCCESS) return dtlv_batch_error(rc);
+  return s.n;
+}
+
+struct dtlv_reader_reaper {
+  MDB_env *env;
+  uint64_t interval_ms;
+  uint64_t max_lag;
+
+  dtlv_mutex_t lock;
+  dtlv_cond_t cond;
+  int stop;
+  dtlv_thread_t thread;
+
+  uint64_t stats[DTLV_REAPER_STATS];
+};
+
+static void dtlv_reader_reap(dtlv_reader_reaper *r) {
+  int dead = 0;
+  int rc = mdb_reader_check(r->env, &dead);
+
+  dtlv_reader_scan s;
+  memset(&s, 0, sizeof(s));
+  s.max_lag = r->max_lag;
+  if (rc == MDB_SUCCESS) rc = dtlv_reader_scan_env(r->env, &s);
+
+  dtlv_mutex_lock(&r->lock);
+  r->stats[DTLV_REAPER_CHECKS]++;
+  r->stats[DTLV_REAPER_REAPED] += (uint64_t)dead;
+  r->stats[DTLV_REAPER_READERS] = (uint64_t)s.n;
+  r->stats[DTLV_REAPER_LAG] = s.oldest;
+  r->stats[DTLV_REAPER_LAGGING] = (uint64_t)s.lagging;
+  if (s.lagging > 0) r->stats[DTLV_REAPER_ALERTS]++;
+  r->stats[DTLV_REAPER_ERROR] = (uint64_t)(int64_t)rc;
+  dtlv_mutex_unlock(&r->lock);
+}
+
+DTLV_THREAD_FN(dtlv_reader_reaper_worker, arg) {
+  dtlv_reader_reaper *r = arg;
+  dtlv_mutex_lock(&r->lock);
+  while (!r->stop) {
+    dtlv_mutex_unlock(&r->lock);
+    dtlv_reader_reap(r);
+    dtlv_mutex_lock(&r->lock);
+    // an early wake up only makes an early check
+    if (!r->stop) dtlv_cond_timedwait_ms(&r->cond, &r->lock, r->interval_ms);
+  }
+  dtlv_mutex_unlock(&r->lock);
+  DTLV_THREAD_RETURN;
+}
+
+int dtlv_reader_reaper_create(dtlv_reader_reaper **reaper, MDB_env *env,
+                              unsigned int interval_ms, uint64_t max_lag) {
+  if (!reaper || !env || interval_ms == 0) return EINVAL;
+
+  dtlv_reader_reaper *r = calloc(1, sizeof(struct dtlv_reader_reaper));
+  if (!r) return ENOMEM;
+  r->env = env;
+  r->interval_ms = interval_ms;
+  r->max_lag = max_lag;
+
+  int rc = dtlv_mutex_init(&r->lock);
+  if (rc != 0) {
+    free(r);
+    return rc;
+  }
+  rc = dtlv_cond_init(&r->cond);
+  if (rc != 0) {
+    dtlv_mutex_destroy(&r->lock);
+    free(r);
+    return rc;
+  }
+  rc = dtlv_thread_create(&r->thread, dtlv_reader_reaper_worker, r);
+  if (rc != 0) {
+    dtlv_cond_destroy(&r->cond);
+    dtlv_mutex_destroy(&r->lock);
+    free(r);
+    return rc;
+  }
+
+  *reaper = r;
+  return MDB_SUCCESS;
+}
+
+void dtlv_reader_reaper_stats(dtlv_reader_reaper *reaper, uint64_t *stats) {
+  if (!reaper || !stats) return;
+  dtlv_mutex_lock(&reaper->lock);
+  memcpy(stats, reaper->stats, sizeof(reaper->stats));
+  dtlv_mutex_unlock(&reaper->lock);
+}
+
+void dtlv_reader_reaper_destroy(dtlv_reader_reaper *reaper) {
+  if (!reaper) return;
+  dtlv_mutex_lock(&reaper->lock);
+  reaper->stop = 1;
+  dtlv_cond_broadcast(&reaper->cond);
+  dtlv_mutex_unlock(&reaper->lock);
+  dtlv_thread_join(reaper->thread);
+  dtlv_cond_destroy(&reaper->cond);
+  dtlv_mutex_destroy(&reaper->lock);
+  free(reaper);
+}
+
+// page layout of LMDB, used to estimate the fill of leaf pages: a page
+// header, then per entry a 2 byte offset and a node of an 8 byte header,
+// the key and the value, padded to even. A value too large for half a page
+// goes to overflow pages, leaving its page number in the node
+#define DTLV_PAGE_HEADER 16
+#define DTLV_NODE_HEADER 8
+#define DTLV_NODE_INDEX  2
+#define DTLV_EVEN(n)     (((n) + 1) & ~(size_t)1)
+
+typedef struct dtlv_analysis_db {
+  char *name;
+  size_t name_len;
+  uint64_t stats[DTLV_ANALYSIS_DB_STATS];
+} dtlv_analysis_db;
+
+struct dtlv_env_analysis {
+  uint64_t stats[DTLV_ANALYSIS_ENV_STATS];
+  int n;
+  int cap;
+  dtlv_analysis_db *dbs;
+};
+
+static uint64_t dtlv_analysis_fill(uint64_t bytes, uint64_t pages,
+                                   uint64_t psize) {
+  if (pages == 0 || psize <= DTLV_PAGE_HEADER) return 0;
+  uint64_t fill = bytes * 1000 / (pages * (psize - DTLV_PAGE_HEADER));
+  return fill > 1000 ? 1000 : fill;
+}
+
+static size_t dtlv_analysis_node(size_t size) {
+  return DTLV_NODE_INDEX + DTLV_EVEN(DTLV_NODE_HEADER + size);
+}
+
+// sums the estimated node sizes of the entries of a DB; dups are nodes of
+// their own, keyed by the value, in a sub-page or a sub-DB
+static int dtlv_analysis_scan(MDB_txn *txn, MDB_dbi dbi, unsigned int flags,
+                              uint64_t psize, uint64_t *stats) {
+  MDB_cursor *cur;
+  int rc = mdb_cursor_open(txn, dbi, &cur);
+  if (rc != MDB_SUCCESS) return rc;
+
+  size_t nodemax =
+    (((size_t)psize - DTLV_PAGE_HEADER) / 2 & ~(size_t)1) - DTLV_NODE_INDEX;
+  uint64_t bytes = 0;
+  uint64_t ovals = 0;
+  uint64_t obytes = 0;
+  MDB_val key, val;
+
+  if (flags & MDB_DUPSORT) {
+    rc = dtlv_cursor_get(cur, &key, &val, MDB_FIRST);
+    while (rc == MDB_SUCCESS) {
+      bytes += dtlv_analysis_node(key.mv_size);
+      if (flags & MDB_DUPFIXED) {
+        mdb_size_t n = 0;
+        rc = mdb_cursor_count(cur, &n);
+        if (rc != MDB_SUCCESS) break;
+        bytes += (uint64_t)n * val.mv_size;
+      } else {
+        do {
+          bytes += dtlv_analysis_node(val.mv_size);
+        } while ((rc = dtlv_cursor_get(cur, &key, &val, MDB_NEXT_DUP)) ==
+                 MDB_SUCCESS);
+        if (rc != MDB_NOTFOUND) break;
+      }
+      rc = dtlv_cursor_get(cur, &key, &val, MDB_NEXT_NODUP);
+    }
+  } else {
+    rc = dtlv_cursor_get(cur, &key, &val, MDB_FIRST);
+    while (rc == MDB_SUCCESS) {
+      if (DTLV_NODE_HEADER + key.mv_size + val.mv_size > nodemax) {
+        bytes += dtlv_analysis_node(key.mv_size + sizeof(mdb_size_t));
+        ovals++;
+        obytes += val.mv_size;
+      } else {
+        bytes += dtlv_analysis_node(key.mv_size + val.mv_size);
+      }
+      rc = dtlv_cursor_get(cur, &key, &val, MDB_NEXT);
+    }
+  }
+  mdb_cursor_close(cur);
+  if (rc != MDB_NOTFOUND) return rc;
+
+  stats[DTLV_ANALYSIS_DB_LEAF_BYTES] = bytes;
+  stats[DTLV_ANALYSIS_DB_FILL] = dtlv_analysis_fill(
+    bytes, stats[DTLV_ANALYSIS_DB_LEAF_PAGES], psize);
+  stats[DTLV_ANALYSIS_DB_OVERFLOW_VALUES] = ovals;
+  stats[DTLV_ANALYSIS_DB_OVERFLOW_BYTES] = obytes;
+  return MDB_SUCCESS;
+}
+
+static int dtlv_analysis_add(dtlv_env_analysis *a, MDB_txn *txn,
+                             MDB_dbi dbi, const MDB_val *name,
+                             unsigned int flags) {
+  if (a->n == a->cap) {
+    int cap = a->cap ? a->cap * 2 : 8;
+    dtlv_analysis_db *dbs = realloc(a->dbs, cap * sizeof(dtlv_analysis_db));
+    if (!dbs) return ENOMEM;
+    a->dbs = dbs;
+    a->cap = cap;
+  }
+
+  dtlv_analysis_db *d = &a->dbs[a->n];
+  memset(d, 0, sizeof(dtlv_analysis_db));
+  size_t len = name ? name->mv_size : 0;
+  d->name = malloc(len + 1);
+  if (!d->name) return ENOMEM;
+  if (len) memcpy(d->name, name->mv_data, len);
+  d->name[len] = '\0';
+  d->name_len = len;
+  a->n++;
+
+  MDB_stat st;
+  unsigned int dbflags = 0;
+  int rc = mdb_stat(txn, dbi, &st);
+  // mdb_dbi_flags takes user DBs only, not the free list
+  if (rc == MDB_SUCCESS && dbi != 0) rc = mdb_dbi_flags(txn, dbi, &dbflags);
+  if (rc != MDB_SUCCESS) return rc;
+
+  d->stats[DTLV_ANALYSIS_DB_FLAGS] = dbflags;
+  d->stats[DTLV_ANALYSIS_DB_DEPTH] = st.ms_depth;
+  d->stats[DTLV_ANALYSIS_DB_BRANCH_PAGES] = st.ms_branch_pages;
+  d->stats[DTLV_ANALYSIS_DB_LEAF_PAGES] = st.ms_leaf_pages;
+  d->stats[DTLV_ANALYSIS_DB_OVERFLOW_PAGES] = st.ms_overflow_pages;
+  d->stats[DTLV_ANALYSIS_DB_ENTRIES] = st.ms_entries;
+
+  a->stats[DTLV_ANALYSIS_LIVE_PAGES] +=
+    st.ms_branch_pages + st.ms_leaf_pages + st.ms_overflow_pages;
+
+  if (flags & DTLV_ANALYZE_FILL)
+    return dtlv_analysis_scan(txn, dbi, dbflags,
+                              a->stats[DTLV_ANALYSIS_PSIZE], d->stats);
+  return MDB_SUCCESS;
+}
+
+static uint64_t dtlv_analysis_word(const char *p, size_t width) {
+  if (width == sizeof(uint32_t)) {
+    uint32_t w;
+    memcpy(&w, p, sizeof(w));
+    return w;
+  }
+  uint64_t w;
+  memcpy(&w, p, sizeof(w));
+  return w;
+}
+
+// walks the free list: a record per txn that freed pages, keyed by its txn
+// id, of which the value is a list of page numbers led by their count
+static int dtlv_analysis_free(dtlv_env_analysis *a, MDB_txn *txn,
+                              uint64_t oldest) {
+  MDB_cursor *cur;
+  int rc = mdb_cursor_open(txn, 0, &cur);
+  if (rc != MDB_SUCCESS) return rc;
+
+  uint64_t last = a->stats[DTLV_ANALYSIS_LAST_TXNID];
+  MDB_val key, val;
+  rc = dtlv_cursor_get(cur, &key, &val, MDB_FIRST);
+  while (rc == MDB_SUCCESS) {
+    size_t width = key.mv_size;
+    if ((width == sizeof(uint32_t) || width == sizeof(uint64_t)) &&
+        val.mv_size >= width) {
+      uint64_t txnid = dtlv_analysis_word(key.mv_data, width);
+      uint64_t pages = dtlv_analysis_word(val.mv_data, width);
+      if (pages > val.mv_size / width - 1) pages = val.mv_size / width - 1;
+
+      uint64_t age = last > txnid ? last - txnid : 0;
+      int b = 0;
+      while (age > 0 && b < DTLV_ANALYSIS_AGE_BUCKETS - 1) {
+        age >>= 1;
+        b++;
+      }
+      a->stats[DTLV_ANALYSIS_AGES + b] += pages;
+      a->stats[DTLV_ANALYSIS_FREE_PAGES] += pages;
+      a->stats[DTLV_ANALYSIS_FREE_ENTRIES]++;
+      // pages freed by a txn are reused once no reader is older than it
+      if (txnid >= oldest) a->stats[DTLV_ANALYSIS_HELD_PAGES] += pages;
+    }
+    rc = dtlv_cursor_get(cur, &key, &val, MDB_NEXT);
+  }
+  mdb_cursor_close(cur);
+  return rc == MDB_NOTFOUND ? MDB_SUCCESS : rc;
+}
+
+// opens each named DB in the txn; keys of the main DB that are not DB names
+// are skipped
+static int dtlv_analysis_named(dtlv_env_analysis *a, MDB_txn *txn,
+                               unsigned int flags) {
+  MDB_cursor *cur;
+  int rc = mdb_cursor_open(txn, 1, &cur);
+  if (rc != MDB_SUCCESS) return rc;
+
+  char *name = NULL;
+  size_t cap = 0;
+  MDB_val key, val;
+  rc = dtlv_cursor_get(cur, &key, &val, MDB_FIRST);
+  while (rc == MDB_SUCCESS) {
+    if (key.mv_size > 0 && !memchr(key.mv_data, '\0', key.mv_size)) {
+      if (key.mv_size + 1 > cap) {
+        char *grown = realloc(name, key.mv_size + 1);
+        if (!grown) {
+          rc = ENOMEM;
+          break;
+        }
+        name = grown;
+        cap = key.mv_size + 1;
+      }
+      memcpy(name, key.mv_data, key.mv_size);
+      name[key.mv_size] = '\0';
+
+      MDB_dbi dbi;
+      rc = mdb_dbi_open(txn, name, 0, &dbi);
+      if (rc == MDB_SUCCESS) {
+        rc = dtlv_analysis_add(a, txn, dbi, &key, flags);
+        if (rc != MDB_SUCCESS) break;
+      } else if (rc != MDB_INCOMPATIBLE && rc != MDB_NOTFOUND) {
+        break;
+      }
+    }
+    rc = dtlv_cursor_get(cur, &key, &val, MDB_NEXT);
+  }
+  free(name);
+  mdb_cursor_close(cur);
+  return rc == MDB_NOTFOUND ? MDB_SUCCESS : rc;
+}
+
+int dtlv_env_analyze(dtlv_env_analysis **analysis, MDB_env *env,
+                     unsigned int flags) {
+  if (!analysis || !env) return EINVAL;
+
+  dtlv_env_analysis *a = calloc(1, sizeof(struct dtlv_env_analysis));
+  if (!a) return ENOMEM;
+
+  MDB_txn *txn;
+  int rc = mdb_txn_begin(env, NULL, MDB_RDONLY, &txn);
+  if (rc != MDB_SUCCESS) {
+    free(a);
+    return rc;
+  }
+
+  MDB_envinfo info;
+  MDB_stat st;
+  rc = mdb_env_info(env, &info);
+  if (rc == MDB_SUCCESS) rc = mdb_env_stat(env, &st);
+
+  // the read txn of the analysis is one of the readers
+  dtlv_reader_scan s;
+  memset(&s, 0, sizeof(s));
+  if (rc == MDB_SUCCESS) rc = dtlv_reader_scan_env(env, &s);
+
+  if (rc == MDB_SUCCESS) {
+    uint64_t psize = st.ms_psize;
+    a->stats[DTLV_ANALYSIS_PSIZE] = psize;
+    a->stats[DTLV_ANALYSIS_MAP_PAGES] = psize ? info.me_mapsize / psize : 0;
+    a->stats[DTLV_ANALYSIS_USED_PAGES] = (uint64_t)info.me_last_pgno + 1;
+    a->stats[DTLV_ANALYSIS_LIVE_PAGES] = 2;
+    a->stats[DTLV_ANALYSIS_LAST_TXNID] = mdb_txn_id(txn);
+    a->stats[DTLV_ANALYSIS_OLDEST_TXNID] =
+      s.active ? s.snapshot : DTLV_READER_IDLE;
+
+    rc = dtlv_analysis_add(a, txn, 0, NULL, flags);
+  }
+  if (rc == MDB_SUCCESS) rc = dtlv_analysis_add(a, txn, 1, NULL, flags);
+  if (rc == MDB_SUCCESS) rc = dtlv_analysis_named(a, txn, flags);
+  if (rc == MDB_SUCCESS)
+    rc = dtlv_analysis_free(a, txn, a->stats[DTLV_ANALYSIS_OLDEST_TXNID]);
+
+  if (rc == MDB_SUCCESS && (flags & DTLV_ANALYZE_FILL)) {
+    uint64_t bytes = 0;
+    uint64_t pages = 0;
+    int i;
+    for (i = 0; i < a->n; i++) {
+      bytes += a->dbs[i].stats[DTLV_ANALYSIS_DB_LEAF_BYTES];
+      pages += a->dbs[i].stats[DTLV_ANALYSIS_DB_LEAF_PAGES];
+    }
+    a->stats[DTLV_ANALYSIS_FILL] =
+      dtlv_analysis_fill(bytes, pages, a->stats[DTLV_ANALYSIS_PSIZE]);
+  }
+
+  // aborting also closes the DBs opened by the analysis only
+  mdb_txn_abort(txn);
+  if (rc != MDB_SUCCESS) {
+    dtlv_env_analysis_destroy(a);
+    return rc;
+  }
+  *analysis = a;
+  return MDB_SUCCESS;
+}
+
+void dtlv_env_analysis_env(dtlv_env_analysis *analysis, uint64_t *stats) {
+  if (!analysis || !stats) return;
+  memcpy(stats, analysis->stats, sizeof(analysis->stats));
+}
+
+int dtlv_env_analysis_dbs(dtlv_env_analysis *analysis) {
+  return analysis ? analysis->n : 0;
+}
+
+int dtlv_env_analysis_db(dtlv_env_analysis *analysis, int i, MDB_val *name,
+                         uint64_t *stats) {
+  if (!analysis || !stats || i < 0 || i >= analysis->n) return EINVAL;
+  dtlv_analysis_db *d = &analysis->dbs[i];
+  if (name) {
+    name->mv_data = d->name;
+    name->mv_size = d->name_len;
+  }
+  memcpy(stats, d->stats, sizeof(d->stats));
+  return MDB_SUCCESS;
+}
+
+void dtlv_env_analysis_destroy(dtlv_env_analysis *analysis) {
+  if (!analysis) return;
+  int i;
+  for (i = 0; i < analysis->n; i++) free(analysis->dbs[i].name);
+  free(analysis->dbs);
+  free(analysis);
+}
+
 struct dtlv_llama_embedder {
   struct llama_model *model;
   struct llama_context *ctx;
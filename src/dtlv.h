@@ -22,6 +22,74 @@ extern "C" {
 #define DTLV_TRUE	  255
 #define DTLV_FALSE	256
 
+  /**
+   * Instructions of a filter program. The program is in postfix order: a
+   * test pushes its result on a stack, DTLV_FILTER_AND and DTLV_FILTER_OR
+   * pop two results and push one, and DTLV_FILTER_NOT negates the top one.
+   * A test is encoded as [op u8][target u8][offset u32][len u32][len bytes],
+   * a combinator as [op u8], with integers in native byte order.
+   */
+#define DTLV_FILTER_EQ     1 /**< the bytes from offset to the end equal */
+#define DTLV_FILTER_PREFIX 2 /**< the bytes at offset start with the operand */
+#define DTLV_FILTER_LT     3 /**< the len bytes at offset are less */
+#define DTLV_FILTER_LE     4 /**< the len bytes at offset are less or equal */
+#define DTLV_FILTER_GT     5 /**< the len bytes at offset are greater */
+#define DTLV_FILTER_GE     6 /**< the len bytes at offset are greater or equal */
+#define DTLV_FILTER_AND    7
+#define DTLV_FILTER_OR     8
+#define DTLV_FILTER_NOT    9
+
+  /**
+   * Targets of a filter test.
+   */
+#define DTLV_FILTER_KEY 0
+#define DTLV_FILTER_VAL 1
+
+  /**
+   * The maximal number of results a filter program may have on its stack.
+   */
+#define DTLV_FILTER_MAX_DEPTH 64
+
+  /**
+   * Opaque structure for a compiled filter program.
+   */
+  typedef struct dtlv_filter dtlv_filter;
+
+  /**
+   * A function to compile a filter program, so that iterators can skip the
+   * rows it rejects without returning them. Comparisons are unsigned and
+   * lexicographic; a test on data shorter than its offset fails, and for the
+   * range tests a field shorter than len sorts before a longer one. A
+   * compiled filter is never written to, so it can be shared by iterators
+   * on different threads.
+   *
+   * @param filter The address where the filter will be stored.
+   * @param prog The program, copied.
+   * @param len The length of the program in bytes.
+   * @return EINVAL when the program is malformed or needs a stack deeper than
+   *         DTLV_FILTER_MAX_DEPTH, 0 on success, or another non-zero error
+   *         value.
+   */
+  int dtlv_filter_create(dtlv_filter **filter, const void *prog, size_t len);
+
+  /**
+   * A function to run a filter on a key and a value.
+   *
+   * @param filter The filter handle.
+   * @param key The key.
+   * @param val The value.
+   * @return DTLV_TRUE if the filter accepts them, DTLV_FALSE otherwise.
+   */
+  int dtlv_filter_match(dtlv_filter *filter, MDB_val *key, MDB_val *val);
+
+  /**
+   * A function to release memory of the filter. Iterators using it must be
+   * destroyed or given another filter first.
+   *
+   * @param filter The filter handle.
+   */
+  void dtlv_filter_destroy(dtlv_filter *filter);
+
   /**
    * Opaque structure for a iterator that iterates by keys only.
    */
@@ -46,6 +114,27 @@ extern "C" {
                            int forward, int start, int end,
                            MDB_val *start_key, MDB_val *end_key);
 
+  /**
+   * A function to re-arm a key iterator with a new cursor, holders and
+   * bounds, as if it was just created, without allocating a new one. The
+   * filter is kept.
+   *
+   * @param iter The iterator handle.
+   * @param cur The cursor.
+   * @param key Holder for the key.
+   * @param val Holder for the value.
+   * @param forward iterate forward (DTLV_TRUE) or backward (DTLV_FALSE).
+   * @param start if to include (DTLV_TRUE) or not (DTLV_FALSE) start_key.
+   * @param end if to include (DTLV_TRUE) or not (DTLV_FALSE) end_key.
+   * @param start_key The start key, could be null
+   * @param end_key The end key, could be null.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_key_iter_reset(dtlv_key_iter *iter,
+                          MDB_cursor *cur, MDB_val *key, MDB_val *val,
+                          int forward, int start, int end,
+                          MDB_val *start_key, MDB_val *end_key);
+
   /**
    * A function to indicate if the key iterator has the next item. If it does,
    * the key will be in the key argument passed to dtlv_key_iter_create, same
@@ -56,6 +145,43 @@ extern "C" {
    */
   int dtlv_key_iter_has_next(dtlv_key_iter *iter);
 
+  /**
+   * A function to fill a caller-owned buffer with the next items of the key
+   * iterator, so that many items are fetched in one call. Each item is
+   * written as a record: a 4 byte key length, the key bytes, then, if
+   * with_val is DTLV_TRUE, a 4 byte value length and the value bytes.
+   * Lengths are unsigned 32 bit integers in native byte order.
+   *
+   * Items come in the same order and within the same bounds as those of
+   * dtlv_key_iter_has_next, and the two functions can be mixed. An item that
+   * does not fit in the buffer is kept for the next call.
+   *
+   * @param iter The iterator handle.
+   * @param buf The caller-owned buffer.
+   * @param buf_len The capacity of the buffer in bytes.
+   * @param max_items The maximal number of items to write.
+   * @param with_val Write values too (DTLV_TRUE) or not (DTLV_FALSE).
+   * @param used If not NULL, receives the number of bytes written, or the
+   *             number of bytes the next item needs when -EMSGSIZE is returned.
+   * @return The number of items written, 0 when the iterator is exhausted,
+   *         or a negative error code. -EMSGSIZE if the next item alone does
+   *         not fit in the buffer.
+   */
+  int dtlv_key_iter_next_batch(dtlv_key_iter *iter, void *buf, size_t buf_len,
+                               int max_items, int with_val, size_t *used);
+
+  /**
+   * A function to set the filter of a key iterator. Keys it rejects are
+   * skipped by dtlv_key_iter_has_next and dtlv_key_iter_next_batch. The
+   * value tested is the one in the val holder.
+   *
+   * @param iter The iterator handle.
+   * @param filter The filter, not copied, or null to remove the filter. It
+   *               may be set on several iterators, also of other threads.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_key_iter_set_filter(dtlv_key_iter *iter, dtlv_filter *filter);
+
   /**
    * A function to release memory of the iterator.
    *
@@ -63,6 +189,70 @@ extern "C" {
   */
   void dtlv_key_iter_destroy(dtlv_key_iter *iter);
 
+  /**
+   * Opaque structure for a key iterator over many key ranges.
+   */
+  typedef struct dtlv_multi_range_iter dtlv_multi_range_iter;
+
+  /**
+   * A function to create an iterator that walks a list of key ranges on one
+   * cursor, e.g. for IN-lists or index nested loop joins, instead of one key
+   * iterator per range. The ranges must be disjoint and sorted in the
+   * iteration order, i.e. by start key, ascending when forward, descending
+   * when backward, where the start key of a backward range is its larger
+   * bound, as in the key iterator. The cursor never moves back, and it only
+   * seeks when the next range does not start at or before the key that ends
+   * the previous range.
+   *
+   * The ranges are copied, but not the key bytes, which must remain valid
+   * while iterating.
+   *
+   * @param iter The address where the iterator will be stored.
+   * @param cur The cursor.
+   * @param key Holder for the key.
+   * @param val Holder for the value.
+   * @param forward iterate forward (DTLV_TRUE) or backward (DTLV_FALSE).
+   * @param n The number of ranges.
+   * @param starts For each range, if to include (DTLV_TRUE) or not
+   *               (DTLV_FALSE) its start key. NULL to include all.
+   * @param ends For each range, if to include (DTLV_TRUE) or not
+   *             (DTLV_FALSE) its end key. NULL to include all.
+   * @param start_keys The start keys, an array of n. A key with NULL mv_data
+   *                   means the range is unbounded at the start.
+   * @param end_keys The end keys, an array of n. A key with NULL mv_data
+   *                 means the range is unbounded at the end.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_multi_range_iter_create(dtlv_multi_range_iter **iter,
+                                   MDB_cursor *cur, MDB_val *key, MDB_val *val,
+                                   int forward, int n, int *starts, int *ends,
+                                   MDB_val *start_keys, MDB_val *end_keys);
+
+  /**
+   * A function to indicate if the multi range iterator has the next item. If
+   * it does, the key will be in the key argument passed to
+   * dtlv_multi_range_iter_create, same with value.
+   *
+   * @param iter The iterator handle.
+   * @return DTLV_TRUE on true, DTLV_FALSE on false, or an error code.
+   */
+  int dtlv_multi_range_iter_has_next(dtlv_multi_range_iter *iter);
+
+  /**
+   * A function to return the index of the range that the current item is in.
+   *
+   * @param iter The iterator handle.
+   * @return The range index.
+   */
+  int dtlv_multi_range_iter_range(dtlv_multi_range_iter *iter);
+
+  /**
+   * A function to release memory of the iterator.
+   *
+   * @param iter The iterator handle.
+   */
+  void dtlv_multi_range_iter_destroy(dtlv_multi_range_iter *iter);
+
   /**
    * Opaque structure for a rank based key sample iterator.
    */
@@ -91,6 +281,30 @@ extern "C" {
                                        MDB_val *val, MDB_val *start_key,
                                        MDB_val *end_key);
 
+  /**
+   * Re-arm a rank based key sample iterator with new indices, cursor and
+   * bounds, as if it was just created. The indices are copied into the
+   * existing array when it is large enough, so resetting with no more
+   * samples than before does not allocate. On failure, the iterator has
+   * no more samples.
+   *
+   * @param iter The iterator handle.
+   * @param indices The array of strictly increasing sample indices relative to
+   *                the range start.
+   * @param samples The number of indices.
+   * @param cur The cursor.
+   * @param key Holder for the key.
+   * @param val Holder for the value.
+   * @param start_key Optional inclusive start key, may be NULL.
+   * @param end_key Optional inclusive end key, may be NULL.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_key_rank_sample_iter_reset(dtlv_key_rank_sample_iter *iter,
+                                      size_t *indices, int samples,
+                                      MDB_cursor *cur, MDB_val *key,
+                                      MDB_val *val, MDB_val *start_key,
+                                      MDB_val *end_key);
+
   /**
    * Advance the rank based key sample iterator.
    *
@@ -138,6 +352,34 @@ extern "C" {
                             int vforward, int vstart, int vend,
                             MDB_val *start_val, MDB_val *end_val);
 
+  /**
+   * A function to re-arm a list iterator with a new cursor, holders and
+   * bounds, as if it was just created, without allocating a new one. The
+   * filter is kept.
+   *
+   * @param iter The iterator handle.
+   * @param cur The cursor.
+   * @param key Holder for the key.
+   * @param val Holder for the value.
+   * @param kforward iterate keys forward (DTLV_TRUE) or not.
+   * @param kstart if to include (DTLV_TRUE) or not the start_key.
+   * @param kend if to include (DTLV_TRUE) or not the end_key.
+   * @param start_key The start key.
+   * @param end_key The end key.
+   * @param vforward iterate values forward (DTLV_TRUE) or not.
+   * @param vstart if to include (DTLV_TRUE) or not the start_val.
+   * @param vend if to include (DTLV_TRUE) or not the end_val.
+   * @param start_val The start value.
+   * @param end_val The end value.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_list_iter_reset(dtlv_list_iter *iter,
+                           MDB_cursor *cur, MDB_val *key, MDB_val *val,
+                           int kforward, int kstart, int kend,
+                           MDB_val *start_key, MDB_val *end_key,
+                           int vforward, int vstart, int vend,
+                           MDB_val *start_val, MDB_val *end_val);
+
   /**
    * A function to indicate if the list iterator has the next item. If it
    * does, the key will be in the key argument passed to dtlv_list_iter_create,
@@ -148,6 +390,17 @@ extern "C" {
    */
   int dtlv_list_iter_has_next(dtlv_list_iter *iter);
 
+  /**
+   * A function to set the filter of a list iterator. Key value pairs it
+   * rejects are skipped by dtlv_list_iter_has_next.
+   *
+   * @param iter The iterator handle.
+   * @param filter The filter, not copied, or null to remove the filter. It
+   *               may be set on several iterators, also of other threads.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_list_iter_set_filter(dtlv_list_iter *iter, dtlv_filter *filter);
+
   /**
    * A function to destroy the list iterator.
    *
@@ -157,7 +410,7 @@ extern "C" {
 
   /**
    * Opaque structure for a list value iterator that iterates values
-   * (forward only currently) of keys for a dupsort DBI.
+   * of keys for a dupsort DBI.
    */
   typedef struct dtlv_list_val_iter dtlv_list_val_iter;
 
@@ -176,6 +429,39 @@ extern "C" {
                                 MDB_cursor *cur, MDB_val *key, MDB_val *val,
                                 MDB_val *start_val, MDB_val *end_val);
 
+  /**
+   * A function to re-arm a list values iterator with a new cursor, holders
+   * and bounds, as if it was just created, without allocating a new one.
+   * The order is set back to forward and unlimited.
+   *
+   * @param iter The iterator handle.
+   * @param cur The cursor.
+   * @param key Holder for the key.
+   * @param val Holder for the value.
+   * @param start_val Inclusive start value bound (optional).
+   * @param end_val Inclusive end value bound (optional).
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_list_val_iter_reset(dtlv_list_val_iter *iter,
+                               MDB_cursor *cur, MDB_val *key, MDB_val *val,
+                               MDB_val *start_val, MDB_val *end_val);
+
+  /**
+   * A function to set the direction and the maximal number of values of a
+   * list values iterator, taking effect at the next seek. The iterator is
+   * forward and unlimited by default. Backward, iteration starts from
+   * start_val, or from the last value, and ends at end_val, so the bounds
+   * are swapped compared to forward; e.g. the latest N values of a key are
+   * returned with forward DTLV_FALSE, limit N and no bounds.
+   *
+   * @param iter The iterator handle.
+   * @param forward iterate forward (DTLV_TRUE) or backward (DTLV_FALSE).
+   * @param limit The maximal number of values after a seek, 0 for no limit.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_list_val_iter_set_order(dtlv_list_val_iter *iter, int forward,
+                                   size_t limit);
+
   /**
    * A function to seek to a key.
    *
@@ -220,6 +506,35 @@ extern "C" {
                                      MDB_cursor *cur,
                                      MDB_val *key, MDB_val *val);
 
+  /**
+   * A function to re-arm a list values full iterator with a new cursor and
+   * holders, as if it was just created, without allocating a new one. The
+   * order is set back to forward and unlimited.
+   *
+   * @param iter The iterator handle.
+   * @param cur The cursor.
+   * @param key Holder for the key.
+   * @param val Holder for the value.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_list_val_full_iter_reset(dtlv_list_val_full_iter *iter,
+                                    MDB_cursor *cur,
+                                    MDB_val *key, MDB_val *val);
+
+  /**
+   * A function to set the direction and the maximal number of values of a
+   * list values full iterator, taking effect at the next seek. The iterator
+   * is forward and unlimited by default. Backward, the values are returned
+   * from the last one, from the dup list array when available.
+   *
+   * @param iter The iterator handle.
+   * @param forward iterate forward (DTLV_TRUE) or backward (DTLV_FALSE).
+   * @param limit The maximal number of values after a seek, 0 for no limit.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_list_val_full_iter_set_order(dtlv_list_val_full_iter *iter,
+                                        int forward, size_t limit);
+
   /**
    * A function to seek to a key.
    *
@@ -238,6 +553,54 @@ extern "C" {
    */
   int dtlv_list_val_full_iter_has_next(dtlv_list_val_full_iter *iter);
 
+  /**
+   * A function to fill a caller-owned buffer with the next values of the key
+   * sought by the iterator. Each value is written as a record: a 4 byte
+   * length, an unsigned 32 bit integer in native byte order, followed by the
+   * value bytes. When the duplicates of the key are available as an array,
+   * i.e. the fast path of dtlv_list_val_full_iter_seek, this is a series of
+   * memcpy without any cursor movement.
+   *
+   * It continues from where dtlv_list_val_full_iter_has_next stops, and the
+   * two functions can be mixed. A value that does not fit in the buffer is
+   * kept for the next call.
+   *
+   * @param iter The iterator handle.
+   * @param buf The caller-owned buffer.
+   * @param buf_len The capacity of the buffer in bytes.
+   * @param max_items The maximal number of values to write.
+   * @param used If not NULL, receives the number of bytes written, or the
+   *             number of bytes the next value needs when -EMSGSIZE is
+   *             returned.
+   * @return The number of values written, 0 when all values of the key are
+   *         consumed, or a negative error code. -EMSGSIZE if the next value
+   *         alone does not fit in the buffer.
+   */
+  int dtlv_list_val_full_iter_next_batch(dtlv_list_val_full_iter *iter,
+                                         void *buf, size_t buf_len,
+                                         int max_items, size_t *used);
+
+  /**
+   * A function to seek to a key and write all its values, starting from the
+   * first one, into a caller-owned buffer in one call. The record format is
+   * the same as that of dtlv_list_val_full_iter_next_batch. If the buffer
+   * cannot hold all the values, the rest can be fetched with
+   * dtlv_list_val_full_iter_next_batch.
+   *
+   * @param iter The iterator handle.
+   * @param k The key to seek.
+   * @param buf The caller-owned buffer.
+   * @param buf_len The capacity of the buffer in bytes.
+   * @param used If not NULL, receives the number of bytes written, or the
+   *             number of bytes the first value needs when -EMSGSIZE is
+   *             returned.
+   * @return The number of values written, 0 when the key is not found, or a
+   *         negative error code.
+   */
+  int dtlv_list_val_full_iter_seek_batch(dtlv_list_val_full_iter *iter,
+                                         MDB_val *k, void *buf, size_t buf_len,
+                                         size_t *used);
+
   /**
    * A function to destroy the list val full iterator.
    *
@@ -281,6 +644,25 @@ extern "C" {
       MDB_val *key, MDB_val *val, int kstart, int kend,
       MDB_val *start_key, MDB_val *end_key);
 
+  /**
+   * Re-arm the full-value key range iterator with a new cursor, holders and
+   * bounds, as if it was just created, without allocating a new one.
+   *
+   * @param iter The iterator handle.
+   * @param cur The cursor.
+   * @param key Holder for the key.
+   * @param val Holder for the value.
+   * @param kstart if to include (DTLV_TRUE) or not the start_key.
+   * @param kend if to include (DTLV_TRUE) or not the end_key.
+   * @param start_key Optional start key.
+   * @param end_key Optional end key.
+   * @return MDB_SUCCESS or an error code.
+   */
+  int dtlv_list_key_range_full_val_iter_reset(
+      dtlv_list_key_range_full_val_iter *iter, MDB_cursor *cur,
+      MDB_val *key, MDB_val *val, int kstart, int kend,
+      MDB_val *start_key, MDB_val *end_key);
+
   /**
    * Advance the full-value key range iterator.
    *
@@ -324,6 +706,30 @@ extern "C" {
                                         MDB_val *val, MDB_val *start_key,
                                         MDB_val *end_key);
 
+  /**
+   * Re-arm a rank based list sample iterator with new indices, cursor and
+   * bounds, as if it was just created. The indices are copied into the
+   * existing array when it is large enough, so resetting with no more
+   * samples than before does not allocate. On failure, the iterator has
+   * no more samples.
+   *
+   * @param iter The iterator handle.
+   * @param indices The array of strictly increasing sample indices relative to
+   *                the range start.
+   * @param samples The number of sample indices.
+   * @param cur The cursor.
+   * @param key Holder for the key.
+   * @param val Holder for the value.
+   * @param start_key Optional inclusive start key.
+   * @param end_key Optional inclusive end key.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_list_rank_sample_iter_reset(dtlv_list_rank_sample_iter *iter,
+                                       size_t *indices, int samples,
+                                       MDB_cursor *cur, MDB_val *key,
+                                       MDB_val *val, MDB_val *start_key,
+                                       MDB_val *end_key);
+
   /**
    * Advance the rank based sample iterator.
    *
@@ -339,6 +745,1076 @@ extern "C" {
    */
   void dtlv_list_rank_sample_iter_destroy(dtlv_list_rank_sample_iter *iter);
 
+  /**
+   * A function to split a key range into partitions of about the same number
+   * of entries, so that a large scan can be fanned out to several threads,
+   * each with its own read transaction and iterator. It returns up to
+   * parts - 1 split keys at evenly spaced ranks, and requires a counted DB.
+   * Partition 0 covers [start_key, splits[0]), partition i covers
+   * [splits[i - 1], splits[i]), and the last one covers
+   * [splits[n - 1], end_key]. On dupsort DBs ranks are over key/value pairs,
+   * but the values of one key are never split apart, so fewer splits may be
+   * returned than asked for.
+   *
+   * The split keys point into the memory of the transaction of the cursor,
+   * and must be copied before it ends.
+   *
+   * @param cur The cursor.
+   * @param start_key Optional inclusive start key, may be NULL.
+   * @param end_key Optional inclusive end key, may be NULL.
+   * @param parts The desired number of partitions, at least 1.
+   * @param splits The array of at least parts - 1 holders for the split keys.
+   * @param n The address where the number of split keys will be stored.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_partition_range(MDB_cursor *cur, MDB_val *start_key,
+                           MDB_val *end_key, int parts, MDB_val *splits,
+                           int *n);
+
+  /**
+   * How dtlv_aggregate interprets the aggregated data.
+   */
+#define DTLV_AGG_COUNT  0 /**< only count, nothing is decoded */
+#define DTLV_AGG_I64_LE 1 /**< 8 byte little-endian signed integer */
+#define DTLV_AGG_I64_BE 2 /**< 8 byte big-endian signed integer */
+#define DTLV_AGG_F64_LE 3 /**< 8 byte little-endian IEEE double */
+#define DTLV_AGG_F64_BE 4 /**< 8 byte big-endian IEEE double */
+
+  /**
+   * The maximal number of threads of dtlv_aggregate_parallel.
+   */
+#define DTLV_AGG_MAX_THREADS 32
+
+  /**
+   * The result of an aggregation. The integer fields are set for the integer
+   * decodings, and the double fields for the double decodings. Minimum and
+   * maximum are only meaningful when decoded is not 0.
+   */
+  typedef struct dtlv_agg_result {
+    uint64_t count;   /**< number of entries, i.e. key/value pairs */
+    uint64_t keys;    /**< number of distinct keys */
+    uint64_t decoded; /**< number of entries with a decodable number */
+    int64_t isum;     /**< sum, wraps around on overflow */
+    int64_t imin;
+    int64_t imax;
+    double dsum;
+    double dmin;
+    double dmax;
+  } dtlv_agg_result;
+
+  /**
+   * A function to aggregate a key range without returning the rows. The
+   * number is read from 8 bytes at offset of the key or of the value of each
+   * entry; entries that are too short are counted but not decoded. On dupsort
+   * DBIs, when nothing or only the key is decoded, the values are not read.
+   *
+   * @param cur The cursor.
+   * @param start_key Optional inclusive start key, may be NULL.
+   * @param end_key Optional inclusive end key, may be NULL.
+   * @param decode One of the DTLV_AGG_* decodings.
+   * @param from_key Decode the key (DTLV_TRUE) or the value (DTLV_FALSE).
+   * @param offset The byte offset of the number.
+   * @param result The address where the result will be stored.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_aggregate(MDB_cursor *cur, MDB_val *start_key, MDB_val *end_key,
+                     int decode, int from_key, size_t offset,
+                     dtlv_agg_result *result);
+
+  /**
+   * A function to aggregate a key range with up to threads threads. The
+   * range is split by dtlv_partition_range, so a counted DB is required when
+   * threads is more than 1, and threads is capped at DTLV_AGG_MAX_THREADS.
+   * The calling thread scans the first partition with the cursor, the others
+   * are scanned by a small pool of threads shared by all calls, each in its
+   * own read-only transaction, so the environment needs enough free reader
+   * slots. A partition the pool cannot take, or cannot scan in the snapshot
+   * of the transaction of the cursor, e.g. when a newer one was committed
+   * since or the DBI is not yet visible to other transactions, is scanned by
+   * the calling thread, so the result is always that of the snapshot of the
+   * cursor.
+   *
+   * @param cur The cursor, in a read-only transaction.
+   * @param start_key Optional inclusive start key, may be NULL.
+   * @param end_key Optional inclusive end key, may be NULL.
+   * @param decode One of the DTLV_AGG_* decodings.
+   * @param from_key Decode the key (DTLV_TRUE) or the value (DTLV_FALSE).
+   * @param offset The byte offset of the number.
+   * @param threads The maximal number of threads, at least 1.
+   * @param result The address where the result will be stored.
+   * @return A non-zero error value on failure and 0 on success. EINVAL if
+   * the transaction of the cursor is not read-only.
+   */
+  int dtlv_aggregate_parallel(MDB_cursor *cur, MDB_val *start_key,
+                              MDB_val *end_key, int decode, int from_key,
+                              size_t offset, int threads,
+                              dtlv_agg_result *result);
+
+  /**
+   * Opaque structure for a sort-merge join iterator over two cursors.
+   */
+  typedef struct dtlv_merge_join_iter dtlv_merge_join_iter;
+
+  /**
+   * A function to create an iterator that joins two DBIs on their keys, i.e.
+   * it returns only the keys present in both, in forward order. The side that
+   * is behind seeks to the key of the other side with MDB_SET_RANGE, so non
+   * matching regions are skipped without being read. The DBIs must have the
+   * same key order, and the key range applies to both.
+   *
+   * @param iter The address where the iterator will be stored.
+   * @param cur1 The cursor of the first DBI.
+   * @param cur2 The cursor of the second DBI.
+   * @param key Holder for the matching key.
+   * @param val1 Holder for the value of the first DBI.
+   * @param val2 Holder for the value of the second DBI.
+   * @param dups For dupsort DBIs, return every pair of values of a matching
+   *             key (DTLV_TRUE), or only the first value of each side
+   *             (DTLV_FALSE). A side that is not dupsort gives its single
+   *             value to every pair.
+   * @param start if to include (DTLV_TRUE) or not (DTLV_FALSE) start_key.
+   * @param end if to include (DTLV_TRUE) or not (DTLV_FALSE) end_key.
+   * @param start_key The start key, could be null.
+   * @param end_key The end key, could be null.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_merge_join_iter_create(dtlv_merge_join_iter **iter,
+                                  MDB_cursor *cur1, MDB_cursor *cur2,
+                                  MDB_val *key, MDB_val *val1, MDB_val *val2,
+                                  int dups, int start, int end,
+                                  MDB_val *start_key, MDB_val *end_key);
+
+  /**
+   * A function to indicate if the merge join iterator has the next item. If
+   * it does, the key and the values will be in the holders passed to
+   * dtlv_merge_join_iter_create.
+   *
+   * @param iter The iterator handle.
+   * @return DTLV_TRUE on true, DTLV_FALSE on false, or an error code.
+   */
+  int dtlv_merge_join_iter_has_next(dtlv_merge_join_iter *iter);
+
+  /**
+   * A function to release memory of the iterator.
+   *
+   * @param iter The iterator handle.
+   */
+  void dtlv_merge_join_iter_destroy(dtlv_merge_join_iter *iter);
+
+  /**
+   * Opaque structure for a leapfrog join iterator over N cursors.
+   */
+  typedef struct dtlv_leapfrog_iter dtlv_leapfrog_iter;
+
+  /**
+   * A function to create an iterator that returns the intersection of N
+   * sorted inputs in forward order, using the leapfrog join: the cursor with
+   * the smallest item seeks to the largest item of the others, in turn,
+   * until all cursors are on the same item. This is one level of a leapfrog
+   * triejoin; a nested level is driven with dtlv_leapfrog_iter_reset.
+   *
+   * When keys is null, the inputs are the keys of the DBIs of the cursors,
+   * compared with mdb_cmp. Otherwise, the inputs are the duplicate lists of
+   * keys[i] in the DBI of cursor i, compared with mdb_dcmp, and the DBIs
+   * must be dupsort. The order of the DBI of the first cursor is used for
+   * all of them.
+   *
+   * @param iter The address where the iterator will be stored.
+   * @param n The number of cursors, at least 1.
+   * @param curs The array of cursors, copied.
+   * @param keys The array of n keys of the duplicate lists, copied, or null.
+   * @param val Holder for the matching key or value.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_leapfrog_iter_create(dtlv_leapfrog_iter **iter, int n,
+                                MDB_cursor **curs, MDB_val *keys,
+                                MDB_val *val);
+
+  /**
+   * A function to indicate if the leapfrog iterator has the next item. If
+   * it does, the item will be in the val holder passed to
+   * dtlv_leapfrog_iter_create.
+   *
+   * @param iter The iterator handle.
+   * @return DTLV_TRUE on true, DTLV_FALSE on false, or an error code.
+   */
+  int dtlv_leapfrog_iter_has_next(dtlv_leapfrog_iter *iter);
+
+  /**
+   * A function to move to the first common item that is equal to or greater
+   * than the target. Cursors are never moved backwards, so a target before
+   * the current item returns the current item. The following
+   * dtlv_leapfrog_iter_has_next moves past the item found.
+   *
+   * @param iter The iterator handle.
+   * @param target The item to seek.
+   * @return DTLV_TRUE on found, DTLV_FALSE when not found, or an error code.
+   */
+  int dtlv_leapfrog_iter_seek(dtlv_leapfrog_iter *iter, MDB_val *target);
+
+  /**
+   * A function to restart the iterator, e.g. for the next binding of an
+   * outer level of a triejoin, without allocating a new one.
+   *
+   * @param iter The iterator handle.
+   * @param keys The array of n new keys of the duplicate lists, copied, or
+   *             null to keep the current ones.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_leapfrog_iter_reset(dtlv_leapfrog_iter *iter, MDB_val *keys);
+
+  /**
+   * A function to release memory of the iterator.
+   *
+   * @param iter The iterator handle.
+   */
+  void dtlv_leapfrog_iter_destroy(dtlv_leapfrog_iter *iter);
+
+  /**
+   * Opaque structure for a skip-scan iterator over composite keys.
+   */
+  typedef struct dtlv_skip_scan_iter dtlv_skip_scan_iter;
+
+  /**
+   * A function to create an iterator that returns the keys whose suffix,
+   * i.e. the bytes after the first prefix_len bytes, is within a range,
+   * whatever the prefix is. For each distinct prefix, the iterator seeks to
+   * the prefix followed by lo, and after the last key within hi, seeks to the
+   * next prefix, both with MDB_SET_RANGE, so the cost depends on the number of
+   * distinct prefixes rather than on the number of keys. The DBI must use
+   * the default lexicographic key order. Iteration is forward, each key is
+   * returned once on dupsort DBIs, and keys shorter than prefix_len are
+   * skipped.
+   *
+   * @param iter The address where the iterator will be stored.
+   * @param cur The cursor.
+   * @param key Holder for the key.
+   * @param val Holder for the value.
+   * @param prefix_len The length of the prefix in bytes, more than 0.
+   * @param lo The inclusive lower bound of the suffix, could be null.
+   * @param hi The inclusive upper bound of the suffix, could be null.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_skip_scan_iter_create(dtlv_skip_scan_iter **iter, MDB_cursor *cur,
+                                 MDB_val *key, MDB_val *val,
+                                 size_t prefix_len, MDB_val *lo, MDB_val *hi);
+
+  /**
+   * A function to indicate if the skip-scan iterator has the next item. If
+   * it does, the key and the value will be in the holders passed to
+   * dtlv_skip_scan_iter_create.
+   *
+   * @param iter The iterator handle.
+   * @return DTLV_TRUE on true, DTLV_FALSE on false, or an error code.
+   */
+  int dtlv_skip_scan_iter_has_next(dtlv_skip_scan_iter *iter);
+
+  /**
+   * A function to release memory of the iterator.
+   *
+   * @param iter The iterator handle.
+   */
+  void dtlv_skip_scan_iter_destroy(dtlv_skip_scan_iter *iter);
+
+  /**
+   * Opaque structure for a pool of read-only transactions.
+   */
+  typedef struct dtlv_reader_pool dtlv_reader_pool;
+
+  /**
+   * Opaque structure for a pooled read-only transaction and its cursors.
+   */
+  typedef struct dtlv_reader dtlv_reader;
+
+  /**
+   * A function to create a pool of read-only transactions, each with a
+   * cursor opened on every one of the given DBIs. Released readers are kept
+   * with mdb_txn_reset, and acquired ones are brought back with
+   * mdb_txn_renew and mdb_cursor_renew, so neither a transaction nor a
+   * cursor is allocated, and no reader slot is taken under the lock, when
+   * an idle reader is available. As a reader may be released and acquired
+   * by different threads, the env must be opened with MDB_NOTLS (or
+   * MDB_NOLOCK).
+   *
+   * @param pool The address where the pool will be stored.
+   * @param env The env handle.
+   * @param n The number of DBIs.
+   * @param dbis The array of DBIs to open cursors on, copied.
+   * @param capacity The maximal number of idle readers kept. More readers
+   *                 may be acquired at the same time, and those released
+   *                 beyond the capacity are closed.
+   * @return A non-zero error value on failure and 0 on success. EINVAL if
+   *         the env has neither MDB_NOTLS nor MDB_NOLOCK.
+   */
+  int dtlv_reader_pool_create(dtlv_reader_pool **pool, MDB_env *env,
+                              int n, MDB_dbi *dbis, int capacity);
+
+  /**
+   * A function to get a reader from the pool, renewed to the latest
+   * snapshot, or a new one if none is idle.
+   *
+   * @param pool The pool handle.
+   * @param reader The address where the reader will be stored.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_reader_pool_acquire(dtlv_reader_pool *pool, dtlv_reader **reader);
+
+  /**
+   * A function to give a reader back to the pool. Its transaction is reset,
+   * so the snapshot is released right away. The reader and its cursors must
+   * not be used after this call.
+   *
+   * @param pool The pool handle.
+   * @param reader The reader handle.
+   */
+  void dtlv_reader_pool_release(dtlv_reader_pool *pool, dtlv_reader *reader);
+
+  /**
+   * A function to get the read-only transaction of a reader. It must not be
+   * committed or aborted by the caller.
+   *
+   * @param reader The reader handle.
+   * @return The transaction handle.
+   */
+  MDB_txn *dtlv_reader_txn(dtlv_reader *reader);
+
+  /**
+   * A function to get a cursor of a reader. It must not be closed by the
+   * caller.
+   *
+   * @param pool The pool handle.
+   * @param reader The reader handle.
+   * @param i The index of the DBI in the array passed to
+   *          dtlv_reader_pool_create.
+   * @return The cursor handle, or null if i is out of range.
+   */
+  MDB_cursor *dtlv_reader_cursor(dtlv_reader_pool *pool, dtlv_reader *reader,
+                                 int i);
+
+  /**
+   * A function to indicate if a write transaction has been committed since
+   * the snapshot of the reader was taken.
+   *
+   * @param reader The reader handle.
+   * @return DTLV_TRUE if stale, DTLV_FALSE if not, or an error code.
+   */
+  int dtlv_reader_is_stale(dtlv_reader *reader);
+
+  /**
+   * A function to move a long-held reader to the latest snapshot if it is
+   * stale, renewing its transaction and cursors in place. Cursor positions
+   * are lost.
+   *
+   * @param pool The pool handle.
+   * @param reader The reader handle.
+   * @return DTLV_TRUE if renewed, DTLV_FALSE if already on the latest
+   *         snapshot, or an error code, after which the reader may only be
+   *         released.
+   */
+  int dtlv_reader_refresh(dtlv_reader_pool *pool, dtlv_reader *reader);
+
+  /**
+   * A function to close the idle readers and release memory of the pool.
+   * All readers must have been released.
+   *
+   * @param pool The pool handle.
+   */
+  void dtlv_reader_pool_destroy(dtlv_reader_pool *pool);
+
+  /**
+   * Operations of a write batch. A batch is a sequence of operations, each
+   * encoded as [op u8][dbi u32][flags u32][key size u32][key]
+   * [value size u32][value], with integers in native byte order.
+   */
+#define DTLV_WRITE_PUT 1 /**< mdb_put with the flags */
+#define DTLV_WRITE_DEL 2 /**< mdb_del, of the value if its size is not 0 */
+
+  /**
+   * Opaque structure for a write combiner.
+   */
+  typedef struct dtlv_write_combiner dtlv_write_combiner;
+
+  /**
+   * A function to create a write combiner, i.e. a writer thread that commits
+   * the batches submitted by many threads together, in one write transaction
+   * and so with one sync, instead of one transaction per batch. Each batch
+   * is applied in a nested transaction, so a failing batch does not fail the
+   * others. When the env has MDB_WRITEMAP, with which LMDB does not nest
+   * write transactions, a transaction with a failing batch is redone
+   * without it instead.
+   *
+   * No other write transaction of the env should be used while the combiner
+   * exists, or they wait for each other.
+   *
+   * @param combiner The address where the combiner will be stored.
+   * @param env The env handle.
+   * @param max_batches The maximal number of batches in one transaction, 0
+   *                    for no limit.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_write_combiner_create(dtlv_write_combiner **combiner, MDB_env *env,
+                                 int max_batches);
+
+  /**
+   * A function to submit a batch and wait until it is committed. The batch
+   * is applied after the batches submitted before it. Deleting a key or a
+   * value that does not exist is not an error.
+   *
+   * @param combiner The combiner handle.
+   * @param ops The encoded operations, not copied, which must stay valid
+   *            until the function returns.
+   * @param len The length of ops in bytes.
+   * @return 0 when the batch is committed, otherwise the error of the batch,
+   *         e.g. EINVAL for a malformed batch, or of the commit.
+   */
+  int dtlv_write_combiner_submit(dtlv_write_combiner *combiner,
+                                 const void *ops, size_t len);
+
+  /**
+   * A function to get the number of transactions committed and of batches
+   * processed by the combiner, so the average group size is batches / commits.
+   *
+   * @param combiner The combiner handle.
+   * @param commits If not NULL, receives the number of transactions.
+   * @param batches If not NULL, receives the number of batches.
+   */
+  void dtlv_write_combiner_stats(dtlv_write_combiner *combiner,
+                                 uint64_t *commits, uint64_t *batches);
+
+  /**
+   * A function to stop the writer thread, after the batches already
+   * submitted are committed, and release memory of the combiner. No batch
+   * may be submitted once this is called.
+   *
+   * @param combiner The combiner handle.
+   */
+  void dtlv_write_combiner_destroy(dtlv_write_combiner *combiner);
+
+  /**
+   * Opaque structure for a bulk loader.
+   */
+  typedef struct dtlv_bulk_loader dtlv_bulk_loader;
+
+  /**
+   * A function to create a loader that writes many records into a DBI in
+   * the order of the DBI, so that LMDB can append them with MDB_APPEND or
+   * MDB_APPENDDUP, filling pages sequentially instead of splitting them at
+   * random. Records are buffered in memory, sorted with the comparators of
+   * the DBI, and spilled as sorted runs to temporary files when the memory
+   * budget is exceeded; dtlv_bulk_loader_finish merges the runs and writes
+   * them. The temporary files are in the temp directory of the system, e.g.
+   * TMP on Windows, and deleted when closed. The loader is for one thread.
+   *
+   * @param loader The address where the loader will be stored.
+   * @param env The env handle.
+   * @param dbi The DBI to load, already created.
+   * @param budget The maximal number of bytes of records buffered in memory,
+   *               0 for no limit, i.e. no spilling.
+   * @param chunk The number of records written per committed transaction, 0
+   *              to write all of them in one transaction.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_bulk_loader_create(dtlv_bulk_loader **loader, MDB_env *env,
+                              MDB_dbi dbi, size_t budget, size_t chunk);
+
+  /**
+   * A function to add records in any order. The records are encoded as in
+   * dtlv_key_iter_next_batch with values: a 4 byte key length, the key
+   * bytes, a 4 byte value length and the value bytes, with lengths in native
+   * byte order. Nothing is written to the DBI until
+   * dtlv_bulk_loader_finish.
+   *
+   * @param loader The loader handle.
+   * @param records The encoded records, copied.
+   * @param len The length of records in bytes.
+   * @return A non-zero error value on failure and 0 on success. EINVAL if
+   *         the records are malformed, in which case none of them is added.
+   */
+  int dtlv_bulk_loader_add(dtlv_bulk_loader *loader, const void *records,
+                           size_t len);
+
+  /**
+   * A function to sort and write all the records added, in transactions of
+   * chunk records. Of records with equal keys, or with equal keys and values
+   * on dupsort DBIs, only the last added is written. A record that sorts
+   * before the last entry already in the DBI is written with a plain put, so
+   * loading into a non-empty DBI works, but only appending is fast. The
+   * loader cannot be used again after this call, whatever the result.
+   *
+   * @param loader The loader handle.
+   * @param written If not NULL, receives the number of records written,
+   *                including those committed before a failure.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_bulk_loader_finish(dtlv_bulk_loader *loader, uint64_t *written);
+
+  /**
+   * A function to release memory and temporary files of the loader.
+   *
+   * @param loader The loader handle.
+   */
+  void dtlv_bulk_loader_destroy(dtlv_bulk_loader *loader);
+
+  /**
+   * The value length written by dtlv_multi_get_batch for a key not found.
+   */
+#define DTLV_MULTI_GET_ABSENT 0xFFFFFFFFu
+
+  /**
+   * A function to look up many keys with one call. The keys are sorted with
+   * the comparator of the DBI, remembering their original order, and looked
+   * up in that order with MDB_SET_KEY on the cursor, so that keys close to
+   * each other share the page path instead of each descending from the root.
+   * Keys already in order are not sorted again. For a dupsort DBI, the value
+   * is the first of the key.
+   *
+   * @param cur The cursor of the DBI.
+   * @param n The number of keys.
+   * @param keys The array of n keys, in any order, duplicates allowed.
+   * @param vals The array of n values, receiving the value of each key at the
+   *             same index, or a null mv_data and a 0 mv_size if the key is
+   *             not found. The values are owned by LMDB and valid until the
+   *             end of the transaction.
+   * @param found If not NULL, receives the number of keys found.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_multi_get(MDB_cursor *cur, int n, MDB_val *keys, MDB_val *vals,
+                     int *found);
+
+  /**
+   * A function to look up many keys as dtlv_multi_get does, copying the
+   * values into a caller-owned buffer, in the order of the keys. Each value
+   * is written as a record: a 4 byte value length and the value bytes. The
+   * length is DTLV_MULTI_GET_ABSENT, with no bytes following, for a key not
+   * found. Lengths are unsigned 32 bit integers in native byte order.
+   *
+   * @param cur The cursor of the DBI.
+   * @param n The number of keys.
+   * @param keys The array of n keys, in any order, duplicates allowed.
+   * @param buf The caller-owned buffer.
+   * @param buf_len The capacity of the buffer in bytes.
+   * @param used If not NULL, receives the number of bytes written, or the
+   *             number of bytes needed when -EMSGSIZE is returned.
+   * @return The number of keys found, or a negative error code. -EMSGSIZE if
+   *         the values do not all fit in the buffer, in which case nothing
+   *         is written.
+   */
+  int dtlv_multi_get_batch(MDB_cursor *cur, int n, MDB_val *keys, void *buf,
+                           size_t buf_len, size_t *used);
+
+  /**
+   * A function to put many records in one call. The records are encoded as
+   * in dtlv_key_iter_next_batch with values: a 4 byte key length, the key
+   * bytes, a 4 byte value length and the value bytes, with lengths in native
+   * byte order, and are put in the order given with mdb_cursor_put and the
+   * flags. For a MDB_DUPFIXED DBI, consecutive records with the same key and
+   * value size are put with one MDB_MULTIPLE call.
+   *
+   * @param txn The write transaction.
+   * @param dbi The DBI to put into.
+   * @param records The encoded records.
+   * @param len The length of records in bytes.
+   * @param flags The flags of mdb_put, e.g. MDB_NODUPDATA or MDB_APPEND,
+   *              but not MDB_MULTIPLE, which is added where it applies.
+   * @param written If not NULL, receives the number of records put. On
+   *                failure, the records before the failing call are put,
+   *                and the transaction should normally be aborted.
+   * @return A non-zero error value on failure and 0 on success. EINVAL if
+   *         the records are malformed, in which case none of them is put.
+   */
+  int dtlv_put_batch(MDB_txn *txn, MDB_dbi dbi, const void *records,
+                     size_t len, unsigned int flags, size_t *written);
+
+  /**
+   * Opaque structure for a map growth policy.
+   */
+  typedef struct dtlv_map_growth dtlv_map_growth;
+
+  /**
+   * A function to create a growth policy for the map of an env, so that the
+   * map can start small and grow geometrically, up to a ceiling, when it is
+   * full, instead of being sized for the largest database up front.
+   *
+   * LMDB only allows the map size to change when no transaction of the env
+   * is active in the process, as the file is mapped again. The policy holds
+   * a gate for this: read transactions begun with dtlv_map_growth_txn_begin
+   * wait while the map is resized, and the map is not resized while any of
+   * them is open. Read transactions begun otherwise are looked up in the
+   * reader table, which an env opened with MDB_NOLOCK does not have; reset
+   * transactions, e.g. those idle in a dtlv_reader_pool, do not count.
+   *
+   * @param growth The address where the policy will be stored.
+   * @param env The env handle.
+   * @param factor The factor the map size is multiplied by on each growth,
+   *               greater than 1, e.g. 2.0 to double the map.
+   * @param ceiling The maximal map size in bytes, 0 for no limit.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_map_growth_create(dtlv_map_growth **growth, MDB_env *env,
+                             double factor, size_t ceiling);
+
+  /**
+   * A function to grow the map once, by the factor of the policy, at least
+   * by a page, and at most to the ceiling. The write transaction, if any,
+   * must be over.
+   *
+   * @param growth The policy handle.
+   * @return A non-zero error value on failure and 0 on success.
+   *         MDB_MAP_FULL if the map is already at the ceiling, EBUSY if a
+   *         read transaction is open in the process.
+   */
+  int dtlv_map_growth_grow(dtlv_map_growth *growth);
+
+  /**
+   * A function to begin a read-only transaction under the gate of a growth
+   * policy, so that the map is not resized while it is open. It waits for a
+   * resize in progress. A map grown by another process is adopted when no
+   * other gated transaction is open.
+   *
+   * @param growth The policy handle.
+   * @param flags Flags of mdb_txn_begin; MDB_RDONLY is implied.
+   * @param txn The address where the new transaction handle will be stored.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_map_growth_txn_begin(dtlv_map_growth *growth, unsigned int flags,
+                                MDB_txn **txn);
+
+  /**
+   * A function to end a transaction begun with dtlv_map_growth_txn_begin,
+   * aborting it and leaving the gate.
+   *
+   * @param growth The policy handle.
+   * @param txn The transaction handle.
+   */
+  void dtlv_map_growth_txn_end(dtlv_map_growth *growth, MDB_txn *txn);
+
+  /**
+   * A function to apply a write batch in its own write transaction, growing
+   * the map and replaying the batch whenever a put or the commit fails with
+   * MDB_MAP_FULL, until it succeeds or the ceiling is reached. The batch is
+   * encoded as for dtlv_write_combiner_submit. A map grown by another
+   * process is adopted when the transaction begins.
+   *
+   * @param growth The policy handle.
+   * @param ops The operations of the batch.
+   * @param len The length of ops in bytes.
+   * @return A non-zero error value on failure and 0 on success. On failure,
+   *         nothing of the batch is written. EBUSY if the map is full but a
+   *         read transaction is open in the process.
+   */
+  int dtlv_map_growth_write(dtlv_map_growth *growth, const void *ops,
+                            size_t len);
+
+  /**
+   * A function to make a write combiner grow the map with a policy when a
+   * group of batches fills it, redoing the group instead of failing the
+   * batches. A batch still fails with MDB_MAP_FULL once the ceiling is
+   * reached, or when a read transaction is open in the process, as the map
+   * cannot be resized then.
+   *
+   * @param combiner The combiner handle.
+   * @param growth The policy handle, or NULL to stop growing. The policy
+   *               must outlive its use by the combiner.
+   */
+  void dtlv_write_combiner_set_growth(dtlv_write_combiner *combiner,
+                                      dtlv_map_growth *growth);
+
+  /**
+   * A function to destroy a growth policy.
+   *
+   * @param growth The policy handle.
+   */
+  void dtlv_map_growth_destroy(dtlv_map_growth *growth);
+
+  /**
+   * A callback receiving the bytes of a copy of an env, in order.
+   *
+   * @param ctx The context passed to dtlv_env_copy_sink.
+   * @param data The next bytes of the copy, valid only during the call.
+   * @param len The number of bytes.
+   * @return 0 to continue, or a non-zero error value to stop the copy.
+   */
+  typedef int (*dtlv_copy_sink)(void *ctx, const void *data, size_t len);
+
+  /**
+   * A function to stream a hot copy of an env to a callback, e.g. to feed a
+   * compressor or a socket without writing a temporary file. LMDB writes the
+   * copy, as mdb_env_copyfd2 does, into a pipe on a separate thread, and the
+   * calling thread reads the pipe and calls the sink, so the sink runs on
+   * the calling thread. With a rate, the reads are paced to that many bytes
+   * per second on average; as the pipe fills, LMDB then also reads the data
+   * file at that rate, leaving I/O to the foreground.
+   *
+   * @param env The env handle.
+   * @param flags The flags of mdb_env_copy2, e.g. MDB_CP_COMPACT.
+   * @param rate The maximal number of bytes per second, 0 for no limit.
+   * @param sink The callback receiving the bytes.
+   * @param ctx The context passed to the sink.
+   * @return A non-zero error value on failure and 0 on success. The value
+   *         returned by the sink if it stops the copy.
+   */
+  int dtlv_env_copy_sink(MDB_env *env, unsigned int flags, size_t rate,
+                         dtlv_copy_sink sink, void *ctx);
+
+  /**
+   * A function to stream a hot copy of an env to a file descriptor, e.g. a
+   * pipe to a compressor, with a throttle, as dtlv_env_copy_sink does. The
+   * descriptor is written sequentially and is not closed.
+   *
+   * @param env The env handle.
+   * @param fd The file descriptor, a C runtime descriptor on Windows.
+   * @param flags The flags of mdb_env_copy2, e.g. MDB_CP_COMPACT.
+   * @param rate The maximal number of bytes per second, 0 for no limit.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_env_copy_fd(MDB_env *env, int fd, unsigned int flags, size_t rate);
+
+  /**
+   * Kinds of backup deltas. A delta starts with a 24 byte header: the magic
+   * "DTLVDLT1", the page size (u32), the kind (u32) and the id of the backup
+   * it applies to (u64, 0 for a full one). Then come the pages, each as its
+   * page number (u64) and its bytes, ended by UINT64_MAX (u64), the number
+   * of pages of the data file (u64) and the id of this backup (u64).
+   * Integers are in native byte order, as in the data file.
+   */
+#define DTLV_BACKUP_FULL 0 /**< all pages, restored onto nothing */
+#define DTLV_BACKUP_DIFF 1 /**< the pages changed since the last backup */
+
+  /**
+   * A function to write a differential page-hash backup of an env to a
+   * sink, holding only the pages whose hash changed since the previous
+   * backup, so that the size of regular backups follows the amount of
+   * change rather than the size of the database.
+   *
+   * The time cost is not reduced: every backup reads and hashes the whole
+   * database, as a full one does. The page headers of dlmdb carry no txn id,
+   * so unchanged subtrees cannot be told apart without reading them. The
+   * changed pages are instead found with a manifest file, holding a hash of
+   * each page as of the previous backup. The env is streamed as a plain hot
+   * copy, which keeps the page numbers of the data file, through
+   * dtlv_env_copy_sink with the rate, and the pages whose hash differs, plus
+   * the two meta pages, are written. If the manifest does not exist, a full
+   * backup is written. The manifest is replaced only when the backup
+   * succeeds, so a failed backup can simply be discarded and taken again.
+   *
+   * @param env The env handle.
+   * @param manifest The path of the manifest file.
+   * @param rate The maximal number of bytes per second read, 0 for no limit.
+   * @param sink The callback receiving the bytes of the delta, in order, on
+   *             the calling thread, e.g. writing them to a file.
+   * @param ctx The context passed to the sink.
+   * @param pages If not NULL, receives the number of pages written.
+   * @return A non-zero error value on failure and 0 on success.
+   *         MDB_INVALID or MDB_INCOMPATIBLE if the manifest is corrupted or
+   *         of another page size.
+   */
+  int dtlv_env_diff_backup(MDB_env *env, const char *manifest, size_t rate,
+                           dtlv_copy_sink sink, void *ctx, uint64_t *pages);
+
+  /**
+   * A function to restore a data file from a chain of backup deltas, applied
+   * in order: typically a full backup followed by the differential ones taken
+   * after it. A chain may also start with a differential delta, to bring an
+   * existing restored file up to date. Each differential delta is checked to
+   * apply to the state the file is in, which costs one read of the file if
+   * the chain starts with it. The env of the data file must not be open.
+   *
+   * @param path The path of the data file, e.g. "dir/data.mdb". It is
+   *             created by a full delta.
+   * @param n The number of deltas.
+   * @param deltas The paths of the n delta files.
+   * @return A non-zero error value on failure and 0 on success.
+   *         MDB_INVALID if a delta is corrupted, MDB_INCOMPATIBLE if a delta
+   *         does not apply to the state of the file, in which case the file
+   *         is left as the previous delta made it.
+   */
+  int dtlv_backup_restore(const char *path, int n, const char **deltas);
+
+  /**
+   * Opaque per env operation metrics.
+   *
+   * Once created for an env, the metrics count the operations done on it
+   * through the functions of this library: the iterators, batches and
+   * writers, and the dtlv_get, dtlv_put, dtlv_del, dtlv_cursor_get,
+   * dtlv_cursor_put, dtlv_cursor_del, dtlv_txn_commit and dtlv_env_sync
+   * wrappers of the LMDB functions of the same names. Operations done
+   * directly with the LMDB functions are not counted. Without metrics, the
+   * cost of the counting is one load of a shared flag per operation.
+   *
+   * Counters are added to without locks, on stripes mostly owned by one
+   * thread, and summed up by a snapshot. A snapshot is an array of
+   * DTLV_METRICS_ENV_SIZE counters for the env, followed by
+   * DTLV_METRICS_DBI_SIZE counters for each DBI below max_dbs, the counters
+   * of DBI i starting at DTLV_METRICS_ENV_SIZE + i * DTLV_METRICS_DBI_SIZE.
+   *
+   * Latencies are in microseconds, counted in DTLV_METRICS_BUCKETS buckets
+   * of logarithmic width: bucket i < 4 holds i, and bucket i >= 4 holds
+   * [(4 + i % 4) << (i / 4 - 1), (5 + i % 4) << (i / 4 - 1)), so the
+   * relative error is under 25%. The last bucket holds all larger values.
+   */
+  typedef struct dtlv_metrics dtlv_metrics;
+
+#define DTLV_METRICS_BUCKETS 128 /**< buckets of a latency histogram */
+#define DTLV_METRICS_OPS     32  /**< counters of cursor gets, by op */
+
+  /** Env counters */
+#define DTLV_METRICS_COMMITS     0 /**< commits */
+#define DTLV_METRICS_SYNCS       1 /**< dtlv_env_sync calls */
+#define DTLV_METRICS_COMMIT_HIST 2 /**< histogram of commit latencies */
+#define DTLV_METRICS_SYNC_HIST   130 /**< histogram of sync latencies */
+#define DTLV_METRICS_ENV_SIZE    258
+
+  /** DBI counters */
+#define DTLV_METRICS_GETS          0 /**< + MDB_cursor_op, MDB_SET for dtlv_get */
+#define DTLV_METRICS_PUTS          32 /**< items put */
+#define DTLV_METRICS_DELS          33 /**< deletes */
+#define DTLV_METRICS_BYTES_READ    34 /**< key and value bytes found by gets */
+#define DTLV_METRICS_BYTES_WRITTEN 35 /**< key and value bytes put */
+#define DTLV_METRICS_ITERS         36 /**< iterators created */
+#define DTLV_METRICS_DBI_SIZE      37
+
+  /**
+   * A function to start counting the operations on an env.
+   *
+   * @param metrics The address where the new metrics handle will be stored.
+   * @param env The env handle. An env has at most one metrics.
+   * @param max_dbs The number of DBIs to count, as DBI handles are small
+   *                integers. Operations on larger DBIs are not counted.
+   * @return A non-zero error value on failure and 0 on success. EEXIST if
+   *         the env has metrics, ENOSPC if too many envs have.
+   */
+  int dtlv_metrics_create(dtlv_metrics **metrics, MDB_env *env, int max_dbs);
+
+  /**
+   * A function to copy the current counters into a caller-owned array,
+   * laid out as described for dtlv_metrics.
+   *
+   * @param metrics The metrics handle.
+   * @param out The array receiving the counters.
+   * @param len The length of the array.
+   * @param used Receives the number of counters of a snapshot.
+   * @return The number of counters copied, or a negative error value.
+   *         -EMSGSIZE if the array is too short.
+   */
+  int dtlv_metrics_snapshot(dtlv_metrics *metrics, uint64_t *out, size_t len,
+                            size_t *used);
+
+  /**
+   * A function to set all counters back to 0.
+   *
+   * @param metrics The metrics handle.
+   */
+  void dtlv_metrics_reset(dtlv_metrics *metrics);
+
+  /**
+   * A function to stop counting. The memory of the metrics is kept for a
+   * later dtlv_metrics_create, as operations in progress on the env may
+   * still count into it.
+   *
+   * @param metrics The metrics handle.
+   */
+  void dtlv_metrics_destroy(dtlv_metrics *metrics);
+
+  /** mdb_get, counted as a MDB_SET get */
+  int dtlv_get(MDB_txn *txn, MDB_dbi dbi, MDB_val *key, MDB_val *data);
+
+  /** mdb_put, counted when it succeeds */
+  int dtlv_put(MDB_txn *txn, MDB_dbi dbi, MDB_val *key, MDB_val *data,
+               unsigned int flags);
+
+  /** mdb_del, counted when it succeeds */
+  int dtlv_del(MDB_txn *txn, MDB_dbi dbi, MDB_val *key, MDB_val *data);
+
+  /** mdb_cursor_get, counted by op */
+  int dtlv_cursor_get(MDB_cursor *cur, MDB_val *key, MDB_val *data,
+                      MDB_cursor_op op);
+
+  /** mdb_cursor_put, counted when it succeeds */
+  int dtlv_cursor_put(MDB_cursor *cur, MDB_val *key, MDB_val *data,
+                      unsigned int flags);
+
+  /** mdb_cursor_del, counted when it succeeds */
+  int dtlv_cursor_del(MDB_cursor *cur, unsigned int flags);
+
+  /**
+   * mdb_txn_commit, counted and timed, including its sync. Meant for top
+   * level txns: a nested txn committed with it counts as a commit too.
+   */
+  int dtlv_txn_commit(MDB_txn *txn);
+
+  /** mdb_env_sync, counted and timed */
+  int dtlv_env_sync(MDB_env *env, int force);
+
+#define DTLV_READER_IDLE UINT64_MAX /**< txn id of a slot with no read txn */
+
+  /**
+   * A function to list the reader slots of an env, as mdb_reader_list does,
+   * into arrays instead of text lines. A slot is held by a thread that has
+   * used a read txn; it is idle between read txns.
+   *
+   * The lag of a reader is the number of txns committed since its snapshot:
+   * the pages freed by those txns cannot be reused while it is open, so a
+   * long lag makes the data file grow.
+   *
+   * @param env The env handle.
+   * @param max The length of the arrays.
+   * @param pids If not NULL, receives the process ids of the readers.
+   * @param tids If not NULL, receives the thread ids of the readers.
+   * @param txnids If not NULL, receives the txn ids of the snapshots of the
+   *               readers, DTLV_READER_IDLE for idle slots.
+   * @param lags If not NULL, receives the lags of the readers behind the
+   *             last committed txn, 0 for idle slots.
+   * @return The number of slots in use, of which the first max are listed,
+   *         or a negative error value. 0 for an env opened with MDB_NOLOCK.
+   */
+  int dtlv_reader_list(MDB_env *env, int max, int *pids, uint64_t *tids,
+                       uint64_t *txnids, uint64_t *lags);
+
+  /**
+   * Opaque handle of a background thread checking the reader table of an
+   * env. On each interval it calls mdb_reader_check, to free the slots of
+   * dead processes, and lists the readers, to catch long running read txns.
+   */
+  typedef struct dtlv_reader_reaper dtlv_reader_reaper;
+
+  /** Reaper stats */
+#define DTLV_REAPER_CHECKS  0 /**< checks done */
+#define DTLV_REAPER_REAPED  1 /**< stale slots freed, in total */
+#define DTLV_REAPER_READERS 2 /**< slots in use, at the last check */
+#define DTLV_REAPER_LAG     3 /**< largest lag, at the last check */
+#define DTLV_REAPER_LAGGING 4 /**< readers lagging more than max_lag, at the last check */
+#define DTLV_REAPER_ALERTS  5 /**< checks finding a reader lagging more than max_lag */
+#define DTLV_REAPER_ERROR   6 /**< error value of the last check, 0 if none */
+#define DTLV_REAPER_STATS   7
+
+  /**
+   * A function to start a reader reaper. The first check is done right
+   * away.
+   *
+   * @param reaper The address where the new reaper handle will be stored.
+   * @param env The env handle. It must stay open until the reaper is
+   *            destroyed.
+   * @param interval_ms The time between checks, in milliseconds.
+   * @param max_lag The lag above which a reader is counted as lagging, 0 to
+   *                count every reader with a lag.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_reader_reaper_create(dtlv_reader_reaper **reaper, MDB_env *env,
+                                unsigned int interval_ms, uint64_t max_lag);
+
+  /**
+   * A function to read the stats of a reader reaper.
+   *
+   * @param reaper The reaper handle.
+   * @param stats The array of DTLV_REAPER_STATS values receiving the stats.
+   */
+  void dtlv_reader_reaper_stats(dtlv_reader_reaper *reaper, uint64_t *stats);
+
+  /**
+   * A function to stop a reader reaper, waiting for a check in progress,
+   * and free it.
+   *
+   * @param reaper The reaper handle.
+   */
+  void dtlv_reader_reaper_destroy(dtlv_reader_reaper *reaper);
+
+  /**
+   * Opaque handle of the result of an env analysis: the page use of each
+   * DB and the state of the free list, to tell how much a compacting copy
+   * (MDB_CP_COMPACT) would save, and how close the data is to the map size.
+   */
+  typedef struct dtlv_env_analysis dtlv_env_analysis;
+
+#define DTLV_ANALYZE_FILL 0x1 /**< scan the entries to estimate the fill of leaf pages */
+
+  /** Env analysis stats */
+#define DTLV_ANALYSIS_PSIZE         0 /**< page size */
+#define DTLV_ANALYSIS_MAP_PAGES     1 /**< pages in the map size */
+#define DTLV_ANALYSIS_USED_PAGES    2 /**< pages up to the last one used, the high water mark of the data file */
+#define DTLV_ANALYSIS_LIVE_PAGES    3 /**< pages of all DBs, the free list's own included, and the 2 meta pages */
+#define DTLV_ANALYSIS_FREE_PAGES    4 /**< pages in the free list */
+#define DTLV_ANALYSIS_HELD_PAGES    5 /**< free pages not reusable yet, as an open read txn may see them */
+#define DTLV_ANALYSIS_FREE_ENTRIES  6 /**< records in the free list, one per txn that freed pages */
+#define DTLV_ANALYSIS_LAST_TXNID    7 /**< txn id of the analyzed snapshot */
+#define DTLV_ANALYSIS_OLDEST_TXNID  8 /**< txn id of the oldest reader snapshot, DTLV_READER_IDLE if none */
+#define DTLV_ANALYSIS_FILL          9 /**< estimated fill of all leaf pages, per mille, with DTLV_ANALYZE_FILL */
+#define DTLV_ANALYSIS_AGES         10 /**< + b: free pages freed 2^(b-1) to 2^b - 1 txns ago, b = 0 for the last txn */
+#define DTLV_ANALYSIS_AGE_BUCKETS  16 /**< the last bucket also counts older pages */
+#define DTLV_ANALYSIS_ENV_STATS    26
+
+  /** DB analysis stats */
+#define DTLV_ANALYSIS_DB_FLAGS            0 /**< DB flags, 0 for the free list */
+#define DTLV_ANALYSIS_DB_DEPTH            1 /**< depth of the B-tree */
+#define DTLV_ANALYSIS_DB_BRANCH_PAGES     2 /**< branch pages */
+#define DTLV_ANALYSIS_DB_LEAF_PAGES       3 /**< leaf pages */
+#define DTLV_ANALYSIS_DB_OVERFLOW_PAGES   4 /**< overflow pages, holding the values too large for a leaf */
+#define DTLV_ANALYSIS_DB_ENTRIES          5 /**< entries */
+#define DTLV_ANALYSIS_DB_LEAF_BYTES       6 /**< estimated bytes used in leaf pages, with DTLV_ANALYZE_FILL */
+#define DTLV_ANALYSIS_DB_FILL             7 /**< estimated fill of leaf pages, per mille, with DTLV_ANALYZE_FILL */
+#define DTLV_ANALYSIS_DB_OVERFLOW_VALUES  8 /**< values on overflow pages, with DTLV_ANALYZE_FILL */
+#define DTLV_ANALYSIS_DB_OVERFLOW_BYTES   9 /**< bytes of those values, with DTLV_ANALYZE_FILL */
+#define DTLV_ANALYSIS_DB_STATS           10
+
+  /**
+   * A function to analyze the page use of an env in a read-only txn. The
+   * page counts of each DB come from mdb_stat, the free list is walked to
+   * sum its pages by the age of the txn that freed them. With
+   * DTLV_ANALYZE_FILL, the entries of every DB are also scanned to estimate
+   * the fill of the leaf pages from the node sizes, as the pages themselves
+   * are not exposed; this reads the whole env.
+   *
+   * The DBs are listed as the free list first, then the main DB, then the
+   * named DBs in key order. The named DBs are opened in the txn, so this
+   * must not run concurrently with mdb_dbi_open in another txn.
+   *
+   * @param analysis The address where the new analysis handle will be
+   *                 stored.
+   * @param env The env handle.
+   * @param flags 0 or DTLV_ANALYZE_FILL.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_env_analyze(dtlv_env_analysis **analysis, MDB_env *env,
+                       unsigned int flags);
+
+  /**
+   * A function to read the env stats of an analysis.
+   *
+   * @param analysis The analysis handle.
+   * @param stats The array of DTLV_ANALYSIS_ENV_STATS values receiving the
+   *              stats.
+   */
+  void dtlv_env_analysis_env(dtlv_env_analysis *analysis, uint64_t *stats);
+
+  /**
+   * A function to return the number of DBs in an analysis.
+   *
+   * @param analysis The analysis handle.
+   * @return The number of DBs, the free list and the main DB included.
+   */
+  int dtlv_env_analysis_dbs(dtlv_env_analysis *analysis);
+
+  /**
+   * A function to read the stats of a DB of an analysis.
+   *
+   * @param analysis The analysis handle.
+   * @param i The index of the DB, from 0 to dtlv_env_analysis_dbs - 1.
+   * @param name If not NULL, receives the name of the DB, empty for the free
+   *             list and the main DB. It is valid until the analysis is
+   *             destroyed.
+   * @param stats The array of DTLV_ANALYSIS_DB_STATS values receiving the
+   *              stats.
+   * @return A non-zero error value on failure and 0 on success.
+   */
+  int dtlv_env_analysis_db(dtlv_env_analysis *analysis, int i, MDB_val *name,
+                           uint64_t *stats);
+
+  /**
+   * A function to free an analysis.
+   *
+   * @param analysis The analysis handle.
+   */
+  void dtlv_env_analysis_destroy(dtlv_env_analysis *analysis);
+
   /**
    * Opaque llama.cpp embedding handle.
    */
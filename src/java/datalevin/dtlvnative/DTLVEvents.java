@@ -0,0 +1,423 @@
+package datalevin.dtlvnative;
+
+import java.nio.ByteBuffer;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.bytedeco.javacpp.*;
+
+/**
+ * Java Flight Recorder events around the hot native calls of {@link DTLV}.
+ *
+ * Each method has the name and arguments of the DTLV function it wraps, plus
+ * a DBI name for the storage calls, so a caller switches by changing the
+ * class. The calls are recorded as events of the "Datalevin" category, with
+ * their duration, the DBI name, rows, vectors or tokens, and the result, so
+ * the time spent in native frames lines up with GC and thread states in a
+ * recording.
+ *
+ * When an event is not enabled in the recording, or no recording is running,
+ * the method only calls the native function: the event object does not
+ * escape, so the JIT removes it. Tokens are counted only for the events
+ * committed, after the call has ended, so the count is not in the duration.
+ */
+public final class DTLVEvents {
+
+    private DTLVEvents() {}
+
+    @Name("datalevin.dtlvnative.Commit")
+    @Label("LMDB Commit")
+    @Category({"Datalevin", "Storage"})
+    @Description("A write transaction committed, including its sync")
+    public static final class CommitEvent extends Event {
+        @Label("Result")
+        int result;
+    }
+
+    @Name("datalevin.dtlvnative.Scan")
+    @Label("LMDB Scan")
+    @Category({"Datalevin", "Storage"})
+    @Description("A batch of rows read by an iterator or a multi get")
+    @StackTrace(false)
+    public static final class ScanEvent extends Event {
+        @Label("DBI")
+        String dbi;
+
+        @Label("Rows")
+        int rows;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Result")
+        int result;
+    }
+
+    @Name("datalevin.dtlvnative.Write")
+    @Label("LMDB Batch Write")
+    @Category({"Datalevin", "Storage"})
+    @Description("A batch of records put")
+    @StackTrace(false)
+    public static final class WriteEvent extends Event {
+        @Label("DBI")
+        String dbi;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Result")
+        int result;
+    }
+
+    @Name("datalevin.dtlvnative.VectorSearch")
+    @Label("Vector Search")
+    @Category({"Datalevin", "Vector"})
+    @Description("A kANN search of a usearch index")
+    public static final class VectorSearchEvent extends Event {
+        @Label("Vectors Wanted")
+        long wanted;
+
+        @Label("Vectors Found")
+        long found;
+    }
+
+    @Name("datalevin.dtlvnative.Embed")
+    @Label("Embedding")
+    @Category({"Datalevin", "Inference"})
+    @Description("Texts embedded by llama.cpp")
+    public static final class EmbedEvent extends Event {
+        @Label("Texts")
+        int texts;
+
+        @Label("Tokens")
+        long tokens;
+
+        @Label("Result")
+        int result;
+    }
+
+    @Name("datalevin.dtlvnative.Generate")
+    @Label("Generation")
+    @Category({"Datalevin", "Inference"})
+    @Description("Text generated by llama.cpp")
+    public static final class GenerateEvent extends Event {
+        @Label("Prompt Tokens")
+        int promptTokens;
+
+        @Label("Output")
+        @DataAmount
+        int output;
+    }
+
+    /** dtlv_txn_commit, as a CommitEvent */
+    public static int dtlv_txn_commit(DTLV.MDB_txn txn) {
+        CommitEvent event = new CommitEvent();
+        if (!event.isEnabled()) return DTLV.dtlv_txn_commit(txn);
+
+        event.begin();
+        int rc = DTLV.dtlv_txn_commit(txn);
+        event.end();
+        if (event.shouldCommit()) {
+            event.result = rc;
+            event.commit();
+        }
+        return rc;
+    }
+
+    /** dtlv_key_iter_next_batch on the named DBI, as a ScanEvent */
+    public static int dtlv_key_iter_next_batch(String name,
+            DTLV.dtlv_key_iter iter, Pointer buf, long buf_len, int max_items,
+            int with_val, SizeTPointer used) {
+        ScanEvent event = new ScanEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_key_iter_next_batch(iter, buf, buf_len, max_items,
+                                                 with_val, used);
+
+        event.begin();
+        int n = DTLV.dtlv_key_iter_next_batch(iter, buf, buf_len, max_items,
+                                              with_val, used);
+        commitScan(event, name, n, used);
+        return n;
+    }
+
+    /** dtlv_key_iter_next_batch on the named DBI, as a ScanEvent */
+    public static int dtlv_key_iter_next_batch(String name,
+            DTLV.dtlv_key_iter iter, ByteBuffer buf, long buf_len,
+            int max_items, int with_val, SizeTPointer used) {
+        ScanEvent event = new ScanEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_key_iter_next_batch(iter, buf, buf_len, max_items,
+                                                 with_val, used);
+
+        event.begin();
+        int n = DTLV.dtlv_key_iter_next_batch(iter, buf, buf_len, max_items,
+                                              with_val, used);
+        commitScan(event, name, n, used);
+        return n;
+    }
+
+    /** dtlv_list_val_full_iter_next_batch on the named DBI, as a ScanEvent */
+    public static int dtlv_list_val_full_iter_next_batch(String name,
+            DTLV.dtlv_list_val_full_iter iter, Pointer buf, long buf_len,
+            int max_items, SizeTPointer used) {
+        ScanEvent event = new ScanEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_list_val_full_iter_next_batch(iter, buf, buf_len,
+                                                           max_items, used);
+
+        event.begin();
+        int n = DTLV.dtlv_list_val_full_iter_next_batch(iter, buf, buf_len,
+                                                        max_items, used);
+        commitScan(event, name, n, used);
+        return n;
+    }
+
+    /** dtlv_list_val_full_iter_next_batch on the named DBI, as a ScanEvent */
+    public static int dtlv_list_val_full_iter_next_batch(String name,
+            DTLV.dtlv_list_val_full_iter iter, ByteBuffer buf, long buf_len,
+            int max_items, SizeTPointer used) {
+        ScanEvent event = new ScanEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_list_val_full_iter_next_batch(iter, buf, buf_len,
+                                                           max_items, used);
+
+        event.begin();
+        int n = DTLV.dtlv_list_val_full_iter_next_batch(iter, buf, buf_len,
+                                                        max_items, used);
+        commitScan(event, name, n, used);
+        return n;
+    }
+
+    /** dtlv_multi_get_batch on the named DBI, as a ScanEvent */
+    public static int dtlv_multi_get_batch(String name, DTLV.MDB_cursor cur,
+            int n, DTLV.MDB_val keys, Pointer buf, long buf_len,
+            SizeTPointer used) {
+        ScanEvent event = new ScanEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_multi_get_batch(cur, n, keys, buf, buf_len, used);
+
+        event.begin();
+        int found = DTLV.dtlv_multi_get_batch(cur, n, keys, buf, buf_len, used);
+        commitScan(event, name, found, used);
+        return found;
+    }
+
+    /** dtlv_multi_get_batch on the named DBI, as a ScanEvent */
+    public static int dtlv_multi_get_batch(String name, DTLV.MDB_cursor cur,
+            int n, DTLV.MDB_val keys, ByteBuffer buf, long buf_len,
+            SizeTPointer used) {
+        ScanEvent event = new ScanEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_multi_get_batch(cur, n, keys, buf, buf_len, used);
+
+        event.begin();
+        int found = DTLV.dtlv_multi_get_batch(cur, n, keys, buf, buf_len, used);
+        commitScan(event, name, found, used);
+        return found;
+    }
+
+    /** dtlv_put_batch on the named DBI, as a WriteEvent */
+    public static int dtlv_put_batch(String name, DTLV.MDB_txn txn, int dbi,
+            Pointer records, long len, int flags, SizeTPointer written) {
+        WriteEvent event = new WriteEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_put_batch(txn, dbi, records, len, flags, written);
+
+        event.begin();
+        int rc = DTLV.dtlv_put_batch(txn, dbi, records, len, flags, written);
+        commitWrite(event, name, rc, written, len);
+        return rc;
+    }
+
+    /** dtlv_put_batch on the named DBI, as a WriteEvent */
+    public static int dtlv_put_batch(String name, DTLV.MDB_txn txn, int dbi,
+            ByteBuffer records, long len, int flags, SizeTPointer written) {
+        WriteEvent event = new WriteEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_put_batch(txn, dbi, records, len, flags, written);
+
+        event.begin();
+        int rc = DTLV.dtlv_put_batch(txn, dbi, records, len, flags, written);
+        commitWrite(event, name, rc, written, len);
+        return rc;
+    }
+
+    /** dtlv_put_batch on the named DBI, as a WriteEvent */
+    public static int dtlv_put_batch(String name, DTLV.MDB_txn txn, int dbi,
+            byte[] records, long len, int flags, SizeTPointer written) {
+        WriteEvent event = new WriteEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_put_batch(txn, dbi, records, len, flags, written);
+
+        event.begin();
+        int rc = DTLV.dtlv_put_batch(txn, dbi, records, len, flags, written);
+        commitWrite(event, name, rc, written, len);
+        return rc;
+    }
+
+    /** usearch_search, as a VectorSearchEvent */
+    public static long usearch_search(DTLV.usearch_index_t index,
+            Pointer query_vector, int query_kind, long count, LongPointer keys,
+            FloatPointer distances, PointerPointer<BytePointer> error) {
+        VectorSearchEvent event = new VectorSearchEvent();
+        if (!event.isEnabled())
+            return DTLV.usearch_search(index, query_vector, query_kind, count,
+                                       keys, distances, error);
+
+        event.begin();
+        long found = DTLV.usearch_search(index, query_vector, query_kind, count,
+                                         keys, distances, error);
+        event.end();
+        if (event.shouldCommit()) {
+            event.wanted = count;
+            event.found = found;
+            event.commit();
+        }
+        return found;
+    }
+
+    /** dtlv_llama_embed, as an EmbedEvent */
+    public static int dtlv_llama_embed(DTLV.dtlv_llama_embedder embedder,
+            String text, float[] output, long output_len) {
+        EmbedEvent event = new EmbedEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_llama_embed(embedder, text, output, output_len);
+
+        event.begin();
+        int rc = DTLV.dtlv_llama_embed(embedder, text, output, output_len);
+        event.end();
+        // counted after the end, so that the count is not in the duration
+        if (event.shouldCommit())
+            commitEmbed(event, 1,
+                        DTLV.dtlv_llama_token_count(embedder, text), rc);
+        return rc;
+    }
+
+    /** dtlv_llama_embed, as an EmbedEvent */
+    public static int dtlv_llama_embed(DTLV.dtlv_llama_embedder embedder,
+            String text, FloatPointer output, long output_len) {
+        EmbedEvent event = new EmbedEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_llama_embed(embedder, text, output, output_len);
+
+        event.begin();
+        int rc = DTLV.dtlv_llama_embed(embedder, text, output, output_len);
+        event.end();
+        if (event.shouldCommit())
+            commitEmbed(event, 1,
+                        DTLV.dtlv_llama_token_count(embedder, text), rc);
+        return rc;
+    }
+
+    /** dtlv_llama_embed_batch, as an EmbedEvent */
+    public static int dtlv_llama_embed_batch(
+            DTLV.dtlv_llama_embedder embedder, PointerPointer texts,
+            int n_texts, float[] output, long output_len) {
+        EmbedEvent event = new EmbedEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_llama_embed_batch(embedder, texts, n_texts, output,
+                                               output_len);
+
+        event.begin();
+        int rc = DTLV.dtlv_llama_embed_batch(embedder, texts, n_texts, output,
+                                             output_len);
+        event.end();
+        if (event.shouldCommit())
+            commitEmbed(event, n_texts, countTokens(embedder, texts, n_texts),
+                        rc);
+        return rc;
+    }
+
+    /** dtlv_llama_embed_batch, as an EmbedEvent */
+    public static int dtlv_llama_embed_batch(
+            DTLV.dtlv_llama_embedder embedder, PointerPointer texts,
+            int n_texts, FloatPointer output, long output_len) {
+        EmbedEvent event = new EmbedEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_llama_embed_batch(embedder, texts, n_texts, output,
+                                               output_len);
+
+        event.begin();
+        int rc = DTLV.dtlv_llama_embed_batch(embedder, texts, n_texts, output,
+                                             output_len);
+        event.end();
+        if (event.shouldCommit())
+            commitEmbed(event, n_texts, countTokens(embedder, texts, n_texts),
+                        rc);
+        return rc;
+    }
+
+    /** dtlv_llama_generate, as a GenerateEvent */
+    public static int dtlv_llama_generate(
+            DTLV.dtlv_llama_generator generator, String prompt, int n_predict,
+            byte[] output, long output_len) {
+        GenerateEvent event = new GenerateEvent();
+        if (!event.isEnabled())
+            return DTLV.dtlv_llama_generate(generator, prompt, n_predict,
+                                            output, output_len);
+
+        event.begin();
+        int n = DTLV.dtlv_llama_generate(generator, prompt, n_predict, output,
+                                         output_len);
+        event.end();
+        if (event.shouldCommit()) {
+            event.promptTokens =
+                DTLV.dtlv_llama_generator_token_count(generator, prompt);
+            event.output = n;
+            event.commit();
+        }
+        return n;
+    }
+
+    private static void commitScan(ScanEvent event, String name, int n,
+                                   SizeTPointer used) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.dbi = name;
+            event.rows = Math.max(n, 0);
+            event.bytes = n > 0 && used != null ? used.get() : 0;
+            event.result = Math.min(n, 0);
+            event.commit();
+        }
+    }
+
+    private static void commitWrite(WriteEvent event, String name, int rc,
+                                    SizeTPointer written, long len) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.dbi = name;
+            event.rows = written != null ? written.get() : 0;
+            event.bytes = rc == 0 ? len : 0;
+            event.result = rc;
+            event.commit();
+        }
+    }
+
+    private static void commitEmbed(EmbedEvent event, int texts, long tokens,
+                                    int rc) {
+        event.texts = texts;
+        event.tokens = tokens;
+        event.result = rc;
+        event.commit();
+    }
+
+    private static long countTokens(DTLV.dtlv_llama_embedder embedder,
+                                    PointerPointer texts, int n_texts) {
+        long tokens = 0;
+        for (int i = 0; i < n_texts; i++) {
+            BytePointer text = new BytePointer(texts.get(i));
+            int n = DTLV.dtlv_llama_token_count(embedder, text);
+            if (n > 0) tokens += n;
+        }
+        return tokens;
+    }
+}
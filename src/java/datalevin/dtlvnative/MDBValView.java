@@ -0,0 +1,118 @@
+package datalevin.dtlvnative;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A reusable, read-only direct ByteBuffer view over the data of an MDB_val.
+ *
+ * The view is bound to one MDB_val holder, e.g. the key or value holder
+ * passed to an iterator. Each call to {@link #bind()} re-points the same
+ * ByteBuffer at whatever mv_data and mv_size the holder currently has, so
+ * reading rows does not allocate a Pointer or a ByteBuffer per row.
+ *
+ * The content is memory owned by LMDB. It is only valid until the next
+ * update of the holder, and never beyond the end of the read transaction.
+ *
+ * The view is re-pointed with the memory access methods of sun.misc.Unsafe,
+ * which JEP 471 deprecates for removal; from JDK 24 their first use prints a
+ * warning, and a later JDK may remove them. Where that matters,
+ * {@code DTLVForeign.mvData(DTLV.MDB_val)} reads the same data as a
+ * MemorySegment without Unsafe.
+ */
+public final class MDBValView {
+
+    // Buffer.address and Buffer.capacity are private to java.nio, and
+    // reflection into java.base is closed, so they are written with
+    // Unsafe.putLong and Unsafe.putInt at their field offsets
+    private static final MethodHandle PUT_LONG;
+    private static final MethodHandle PUT_INT;
+    private static final long ADDRESS;
+    private static final long CAPACITY;
+
+    static {
+        try {
+            Class<?> c = Class.forName("sun.misc.Unsafe");
+            Field f = c.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            Object unsafe = f.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle offset = lookup.unreflect(
+                c.getMethod("objectFieldOffset", Field.class)).bindTo(unsafe);
+            PUT_LONG = lookup.unreflect(
+                c.getMethod("putLong", Object.class, long.class, long.class)).bindTo(unsafe);
+            PUT_INT = lookup.unreflect(
+                c.getMethod("putInt", Object.class, long.class, int.class)).bindTo(unsafe);
+            ADDRESS = (long) offset.invoke(Buffer.class.getDeclaredField("address"));
+            CAPACITY = (long) offset.invoke(Buffer.class.getDeclaredField("capacity"));
+        } catch (Throwable e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final DTLV.MDB_val val;
+    private final ByteBuffer struct;
+    private final ByteBuffer view;
+
+    /**
+     * Create a view for a MDB_val holder. The holder must outlive the view.
+     *
+     * @param val The MDB_val holder.
+     */
+    public MDBValView(DTLV.MDB_val val) {
+        this.val = val;
+        this.struct = val.asByteBuffer().order(ByteOrder.nativeOrder());
+        this.view = ByteBuffer.allocateDirect(0).asReadOnlyBuffer();
+    }
+
+    /**
+     * The MDB_val holder of this view.
+     */
+    public DTLV.MDB_val val() {
+        return val;
+    }
+
+    /**
+     * Point the view at the current content of the holder.
+     *
+     * @return The view, with position 0 and limit mv_size. The same
+     *         ByteBuffer instance is returned on every call, in big-endian
+     *         order unless the caller has changed it.
+     */
+    public ByteBuffer bind() {
+        long size;
+        long address;
+        if (struct.capacity() == 16) {
+            size = struct.getLong(0);
+            address = struct.getLong(8);
+        } else {
+            size = struct.getInt(0) & 0xFFFFFFFFL;
+            address = struct.getInt(4) & 0xFFFFFFFFL;
+        }
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalStateException("MDB_val too large for a ByteBuffer: " + size);
+        if (address == 0)
+            size = 0;
+
+        try {
+            PUT_LONG.invokeExact((Object) view, ADDRESS, address);
+            PUT_INT.invokeExact((Object) view, CAPACITY, (int) size);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to bind MDB_val view", e);
+        }
+        view.clear();
+        return view;
+    }
+
+    /**
+     * The size of the current content of the holder, read without binding.
+     */
+    public long size() {
+        return struct.capacity() == 16 ? struct.getLong(0)
+                                       : struct.getInt(0) & 0xFFFFFFFFL;
+    }
+}
@@ -3,6 +3,7 @@ package datalevin.dtlvnative;
 import java.io.*;
 import java.nio.*;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 import java.util.function.LongPredicate;
 import java.nio.file.*;
 import java.nio.charset.StandardCharsets;
@@ -10,6 +11,9 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.bytedeco.javacpp.*;
 import org.bytedeco.javacpp.annotation.*;
 
@@ -207,7 +211,31 @@ public class Test {
         runTest("key rank sample iterator", Test::testKeyRankSampleIterator);
         runTest("key rank sample iterator shrink", Test::testKeyRankSampleIteratorShrink);
         runTest("key rank sample iterator on dupsort", Test::testKeyRankSampleIteratorDupsort);
+        runTest("partition range", Test::testPartitionRange);
+        runTest("aggregate", Test::testAggregate);
         runTest("list value iterator bounds", Test::testListValIteratorBounds);
+        runTest("list value iterators in reverse", Test::testListValIteratorReverse);
+        runTest("key iterator batch", Test::testKeyIterBatch);
+        runTest("iterator filter", Test::testFilter);
+        runTest("multi range iterator", Test::testMultiRangeIterator);
+        runTest("merge join iterator", Test::testMergeJoinIterator);
+        runTest("leapfrog iterator", Test::testLeapfrogIterator);
+        runTest("skip-scan iterator", Test::testSkipScanIterator);
+        runTest("reader pool", Test::testReaderPool);
+        runTest("write combiner", Test::testWriteCombiner);
+        runTest("bulk loader", Test::testBulkLoader);
+        runTest("multi get", Test::testMultiGet);
+        runTest("put batch", Test::testPutBatch);
+        runTest("map growth", Test::testMapGrowth);
+        runTest("env copy", Test::testEnvCopy);
+        runTest("differential backup", Test::testBackup);
+        runTest("metrics", Test::testMetrics);
+        runTest("flight recorder events", Test::testEvents);
+        runTest("reader table", Test::testReaderTable);
+        runTest("env analysis", Test::testEnvAnalysis);
+        runTest("list value full iterator batch", Test::testListValFullIterBatch);
+        runTest("MDB_val view", Test::testMDBValView);
+        runTest("foreign function binding", Test::testForeign);
 
         pass("Passed LMDB tests.");
     }
@@ -544,6 +572,3904 @@ public class Test {
         }
     }
 
+    static void testKeyIterBatch() {
+
+        System.err.println("Testing key iterator batch ...");
+
+        String dir = "db-key-iter-batch";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        DTLV.dtlv_key_iter iter = null;
+        IntPointer dbi = new IntPointer(1);
+        BytePointer buf = new BytePointer(24);
+        SizeTPointer used = new SizeTPointer(1);
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create key iterator batch env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for key iterator batch env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open key iterator batch env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin key iterator batch write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "batch", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open key iterator batch dbi: " + result);
+                return;
+            }
+
+            for (int i = 0; i < 10; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, "k" + i, allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, "v" + i, allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put key iterator batch data: " + result);
+                    return;
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit key iterator batch data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin key iterator batch read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open key iterator batch cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+            DTLV.MDB_val startKey = new DTLV.MDB_val();
+            fillValWithString(startKey, "k2", allocations);
+            DTLV.MDB_val endKey = new DTLV.MDB_val();
+            fillValWithString(endKey, "k8", allocations);
+
+            iter = new DTLV.dtlv_key_iter();
+            result = DTLV.dtlv_key_iter_create(iter, cursor, keyHolder, valHolder,
+                                               DTLV.DTLV_TRUE, DTLV.DTLV_FALSE,
+                                               DTLV.DTLV_TRUE, startKey, endKey);
+            if (result != 0) {
+                System.err.println("Failed to create key iterator: " + result);
+                return;
+            }
+
+            int n = DTLV.dtlv_key_iter_next_batch(iter, buf, 4, 10, DTLV.DTLV_TRUE, used);
+            expect(n < 0 && used.get() == 12,
+                   "Key iterator batch should report the size of an oversized item");
+
+            // each record is 12 bytes, so the buffer holds two at a time
+            List<String> items = new ArrayList<>();
+            int batches = 0;
+            while ((n = DTLV.dtlv_key_iter_next_batch(
+                        iter, buf, 24, 10, DTLV.DTLV_TRUE, used)) > 0) {
+                expect(used.get() == 12L * n,
+                       "Key iterator batch used bytes mismatch: " + used.get());
+                items.addAll(readBatchRecords(buf, n, true));
+                batches++;
+            }
+            expect(n == 0, "Key iterator batch should end with 0, got " + n);
+            expect(batches == 3, "Key iterator batch count mismatch: " + batches);
+
+            List<String> expected = Arrays.asList(
+                "k3=v3", "k4=v4", "k5=v5", "k6=v6", "k7=v7", "k8=v8");
+            expect(items.equals(expected),
+                   "Key iterator batch items mismatch: " + items);
+
+            expect(DTLV.dtlv_key_iter_next_batch(
+                       iter, buf, 24, 10, DTLV.DTLV_TRUE, used) == 0,
+                   "Exhausted key iterator batch should stay at 0");
+
+            // a reset iterator is re-armed in place, here backward
+            result = DTLV.dtlv_key_iter_reset(iter, cursor, keyHolder, valHolder,
+                                              DTLV.DTLV_FALSE, DTLV.DTLV_TRUE,
+                                              DTLV.DTLV_FALSE, endKey, startKey);
+            expect(result == 0, "Key iterator reset failed: " + result);
+            List<String> reversed = new ArrayList<>();
+            while (DTLV.dtlv_key_iter_has_next(iter) == DTLV.DTLV_TRUE)
+                reversed.add(mdbValToString(keyHolder) + "=" + mdbValToString(valHolder));
+            List<String> expectedReversed = new ArrayList<>(expected);
+            Collections.reverse(expectedReversed);
+            expect(reversed.equals(expectedReversed),
+                   "Reset key iterator items mismatch: " + reversed);
+
+            pass("Passed key iterator batch test.");
+        } finally {
+            if (iter != null)
+                DTLV.dtlv_key_iter_destroy(iter);
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            buf.close();
+            used.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testPartitionRange() {
+
+        System.err.println("Testing partition range ...");
+
+        String dir = "db-partition-range";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        IntPointer dbi = new IntPointer(1);
+        DTLV.MDB_val splits = new DTLV.MDB_val(8);
+        int[] count = new int[1];
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create partition env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for partition env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open partition env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin partition write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "partition",
+                                       DTLV.MDB_CREATE | DTLV.MDB_COUNTED, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open partition dbi: " + result);
+                return;
+            }
+
+            for (int i = 0; i < 100; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, String.format("k%03d", i), allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, "v", allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put partition data: " + result);
+                    return;
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit partition data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin partition read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open partition cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            result = DTLV.dtlv_partition_range(cursor, null, null, 4, splits, count);
+            expect(result == 0, "Partition of full range failed: " + result);
+            expect(readSplits(splits, count[0]).equals(
+                       Arrays.asList("k025", "k050", "k075")),
+                   "Partition of full range returned unexpected splits");
+
+            DTLV.MDB_val startKey = new DTLV.MDB_val();
+            fillValWithString(startKey, "k010", allocations);
+            DTLV.MDB_val endKey = new DTLV.MDB_val();
+            fillValWithString(endKey, "k019", allocations);
+
+            result = DTLV.dtlv_partition_range(cursor, startKey, endKey, 2, splits, count);
+            expect(result == 0, "Partition of bounded range failed: " + result);
+            expect(readSplits(splits, count[0]).equals(Arrays.asList("k015")),
+                   "Partition of bounded range returned unexpected splits");
+
+            result = DTLV.dtlv_partition_range(cursor, startKey, endKey, 8, splits, count);
+            expect(result == 0, "Partition of small range failed: " + result);
+            expect(count[0] == 7, "Partition of small range should return 7 splits");
+
+            result = DTLV.dtlv_partition_range(cursor, null, null, 1, null, count);
+            expect(result == 0 && count[0] == 0,
+                   "Single partition should return no splits");
+
+            pass("Passed partition range test.");
+        } finally {
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            splits.close();
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static List<String> readSplits(DTLV.MDB_val splits, int n) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            keys.add(mdbValToString(splits.getPointer(i)));
+        return keys;
+    }
+
+    static void testAggregate() {
+
+        System.err.println("Testing aggregate ...");
+
+        String dir = "db-aggregate";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        IntPointer dbi = new IntPointer(1);
+        DTLV.dtlv_agg_result serial = new DTLV.dtlv_agg_result();
+        DTLV.dtlv_agg_result parallel = new DTLV.dtlv_agg_result();
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create aggregate env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for aggregate env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, 0, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open aggregate env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin aggregate write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            int flags = DTLV.MDB_CREATE | DTLV.MDB_DUPSORT | DTLV.MDB_COUNTED;
+            result = DTLV.mdb_dbi_open(txn, "aggregate", flags, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open aggregate dbi: " + result);
+                return;
+            }
+
+            long sum = 0;
+            long entries = 0;
+            for (int i = 0; i < 200; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, String.format("k%03d", i), allocations);
+                for (int j = 0; j <= i % 3; j++) {
+                    long number = i * 10L - 500 + j;
+                    BytePointer data = new BytePointer(Long.BYTES);
+                    allocations.add(data);
+                    data.asByteBuffer().order(ByteOrder.LITTLE_ENDIAN).putLong(number);
+                    DTLV.MDB_val vval = new DTLV.MDB_val();
+                    vval.mv_size(Long.BYTES);
+                    vval.mv_data(data);
+                    result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                    if (result != 0) {
+                        System.err.println("Failed to put aggregate data: " + result);
+                        return;
+                    }
+                    sum += number;
+                    entries++;
+                }
+            }
+
+            DTLV.MDB_cursor wcursor = new DTLV.MDB_cursor();
+            keepAlive(wcursor);
+            result = DTLV.mdb_cursor_open(txn, dbi.get(), wcursor);
+            if (result != 0) {
+                System.err.println("Failed to open aggregate write cursor: " + result);
+                return;
+            }
+            result = DTLV.dtlv_aggregate_parallel(wcursor, null, null,
+                                                  DTLV.DTLV_AGG_COUNT,
+                                                  DTLV.DTLV_FALSE, 0, 4, parallel);
+            DTLV.mdb_cursor_close(wcursor);
+            int einval = 22; // EINVAL
+            expect(result == einval,
+                   "Parallel aggregate should reject a write txn cursor: " + result);
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit aggregate data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin aggregate read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open aggregate cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            result = DTLV.dtlv_aggregate(cursor, null, null, DTLV.DTLV_AGG_I64_LE,
+                                         DTLV.DTLV_FALSE, 0, serial);
+            expect(result == 0, "Aggregate failed: " + result);
+            expect(serial.count() == entries, "Aggregate count mismatch");
+            expect(serial.keys() == 200, "Aggregate distinct key count mismatch");
+            expect(serial.decoded() == entries, "Aggregate decoded count mismatch");
+            expect(serial.isum() == sum, "Aggregate sum mismatch");
+            expect(serial.imin() == -500, "Aggregate min mismatch");
+            expect(serial.imax() == 1491, "Aggregate max mismatch");
+
+            result = DTLV.dtlv_aggregate_parallel(cursor, null, null,
+                                                  DTLV.DTLV_AGG_I64_LE,
+                                                  DTLV.DTLV_FALSE, 0, 4, parallel);
+            expect(result == 0, "Parallel aggregate failed: " + result);
+            expect(parallel.count() == serial.count()
+                   && parallel.keys() == serial.keys()
+                   && parallel.isum() == serial.isum()
+                   && parallel.imin() == serial.imin()
+                   && parallel.imax() == serial.imax(),
+                   "Parallel aggregate should match the serial one");
+
+            result = DTLV.dtlv_aggregate_parallel(cursor, null, null,
+                                                  DTLV.DTLV_AGG_I64_LE,
+                                                  DTLV.DTLV_FALSE, 0, 1000,
+                                                  parallel);
+            expect(result == 0, "Capped parallel aggregate failed: " + result);
+            expect(parallel.count() == serial.count()
+                   && parallel.isum() == serial.isum(),
+                   "Capped parallel aggregate should match the serial one");
+
+            DTLV.MDB_val startKey = new DTLV.MDB_val();
+            fillValWithString(startKey, "k010", allocations);
+            DTLV.MDB_val endKey = new DTLV.MDB_val();
+            fillValWithString(endKey, "k019", allocations);
+
+            result = DTLV.dtlv_aggregate_parallel(cursor, startKey, endKey,
+                                                  DTLV.DTLV_AGG_COUNT,
+                                                  DTLV.DTLV_FALSE, 0, 3, parallel);
+            expect(result == 0, "Bounded parallel count failed: " + result);
+            expect(parallel.keys() == 10 && parallel.count() == 20
+                   && parallel.decoded() == 0,
+                   "Bounded parallel count mismatch");
+
+            pass("Passed aggregate test.");
+        } finally {
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            serial.close();
+            parallel.close();
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testFilter() {
+
+        System.err.println("Testing iterator filter ...");
+
+        String dir = "db-filter";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        IntPointer dbi = new IntPointer(1);
+        DTLV.dtlv_filter filter = null;
+        DTLV.dtlv_list_iter listIter = null;
+        DTLV.dtlv_key_iter keyIter = null;
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create filter env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for filter env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open filter env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin filter write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "filter",
+                                       DTLV.MDB_CREATE | DTLV.MDB_DUPSORT, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open filter dbi: " + result);
+                return;
+            }
+
+            String[][] data = { { "a", "x1" }, { "a", "y1" }, { "b", "x2" }, { "b", "x3" },
+                                { "c", "y2" }, { "d", "x4" }, { "e", "x5" } };
+            for (String[] kv : data) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, kv[0], allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, kv[1], allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put filter data: " + result);
+                    return;
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit filter data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin filter read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open filter cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            // value starts with "x" and key is not "d"
+            ByteBuffer prog = ByteBuffer.allocate(64).order(ByteOrder.nativeOrder());
+            putFilterTest(prog, DTLV.DTLV_FILTER_PREFIX, DTLV.DTLV_FILTER_VAL, 0, "x");
+            putFilterTest(prog, DTLV.DTLV_FILTER_EQ, DTLV.DTLV_FILTER_KEY, 0, "d");
+            prog.put((byte) DTLV.DTLV_FILTER_NOT);
+            prog.put((byte) DTLV.DTLV_FILTER_AND);
+            byte[] code = Arrays.copyOf(prog.array(), prog.position());
+
+            DTLV.dtlv_filter bad = new DTLV.dtlv_filter();
+            expect(DTLV.dtlv_filter_create(bad, code, code.length - 1) != 0,
+                   "Malformed filter program should be rejected");
+
+            for (int depth : new int[] { DTLV.DTLV_FILTER_MAX_DEPTH,
+                                         DTLV.DTLV_FILTER_MAX_DEPTH + 1 }) {
+                ByteBuffer deep = ByteBuffer.allocate(depth * 16)
+                    .order(ByteOrder.nativeOrder());
+                for (int i = 0; i < depth; i++)
+                    putFilterTest(deep, DTLV.DTLV_FILTER_PREFIX,
+                                  DTLV.DTLV_FILTER_KEY, 0, "a");
+                for (int i = 1; i < depth; i++)
+                    deep.put((byte) DTLV.DTLV_FILTER_OR);
+                byte[] deepCode = Arrays.copyOf(deep.array(), deep.position());
+                DTLV.dtlv_filter f = new DTLV.dtlv_filter();
+                result = DTLV.dtlv_filter_create(f, deepCode, deepCode.length);
+                if (result == 0)
+                    DTLV.dtlv_filter_destroy(f);
+                expect((result == 0) == (depth <= DTLV.DTLV_FILTER_MAX_DEPTH),
+                       "Filter depth " + depth + " check failed: " + result);
+            }
+
+            filter = new DTLV.dtlv_filter();
+            result = DTLV.dtlv_filter_create(filter, code, code.length);
+            if (result != 0) {
+                System.err.println("Failed to create filter: " + result);
+                filter = null;
+                return;
+            }
+
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+
+            listIter = new DTLV.dtlv_list_iter();
+            result = DTLV.dtlv_list_iter_create(listIter, cursor, keyHolder, valHolder,
+                                                DTLV.DTLV_TRUE, DTLV.DTLV_TRUE,
+                                                DTLV.DTLV_TRUE, null, null,
+                                                DTLV.DTLV_TRUE, DTLV.DTLV_TRUE,
+                                                DTLV.DTLV_TRUE, null, null);
+            if (result != 0) {
+                System.err.println("Failed to create filtered list iterator: " + result);
+                return;
+            }
+            expect(DTLV.dtlv_list_iter_set_filter(listIter, filter) == 0,
+                   "Setting list iterator filter failed");
+
+            List<String> pairs = new ArrayList<>();
+            int rc;
+            while ((rc = DTLV.dtlv_list_iter_has_next(listIter)) == DTLV.DTLV_TRUE) {
+                pairs.add(mdbValToString(keyHolder) + mdbValToString(valHolder));
+            }
+            expect(rc == DTLV.DTLV_FALSE, "Filtered list iterator should end with false");
+            expect(pairs.equals(Arrays.asList("ax1", "bx2", "bx3", "ex5")),
+                   "Filtered list iterator mismatch: " + pairs);
+
+            keyIter = new DTLV.dtlv_key_iter();
+            result = DTLV.dtlv_key_iter_create(keyIter, cursor, keyHolder, valHolder,
+                                               DTLV.DTLV_TRUE, DTLV.DTLV_TRUE,
+                                               DTLV.DTLV_TRUE, null, null);
+            if (result != 0) {
+                System.err.println("Failed to create filtered key iterator: " + result);
+                return;
+            }
+            expect(DTLV.dtlv_key_iter_set_filter(keyIter, filter) == 0,
+                   "Setting key iterator filter failed");
+
+            List<String> keys = new ArrayList<>();
+            while ((rc = DTLV.dtlv_key_iter_has_next(keyIter)) == DTLV.DTLV_TRUE) {
+                keys.add(mdbValToString(keyHolder));
+            }
+            expect(rc == DTLV.DTLV_FALSE, "Filtered key iterator should end with false");
+            expect(keys.equals(Arrays.asList("a", "b", "e")),
+                   "Filtered key iterator mismatch: " + keys);
+
+            pass("Passed iterator filter test.");
+        } finally {
+            if (keyIter != null)
+                DTLV.dtlv_key_iter_destroy(keyIter);
+            if (listIter != null)
+                DTLV.dtlv_list_iter_destroy(listIter);
+            if (filter != null)
+                DTLV.dtlv_filter_destroy(filter);
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void putFilterTest(ByteBuffer prog, int op, int target, int offset,
+                              String operand) {
+        byte[] bytes = operand.getBytes(StandardCharsets.UTF_8);
+        prog.put((byte) op);
+        prog.put((byte) target);
+        prog.putInt(offset);
+        prog.putInt(bytes.length);
+        prog.put(bytes);
+    }
+
+    static void testListValIteratorReverse() {
+
+        System.err.println("Testing list value iterators in reverse ...");
+
+        String dir = "db-list-val-reverse";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        IntPointer dbi = new IntPointer(1);
+        DTLV.dtlv_list_val_iter valIter = null;
+        DTLV.dtlv_list_val_full_iter fullIter = null;
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create reverse env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for reverse env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open reverse env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin reverse write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "reverse",
+                                       DTLV.MDB_CREATE | DTLV.MDB_DUPSORT, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open reverse dbi: " + result);
+                return;
+            }
+
+            DTLV.MDB_val kval = new DTLV.MDB_val();
+            fillValWithString(kval, "e", allocations);
+            for (int i = 1; i <= 9; i++) {
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, "v" + i, allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put reverse data: " + result);
+                    return;
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit reverse data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin reverse read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open reverse cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+            DTLV.MDB_val startVal = new DTLV.MDB_val();
+            fillValWithString(startVal, "v7", allocations);
+            DTLV.MDB_val endVal = new DTLV.MDB_val();
+            fillValWithString(endVal, "v3", allocations);
+
+            valIter = new DTLV.dtlv_list_val_iter();
+            result = DTLV.dtlv_list_val_iter_create(valIter, cursor, keyHolder, valHolder,
+                                                    startVal, endVal);
+            if (result != 0) {
+                System.err.println("Failed to create reverse list value iterator: " + result);
+                valIter = null;
+                return;
+            }
+            expect(DTLV.dtlv_list_val_iter_set_order(valIter, DTLV.DTLV_FALSE, 0) == 0,
+                   "Setting list value iterator order failed");
+
+            List<String> values = new ArrayList<>();
+            int rc = DTLV.dtlv_list_val_iter_seek(valIter, kval);
+            while (rc == DTLV.DTLV_TRUE) {
+                values.add(mdbValToString(valHolder));
+                rc = DTLV.dtlv_list_val_iter_has_next(valIter);
+            }
+            expect(rc == DTLV.DTLV_FALSE, "Reverse list value iterator should end with false");
+            expect(values.equals(Arrays.asList("v7", "v6", "v5", "v4", "v3")),
+                   "Reverse list value iterator mismatch: " + values);
+
+            expect(DTLV.dtlv_list_val_iter_set_order(valIter, DTLV.DTLV_FALSE, 2) == 0,
+                   "Setting list value iterator limit failed");
+            values.clear();
+            rc = DTLV.dtlv_list_val_iter_seek(valIter, kval);
+            while (rc == DTLV.DTLV_TRUE) {
+                values.add(mdbValToString(valHolder));
+                rc = DTLV.dtlv_list_val_iter_has_next(valIter);
+            }
+            expect(values.equals(Arrays.asList("v7", "v6")),
+                   "Limited reverse list value iterator mismatch: " + values);
+
+            fullIter = new DTLV.dtlv_list_val_full_iter();
+            result = DTLV.dtlv_list_val_full_iter_create(fullIter, cursor, keyHolder,
+                                                         valHolder);
+            if (result != 0) {
+                System.err.println("Failed to create reverse full iterator: " + result);
+                fullIter = null;
+                return;
+            }
+            expect(DTLV.dtlv_list_val_full_iter_set_order(fullIter, DTLV.DTLV_FALSE, 3) == 0,
+                   "Setting list value full iterator order failed");
+
+            values.clear();
+            rc = DTLV.dtlv_list_val_full_iter_seek(fullIter, kval);
+            if (rc == DTLV.DTLV_TRUE) {
+                values.add(mdbValToString(valHolder));
+                while ((rc = DTLV.dtlv_list_val_full_iter_has_next(fullIter)) == DTLV.DTLV_TRUE) {
+                    values.add(mdbValToString(valHolder));
+                }
+            }
+            expect(rc == DTLV.DTLV_FALSE, "Reverse full iterator should end with false");
+            expect(values.equals(Arrays.asList("v9", "v8", "v7")),
+                   "Reverse full iterator mismatch: " + values);
+
+            pass("Passed list value iterators in reverse test.");
+        } finally {
+            if (valIter != null)
+                DTLV.dtlv_list_val_iter_destroy(valIter);
+            if (fullIter != null)
+                DTLV.dtlv_list_val_full_iter_destroy(fullIter);
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testMultiRangeIterator() {
+
+        System.err.println("Testing multi range iterator ...");
+
+        String dir = "db-multi-range";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        DTLV.dtlv_multi_range_iter iter = null;
+        IntPointer dbi = new IntPointer(1);
+        DTLV.MDB_val startKeys = new DTLV.MDB_val(3);
+        DTLV.MDB_val endKeys = new DTLV.MDB_val(3);
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create multi range iterator env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for multi range iterator env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open multi range iterator env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin multi range iterator write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "ranges", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open multi range iterator dbi: " + result);
+                return;
+            }
+
+            for (int i = 0; i < 20; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, String.format("k%02d", i), allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, "v" + i, allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put multi range iterator data: " + result);
+                    return;
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit multi range iterator data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin multi range iterator read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open multi range iterator cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+            // [k02, k04], (k05, k07], [k15, ...)
+            String[][] ranges = { { "k02", "k04" }, { "k05", "k07" }, { "k15", null } };
+            for (int i = 0; i < ranges.length; i++) {
+                fillValWithString(startKeys.position(i), ranges[i][0], allocations);
+                if (ranges[i][1] != null)
+                    fillValWithString(endKeys.position(i), ranges[i][1], allocations);
+                else
+                    endKeys.position(i).mv_size(0).mv_data(null);
+            }
+            startKeys.position(0);
+            endKeys.position(0);
+            int[] starts = { DTLV.DTLV_TRUE, DTLV.DTLV_FALSE, DTLV.DTLV_TRUE };
+            int[] ends = { DTLV.DTLV_TRUE, DTLV.DTLV_TRUE, DTLV.DTLV_TRUE };
+
+            iter = new DTLV.dtlv_multi_range_iter();
+            result = DTLV.dtlv_multi_range_iter_create(iter, cursor, keyHolder, valHolder,
+                                                       DTLV.DTLV_TRUE, 3, starts, ends,
+                                                       startKeys, endKeys);
+            if (result != 0) {
+                System.err.println("Failed to create multi range iterator: " + result);
+                return;
+            }
+
+            List<String> items = new ArrayList<>();
+            int rc;
+            while ((rc = DTLV.dtlv_multi_range_iter_has_next(iter)) == DTLV.DTLV_TRUE) {
+                items.add(DTLV.dtlv_multi_range_iter_range(iter) + ":"
+                          + mdbValToString(keyHolder));
+            }
+            expect(rc == DTLV.DTLV_FALSE, "Multi range iterator should end with false");
+
+            List<String> expected = Arrays.asList(
+                "0:k02", "0:k03", "0:k04", "1:k06", "1:k07",
+                "2:k15", "2:k16", "2:k17", "2:k18", "2:k19");
+            expect(items.equals(expected),
+                   "Multi range iterator items mismatch: " + items);
+
+            pass("Passed multi range iterator test.");
+        } finally {
+            if (iter != null)
+                DTLV.dtlv_multi_range_iter_destroy(iter);
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            startKeys.close();
+            endKeys.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testMergeJoinIterator() {
+
+        System.err.println("Testing merge join iterator ...");
+
+        String dir = "db-merge-join";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor leftCursor = new DTLV.MDB_cursor();
+        DTLV.MDB_cursor rightCursor = new DTLV.MDB_cursor();
+        DTLV.MDB_cursor plainCursor = new DTLV.MDB_cursor();
+        keepAlive(leftCursor);
+        keepAlive(rightCursor);
+        keepAlive(plainCursor);
+        DTLV.dtlv_merge_join_iter iter = null;
+        IntPointer leftDbi = new IntPointer(1);
+        IntPointer rightDbi = new IntPointer(1);
+        IntPointer plainDbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean leftOpened = false;
+        boolean rightOpened = false;
+        boolean plainOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create merge join env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for merge join env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open merge join env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin merge join write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            int flags = DTLV.MDB_CREATE | DTLV.MDB_DUPSORT;
+            result = DTLV.mdb_dbi_open(txn, "left", flags, leftDbi);
+            if (result != 0) {
+                System.err.println("Failed to open merge join left dbi: " + result);
+                return;
+            }
+            result = DTLV.mdb_dbi_open(txn, "right", flags, rightDbi);
+            if (result != 0) {
+                System.err.println("Failed to open merge join right dbi: " + result);
+                return;
+            }
+            result = DTLV.mdb_dbi_open(txn, "plain", DTLV.MDB_CREATE, plainDbi);
+            if (result != 0) {
+                System.err.println("Failed to open merge join plain dbi: " + result);
+                return;
+            }
+
+            String[][] left = { { "a", "1" }, { "b", "1" }, { "b", "2" }, { "d", "1" },
+                                { "e", "1" }, { "g", "1" } };
+            String[][] right = { { "b", "x" }, { "c", "x" }, { "e", "x" }, { "e", "y" },
+                                 { "g", "x" }, { "h", "x" } };
+            String[][] plain = { { "b", "p" }, { "e", "q" }, { "f", "r" }, { "g", "s" } };
+            for (String[] kv : left) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, kv[0], allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, kv[1], allocations);
+                result = DTLV.mdb_put(txn, leftDbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put merge join left data: " + result);
+                    return;
+                }
+            }
+            for (String[] kv : right) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, kv[0], allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, kv[1], allocations);
+                result = DTLV.mdb_put(txn, rightDbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put merge join right data: " + result);
+                    return;
+                }
+            }
+            for (String[] kv : plain) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, kv[0], allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, kv[1], allocations);
+                result = DTLV.mdb_put(txn, plainDbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put merge join plain data: " + result);
+                    return;
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit merge join data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin merge join read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, leftDbi.get(), leftCursor);
+            if (result != 0) {
+                System.err.println("Failed to open merge join left cursor: " + result);
+                return;
+            }
+            leftOpened = true;
+            result = DTLV.mdb_cursor_open(rtxn, rightDbi.get(), rightCursor);
+            if (result != 0) {
+                System.err.println("Failed to open merge join right cursor: " + result);
+                return;
+            }
+            rightOpened = true;
+            result = DTLV.mdb_cursor_open(rtxn, plainDbi.get(), plainCursor);
+            if (result != 0) {
+                System.err.println("Failed to open merge join plain cursor: " + result);
+                return;
+            }
+            plainOpened = true;
+
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val leftHolder = new DTLV.MDB_val();
+            DTLV.MDB_val rightHolder = new DTLV.MDB_val();
+
+            iter = new DTLV.dtlv_merge_join_iter();
+            result = DTLV.dtlv_merge_join_iter_create(iter, leftCursor, rightCursor,
+                                                      keyHolder, leftHolder, rightHolder,
+                                                      DTLV.DTLV_FALSE, DTLV.DTLV_TRUE,
+                                                      DTLV.DTLV_TRUE, null, null);
+            if (result != 0) {
+                System.err.println("Failed to create merge join iterator: " + result);
+                return;
+            }
+
+            List<String> keys = new ArrayList<>();
+            int rc;
+            while ((rc = DTLV.dtlv_merge_join_iter_has_next(iter)) == DTLV.DTLV_TRUE) {
+                keys.add(mdbValToString(keyHolder));
+            }
+            expect(rc == DTLV.DTLV_FALSE, "Merge join iterator should end with false");
+            expect(keys.equals(Arrays.asList("b", "e", "g")),
+                   "Merge join keys mismatch: " + keys);
+            DTLV.dtlv_merge_join_iter_destroy(iter);
+            iter = null;
+
+            DTLV.MDB_val startKey = new DTLV.MDB_val();
+            fillValWithString(startKey, "c", allocations);
+
+            iter = new DTLV.dtlv_merge_join_iter();
+            result = DTLV.dtlv_merge_join_iter_create(iter, leftCursor, rightCursor,
+                                                      keyHolder, leftHolder, rightHolder,
+                                                      DTLV.DTLV_TRUE, DTLV.DTLV_TRUE,
+                                                      DTLV.DTLV_TRUE, startKey, null);
+            if (result != 0) {
+                System.err.println("Failed to create merge join iterator: " + result);
+                return;
+            }
+
+            List<String> pairs = new ArrayList<>();
+            while ((rc = DTLV.dtlv_merge_join_iter_has_next(iter)) == DTLV.DTLV_TRUE) {
+                pairs.add(mdbValToString(keyHolder) + ":" + mdbValToString(leftHolder)
+                          + mdbValToString(rightHolder));
+            }
+            expect(rc == DTLV.DTLV_FALSE, "Merge join iterator should end with false");
+            expect(pairs.equals(Arrays.asList("e:1x", "e:1y", "g:1x")),
+                   "Merge join pairs mismatch: " + pairs);
+            DTLV.dtlv_merge_join_iter_destroy(iter);
+            iter = null;
+
+            // a plain DBI has one value per key on its side of the pairs
+            DTLV.MDB_cursor[][] mixed = { { leftCursor, plainCursor },
+                                          { plainCursor, rightCursor } };
+            List<List<String>> expected = Arrays.asList(
+                Arrays.asList("b:1p", "b:2p", "e:1q", "g:1s"),
+                Arrays.asList("b:px", "e:qx", "e:qy", "g:sx"));
+            for (int m = 0; m < mixed.length; m++) {
+                iter = new DTLV.dtlv_merge_join_iter();
+                result = DTLV.dtlv_merge_join_iter_create(iter, mixed[m][0], mixed[m][1],
+                                                          keyHolder, leftHolder, rightHolder,
+                                                          DTLV.DTLV_TRUE, DTLV.DTLV_TRUE,
+                                                          DTLV.DTLV_TRUE, null, null);
+                if (result != 0) {
+                    System.err.println("Failed to create mixed merge join iterator: " + result);
+                    return;
+                }
+
+                pairs = new ArrayList<>();
+                while ((rc = DTLV.dtlv_merge_join_iter_has_next(iter)) == DTLV.DTLV_TRUE) {
+                    pairs.add(mdbValToString(keyHolder) + ":" + mdbValToString(leftHolder)
+                              + mdbValToString(rightHolder));
+                }
+                expect(rc == DTLV.DTLV_FALSE, "Merge join iterator should end with false");
+                expect(pairs.equals(expected.get(m)),
+                       "Mixed merge join pairs mismatch: " + pairs);
+                DTLV.dtlv_merge_join_iter_destroy(iter);
+                iter = null;
+            }
+
+            pass("Passed merge join iterator test.");
+        } finally {
+            if (iter != null)
+                DTLV.dtlv_merge_join_iter_destroy(iter);
+            if (leftOpened)
+                DTLV.mdb_cursor_close(leftCursor);
+            if (rightOpened)
+                DTLV.mdb_cursor_close(rightCursor);
+            if (plainOpened)
+                DTLV.mdb_cursor_close(plainCursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            leftDbi.close();
+            rightDbi.close();
+            plainDbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testLeapfrogIterator() {
+
+        System.err.println("Testing leapfrog iterator ...");
+
+        String dir = "db-leapfrog";
+        String[] names = { "r", "s", "t" };
+        String[][][] data = {
+            { { "a", "1" }, { "c", "1" }, { "c", "2" }, { "c", "3" }, { "g", "2" },
+              { "x", "1" }, { "x", "2" }, { "x", "3" }, { "x", "5" } },
+            { { "b", "1" }, { "c", "2" }, { "c", "3" }, { "d", "1" }, { "g", "2" },
+              { "x", "2" }, { "x", "3" }, { "x", "5" }, { "x", "6" } },
+            { { "c", "3" }, { "c", "4" }, { "g", "1" }, { "g", "2" }, { "h", "1" },
+              { "x", "3" }, { "x", "5" }, { "x", "7" } } };
+        int n = names.length;
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor[] cursors = new DTLV.MDB_cursor[n];
+        PointerPointer<DTLV.MDB_cursor> cursorArray = new PointerPointer<>(n);
+        DTLV.MDB_val keys = new DTLV.MDB_val(n);
+        DTLV.dtlv_leapfrog_iter iter = null;
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        int opened = 0;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create leapfrog env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for leapfrog env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open leapfrog env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin leapfrog write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            int[] dbis = new int[n];
+            for (int i = 0; i < n; i++) {
+                result = DTLV.mdb_dbi_open(txn, names[i],
+                                           DTLV.MDB_CREATE | DTLV.MDB_DUPSORT, dbi);
+                if (result != 0) {
+                    System.err.println("Failed to open leapfrog dbi: " + result);
+                    return;
+                }
+                dbis[i] = dbi.get();
+                for (String[] kv : data[i]) {
+                    DTLV.MDB_val kval = new DTLV.MDB_val();
+                    fillValWithString(kval, kv[0], allocations);
+                    DTLV.MDB_val vval = new DTLV.MDB_val();
+                    fillValWithString(vval, kv[1], allocations);
+                    result = DTLV.mdb_put(txn, dbis[i], kval, vval, 0);
+                    if (result != 0) {
+                        System.err.println("Failed to put leapfrog data: " + result);
+                        return;
+                    }
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit leapfrog data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin leapfrog read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            for (int i = 0; i < n; i++) {
+                cursors[i] = new DTLV.MDB_cursor();
+                keepAlive(cursors[i]);
+                result = DTLV.mdb_cursor_open(rtxn, dbis[i], cursors[i]);
+                if (result != 0) {
+                    System.err.println("Failed to open leapfrog cursor: " + result);
+                    return;
+                }
+                opened++;
+                cursorArray.put(i, cursors[i]);
+            }
+
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+
+            iter = new DTLV.dtlv_leapfrog_iter();
+            result = DTLV.dtlv_leapfrog_iter_create(iter, n, cursorArray, null, valHolder);
+            if (result != 0) {
+                System.err.println("Failed to create leapfrog iterator: " + result);
+                return;
+            }
+
+            expect(collectLeapfrog(iter, valHolder).equals(Arrays.asList("c", "g", "x")),
+                   "Leapfrog key intersection mismatch");
+
+            DTLV.MDB_val target = new DTLV.MDB_val();
+            fillValWithString(target, "d", allocations);
+            expect(DTLV.dtlv_leapfrog_iter_reset(iter, null) == 0,
+                   "Leapfrog iterator reset failed");
+            expect(DTLV.dtlv_leapfrog_iter_seek(iter, target) == DTLV.DTLV_TRUE,
+                   "Leapfrog seek should find a key");
+            expect("g".equals(mdbValToString(valHolder)),
+                   "Leapfrog seek should land on g");
+            expect(collectLeapfrog(iter, valHolder).equals(Arrays.asList("x")),
+                   "Leapfrog keys after seek mismatch");
+            DTLV.dtlv_leapfrog_iter_destroy(iter);
+            iter = null;
+
+            for (int i = 0; i < n; i++)
+                fillValWithString(keys.position(i), "x", allocations);
+            keys.position(0);
+
+            iter = new DTLV.dtlv_leapfrog_iter();
+            result = DTLV.dtlv_leapfrog_iter_create(iter, n, cursorArray, keys, valHolder);
+            if (result != 0) {
+                System.err.println("Failed to create leapfrog iterator: " + result);
+                return;
+            }
+
+            expect(collectLeapfrog(iter, valHolder).equals(Arrays.asList("3", "5")),
+                   "Leapfrog value intersection mismatch");
+
+            String[][] bindings = { { "c", "3" }, { "g", "2" }, { "a", null } };
+            for (String[] binding : bindings) {
+                for (int i = 0; i < n; i++)
+                    fillValWithString(keys.position(i), binding[0], allocations);
+                keys.position(0);
+                expect(DTLV.dtlv_leapfrog_iter_reset(iter, keys) == 0,
+                       "Leapfrog iterator reset failed");
+                List<String> expected = binding[1] == null
+                    ? Collections.emptyList() : Arrays.asList(binding[1]);
+                expect(collectLeapfrog(iter, valHolder).equals(expected),
+                       "Leapfrog values mismatch for key " + binding[0]);
+            }
+
+            pass("Passed leapfrog iterator test.");
+        } finally {
+            if (iter != null)
+                DTLV.dtlv_leapfrog_iter_destroy(iter);
+            for (int i = 0; i < opened; i++)
+                DTLV.mdb_cursor_close(cursors[i]);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            cursorArray.close();
+            keys.close();
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static List<String> collectLeapfrog(DTLV.dtlv_leapfrog_iter iter,
+                                        DTLV.MDB_val holder) {
+        List<String> items = new ArrayList<>();
+        int rc;
+        while ((rc = DTLV.dtlv_leapfrog_iter_has_next(iter)) == DTLV.DTLV_TRUE) {
+            items.add(mdbValToString(holder));
+        }
+        expect(rc == DTLV.DTLV_FALSE, "Leapfrog iterator should end with false");
+        return items;
+    }
+
+    static void testSkipScanIterator() {
+
+        System.err.println("Testing skip-scan iterator ...");
+
+        String dir = "db-skip-scan";
+        String[] prefixes = { "aa", "ab", "ba", "bb", "bc" };
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        DTLV.dtlv_skip_scan_iter iter = null;
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create skip-scan env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for skip-scan env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open skip-scan env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin skip-scan write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "composite",
+                                       DTLV.MDB_CREATE | DTLV.MDB_DUPSORT, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open skip-scan dbi: " + result);
+                return;
+            }
+
+            for (String prefix : prefixes) {
+                for (int s = 0; s < 10; s++) {
+                    DTLV.MDB_val kval = new DTLV.MDB_val();
+                    fillValWithString(kval, prefix + s, allocations);
+                    for (String v : new String[] { "x", "y" }) {
+                        DTLV.MDB_val vval = new DTLV.MDB_val();
+                        fillValWithString(vval, v, allocations);
+                        result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                        if (result != 0) {
+                            System.err.println("Failed to put skip-scan data: " + result);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit skip-scan data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin skip-scan read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open skip-scan cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+            DTLV.MDB_val lo = new DTLV.MDB_val();
+            fillValWithString(lo, "3", allocations);
+            DTLV.MDB_val hi = new DTLV.MDB_val();
+            fillValWithString(hi, "4", allocations);
+
+            iter = new DTLV.dtlv_skip_scan_iter();
+            result = DTLV.dtlv_skip_scan_iter_create(iter, cursor, keyHolder,
+                                                     valHolder, 2, lo, hi);
+            if (result != 0) {
+                System.err.println("Failed to create skip-scan iterator: " + result);
+                return;
+            }
+
+            List<String> expected = new ArrayList<>();
+            for (String prefix : prefixes) {
+                expected.add(prefix + "3");
+                expected.add(prefix + "4");
+            }
+            List<String> seen = new ArrayList<>();
+            while ((result = DTLV.dtlv_skip_scan_iter_has_next(iter)) == DTLV.DTLV_TRUE) {
+                seen.add(mdbValToString(keyHolder));
+                expect("x".equals(mdbValToString(valHolder)),
+                       "Skip-scan should be on the first value of a key");
+            }
+            expect(result == DTLV.DTLV_FALSE, "Skip-scan iterator should end with false");
+            expect(seen.equals(expected), "Skip-scan keys mismatch: " + seen);
+            DTLV.dtlv_skip_scan_iter_destroy(iter);
+            iter = null;
+
+            iter = new DTLV.dtlv_skip_scan_iter();
+            result = DTLV.dtlv_skip_scan_iter_create(iter, cursor, keyHolder,
+                                                     valHolder, 2, null, lo);
+            if (result != 0) {
+                System.err.println("Failed to create skip-scan iterator: " + result);
+                return;
+            }
+            int count = 0;
+            while (DTLV.dtlv_skip_scan_iter_has_next(iter) == DTLV.DTLV_TRUE)
+                count++;
+            expect(count == prefixes.length * 4,
+                   "Skip-scan with only an upper bound count mismatch: " + count);
+
+            pass("Passed skip-scan iterator test.");
+        } finally {
+            if (iter != null)
+                DTLV.dtlv_skip_scan_iter_destroy(iter);
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testReaderPool() {
+
+        System.err.println("Testing reader pool ...");
+
+        String dir = "db-reader-pool";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.dtlv_reader_pool pool = null;
+        DTLV.dtlv_reader reader = null;
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create reader pool env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for reader pool env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOTLS, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open reader pool env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin reader pool write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "pooled", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open reader pool dbi: " + result);
+                return;
+            }
+
+            DTLV.MDB_val kval = new DTLV.MDB_val();
+            fillValWithString(kval, "a", allocations);
+            DTLV.MDB_val vval = new DTLV.MDB_val();
+            fillValWithString(vval, "1", allocations);
+            result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+            if (result != 0) {
+                System.err.println("Failed to put reader pool data: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit reader pool data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            pool = new DTLV.dtlv_reader_pool();
+            result = DTLV.dtlv_reader_pool_create(pool, env, 1, dbi, 2);
+            if (result != 0) {
+                System.err.println("Failed to create reader pool: " + result);
+                return;
+            }
+
+            reader = new DTLV.dtlv_reader();
+            result = DTLV.dtlv_reader_pool_acquire(pool, reader);
+            expect(result == 0, "Reader pool acquire failed: " + result);
+            expect(DTLV.dtlv_reader_cursor(pool, reader, 1) == null,
+                   "Reader cursor out of range should be null");
+
+            DTLV.MDB_cursor cursor = DTLV.dtlv_reader_cursor(pool, reader, 0);
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+            int count = 0;
+            for (int rc = DTLV.mdb_cursor_get(cursor, keyHolder, valHolder, DTLV.MDB_FIRST);
+                 rc == 0;
+                 rc = DTLV.mdb_cursor_get(cursor, keyHolder, valHolder, DTLV.MDB_NEXT))
+                count++;
+            expect(count == 1, "Pooled reader should see one key, got " + count);
+            expect(DTLV.dtlv_reader_is_stale(reader) == DTLV.DTLV_FALSE,
+                   "Fresh reader should not be stale");
+            expect(DTLV.dtlv_reader_refresh(pool, reader) == DTLV.DTLV_FALSE,
+                   "Fresh reader should not be refreshed");
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin reader pool write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+            fillValWithString(kval, "b", allocations);
+            result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+            if (result != 0) {
+                System.err.println("Failed to put reader pool data: " + result);
+                return;
+            }
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit reader pool data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            expect(DTLV.dtlv_reader_is_stale(reader) == DTLV.DTLV_TRUE,
+                   "Reader should be stale after a commit");
+            expect(DTLV.dtlv_reader_refresh(pool, reader) == DTLV.DTLV_TRUE,
+                   "Stale reader should be refreshed");
+            cursor = DTLV.dtlv_reader_cursor(pool, reader, 0);
+            count = 0;
+            for (int rc = DTLV.mdb_cursor_get(cursor, keyHolder, valHolder, DTLV.MDB_FIRST);
+                 rc == 0;
+                 rc = DTLV.mdb_cursor_get(cursor, keyHolder, valHolder, DTLV.MDB_NEXT))
+                count++;
+            expect(count == 2, "Refreshed reader should see two keys, got " + count);
+
+            DTLV.dtlv_reader_pool_release(pool, reader);
+            reader = new DTLV.dtlv_reader();
+            result = DTLV.dtlv_reader_pool_acquire(pool, reader);
+            expect(result == 0, "Reader pool acquire after release failed: " + result);
+            expect(DTLV.dtlv_reader_is_stale(reader) == DTLV.DTLV_FALSE,
+                   "Reacquired reader should be on the latest snapshot");
+            expect(DTLV.mdb_get(DTLV.dtlv_reader_txn(reader), dbi.get(), kval, valHolder) == 0,
+                   "Reacquired reader should see the new key");
+
+            pass("Passed reader pool test.");
+        } finally {
+            if (reader != null && !reader.isNull())
+                DTLV.dtlv_reader_pool_release(pool, reader);
+            if (pool != null)
+                DTLV.dtlv_reader_pool_destroy(pool);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testWriteCombiner() {
+
+        System.err.println("Testing write combiner ...");
+
+        String dir = "db-write-combiner";
+        int threads = 4;
+        int perThread = 50;
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.dtlv_write_combiner combiner = null;
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean txnActive = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create write combiner env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for write combiner env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open write combiner env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin write combiner txn: " + result);
+                return;
+            }
+            txnActive = true;
+            result = DTLV.mdb_dbi_open(txn, "combined", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open write combiner dbi: " + result);
+                return;
+            }
+            result = DTLV.mdb_txn_commit(txn);
+            txnActive = false;
+            if (result != 0) {
+                System.err.println("Failed to commit write combiner dbi: " + result);
+                return;
+            }
+
+            combiner = new DTLV.dtlv_write_combiner();
+            result = DTLV.dtlv_write_combiner_create(combiner, env, 0);
+            if (result != 0) {
+                System.err.println("Failed to create write combiner: " + result);
+                return;
+            }
+
+            DTLV.dtlv_write_combiner c = combiner;
+            int d = dbi.get();
+            int[] failures = new int[threads];
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        String key = "t" + id + "-" + String.format("%03d", i);
+                        byte[] ops = encodeWriteOps(d, DTLV.DTLV_WRITE_PUT, key, "v" + i);
+                        // the last op of every 10th batch is truncated
+                        boolean bad = i % 10 == 3;
+                        int rc = DTLV.dtlv_write_combiner_submit(
+                            c, ops, bad ? ops.length - 1 : ops.length);
+                        if ((rc == 0) == bad) failures[id]++;
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread w : workers) {
+                try {
+                    w.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            for (int t = 0; t < threads; t++)
+                expect(failures[t] == 0, "Write combiner results mismatch in thread " + t);
+
+            byte[] del = encodeWriteOps(d, DTLV.DTLV_WRITE_DEL, "t0-000", "");
+            expect(DTLV.dtlv_write_combiner_submit(combiner, del, del.length) == 0,
+                   "Write combiner delete failed");
+            expect(DTLV.dtlv_write_combiner_submit(combiner, del, del.length) == 0,
+                   "Deleting a missing key should not fail");
+
+            long[] commits = new long[1];
+            long[] batches = new long[1];
+            DTLV.dtlv_write_combiner_stats(combiner, commits, batches);
+            expect(batches[0] == threads * perThread + 2,
+                   "Write combiner batch count mismatch: " + batches[0]);
+            expect(commits[0] >= 1 && commits[0] <= batches[0],
+                   "Write combiner commit count mismatch: " + commits[0]);
+
+            DTLV.dtlv_write_combiner_destroy(combiner);
+            combiner = null;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin write combiner read txn: " + result);
+                return;
+            }
+            txnActive = true;
+
+            DTLV.MDB_stat stat = new DTLV.MDB_stat();
+            result = DTLV.mdb_stat(txn, dbi.get(), stat);
+            expect(result == 0, "Write combiner stat failed: " + result);
+            long good = threads * (perThread - perThread / 10) - 1;
+            expect(stat.ms_entries() == good,
+                   "Write combiner entry count mismatch: " + stat.ms_entries());
+
+            DTLV.MDB_val kval = new DTLV.MDB_val();
+            fillValWithString(kval, "t2-011", allocations);
+            DTLV.MDB_val vval = new DTLV.MDB_val();
+            expect(DTLV.mdb_get(txn, dbi.get(), kval, vval) == 0
+                   && "v11".equals(mdbValToString(vval)),
+                   "Write combiner value mismatch");
+            fillValWithString(kval, "t2-013", allocations);
+            expect(DTLV.mdb_get(txn, dbi.get(), kval, vval) == DTLV.MDB_NOTFOUND,
+                   "A failed batch should not be written");
+
+            pass("Passed write combiner test.");
+        } finally {
+            if (combiner != null)
+                DTLV.dtlv_write_combiner_destroy(combiner);
+            if (txnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static byte[] encodeWriteOps(int dbi, int op, String key, String val) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        byte[] v = val.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(1 + 16 + k.length + v.length)
+            .order(ByteOrder.nativeOrder());
+        buf.put((byte) op).putInt(dbi).putInt(0);
+        buf.putInt(k.length).put(k);
+        buf.putInt(v.length).put(v);
+        return buf.array();
+    }
+
+    static void testBulkLoader() {
+
+        System.err.println("Testing bulk loader ...");
+
+        String dir = "db-bulk-loader";
+        int n = 1000;
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        DTLV.dtlv_bulk_loader loader = null;
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean txnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create bulk loader env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for bulk loader env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open bulk loader env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin bulk loader txn: " + result);
+                return;
+            }
+            txnActive = true;
+            result = DTLV.mdb_dbi_open(txn, "bulk", DTLV.MDB_CREATE | DTLV.MDB_DUPSORT, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open bulk loader dbi: " + result);
+                return;
+            }
+            result = DTLV.mdb_txn_commit(txn);
+            txnActive = false;
+            if (result != 0) {
+                System.err.println("Failed to commit bulk loader dbi: " + result);
+                return;
+            }
+
+            loader = new DTLV.dtlv_bulk_loader();
+            // a small budget and chunk force spilled runs and several commits
+            result = DTLV.dtlv_bulk_loader_create(loader, env, dbi.get(), 4096, 128);
+            if (result != 0) {
+                System.err.println("Failed to create bulk loader: " + result);
+                return;
+            }
+
+            // every key gets values "a" and "b", added in a scrambled order,
+            // and "a" is added twice
+            for (int r = 0; r < 3; r++) {
+                ByteBuffer buf = ByteBuffer.allocate(n * 16).order(ByteOrder.nativeOrder());
+                for (int i = 0; i < n; i++) {
+                    int j = (i * 7919) % n;
+                    byte[] k = String.format("k%04d", j).getBytes(StandardCharsets.UTF_8);
+                    byte[] v = (r == 1 ? "b" : "a").getBytes(StandardCharsets.UTF_8);
+                    buf.putInt(k.length).put(k).putInt(v.length).put(v);
+                }
+                result = DTLV.dtlv_bulk_loader_add(loader, buf.array(), buf.position());
+                expect(result == 0, "Bulk loader add failed: " + result);
+            }
+
+            byte[] bad = encodeWriteOps(0, 0, "x", "y");
+            expect(DTLV.dtlv_bulk_loader_add(loader, bad, bad.length) != 0,
+                   "Malformed records should be rejected");
+
+            long[] written = new long[1];
+            result = DTLV.dtlv_bulk_loader_finish(loader, written);
+            expect(result == 0, "Bulk loader finish failed: " + result);
+            expect(written[0] == 2L * n, "Bulk loader written count mismatch: " + written[0]);
+            expect(DTLV.dtlv_bulk_loader_finish(loader, written) != 0,
+                   "A finished loader should not be reused");
+
+            DTLV.dtlv_bulk_loader_destroy(loader);
+            loader = null;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin bulk loader read txn: " + result);
+                return;
+            }
+            txnActive = true;
+
+            result = DTLV.mdb_cursor_open(txn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open bulk loader cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            DTLV.MDB_val kval = new DTLV.MDB_val();
+            DTLV.MDB_val vval = new DTLV.MDB_val();
+            int count = 0;
+            for (int rc = DTLV.mdb_cursor_get(cursor, kval, vval, DTLV.MDB_FIRST);
+                 rc == 0;
+                 rc = DTLV.mdb_cursor_get(cursor, kval, vval, DTLV.MDB_NEXT)) {
+                String expected = String.format("k%04d", count / 2);
+                expect(expected.equals(mdbValToString(kval)),
+                       "Bulk loader key out of order at " + count);
+                expect((count % 2 == 0 ? "a" : "b").equals(mdbValToString(vval)),
+                       "Bulk loader value out of order at " + count);
+                count++;
+            }
+            expect(count == 2 * n, "Bulk loader entry count mismatch: " + count);
+
+            pass("Passed bulk loader test.");
+        } finally {
+            if (loader != null)
+                DTLV.dtlv_bulk_loader_destroy(loader);
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (txnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testMultiGet() {
+
+        System.err.println("Testing multi get ...");
+
+        String dir = "db-multi-get";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        IntPointer dbi = new IntPointer(1);
+        String[] lookups = {"k7", "x", "k2", "k7", "k0"};
+        DTLV.MDB_val keys = new DTLV.MDB_val(lookups.length);
+        DTLV.MDB_val vals = new DTLV.MDB_val(lookups.length);
+        BytePointer buf = new BytePointer(64);
+        SizeTPointer used = new SizeTPointer(1);
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create multi get env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for multi get env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open multi get env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin multi get write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "multi", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open multi get dbi: " + result);
+                return;
+            }
+
+            for (int i = 0; i < 10; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, "k" + i, allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, "v" + i, allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put multi get data: " + result);
+                    return;
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit multi get data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin multi get read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open multi get cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            for (int i = 0; i < lookups.length; i++)
+                fillValWithString(keys.position(i), lookups[i], allocations);
+            keys.position(0);
+
+            int[] found = new int[1];
+            result = DTLV.dtlv_multi_get(cursor, lookups.length, keys, vals, found);
+            expect(result == 0, "Multi get failed: " + result);
+            expect(found[0] == 4, "Multi get found count mismatch: " + found[0]);
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < lookups.length; i++) {
+                DTLV.MDB_val v = vals.position(i);
+                values.add(v.mv_data() == null ? null : mdbValToString(v));
+            }
+            vals.position(0);
+            expect(values.equals(Arrays.asList("v7", null, "v2", "v7", "v0")),
+                   "Multi get values mismatch: " + values);
+
+            int n = DTLV.dtlv_multi_get_batch(cursor, lookups.length, keys, buf, 8, used);
+            expect(n < 0 && used.get() == 28,
+                   "Multi get batch should report the size needed, got " + used.get());
+
+            n = DTLV.dtlv_multi_get_batch(cursor, lookups.length, keys, buf, 64, used);
+            expect(n == 4, "Multi get batch found count mismatch: " + n);
+            expect(used.get() == 28, "Multi get batch used bytes mismatch: " + used.get());
+            ByteBuffer records = buf.position(0).limit(used.get()).asByteBuffer()
+                .order(ByteOrder.nativeOrder());
+            List<String> copied = new ArrayList<>();
+            for (int i = 0; i < lookups.length; i++) {
+                int len = records.getInt();
+                if (len == DTLV.DTLV_MULTI_GET_ABSENT) {
+                    copied.add(null);
+                    continue;
+                }
+                byte[] bytes = new byte[len];
+                records.get(bytes);
+                copied.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            expect(copied.equals(values), "Multi get batch values mismatch: " + copied);
+
+            pass("Passed multi get test.");
+        } finally {
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            keys.close();
+            vals.close();
+            buf.close();
+            used.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testPutBatch() {
+
+        System.err.println("Testing put batch ...");
+
+        String dir = "db-put-batch";
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        IntPointer dbi = new IntPointer(1);
+        SizeTPointer written = new SizeTPointer(1);
+
+        boolean envCreated = false;
+        boolean txnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create put batch env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for put batch env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open put batch env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin put batch txn: " + result);
+                return;
+            }
+            txnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "fixed",
+                                       DTLV.MDB_CREATE | DTLV.MDB_DUPSORT
+                                       | DTLV.MDB_DUPFIXED, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open put batch dbi: " + result);
+                return;
+            }
+
+            // the values of "a" form a run that goes in one MDB_MULTIPLE put
+            String[][] records = {
+                {"a", "v3"}, {"a", "v1"}, {"a", "v2"}, {"b", "v1"}, {"a", "v4"}
+            };
+            ByteBuffer buf = ByteBuffer.allocate(256).order(ByteOrder.nativeOrder());
+            for (String[] r : records) {
+                byte[] k = r[0].getBytes(StandardCharsets.UTF_8);
+                byte[] v = r[1].getBytes(StandardCharsets.UTF_8);
+                buf.putInt(k.length).put(k).putInt(v.length).put(v);
+            }
+
+            result = DTLV.dtlv_put_batch(txn, dbi.get(), buf.array(), buf.position() - 1,
+                                         0, written);
+            expect(result != 0 && written.get() == 0,
+                   "Malformed records should be rejected");
+
+            result = DTLV.dtlv_put_batch(txn, dbi.get(), buf.array(), buf.position(),
+                                         0, written);
+            expect(result == 0, "Put batch failed: " + result);
+            expect(written.get() == records.length,
+                   "Put batch written count mismatch: " + written.get());
+
+            result = DTLV.mdb_cursor_open(txn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open put batch cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            DTLV.MDB_val kval = new DTLV.MDB_val();
+            DTLV.MDB_val vval = new DTLV.MDB_val();
+            List<String> items = new ArrayList<>();
+            for (int rc = DTLV.mdb_cursor_get(cursor, kval, vval, DTLV.MDB_FIRST);
+                 rc == 0;
+                 rc = DTLV.mdb_cursor_get(cursor, kval, vval, DTLV.MDB_NEXT))
+                items.add(mdbValToString(kval) + "=" + mdbValToString(vval));
+            List<String> expected = Arrays.asList(
+                "a=v1", "a=v2", "a=v3", "a=v4", "b=v1");
+            expect(items.equals(expected), "Put batch items mismatch: " + items);
+
+            result = DTLV.dtlv_put_batch(txn, dbi.get(), buf.array(), buf.position(),
+                                         DTLV.MDB_NODUPDATA, written);
+            expect(result == DTLV.MDB_KEYEXIST,
+                   "Put batch with MDB_NODUPDATA should fail on existing data: " + result);
+
+            pass("Passed put batch test.");
+        } finally {
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (txnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            written.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testMapGrowth() {
+
+        System.err.println("Testing map growth ...");
+
+        String dir = "db-map-growth";
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.dtlv_map_growth growth = null;
+        DTLV.dtlv_map_growth capped = null;
+        DTLV.dtlv_write_combiner combiner = null;
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean txnActive = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create map growth env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for map growth env: " + result);
+                return;
+            }
+
+            // start with a map far too small for the data
+            result = DTLV.mdb_env_set_mapsize(env, 64 * 1024);
+            if (result != 0) {
+                System.err.println("Failed to set map size for map growth env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open map growth env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin map growth txn: " + result);
+                return;
+            }
+            txnActive = true;
+            result = DTLV.mdb_dbi_open(txn, "grown", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open map growth dbi: " + result);
+                return;
+            }
+            result = DTLV.mdb_txn_commit(txn);
+            txnActive = false;
+            if (result != 0) {
+                System.err.println("Failed to commit map growth dbi: " + result);
+                return;
+            }
+
+            DTLV.MDB_envinfo info = new DTLV.MDB_envinfo();
+            DTLV.mdb_env_info(env, info);
+            long initial = info.me_mapsize();
+
+            growth = new DTLV.dtlv_map_growth();
+            expect(DTLV.dtlv_map_growth_create(growth, env, 1.0, 0) != 0,
+                   "A growth factor of 1 should be rejected");
+            result = DTLV.dtlv_map_growth_create(growth, env, 2.0, 0);
+            if (result != 0) {
+                System.err.println("Failed to create map growth: " + result);
+                return;
+            }
+
+            byte[] ops = encodeGrowthOps(dbi.get(), 0, 2000);
+            result = DTLV.dtlv_map_growth_write(growth, ops, ops.length);
+            expect(result == 0, "Map growth write failed: " + result);
+            DTLV.mdb_env_info(env, info);
+            long grown = info.me_mapsize();
+            expect(grown > initial, "Map should have grown from " + initial);
+
+            combiner = new DTLV.dtlv_write_combiner();
+            result = DTLV.dtlv_write_combiner_create(combiner, env, 0);
+            if (result != 0) {
+                System.err.println("Failed to create map growth combiner: " + result);
+                return;
+            }
+            DTLV.dtlv_write_combiner_set_growth(combiner, growth);
+            ops = encodeGrowthOps(dbi.get(), 2000, 4000);
+            result = DTLV.dtlv_write_combiner_submit(combiner, ops, ops.length);
+            expect(result == 0, "Map growth combiner submit failed: " + result);
+            DTLV.dtlv_write_combiner_destroy(combiner);
+            combiner = null;
+            DTLV.mdb_env_info(env, info);
+            expect(info.me_mapsize() > grown, "Map should have grown from " + grown);
+            grown = info.me_mapsize();
+
+            // a read txn open on another thread keeps the map from being
+            // resized under it
+            int ebusy = 16; // EBUSY
+            DTLV.dtlv_map_growth gate = growth;
+            DTLV.MDB_txn gated = new DTLV.MDB_txn();
+            CountDownLatch opened = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            int[] readResult = new int[1];
+            Thread reader = new Thread(() -> {
+                readResult[0] = DTLV.dtlv_map_growth_txn_begin(gate, 0, gated);
+                opened.countDown();
+                if (readResult[0] != 0) return;
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                DTLV.MDB_stat readStat = new DTLV.MDB_stat();
+                readResult[0] = DTLV.mdb_stat(gated, dbi.get(), readStat);
+                DTLV.dtlv_map_growth_txn_end(gate, gated);
+            });
+            reader.start();
+            try {
+                opened.await();
+                expect(readResult[0] == 0, "Failed to begin gated read txn: " + readResult[0]);
+                result = DTLV.dtlv_map_growth_grow(growth);
+                expect(result == ebusy, "The map should not grow under a read txn: " + result);
+                ops = encodeGrowthOps(dbi.get(), 6000, 20000);
+                result = DTLV.dtlv_map_growth_write(growth, ops, ops.length);
+                expect(result == ebusy, "Map growth write under a read txn should fail: " + result);
+                combiner = new DTLV.dtlv_write_combiner();
+                result = DTLV.dtlv_write_combiner_create(combiner, env, 0);
+                expect(result == 0, "Failed to create map growth combiner: " + result);
+                DTLV.dtlv_write_combiner_set_growth(combiner, growth);
+                result = DTLV.dtlv_write_combiner_submit(combiner, ops, ops.length);
+                expect(result == DTLV.MDB_MAP_FULL,
+                       "Combiner growth under a read txn should fail: " + result);
+                DTLV.dtlv_write_combiner_destroy(combiner);
+                combiner = null;
+                DTLV.mdb_env_info(env, info);
+                expect(info.me_mapsize() == grown, "The map should keep its size");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                release.countDown();
+                try {
+                    reader.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            expect(readResult[0] == 0, "The gated read txn should still read: " + readResult[0]);
+
+            capped = new DTLV.dtlv_map_growth();
+            result = DTLV.dtlv_map_growth_create(capped, env, 2.0, grown);
+            if (result != 0) {
+                System.err.println("Failed to create capped map growth: " + result);
+                return;
+            }
+            expect(DTLV.dtlv_map_growth_grow(capped) == DTLV.MDB_MAP_FULL,
+                   "A map at the ceiling should not grow");
+            ops = encodeGrowthOps(dbi.get(), 6000, 20000);
+            result = DTLV.dtlv_map_growth_write(capped, ops, ops.length);
+            expect(result == DTLV.MDB_MAP_FULL,
+                   "Map growth write beyond the ceiling should fail: " + result);
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin map growth read txn: " + result);
+                return;
+            }
+            txnActive = true;
+            DTLV.MDB_stat stat = new DTLV.MDB_stat();
+            result = DTLV.mdb_stat(txn, dbi.get(), stat);
+            expect(result == 0, "Map growth stat failed: " + result);
+            expect(stat.ms_entries() == 6000,
+                   "Map growth entry count mismatch: " + stat.ms_entries());
+
+            pass("Passed map growth test.");
+        } finally {
+            if (combiner != null)
+                DTLV.dtlv_write_combiner_destroy(combiner);
+            if (txnActive)
+                DTLV.mdb_txn_abort(txn);
+            if (growth != null)
+                DTLV.dtlv_map_growth_destroy(growth);
+            if (capped != null)
+                DTLV.dtlv_map_growth_destroy(capped);
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static byte[] encodeGrowthOps(int dbi, int from, int count) {
+        char[] filler = new char[100];
+        Arrays.fill(filler, 'v');
+        String val = new String(filler);
+        ByteBuffer buf = ByteBuffer.allocate(count * 140);
+        for (int i = from; i < from + count; i++)
+            buf.put(encodeWriteOps(dbi, DTLV.DTLV_WRITE_PUT, String.format("k%06d", i), val));
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    static void testEnvCopy() {
+
+        System.err.println("Testing env copy to a sink ...");
+
+        String dir = "db-env-copy";
+        String copyDir = "db-env-copy-dst";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_env copy = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean copyCreated = false;
+        boolean txnActive = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create env copy env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for env copy env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+                Files.createDirectories(Paths.get(copyDir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open env copy env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin env copy txn: " + result);
+                return;
+            }
+            txnActive = true;
+            result = DTLV.mdb_dbi_open(txn, "copied", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open env copy dbi: " + result);
+                return;
+            }
+            for (int i = 0; i < 100; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, String.format("k%03d", i), allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, "v" + i, allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put env copy data: " + result);
+                    return;
+                }
+            }
+            result = DTLV.mdb_txn_commit(txn);
+            txnActive = false;
+            if (result != 0) {
+                System.err.println("Failed to commit env copy data: " + result);
+                return;
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int[] calls = new int[1];
+            int[] stopAfter = new int[1];
+            DTLV.dtlv_copy_sink sink = new DTLV.dtlv_copy_sink() {
+                @Override
+                public int call(Pointer ctx, Pointer data, long len) {
+                    byte[] bytes = new byte[(int) len];
+                    data.position(0).limit(len).asByteBuffer().get(bytes);
+                    out.write(bytes, 0, bytes.length);
+                    calls[0]++;
+                    return stopAfter[0] > 0 && calls[0] >= stopAfter[0] ? 42 : 0;
+                }
+            };
+
+            result = DTLV.dtlv_env_copy_sink(env, DTLV.MDB_CP_COMPACT, 0, sink, null);
+            expect(result == 0, "Env copy to a sink failed: " + result);
+            byte[] compact = out.toByteArray();
+            expect(compact.length > 0, "Env copy should produce bytes");
+
+            out.reset();
+            long rate = compact.length * 4L;
+            long start = System.nanoTime();
+            result = DTLV.dtlv_env_copy_sink(env, DTLV.MDB_CP_COMPACT, rate, sink, null);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            expect(result == 0, "Throttled env copy failed: " + result);
+            expect(Arrays.equals(out.toByteArray(), compact),
+                   "Throttled env copy should produce the same bytes");
+            expect(elapsed >= 150, "Env copy should be throttled, took " + elapsed + " ms");
+
+            out.reset();
+            calls[0] = 0;
+            stopAfter[0] = 1;
+            result = DTLV.dtlv_env_copy_sink(env, 0, 0, sink, null);
+            expect(result == 42, "Env copy should stop with the sink error: " + result);
+            stopAfter[0] = 0;
+            sink.close();
+
+            try {
+                Files.write(Paths.get(copyDir, "data.mdb"), compact);
+            } catch (IOException e) {
+                System.err.println("Failed to write env copy: " + copyDir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_create(copy);
+            if (result != 0) {
+                System.err.println("Failed to create copied env: " + result);
+                return;
+            }
+            copyCreated = true;
+            DTLV.mdb_env_set_maxdbs(copy, 5);
+            result = DTLV.mdb_env_open(copy, copyDir, DTLV.MDB_NOLOCK | DTLV.MDB_RDONLY, 0664);
+            expect(result == 0, "Failed to open copied env: " + result);
+
+            result = DTLV.mdb_txn_begin(copy, null, DTLV.MDB_RDONLY, txn);
+            expect(result == 0, "Failed to begin copied env txn: " + result);
+            txnActive = true;
+            result = DTLV.mdb_dbi_open(txn, "copied", 0, dbi);
+            expect(result == 0, "Failed to open copied dbi: " + result);
+            DTLV.MDB_stat stat = new DTLV.MDB_stat();
+            result = DTLV.mdb_stat(txn, dbi.get(), stat);
+            expect(result == 0 && stat.ms_entries() == 100,
+                   "Copied env entry count mismatch: " + stat.ms_entries());
+
+            pass("Passed env copy test.");
+        } finally {
+            if (txnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            if (copyCreated)
+                DTLV.mdb_env_close(copy);
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+            deleteDirectoryFiles(copyDir);
+        }
+    }
+
+    static void testBackup() {
+
+        System.err.println("Testing differential backup ...");
+
+        String dir = "db-backup";
+        String restoreDir = "db-backup-restored";
+        String manifest = "db-backup-manifest";
+        String[] deltas = {"db-backup-delta-0", "db-backup-delta-1"};
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_env restored = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.dtlv_copy_sink sink = null;
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean restoredCreated = false;
+        boolean txnActive = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create backup env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for backup env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+                Files.createDirectories(Paths.get(restoreDir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open backup env: " + result);
+                return;
+            }
+
+            char[] filler = new char[100];
+            Arrays.fill(filler, 'v');
+            String val = new String(filler);
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin backup txn: " + result);
+                return;
+            }
+            txnActive = true;
+            result = DTLV.mdb_dbi_open(txn, "backed", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open backup dbi: " + result);
+                return;
+            }
+            for (int i = 0; i < 2000; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, String.format("k%05d", i), allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, val, allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put backup data: " + result);
+                    return;
+                }
+            }
+            result = DTLV.mdb_txn_commit(txn);
+            txnActive = false;
+            if (result != 0) {
+                System.err.println("Failed to commit backup data: " + result);
+                return;
+            }
+
+            OutputStream[] target = new OutputStream[1];
+            sink = new DTLV.dtlv_copy_sink() {
+                @Override
+                public int call(Pointer ctx, Pointer data, long len) {
+                    byte[] bytes = new byte[(int) len];
+                    data.position(0).limit(len).asByteBuffer().get(bytes);
+                    try {
+                        target[0].write(bytes);
+                    } catch (IOException e) {
+                        return 5; // EIO
+                    }
+                    return 0;
+                }
+            };
+
+            long[] pages = new long[2];
+            for (int b = 0; b < 2; b++) {
+                if (b == 1) {
+                    // a small change after the full backup
+                    result = DTLV.mdb_txn_begin(env, null, 0, txn);
+                    expect(result == 0, "Failed to begin backup update txn: " + result);
+                    DTLV.MDB_val kval = new DTLV.MDB_val();
+                    fillValWithString(kval, "k01000", allocations);
+                    DTLV.MDB_val vval = new DTLV.MDB_val();
+                    fillValWithString(vval, "changed", allocations);
+                    result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                    expect(result == 0, "Failed to put backup update: " + result);
+                    result = DTLV.mdb_txn_commit(txn);
+                    expect(result == 0, "Failed to commit backup update: " + result);
+                }
+                long[] written = new long[1];
+                try (OutputStream out = new FileOutputStream(deltas[b])) {
+                    target[0] = out;
+                    result = DTLV.dtlv_env_diff_backup(env, manifest, 0, sink, null, written);
+                } catch (IOException e) {
+                    System.err.println("Failed to write backup delta: " + deltas[b]);
+                    e.printStackTrace();
+                    return;
+                }
+                expect(result == 0, "Backup " + b + " failed: " + result);
+                pages[b] = written[0];
+            }
+            expect(pages[1] > 0 && pages[1] * 4 < pages[0],
+                   "Differential backup should be small: " + pages[0] + " then " + pages[1]);
+
+            String dataPath = Paths.get(restoreDir, "data.mdb").toString();
+            PointerPointer differential = new PointerPointer(deltas[1]);
+            result = DTLV.dtlv_backup_restore(dataPath, 1, differential);
+            expect(result != 0, "A differential delta should not restore onto nothing");
+            differential.close();
+
+            PointerPointer chain = new PointerPointer(deltas);
+            result = DTLV.dtlv_backup_restore(dataPath, deltas.length, chain);
+            chain.close();
+            expect(result == 0, "Backup restore failed: " + result);
+
+            result = DTLV.mdb_env_create(restored);
+            if (result != 0) {
+                System.err.println("Failed to create restored env: " + result);
+                return;
+            }
+            restoredCreated = true;
+            DTLV.mdb_env_set_maxdbs(restored, 5);
+            result = DTLV.mdb_env_open(restored, restoreDir,
+                                       DTLV.MDB_NOLOCK | DTLV.MDB_RDONLY, 0664);
+            expect(result == 0, "Failed to open restored env: " + result);
+
+            result = DTLV.mdb_txn_begin(restored, null, DTLV.MDB_RDONLY, txn);
+            expect(result == 0, "Failed to begin restored env txn: " + result);
+            txnActive = true;
+            result = DTLV.mdb_dbi_open(txn, "backed", 0, dbi);
+            expect(result == 0, "Failed to open restored dbi: " + result);
+            DTLV.MDB_stat stat = new DTLV.MDB_stat();
+            result = DTLV.mdb_stat(txn, dbi.get(), stat);
+            expect(result == 0 && stat.ms_entries() == 2000,
+                   "Restored env entry count mismatch: " + stat.ms_entries());
+            DTLV.MDB_val kval = new DTLV.MDB_val();
+            fillValWithString(kval, "k01000", allocations);
+            DTLV.MDB_val vval = new DTLV.MDB_val();
+            result = DTLV.mdb_get(txn, dbi.get(), kval, vval);
+            expect(result == 0 && "changed".equals(mdbValToString(vval)),
+                   "Restored env should have the change of the differential backup");
+
+            pass("Passed differential backup test.");
+        } finally {
+            if (txnActive)
+                DTLV.mdb_txn_abort(txn);
+            if (sink != null)
+                sink.close();
+            dbi.close();
+            if (restoredCreated)
+                DTLV.mdb_env_close(restored);
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+            deleteDirectoryFiles(restoreDir);
+            deleteDirectoryFiles(manifest);
+            for (String delta : deltas)
+                deleteDirectoryFiles(delta);
+        }
+    }
+
+    static void testMetrics() {
+
+        System.err.println("Testing operation metrics ...");
+
+        String dir = "db-metrics";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        DTLV.dtlv_metrics metrics = new DTLV.dtlv_metrics();
+        DTLV.dtlv_key_iter iter = new DTLV.dtlv_key_iter();
+        IntPointer dbi = new IntPointer(1);
+        SizeTPointer used = new SizeTPointer(1);
+
+        boolean envCreated = false;
+        boolean metricsCreated = false;
+        boolean txnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create metrics env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for metrics env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open metrics env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin metrics txn: " + result);
+                return;
+            }
+            txnActive = true;
+            result = DTLV.mdb_dbi_open(txn, "counted", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open metrics dbi: " + result);
+                return;
+            }
+            result = DTLV.mdb_txn_commit(txn);
+            txnActive = false;
+            if (result != 0) {
+                System.err.println("Failed to commit metrics dbi: " + result);
+                return;
+            }
+
+            result = DTLV.dtlv_metrics_create(metrics, env, 5);
+            expect(result == 0, "Failed to create metrics: " + result);
+            metricsCreated = true;
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            expect(result == 0, "Failed to begin metrics write txn: " + result);
+            txnActive = true;
+            for (int i = 0; i < 10; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, "k" + i, allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, "val", allocations);
+                result = DTLV.dtlv_put(txn, dbi.get(), kval, vval, 0);
+                expect(result == 0, "Failed to put counted data: " + result);
+            }
+            DTLV.MDB_val gone = new DTLV.MDB_val();
+            fillValWithString(gone, "k9", allocations);
+            result = DTLV.dtlv_del(txn, dbi.get(), gone, null);
+            expect(result == 0, "Failed to delete counted data: " + result);
+            result = DTLV.dtlv_txn_commit(txn);
+            txnActive = false;
+            expect(result == 0, "Failed to commit counted data: " + result);
+            result = DTLV.dtlv_env_sync(env, 1);
+            expect(result == 0, "Failed to sync metrics env: " + result);
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, txn);
+            expect(result == 0, "Failed to begin metrics read txn: " + result);
+            txnActive = true;
+            DTLV.MDB_val kval = new DTLV.MDB_val();
+            fillValWithString(kval, "k3", allocations);
+            DTLV.MDB_val vval = new DTLV.MDB_val();
+            result = DTLV.dtlv_get(txn, dbi.get(), kval, vval);
+            expect(result == 0, "Failed to get counted data: " + result);
+
+            result = DTLV.mdb_cursor_open(txn, dbi.get(), cursor);
+            expect(result == 0, "Failed to open metrics cursor: " + result);
+            cursorOpened = true;
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+            result = DTLV.dtlv_key_iter_create(iter, cursor, keyHolder, valHolder,
+                                               DTLV.DTLV_TRUE, DTLV.DTLV_TRUE,
+                                               DTLV.DTLV_TRUE, null, null);
+            expect(result == 0, "Failed to create counted iterator: " + result);
+            int seen = 0;
+            while (DTLV.dtlv_key_iter_has_next(iter) == DTLV.DTLV_TRUE) seen++;
+            DTLV.dtlv_key_iter_destroy(iter);
+            expect(seen == 9, "Counted iterator should see 9 keys: " + seen);
+
+            long[] small = new long[1];
+            result = DTLV.dtlv_metrics_snapshot(metrics, small, small.length, used);
+            expect(result < 0, "A short snapshot array should be rejected");
+            long size = used.get();
+            expect(size == DTLV.DTLV_METRICS_ENV_SIZE
+                   + 5 * DTLV.DTLV_METRICS_DBI_SIZE,
+                   "Unexpected snapshot size: " + size);
+
+            long[] snapshot = new long[(int) size];
+            result = DTLV.dtlv_metrics_snapshot(metrics, snapshot, size, used);
+            expect(result == size, "Failed to take a metrics snapshot: " + result);
+            expect(snapshot[DTLV.DTLV_METRICS_COMMITS] == 1,
+                   "Expected 1 commit: " + snapshot[DTLV.DTLV_METRICS_COMMITS]);
+            expect(snapshot[DTLV.DTLV_METRICS_SYNCS] == 1,
+                   "Expected 1 sync: " + snapshot[DTLV.DTLV_METRICS_SYNCS]);
+            long timed = 0;
+            for (int i = 0; i < DTLV.DTLV_METRICS_BUCKETS; i++)
+                timed += snapshot[DTLV.DTLV_METRICS_COMMIT_HIST + i];
+            expect(timed == 1, "Expected 1 timed commit: " + timed);
+
+            int base = DTLV.DTLV_METRICS_ENV_SIZE + dbi.get() * DTLV.DTLV_METRICS_DBI_SIZE;
+            expect(snapshot[base + DTLV.DTLV_METRICS_PUTS] == 10,
+                   "Expected 10 puts: " + snapshot[base + DTLV.DTLV_METRICS_PUTS]);
+            expect(snapshot[base + DTLV.DTLV_METRICS_DELS] == 1,
+                   "Expected 1 delete: " + snapshot[base + DTLV.DTLV_METRICS_DELS]);
+            expect(snapshot[base + DTLV.DTLV_METRICS_BYTES_WRITTEN] == 10 * 5,
+                   "Unexpected bytes written: "
+                   + snapshot[base + DTLV.DTLV_METRICS_BYTES_WRITTEN]);
+            expect(snapshot[base + DTLV.DTLV_METRICS_GETS + DTLV.MDB_SET] == 1,
+                   "Expected 1 point get");
+            expect(snapshot[base + DTLV.DTLV_METRICS_GETS + DTLV.MDB_NEXT] > 0
+                   || snapshot[base + DTLV.DTLV_METRICS_GETS + DTLV.MDB_NEXT_NODUP] > 0,
+                   "Iterator steps should be counted");
+            expect(snapshot[base + DTLV.DTLV_METRICS_ITERS] == 1,
+                   "Expected 1 iterator: " + snapshot[base + DTLV.DTLV_METRICS_ITERS]);
+            expect(snapshot[base + DTLV.DTLV_METRICS_BYTES_READ] >= 9 * 5,
+                   "Unexpected bytes read: "
+                   + snapshot[base + DTLV.DTLV_METRICS_BYTES_READ]);
+
+            DTLV.dtlv_metrics_reset(metrics);
+            DTLV.dtlv_metrics_snapshot(metrics, snapshot, size, used);
+            for (long count : snapshot)
+                expect(count == 0, "Counters should be 0 after a reset");
+
+            pass("Passed operation metrics test.");
+        } finally {
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (txnActive)
+                DTLV.mdb_txn_abort(txn);
+            if (metricsCreated)
+                DTLV.dtlv_metrics_destroy(metrics);
+            dbi.close();
+            used.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testEvents() {
+
+        System.err.println("Testing flight recorder events ...");
+
+        String dir = "db-events";
+        Path dump = Paths.get("db-events.jfr");
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        DTLV.dtlv_key_iter iter = new DTLV.dtlv_key_iter();
+        IntPointer dbi = new IntPointer(1);
+        SizeTPointer used = new SizeTPointer(1);
+        Recording recording = new Recording();
+
+        boolean envCreated = false;
+        boolean txnActive = false;
+        boolean cursorOpened = false;
+        boolean iterCreated = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create events env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for events env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open events env: " + result);
+                return;
+            }
+
+            // not recorded, as no recording is running
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            expect(result == 0, "Failed to begin events txn: " + result);
+            txnActive = true;
+            result = DTLV.mdb_dbi_open(txn, "events", DTLV.MDB_CREATE, dbi);
+            expect(result == 0, "Failed to open events dbi: " + result);
+            result = DTLVEvents.dtlv_txn_commit(txn);
+            txnActive = false;
+            expect(result == 0, "Failed to commit events dbi: " + result);
+
+            recording.enable("datalevin.dtlvnative.Commit");
+            recording.enable("datalevin.dtlvnative.Write");
+            recording.enable("datalevin.dtlvnative.Scan");
+            recording.start();
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            expect(result == 0, "Failed to begin events write txn: " + result);
+            txnActive = true;
+            ByteBuffer records = ByteBuffer.allocate(256).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < 5; i++) {
+                byte[] k = ("k" + i).getBytes(StandardCharsets.UTF_8);
+                byte[] v = ("v" + i).getBytes(StandardCharsets.UTF_8);
+                records.putInt(k.length).put(k).putInt(v.length).put(v);
+            }
+            result = DTLVEvents.dtlv_put_batch("events", txn, dbi.get(),
+                                               records.array(), records.position(),
+                                               0, used);
+            expect(result == 0, "Recorded put batch failed: " + result);
+            result = DTLVEvents.dtlv_txn_commit(txn);
+            txnActive = false;
+            expect(result == 0, "Recorded commit failed: " + result);
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, txn);
+            expect(result == 0, "Failed to begin events read txn: " + result);
+            txnActive = true;
+            result = DTLV.mdb_cursor_open(txn, dbi.get(), cursor);
+            expect(result == 0, "Failed to open events cursor: " + result);
+            cursorOpened = true;
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+            result = DTLV.dtlv_key_iter_create(iter, cursor, keyHolder, valHolder,
+                                               DTLV.DTLV_TRUE, DTLV.DTLV_TRUE,
+                                               DTLV.DTLV_TRUE, null, null);
+            expect(result == 0, "Failed to create events iterator: " + result);
+            iterCreated = true;
+            ByteBuffer buf = ByteBuffer.allocateDirect(256);
+            int n = DTLVEvents.dtlv_key_iter_next_batch("events", iter, buf,
+                                                        buf.capacity(), 10,
+                                                        DTLV.DTLV_TRUE, used);
+            expect(n == 5, "Recorded scan should read 5 rows: " + n);
+            long scanned = used.get();
+
+            recording.stop();
+            recording.dump(dump);
+
+            Map<String, RecordedEvent> seen = new HashMap<>();
+            for (RecordedEvent e : RecordingFile.readAllEvents(dump))
+                seen.merge(e.getEventType().getName(), e, (a, b) -> a);
+            RecordedEvent commit = seen.get("datalevin.dtlvnative.Commit");
+            expect(commit != null && commit.getInt("result") == 0,
+                   "A commit event should be recorded");
+            RecordedEvent write = seen.get("datalevin.dtlvnative.Write");
+            expect(write != null && write.getLong("rows") == 5
+                   && "events".equals(write.getString("dbi")),
+                   "A write event of 5 rows should be recorded");
+            RecordedEvent scan = seen.get("datalevin.dtlvnative.Scan");
+            expect(scan != null && scan.getInt("rows") == 5
+                   && scan.getLong("bytes") == scanned
+                   && scan.getInt("result") == 0
+                   && "events".equals(scan.getString("dbi")),
+                   "A scan event of 5 rows should be recorded");
+
+            pass("Passed flight recorder events test.");
+        } catch (IOException e) {
+            System.err.println("Failed to read the recording: " + dump);
+            e.printStackTrace();
+        } finally {
+            recording.close();
+            if (iterCreated)
+                DTLV.dtlv_key_iter_destroy(iter);
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (txnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            used.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            deleteDirectoryFiles(dir);
+            deleteDirectoryFiles(dump.toString());
+        }
+    }
+
+    static void testReaderTable() {
+
+        System.err.println("Testing reader table ...");
+
+        String dir = "db-readers";
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.dtlv_reader_reaper reaper = new DTLV.dtlv_reader_reaper();
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean rtxnActive = false;
+        boolean reaperCreated = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create reader table env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for reader table env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            // with the lock file, as the reader table lives there
+            result = DTLV.mdb_env_open(env, dir, 0, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open reader table env: " + result);
+                return;
+            }
+
+            DTLV.MDB_txn txn = new DTLV.MDB_txn();
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            expect(result == 0, "Failed to begin reader table txn: " + result);
+            result = DTLV.mdb_dbi_open(txn, "readers", DTLV.MDB_CREATE, dbi);
+            expect(result == 0, "Failed to open reader table dbi: " + result);
+            result = DTLV.mdb_txn_commit(txn);
+            expect(result == 0, "Failed to commit reader table dbi: " + result);
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            expect(result == 0, "Failed to begin reader table read txn: " + result);
+            rtxnActive = true;
+            long snapshot = DTLV.mdb_txn_id(rtxn);
+
+            // the writes go on another thread, which holds no read txn
+            int d = dbi.get();
+            int[] failures = new int[1];
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 3; i++) {
+                    DTLV.MDB_txn wtxn = new DTLV.MDB_txn();
+                    if (DTLV.mdb_txn_begin(env, null, 0, wtxn) != 0) {
+                        failures[0]++;
+                        continue;
+                    }
+                    List<BytePointer> allocations = new ArrayList<>();
+                    DTLV.MDB_val kval = new DTLV.MDB_val();
+                    fillValWithString(kval, "k" + i, allocations);
+                    DTLV.MDB_val vval = new DTLV.MDB_val();
+                    fillValWithString(vval, "v" + i, allocations);
+                    if (DTLV.mdb_put(wtxn, d, kval, vval, 0) != 0) failures[0]++;
+                    if (DTLV.mdb_txn_commit(wtxn) != 0) failures[0]++;
+                    for (BytePointer ptr : allocations)
+                        ptr.close();
+                }
+            });
+            writer.start();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            expect(failures[0] == 0, "Reader table writes failed");
+
+            int[] pids = new int[8];
+            long[] tids = new long[8];
+            long[] txnids = new long[8];
+            long[] lags = new long[8];
+            int n = DTLV.dtlv_reader_list(env, 8, pids, tids, txnids, lags);
+            expect(n >= 1, "Expected a reader slot: " + n);
+            boolean found = false;
+            for (int i = 0; i < Math.min(n, 8); i++) {
+                if (txnids[i] == snapshot) {
+                    found = true;
+                    expect(lags[i] == 3, "The reader should lag 3 txns: " + lags[i]);
+                    expect(pids[i] == ProcessHandle.current().pid(),
+                           "The reader should be in this process: " + pids[i]);
+                }
+            }
+            expect(found, "The read txn should be listed");
+
+            result = DTLV.dtlv_reader_reaper_create(reaper, env, 20, 2);
+            expect(result == 0, "Failed to create reader reaper: " + result);
+            reaperCreated = true;
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long[] stats = new long[DTLV.DTLV_REAPER_STATS];
+            DTLV.dtlv_reader_reaper_stats(reaper, stats);
+            expect(stats[DTLV.DTLV_REAPER_CHECKS] >= 2,
+                   "The reaper should have checked: " + stats[DTLV.DTLV_REAPER_CHECKS]);
+            expect(stats[DTLV.DTLV_REAPER_ERROR] == 0,
+                   "Reaper check failed: " + stats[DTLV.DTLV_REAPER_ERROR]);
+            expect(stats[DTLV.DTLV_REAPER_LAG] == 3 && stats[DTLV.DTLV_REAPER_LAGGING] == 1,
+                   "The reaper should see the lagging reader: " + stats[DTLV.DTLV_REAPER_LAG]);
+            expect(stats[DTLV.DTLV_REAPER_ALERTS] >= 1, "The reaper should alert");
+
+            DTLV.mdb_txn_abort(rtxn);
+            rtxnActive = false;
+            n = DTLV.dtlv_reader_list(env, 8, null, null, txnids, lags);
+            for (int i = 0; i < Math.min(n, 8); i++)
+                expect(txnids[i] == DTLV.DTLV_READER_IDLE && lags[i] == 0,
+                       "No reader should lag once the read txn is over");
+
+            pass("Passed reader table test.");
+        } finally {
+            if (reaperCreated)
+                DTLV.dtlv_reader_reaper_destroy(reaper);
+            if (rtxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testEnvAnalysis() {
+
+        System.err.println("Testing env analysis ...");
+
+        String dir = "db-analysis";
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.dtlv_env_analysis analysis = new DTLV.dtlv_env_analysis();
+        IntPointer dbi = new IntPointer(1);
+        List<BytePointer> allocations = new ArrayList<>();
+
+        boolean envCreated = false;
+        boolean analysisCreated = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create analysis env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for analysis env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open analysis env: " + result);
+                return;
+            }
+
+            DTLV.MDB_txn txn = new DTLV.MDB_txn();
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            expect(result == 0, "Failed to begin analysis txn: " + result);
+            result = DTLV.mdb_dbi_open(txn, "analysis", DTLV.MDB_CREATE, dbi);
+            expect(result == 0, "Failed to open analysis dbi: " + result);
+            for (int i = 0; i < 200; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, String.format("key-%03d", i), allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, "value-" + i, allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                expect(result == 0, "Failed to put analysis entry: " + result);
+            }
+            DTLV.MDB_val bigKey = new DTLV.MDB_val();
+            fillValWithString(bigKey, "big", allocations);
+            DTLV.MDB_val bigVal = new DTLV.MDB_val();
+            fillValWithString(bigVal, "x".repeat(10000), allocations);
+            result = DTLV.mdb_put(txn, dbi.get(), bigKey, bigVal, 0);
+            expect(result == 0, "Failed to put big analysis entry: " + result);
+            result = DTLV.mdb_txn_commit(txn);
+            expect(result == 0, "Failed to commit analysis entries: " + result);
+
+            // the deletes copy the touched pages, freeing the old ones
+            txn = new DTLV.MDB_txn();
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            expect(result == 0, "Failed to begin analysis delete txn: " + result);
+            for (int i = 0; i < 200; i += 2) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, String.format("key-%03d", i), allocations);
+                result = DTLV.mdb_del(txn, dbi.get(), kval, null);
+                expect(result == 0, "Failed to delete analysis entry: " + result);
+            }
+            result = DTLV.mdb_txn_commit(txn);
+            expect(result == 0, "Failed to commit analysis deletes: " + result);
+
+            result = DTLV.dtlv_env_analyze(analysis, env, DTLV.DTLV_ANALYZE_FILL);
+            expect(result == 0, "Failed to analyze env: " + result);
+            analysisCreated = true;
+
+            long[] envStats = new long[DTLV.DTLV_ANALYSIS_ENV_STATS];
+            DTLV.dtlv_env_analysis_env(analysis, envStats);
+            long free = envStats[DTLV.DTLV_ANALYSIS_FREE_PAGES];
+            expect(envStats[DTLV.DTLV_ANALYSIS_PSIZE] > 0, "Expected a page size");
+            expect(free > 0 && envStats[DTLV.DTLV_ANALYSIS_FREE_ENTRIES] > 0,
+                   "The free list should hold the copied pages: " + free);
+            expect(envStats[DTLV.DTLV_ANALYSIS_LIVE_PAGES] + free
+                   <= envStats[DTLV.DTLV_ANALYSIS_USED_PAGES],
+                   "Live and free pages should fit in the used pages");
+            expect(envStats[DTLV.DTLV_ANALYSIS_USED_PAGES]
+                   <= envStats[DTLV.DTLV_ANALYSIS_MAP_PAGES],
+                   "Used pages should fit in the map");
+            expect(envStats[DTLV.DTLV_ANALYSIS_OLDEST_TXNID] == DTLV.DTLV_READER_IDLE,
+                   "No reader is listed without a lock file");
+            long aged = 0;
+            for (int b = 0; b < DTLV.DTLV_ANALYSIS_AGE_BUCKETS; b++)
+                aged += envStats[DTLV.DTLV_ANALYSIS_AGES + b];
+            expect(aged == free, "The age buckets should add up: " + aged);
+
+            int n = DTLV.dtlv_env_analysis_dbs(analysis);
+            expect(n == 3, "Expected the free list, the main DB and a named DB: " + n);
+            DTLV.MDB_val name = new DTLV.MDB_val();
+            long[] dbStats = new long[DTLV.DTLV_ANALYSIS_DB_STATS];
+            result = DTLV.dtlv_env_analysis_db(analysis, 2, name, dbStats);
+            expect(result == 0, "Failed to read analysis db: " + result);
+            String dbName = mdbValToString(name);
+            expect("analysis".equals(dbName), "Unexpected db name: " + dbName);
+            expect(dbStats[DTLV.DTLV_ANALYSIS_DB_ENTRIES] == 101,
+                   "Unexpected entries: " + dbStats[DTLV.DTLV_ANALYSIS_DB_ENTRIES]);
+            expect(dbStats[DTLV.DTLV_ANALYSIS_DB_OVERFLOW_PAGES] >= 3,
+                   "The big value should be on overflow pages");
+            expect(dbStats[DTLV.DTLV_ANALYSIS_DB_OVERFLOW_VALUES] == 1
+                   && dbStats[DTLV.DTLV_ANALYSIS_DB_OVERFLOW_BYTES] == 10000,
+                   "Unexpected overflow values");
+            long fill = dbStats[DTLV.DTLV_ANALYSIS_DB_FILL];
+            expect(fill > 0 && fill <= 1000, "Unexpected leaf fill: " + fill);
+            expect(DTLV.dtlv_env_analysis_db(analysis, n, name, dbStats) != 0,
+                   "Reading past the last db should fail");
+
+            pass("Passed env analysis test.");
+        } finally {
+            if (analysisCreated)
+                DTLV.dtlv_env_analysis_destroy(analysis);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testMDBValView() {
+
+        System.err.println("Testing MDB_val view ...");
+
+        String dir = "db-val-view";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        DTLV.dtlv_key_iter iter = null;
+        IntPointer dbi = new IntPointer(1);
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create MDB_val view env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for MDB_val view env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open MDB_val view env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin MDB_val view write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            result = DTLV.mdb_dbi_open(txn, "view", DTLV.MDB_CREATE, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open MDB_val view dbi: " + result);
+                return;
+            }
+
+            for (int i = 0; i < 10; i++) {
+                DTLV.MDB_val kval = new DTLV.MDB_val();
+                fillValWithString(kval, "k" + i, allocations);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, "v" + i, allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put MDB_val view data: " + result);
+                    return;
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit MDB_val view data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin MDB_val view read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open MDB_val view cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+            DTLV.MDB_val startKey = new DTLV.MDB_val();
+            fillValWithString(startKey, "k2", allocations);
+            DTLV.MDB_val endKey = new DTLV.MDB_val();
+            fillValWithString(endKey, "k8", allocations);
+
+            iter = new DTLV.dtlv_key_iter();
+            result = DTLV.dtlv_key_iter_create(iter, cursor, keyHolder, valHolder,
+                                               DTLV.DTLV_TRUE, DTLV.DTLV_FALSE,
+                                               DTLV.DTLV_TRUE, startKey, endKey);
+            if (result != 0) {
+                System.err.println("Failed to create key iterator: " + result);
+                return;
+            }
+
+            MDBValView keyView = new MDBValView(keyHolder);
+            MDBValView valView = new MDBValView(valHolder);
+            ByteBuffer firstView = null;
+            List<String> items = new ArrayList<>();
+            while (DTLV.dtlv_key_iter_has_next(iter) == DTLV.DTLV_TRUE) {
+                ByteBuffer k = keyView.bind();
+                ByteBuffer v = valView.bind();
+                if (firstView == null)
+                    firstView = k;
+                expect(k == firstView, "MDB_val view should reuse its buffer");
+                expect(k.isDirect() && k.isReadOnly(),
+                       "MDB_val view should be a read-only direct buffer");
+                expect(k.remaining() == keyView.size(),
+                       "MDB_val view size mismatch: " + k.remaining());
+                String key = StandardCharsets.UTF_8.decode(k).toString();
+                expect(key.equals(mdbValToString(keyHolder)),
+                       "MDB_val view key mismatch: " + key);
+                items.add(key + "=" + StandardCharsets.UTF_8.decode(v));
+            }
+
+            List<String> expected = Arrays.asList(
+                "k3=v3", "k4=v4", "k5=v5", "k6=v6", "k7=v7", "k8=v8");
+            expect(items.equals(expected),
+                   "MDB_val view items mismatch: " + items);
+
+            pass("Passed MDB_val view test.");
+        } finally {
+            if (iter != null)
+                DTLV.dtlv_key_iter_destroy(iter);
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    static void testListValFullIterBatch() {
+
+        System.err.println("Testing list value full iterator batch ...");
+
+        String dir = "db-list-val-full-batch";
+        List<BytePointer> allocations = new ArrayList<>();
+
+        DTLV.MDB_env env = new DTLV.MDB_env();
+        DTLV.MDB_txn txn = new DTLV.MDB_txn();
+        DTLV.MDB_txn rtxn = new DTLV.MDB_txn();
+        DTLV.MDB_cursor cursor = new DTLV.MDB_cursor();
+        keepAlive(cursor);
+        DTLV.dtlv_list_val_full_iter iter = null;
+        IntPointer dbi = new IntPointer(1);
+        BytePointer buf = new BytePointer(1024);
+        SizeTPointer used = new SizeTPointer(1);
+
+        boolean envCreated = false;
+        boolean writeTxnActive = false;
+        boolean readTxnActive = false;
+        boolean cursorOpened = false;
+
+        try {
+            int result = DTLV.mdb_env_create(env);
+            if (result != 0) {
+                System.err.println("Failed to create list value full batch env: " + result);
+                return;
+            }
+            envCreated = true;
+
+            result = DTLV.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for list value full batch env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLV.mdb_env_open(env, dir, DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open list value full batch env: " + result);
+                return;
+            }
+
+            result = DTLV.mdb_txn_begin(env, null, 0, txn);
+            if (result != 0) {
+                System.err.println("Failed to begin list value full batch write txn: " + result);
+                return;
+            }
+            writeTxnActive = true;
+
+            int flags = DTLV.MDB_CREATE | DTLV.MDB_DUPSORT;
+            result = DTLV.mdb_dbi_open(txn, "full_values", flags, dbi);
+            if (result != 0) {
+                System.err.println("Failed to open list value full batch dbi: " + result);
+                return;
+            }
+
+            DTLV.MDB_val kval = new DTLV.MDB_val();
+            fillValWithString(kval, "attr", allocations);
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String valueText = String.format("v%03d", i);
+                expected.add(valueText);
+                DTLV.MDB_val vval = new DTLV.MDB_val();
+                fillValWithString(vval, valueText, allocations);
+                result = DTLV.mdb_put(txn, dbi.get(), kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put list value full batch data: " + result);
+                    return;
+                }
+            }
+
+            result = DTLV.mdb_txn_commit(txn);
+            if (result != 0) {
+                System.err.println("Failed to commit list value full batch data: " + result);
+                return;
+            }
+            writeTxnActive = false;
+
+            result = DTLV.mdb_txn_begin(env, null, DTLV.MDB_RDONLY, rtxn);
+            if (result != 0) {
+                System.err.println("Failed to begin list value full batch read txn: " + result);
+                return;
+            }
+            readTxnActive = true;
+
+            result = DTLV.mdb_cursor_open(rtxn, dbi.get(), cursor);
+            if (result != 0) {
+                System.err.println("Failed to open list value full batch cursor: " + result);
+                return;
+            }
+            cursorOpened = true;
+
+            DTLV.MDB_val keyHolder = new DTLV.MDB_val();
+            DTLV.MDB_val valHolder = new DTLV.MDB_val();
+
+            iter = new DTLV.dtlv_list_val_full_iter();
+            result = DTLV.dtlv_list_val_full_iter_create(iter, cursor, keyHolder, valHolder);
+            if (result != 0) {
+                System.err.println("Failed to create list value full iterator: " + result);
+                return;
+            }
+
+            DTLV.MDB_val seekKey = new DTLV.MDB_val();
+            fillValWithString(seekKey, "attr", allocations);
+
+            // each record is 8 bytes, so everything fits in one call
+            int n = DTLV.dtlv_list_val_full_iter_seek_batch(iter, seekKey, buf, 1024, used);
+            expect(n == 100 && used.get() == 800,
+                   "List value full batch should drain all values, got " + n);
+            expect(readBatchRecords(buf, n, false).equals(expected),
+                   "List value full batch values mismatch");
+            expect(DTLV.dtlv_list_val_full_iter_next_batch(iter, buf, 1024, 100, used) == 0,
+                   "Drained list value full batch should have nothing left");
+
+            // a small buffer takes several calls
+            List<String> values = new ArrayList<>();
+            n = DTLV.dtlv_list_val_full_iter_seek_batch(iter, seekKey, buf, 300, used);
+            while (n > 0) {
+                values.addAll(readBatchRecords(buf, n, false));
+                n = DTLV.dtlv_list_val_full_iter_next_batch(iter, buf, 300, 100, used);
+            }
+            expect(n == 0, "List value full batch should end with 0, got " + n);
+            expect(values.equals(expected),
+                   "List value full batch values mismatch in chunks");
+
+            DTLV.MDB_val missingKey = new DTLV.MDB_val();
+            fillValWithString(missingKey, "absent", allocations);
+            expect(DTLV.dtlv_list_val_full_iter_seek_batch(
+                       iter, missingKey, buf, 1024, used) == 0,
+                   "List value full batch should find nothing for a missing key");
+
+            pass("Passed list value full iterator batch test.");
+        } finally {
+            if (iter != null)
+                DTLV.dtlv_list_val_full_iter_destroy(iter);
+            if (cursorOpened)
+                DTLV.mdb_cursor_close(cursor);
+            if (readTxnActive)
+                DTLV.mdb_txn_abort(rtxn);
+            if (writeTxnActive)
+                DTLV.mdb_txn_abort(txn);
+            dbi.close();
+            buf.close();
+            used.close();
+            if (envCreated)
+                DTLV.mdb_env_close(env);
+            for (BytePointer ptr : allocations)
+                ptr.close();
+            deleteDirectoryFiles(dir);
+        }
+    }
+
+    // ForeignTest uses the FFM API, a preview API of Java 21, so it is only
+    // loaded when the JVM can, i.e. with --enable-preview, or from the Java 22
+    // variant in the multi-release jar
+    static void testForeign() {
+        Class<?> c;
+        try {
+            c = Class.forName("datalevin.dtlvnative.ForeignTest");
+        } catch (ClassNotFoundException | UnsupportedClassVersionError e) {
+            pass("Skipped foreign function binding test, it is not compiled or preview features are not enabled.");
+            return;
+        }
+        try {
+            c.getDeclaredMethod("testForeign").invoke(null);
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     static void testRankSampleIterator() {
 
         System.err.println("Testing rank-based list sample iterator ...");
@@ -732,6 +4658,18 @@ public class Test {
             }
             expect(DTLV.dtlv_list_rank_sample_iter_has_next(boundedIter) == DTLV.DTLV_FALSE,
                    "Bounded iterator should be exhausted");
+
+            SizeTPointer again = toSizeTPointer(baseSample);
+            result = DTLV.dtlv_list_rank_sample_iter_reset(
+                boundedIter, again, baseSample.length, cursor, keyHolder,
+                valHolder, null, null);
+            again.close();
+            expect(result == 0, "Rank iterator reset failed: " + result);
+            List<String> resetRankSamples = new ArrayList<>();
+            while (DTLV.dtlv_list_rank_sample_iter_has_next(boundedIter) == DTLV.DTLV_TRUE)
+                resetRankSamples.add(mdbValToString(keyHolder) + ":" + mdbValToString(valHolder));
+            expect(resetRankSamples.equals(fullRankSamples),
+                   "Reset rank iterator produced unexpected samples");
             DTLV.dtlv_list_rank_sample_iter_destroy(boundedIter);
 
             bounded.close();
@@ -1552,6 +5490,26 @@ public class Test {
         return new String(bytes, StandardCharsets.UTF_8);
     }
 
+    static List<String> readBatchRecords(BytePointer buf, int n,
+                                         boolean pairs) {
+        ByteBuffer buffer = buf.position(0).limit(buf.capacity()).asByteBuffer()
+            .order(ByteOrder.nativeOrder());
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String record = readBatchItem(buffer);
+            if (pairs)
+                record = record + "=" + readBatchItem(buffer);
+            records.add(record);
+        }
+        return records;
+    }
+
+    static String readBatchItem(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     static void testUsearchInit(int collSize, int dimensions) {
 
         DTLV.usearch_init_options_t opts = createOpts(dimensions);
@@ -0,0 +1,2708 @@
+package datalevin.dtlvnative;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import org.bytedeco.javacpp.Loader;
+
+import static java.lang.foreign.ValueLayout.*;
+
+/**
+ * Bindings of the dlmdb, dtlv, usearch and llama.cpp functions through the
+ * Foreign Function and Memory API, an alternative to the JavaCPP bindings in
+ * {@link DTLV}. Functions have the same names and arguments as their C
+ * counterparts. Pointers are passed as MemorySegment, and an MDB_val is a
+ * segment of the {@link #MDB_VAL_LAYOUT} layout. Constants are those of DTLV.
+ *
+ * The symbols are resolved in the JNI library loaded by JavaCPP for DTLV, so
+ * both bindings share the same native code and may be mixed. Short calls on
+ * the read path, e.g. mdb_get, mdb_cursor_get and the iterator has_next
+ * functions, are linked as trivial calls, which skip the thread state
+ * transition. These must not be used on a DBI with a comparator that calls
+ * back into Java. A trivial call also holds off garbage collection of the
+ * whole JVM while it runs, so batch, seek and locking functions are linked
+ * as normal calls, and has_next of an iterator with a filter, of a skip scan
+ * or of a join can run long when it skips many rows.
+ *
+ * The Foreign Function and Memory API is a preview feature of Java 21, so the
+ * JVM must run with --enable-preview and --enable-native-access. The jar also
+ * has a variant of this class for Java 22 and later, where the API is final,
+ * which needs --enable-native-access only.
+ */
+public final class DTLVForeign {
+
+    private DTLVForeign() {
+    }
+
+    private static final Linker LINKER = Linker.nativeLinker();
+
+    private static final SymbolLookup LOOKUP;
+
+    static {
+        String library = Loader.load(DTLV.class);
+        SymbolLookup lookup = SymbolLookup.loaderLookup();
+        if (library != null)
+            lookup = SymbolLookup.libraryLookup(Path.of(library), Arena.global())
+                .or(lookup);
+        LOOKUP = lookup;
+    }
+
+    private static final Linker.Option TRIVIAL = Linker.Option.isTrivial();
+
+    /**
+     * Layout of MDB_val: a size_t size followed by a data pointer.
+     */
+    public static final StructLayout MDB_VAL_LAYOUT = MemoryLayout.structLayout(
+            JAVA_LONG.withName("mv_size"),
+            ADDRESS.withName("mv_data"));
+
+    private static final VarHandle MV_SIZE =
+        MDB_VAL_LAYOUT.varHandle(MemoryLayout.PathElement.groupElement("mv_size"));
+    private static final VarHandle MV_DATA =
+        MDB_VAL_LAYOUT.varHandle(MemoryLayout.PathElement.groupElement("mv_data"));
+
+    /**
+     * Layout of MDB_stat.
+     */
+    public static final StructLayout MDB_STAT_LAYOUT = MemoryLayout.structLayout(
+            JAVA_INT.withName("ms_psize"),
+            JAVA_INT.withName("ms_depth"),
+            JAVA_LONG.withName("ms_branch_pages"),
+            JAVA_LONG.withName("ms_leaf_pages"),
+            JAVA_LONG.withName("ms_overflow_pages"),
+            JAVA_LONG.withName("ms_entries"));
+
+    /**
+     * Layout of dtlv_agg_result.
+     */
+    public static final StructLayout DTLV_AGG_RESULT_LAYOUT = MemoryLayout.structLayout(
+            JAVA_LONG.withName("count"),
+            JAVA_LONG.withName("keys"),
+            JAVA_LONG.withName("decoded"),
+            JAVA_LONG.withName("isum"),
+            JAVA_LONG.withName("imin"),
+            JAVA_LONG.withName("imax"),
+            JAVA_DOUBLE.withName("dsum"),
+            JAVA_DOUBLE.withName("dmin"),
+            JAVA_DOUBLE.withName("dmax"));
+
+    /**
+     * Layout of usearch_init_options_t.
+     */
+    public static final StructLayout USEARCH_INIT_OPTIONS_LAYOUT = MemoryLayout.structLayout(
+            JAVA_INT.withName("metric_kind"),
+            MemoryLayout.paddingLayout(4),
+            ADDRESS.withName("metric"),
+            JAVA_INT.withName("quantization"),
+            MemoryLayout.paddingLayout(4),
+            JAVA_LONG.withName("dimensions"),
+            JAVA_LONG.withName("connectivity"),
+            JAVA_LONG.withName("expansion_add"),
+            JAVA_LONG.withName("expansion_search"),
+            JAVA_BOOLEAN.withName("multi"),
+            MemoryLayout.paddingLayout(7));
+
+    /**
+     * Return true if the native symbols can be found, e.g. they are not
+     * exported by the JNI library on Windows.
+     */
+    public static boolean isAvailable() {
+        return LOOKUP.find("dtlv_key_iter_create").isPresent();
+    }
+
+    /**
+     * Allocate an MDB_val, e.g. as a holder of iterators.
+     */
+    public static MemorySegment allocateVal(SegmentAllocator allocator) {
+        return allocator.allocate(MDB_VAL_LAYOUT);
+    }
+
+    /**
+     * Allocate an MDB_val pointing to the given data.
+     */
+    public static MemorySegment allocateVal(SegmentAllocator allocator,
+                                            MemorySegment data) {
+        MemorySegment val = allocator.allocate(MDB_VAL_LAYOUT);
+        setVal(val, data);
+        return val;
+    }
+
+    /**
+     * Point an MDB_val to the given data.
+     */
+    public static void setVal(MemorySegment val, MemorySegment data) {
+        MV_SIZE.set(val, data.byteSize());
+        MV_DATA.set(val, data);
+    }
+
+    /**
+     * The mv_size of an MDB_val.
+     */
+    public static long mvSize(MemorySegment val) {
+        return (long) MV_SIZE.get(val);
+    }
+
+    /**
+     * The data of an MDB_val, as a segment of mv_size bytes. It is memory
+     * owned by LMDB, only valid during the transaction.
+     */
+    public static MemorySegment mvData(MemorySegment val) {
+        MemorySegment data = (MemorySegment) MV_DATA.get(val);
+        return data.reinterpret((long) MV_SIZE.get(val));
+    }
+
+    /**
+     * The data of a JavaCPP MDB_val holder, as a segment of mv_size bytes. It
+     * is an alternative to {@link MDBValView} that does not depend on
+     * sun.misc.Unsafe. The segment is memory owned by LMDB, only valid until
+     * the next update of the holder and during the transaction.
+     */
+    public static MemorySegment mvData(DTLV.MDB_val val) {
+        return mvData(MemorySegment.ofAddress(val.address())
+                      .reinterpret(MDB_VAL_LAYOUT.byteSize()));
+    }
+
+    /**
+     * Read a NUL terminated UTF-8 string returned by a native function.
+     */
+    public static String string(MemorySegment s) {
+        if (s.equals(MemorySegment.NULL))
+            return null;
+        return s.reinterpret(Long.MAX_VALUE).getUtf8String(0);
+    }
+
+    private static MethodHandle downcall(String name, FunctionDescriptor fd,
+                                         Linker.Option... options) {
+        return LOOKUP.find(name)
+            .map(addr -> LINKER.downcallHandle(addr, fd, options))
+            .orElseGet(() -> missing(name, fd.toMethodType()));
+    }
+
+    // a handle that throws on call, so one missing symbol does not fail the
+    // initialization of the class
+    private static MethodHandle missing(String name, MethodType type) {
+        MethodHandle thrower = MethodHandles.throwException(
+            type.returnType(), UnsatisfiedLinkError.class);
+        thrower = thrower.bindTo(
+            new UnsatisfiedLinkError("Native symbol not found: " + name));
+        return MethodHandles.dropArguments(thrower, 0, type.parameterList());
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        return new IllegalStateException(e);
+    }
+
+    // dlmdb
+
+    private static final MethodHandle MDB_VERSION =
+        downcall("mdb_version", FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+
+    public static MemorySegment mdb_version(MemorySegment major, MemorySegment minor,
+            MemorySegment patch) {
+        try {
+            return (MemorySegment) MDB_VERSION.invokeExact(major, minor, patch);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_STRERROR =
+        downcall("mdb_strerror", FunctionDescriptor.of(ADDRESS, JAVA_INT));
+
+    public static MemorySegment mdb_strerror(int err) {
+        try {
+            return (MemorySegment) MDB_STRERROR.invokeExact(err);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_CREATE =
+        downcall("mdb_env_create", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int mdb_env_create(MemorySegment env) {
+        try {
+            return (int) MDB_ENV_CREATE.invokeExact(env);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_OPEN =
+        downcall("mdb_env_open", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT,
+                 JAVA_INT));
+
+    public static int mdb_env_open(MemorySegment env, MemorySegment path, int flags, int mode) {
+        try {
+            return (int) MDB_ENV_OPEN.invokeExact(env, path, flags, mode);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_COPY =
+        downcall("mdb_env_copy", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int mdb_env_copy(MemorySegment env, MemorySegment path) {
+        try {
+            return (int) MDB_ENV_COPY.invokeExact(env, path);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_COPY2 =
+        downcall("mdb_env_copy2", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT));
+
+    public static int mdb_env_copy2(MemorySegment env, MemorySegment path, int flags) {
+        try {
+            return (int) MDB_ENV_COPY2.invokeExact(env, path, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_STAT =
+        downcall("mdb_env_stat", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int mdb_env_stat(MemorySegment env, MemorySegment stat) {
+        try {
+            return (int) MDB_ENV_STAT.invokeExact(env, stat);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_INFO =
+        downcall("mdb_env_info", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int mdb_env_info(MemorySegment env, MemorySegment stat) {
+        try {
+            return (int) MDB_ENV_INFO.invokeExact(env, stat);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_SYNC =
+        downcall("mdb_env_sync", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+
+    public static int mdb_env_sync(MemorySegment env, int force) {
+        try {
+            return (int) MDB_ENV_SYNC.invokeExact(env, force);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_CLOSE =
+        downcall("mdb_env_close", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void mdb_env_close(MemorySegment env) {
+        try {
+            MDB_ENV_CLOSE.invokeExact(env);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_SET_FLAGS =
+        downcall("mdb_env_set_flags", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT));
+
+    public static int mdb_env_set_flags(MemorySegment env, int flags, int onoff) {
+        try {
+            return (int) MDB_ENV_SET_FLAGS.invokeExact(env, flags, onoff);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_GET_FLAGS =
+        downcall("mdb_env_get_flags", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int mdb_env_get_flags(MemorySegment env, MemorySegment flags) {
+        try {
+            return (int) MDB_ENV_GET_FLAGS.invokeExact(env, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_GET_PATH =
+        downcall("mdb_env_get_path", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int mdb_env_get_path(MemorySegment env, MemorySegment path) {
+        try {
+            return (int) MDB_ENV_GET_PATH.invokeExact(env, path);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_SET_MAPSIZE =
+        downcall("mdb_env_set_mapsize", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG));
+
+    public static int mdb_env_set_mapsize(MemorySegment env, long size) {
+        try {
+            return (int) MDB_ENV_SET_MAPSIZE.invokeExact(env, size);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_SET_MAXREADERS =
+        downcall("mdb_env_set_maxreaders", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+
+    public static int mdb_env_set_maxreaders(MemorySegment env, int readers) {
+        try {
+            return (int) MDB_ENV_SET_MAXREADERS.invokeExact(env, readers);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_GET_MAXREADERS =
+        downcall("mdb_env_get_maxreaders", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int mdb_env_get_maxreaders(MemorySegment env, MemorySegment readers) {
+        try {
+            return (int) MDB_ENV_GET_MAXREADERS.invokeExact(env, readers);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_SET_MAXDBS =
+        downcall("mdb_env_set_maxdbs", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+
+    public static int mdb_env_set_maxdbs(MemorySegment env, int dbs) {
+        try {
+            return (int) MDB_ENV_SET_MAXDBS.invokeExact(env, dbs);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_ENV_GET_MAXKEYSIZE =
+        downcall("mdb_env_get_maxkeysize", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int mdb_env_get_maxkeysize(MemorySegment env) {
+        try {
+            return (int) MDB_ENV_GET_MAXKEYSIZE.invokeExact(env);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_TXN_BEGIN =
+        downcall("mdb_txn_begin", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT,
+                 ADDRESS));
+
+    public static int mdb_txn_begin(MemorySegment env, MemorySegment parent, int flags,
+            MemorySegment txn) {
+        try {
+            return (int) MDB_TXN_BEGIN.invokeExact(env, parent, flags, txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_TXN_ENV =
+        downcall("mdb_txn_env", FunctionDescriptor.of(ADDRESS, ADDRESS));
+
+    public static MemorySegment mdb_txn_env(MemorySegment txn) {
+        try {
+            return (MemorySegment) MDB_TXN_ENV.invokeExact(txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_TXN_ID =
+        downcall("mdb_txn_id", FunctionDescriptor.of(JAVA_LONG, ADDRESS));
+
+    public static long mdb_txn_id(MemorySegment txn) {
+        try {
+            return (long) MDB_TXN_ID.invokeExact(txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_TXN_COMMIT =
+        downcall("mdb_txn_commit", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int mdb_txn_commit(MemorySegment txn) {
+        try {
+            return (int) MDB_TXN_COMMIT.invokeExact(txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_TXN_ABORT =
+        downcall("mdb_txn_abort", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void mdb_txn_abort(MemorySegment txn) {
+        try {
+            MDB_TXN_ABORT.invokeExact(txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_TXN_RESET =
+        downcall("mdb_txn_reset", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void mdb_txn_reset(MemorySegment txn) {
+        try {
+            MDB_TXN_RESET.invokeExact(txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_TXN_RENEW =
+        downcall("mdb_txn_renew", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int mdb_txn_renew(MemorySegment txn) {
+        try {
+            return (int) MDB_TXN_RENEW.invokeExact(txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_DBI_OPEN =
+        downcall("mdb_dbi_open", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT,
+                 ADDRESS));
+
+    public static int mdb_dbi_open(MemorySegment txn, MemorySegment name, int flags,
+            MemorySegment dbi) {
+        try {
+            return (int) MDB_DBI_OPEN.invokeExact(txn, name, flags, dbi);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_STAT =
+        downcall("mdb_stat", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS));
+
+    public static int mdb_stat(MemorySegment txn, int dbi, MemorySegment stat) {
+        try {
+            return (int) MDB_STAT.invokeExact(txn, dbi, stat);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_DBI_FLAGS =
+        downcall("mdb_dbi_flags", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS));
+
+    public static int mdb_dbi_flags(MemorySegment txn, int dbi, MemorySegment flags) {
+        try {
+            return (int) MDB_DBI_FLAGS.invokeExact(txn, dbi, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_DBI_CLOSE =
+        downcall("mdb_dbi_close", FunctionDescriptor.ofVoid(ADDRESS, JAVA_INT));
+
+    public static void mdb_dbi_close(MemorySegment env, int dbi) {
+        try {
+            MDB_DBI_CLOSE.invokeExact(env, dbi);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_DROP =
+        downcall("mdb_drop", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT));
+
+    public static int mdb_drop(MemorySegment txn, int dbi, int del) {
+        try {
+            return (int) MDB_DROP.invokeExact(txn, dbi, del);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_GET =
+        downcall("mdb_get", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS), TRIVIAL);
+
+    public static int mdb_get(MemorySegment txn, int dbi, MemorySegment key, MemorySegment data) {
+        try {
+            return (int) MDB_GET.invokeExact(txn, dbi, key, data);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_PUT =
+        downcall("mdb_put", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT));
+
+    public static int mdb_put(MemorySegment txn, int dbi, MemorySegment key, MemorySegment data,
+            int flags) {
+        try {
+            return (int) MDB_PUT.invokeExact(txn, dbi, key, data, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_DEL =
+        downcall("mdb_del", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int mdb_del(MemorySegment txn, int dbi, MemorySegment key, MemorySegment data) {
+        try {
+            return (int) MDB_DEL.invokeExact(txn, dbi, key, data);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_OPEN =
+        downcall("mdb_cursor_open", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS));
+
+    public static int mdb_cursor_open(MemorySegment txn, int dbi, MemorySegment cursor) {
+        try {
+            return (int) MDB_CURSOR_OPEN.invokeExact(txn, dbi, cursor);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_CLOSE =
+        downcall("mdb_cursor_close", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void mdb_cursor_close(MemorySegment cursor) {
+        try {
+            MDB_CURSOR_CLOSE.invokeExact(cursor);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_RENEW =
+        downcall("mdb_cursor_renew", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int mdb_cursor_renew(MemorySegment txn, MemorySegment cursor) {
+        try {
+            return (int) MDB_CURSOR_RENEW.invokeExact(txn, cursor);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_TXN =
+        downcall("mdb_cursor_txn", FunctionDescriptor.of(ADDRESS, ADDRESS));
+
+    public static MemorySegment mdb_cursor_txn(MemorySegment cursor) {
+        try {
+            return (MemorySegment) MDB_CURSOR_TXN.invokeExact(cursor);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_DBI =
+        downcall("mdb_cursor_dbi", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int mdb_cursor_dbi(MemorySegment cursor) {
+        try {
+            return (int) MDB_CURSOR_DBI.invokeExact(cursor);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_GET =
+        downcall("mdb_cursor_get", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_INT), TRIVIAL);
+
+    public static int mdb_cursor_get(MemorySegment cursor, MemorySegment key, MemorySegment data,
+            int op) {
+        try {
+            return (int) MDB_CURSOR_GET.invokeExact(cursor, key, data, op);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_PUT =
+        downcall("mdb_cursor_put", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_INT));
+
+    public static int mdb_cursor_put(MemorySegment cursor, MemorySegment key, MemorySegment data,
+            int flags) {
+        try {
+            return (int) MDB_CURSOR_PUT.invokeExact(cursor, key, data, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_DEL =
+        downcall("mdb_cursor_del", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+
+    public static int mdb_cursor_del(MemorySegment cursor, int flags) {
+        try {
+            return (int) MDB_CURSOR_DEL.invokeExact(cursor, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_COUNT =
+        downcall("mdb_cursor_count", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS), TRIVIAL);
+
+    public static int mdb_cursor_count(MemorySegment cursor, MemorySegment countp) {
+        try {
+            return (int) MDB_CURSOR_COUNT.invokeExact(cursor, countp);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_GET_RANK =
+        downcall("mdb_cursor_get_rank", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG, ADDRESS,
+                 ADDRESS, JAVA_INT), TRIVIAL);
+
+    public static int mdb_cursor_get_rank(MemorySegment cursor, long rank, MemorySegment key,
+            MemorySegment data, int flags) {
+        try {
+            return (int) MDB_CURSOR_GET_RANK.invokeExact(cursor, rank, key, data, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_GET_RANK =
+        downcall("mdb_get_rank", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_LONG,
+                 ADDRESS, ADDRESS), TRIVIAL);
+
+    public static int mdb_get_rank(MemorySegment txn, int dbi, long rank, MemorySegment key,
+            MemorySegment data) {
+        try {
+            return (int) MDB_GET_RANK.invokeExact(txn, dbi, rank, key, data);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CURSOR_KEY_RANK =
+        downcall("mdb_cursor_key_rank", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_INT, ADDRESS), TRIVIAL);
+
+    public static int mdb_cursor_key_rank(MemorySegment cursor, MemorySegment key,
+            MemorySegment data, int flags, MemorySegment rank) {
+        try {
+            return (int) MDB_CURSOR_KEY_RANK.invokeExact(cursor, key, data, flags, rank);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_GET_KEY_RANK =
+        downcall("mdb_get_key_rank", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS, ADDRESS), TRIVIAL);
+
+    public static int mdb_get_key_rank(MemorySegment txn, int dbi, MemorySegment key,
+            MemorySegment data, MemorySegment rank) {
+        try {
+            return (int) MDB_GET_KEY_RANK.invokeExact(txn, dbi, key, data, rank);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_COUNT_ALL =
+        downcall("mdb_count_all", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT,
+                 ADDRESS));
+
+    public static int mdb_count_all(MemorySegment txn, int dbi, int flags, MemorySegment out) {
+        try {
+            return (int) MDB_COUNT_ALL.invokeExact(txn, dbi, flags, out);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_COUNT_RANGE =
+        downcall("mdb_count_range", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS, JAVA_INT, ADDRESS));
+
+    public static int mdb_count_range(MemorySegment txn, int dbi, MemorySegment low,
+            MemorySegment high, int flags, MemorySegment out) {
+        try {
+            return (int) MDB_COUNT_RANGE.invokeExact(txn, dbi, low, high, flags, out);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_RANGE_COUNT_KEYS =
+        downcall("mdb_range_count_keys", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS, JAVA_INT, ADDRESS));
+
+    public static int mdb_range_count_keys(MemorySegment txn, int dbi, MemorySegment low,
+            MemorySegment high, int flags, MemorySegment out) {
+        try {
+            return (int) MDB_RANGE_COUNT_KEYS.invokeExact(txn, dbi, low, high, flags, out);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_RANGE_COUNT_VALUES =
+        downcall("mdb_range_count_values", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT,
+                 ADDRESS, ADDRESS, JAVA_INT, ADDRESS));
+
+    public static int mdb_range_count_values(MemorySegment txn, int dbi, MemorySegment key_low,
+            MemorySegment key_high, int key_flags, MemorySegment out) {
+        try {
+            return (int) MDB_RANGE_COUNT_VALUES.invokeExact(txn, dbi, key_low, key_high, key_flags,
+                out);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_CMP =
+        downcall("mdb_cmp", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS), TRIVIAL);
+
+    public static int mdb_cmp(MemorySegment txn, int dbi, MemorySegment a, MemorySegment b) {
+        try {
+            return (int) MDB_CMP.invokeExact(txn, dbi, a, b);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_DCMP =
+        downcall("mdb_dcmp", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS), TRIVIAL);
+
+    public static int mdb_dcmp(MemorySegment txn, int dbi, MemorySegment a, MemorySegment b) {
+        try {
+            return (int) MDB_DCMP.invokeExact(txn, dbi, a, b);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle MDB_READER_CHECK =
+        downcall("mdb_reader_check", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int mdb_reader_check(MemorySegment env, MemorySegment dead) {
+        try {
+            return (int) MDB_READER_CHECK.invokeExact(env, dead);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // dtlv iterators
+
+    private static final MethodHandle DTLV_FILTER_CREATE =
+        downcall("dtlv_filter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_LONG));
+
+    public static int dtlv_filter_create(MemorySegment filter, MemorySegment prog, long len) {
+        try {
+            return (int) DTLV_FILTER_CREATE.invokeExact(filter, prog, len);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_FILTER_MATCH =
+        downcall("dtlv_filter_match", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_filter_match(MemorySegment filter, MemorySegment key,
+            MemorySegment val) {
+        try {
+            return (int) DTLV_FILTER_MATCH.invokeExact(filter, key, val);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_FILTER_DESTROY =
+        downcall("dtlv_filter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_filter_destroy(MemorySegment filter) {
+        try {
+            DTLV_FILTER_DESTROY.invokeExact(filter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_ITER_CREATE =
+        downcall("dtlv_key_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_key_iter_create(MemorySegment iter, MemorySegment cur, MemorySegment key,
+            MemorySegment val, int forward, int start, int end, MemorySegment start_key,
+            MemorySegment end_key) {
+        try {
+            return (int) DTLV_KEY_ITER_CREATE.invokeExact(iter, cur, key, val, forward, start, end,
+                start_key, end_key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_ITER_RESET =
+        downcall("dtlv_key_iter_reset", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS), TRIVIAL);
+
+    public static int dtlv_key_iter_reset(MemorySegment iter, MemorySegment cur, MemorySegment key,
+            MemorySegment val, int forward, int start, int end, MemorySegment start_key,
+            MemorySegment end_key) {
+        try {
+            return (int) DTLV_KEY_ITER_RESET.invokeExact(iter, cur, key, val, forward, start, end,
+                start_key, end_key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_ITER_HAS_NEXT =
+        downcall("dtlv_key_iter_has_next", FunctionDescriptor.of(JAVA_INT, ADDRESS), TRIVIAL);
+
+    public static int dtlv_key_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_KEY_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_ITER_NEXT_BATCH =
+        downcall("dtlv_key_iter_next_batch", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_LONG, JAVA_INT, JAVA_INT, ADDRESS));
+
+    public static int dtlv_key_iter_next_batch(MemorySegment iter, MemorySegment buf, long buf_len,
+            int max_items, int with_val, MemorySegment used) {
+        try {
+            return (int) DTLV_KEY_ITER_NEXT_BATCH.invokeExact(iter, buf, buf_len, max_items,
+                with_val, used);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_ITER_SET_FILTER =
+        downcall("dtlv_key_iter_set_filter", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_key_iter_set_filter(MemorySegment iter, MemorySegment filter) {
+        try {
+            return (int) DTLV_KEY_ITER_SET_FILTER.invokeExact(iter, filter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_ITER_DESTROY =
+        downcall("dtlv_key_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_key_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_KEY_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MULTI_RANGE_ITER_CREATE =
+        downcall("dtlv_multi_range_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+
+    public static int dtlv_multi_range_iter_create(MemorySegment iter, MemorySegment cur,
+            MemorySegment key, MemorySegment val, int forward, int n, MemorySegment starts,
+            MemorySegment ends, MemorySegment start_keys, MemorySegment end_keys) {
+        try {
+            return (int) DTLV_MULTI_RANGE_ITER_CREATE.invokeExact(iter, cur, key, val, forward, n,
+                starts, ends, start_keys, end_keys);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MULTI_RANGE_ITER_HAS_NEXT =
+        downcall("dtlv_multi_range_iter_has_next", FunctionDescriptor.of(JAVA_INT,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_multi_range_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_MULTI_RANGE_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MULTI_RANGE_ITER_RANGE =
+        downcall("dtlv_multi_range_iter_range", FunctionDescriptor.of(JAVA_INT, ADDRESS), TRIVIAL);
+
+    public static int dtlv_multi_range_iter_range(MemorySegment iter) {
+        try {
+            return (int) DTLV_MULTI_RANGE_ITER_RANGE.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MULTI_RANGE_ITER_DESTROY =
+        downcall("dtlv_multi_range_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_multi_range_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_MULTI_RANGE_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_RANK_SAMPLE_ITER_CREATE =
+        downcall("dtlv_key_rank_sample_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS, JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+
+    public static int dtlv_key_rank_sample_iter_create(MemorySegment iter, MemorySegment indices,
+            int samples, MemorySegment cur, MemorySegment key, MemorySegment val,
+            MemorySegment start_key, MemorySegment end_key) {
+        try {
+            return (int) DTLV_KEY_RANK_SAMPLE_ITER_CREATE.invokeExact(iter, indices, samples, cur,
+                key, val, start_key, end_key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_RANK_SAMPLE_ITER_RESET =
+        downcall("dtlv_key_rank_sample_iter_reset", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS, JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+
+    public static int dtlv_key_rank_sample_iter_reset(MemorySegment iter, MemorySegment indices,
+            int samples, MemorySegment cur, MemorySegment key, MemorySegment val,
+            MemorySegment start_key, MemorySegment end_key) {
+        try {
+            return (int) DTLV_KEY_RANK_SAMPLE_ITER_RESET.invokeExact(iter, indices, samples, cur,
+                key, val, start_key, end_key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_RANK_SAMPLE_ITER_HAS_NEXT =
+        downcall("dtlv_key_rank_sample_iter_has_next", FunctionDescriptor.of(JAVA_INT,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_key_rank_sample_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_KEY_RANK_SAMPLE_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_KEY_RANK_SAMPLE_ITER_DESTROY =
+        downcall("dtlv_key_rank_sample_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_key_rank_sample_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_KEY_RANK_SAMPLE_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_ITER_CREATE =
+        downcall("dtlv_list_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT,
+                 JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_list_iter_create(MemorySegment iter, MemorySegment cur,
+            MemorySegment key, MemorySegment val, int kforward, int kstart, int kend,
+            MemorySegment start_key, MemorySegment end_key, int vforward, int vstart, int vend,
+            MemorySegment start_val, MemorySegment end_val) {
+        try {
+            return (int) DTLV_LIST_ITER_CREATE.invokeExact(iter, cur, key, val, kforward, kstart,
+                kend, start_key, end_key, vforward, vstart, vend, start_val, end_val);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_ITER_RESET =
+        downcall("dtlv_list_iter_reset", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT,
+                 JAVA_INT, ADDRESS, ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_iter_reset(MemorySegment iter, MemorySegment cur, MemorySegment key,
+            MemorySegment val, int kforward, int kstart, int kend, MemorySegment start_key,
+            MemorySegment end_key, int vforward, int vstart, int vend, MemorySegment start_val,
+            MemorySegment end_val) {
+        try {
+            return (int) DTLV_LIST_ITER_RESET.invokeExact(iter, cur, key, val, kforward, kstart,
+                kend, start_key, end_key, vforward, vstart, vend, start_val, end_val);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_ITER_HAS_NEXT =
+        downcall("dtlv_list_iter_has_next", FunctionDescriptor.of(JAVA_INT, ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_LIST_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_ITER_SET_FILTER =
+        downcall("dtlv_list_iter_set_filter", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_iter_set_filter(MemorySegment iter, MemorySegment filter) {
+        try {
+            return (int) DTLV_LIST_ITER_SET_FILTER.invokeExact(iter, filter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_ITER_DESTROY =
+        downcall("dtlv_list_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_list_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_LIST_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_ITER_CREATE =
+        downcall("dtlv_list_val_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+
+    public static int dtlv_list_val_iter_create(MemorySegment iter, MemorySegment cur,
+            MemorySegment key, MemorySegment val, MemorySegment start_val, MemorySegment end_val) {
+        try {
+            return (int) DTLV_LIST_VAL_ITER_CREATE.invokeExact(iter, cur, key, val, start_val,
+                end_val);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_ITER_RESET =
+        downcall("dtlv_list_val_iter_reset", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 ADDRESS, ADDRESS, ADDRESS, ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_val_iter_reset(MemorySegment iter, MemorySegment cur,
+            MemorySegment key, MemorySegment val, MemorySegment start_val, MemorySegment end_val) {
+        try {
+            return (int) DTLV_LIST_VAL_ITER_RESET.invokeExact(iter, cur, key, val, start_val,
+                end_val);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_ITER_SET_ORDER =
+        downcall("dtlv_list_val_iter_set_order", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT,
+                 JAVA_LONG), TRIVIAL);
+
+    public static int dtlv_list_val_iter_set_order(MemorySegment iter, int forward, long limit) {
+        try {
+            return (int) DTLV_LIST_VAL_ITER_SET_ORDER.invokeExact(iter, forward, limit);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_ITER_SEEK =
+        downcall("dtlv_list_val_iter_seek", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_list_val_iter_seek(MemorySegment iter, MemorySegment k) {
+        try {
+            return (int) DTLV_LIST_VAL_ITER_SEEK.invokeExact(iter, k);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_ITER_HAS_NEXT =
+        downcall("dtlv_list_val_iter_has_next", FunctionDescriptor.of(JAVA_INT, ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_val_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_LIST_VAL_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_ITER_DESTROY =
+        downcall("dtlv_list_val_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_list_val_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_LIST_VAL_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_FULL_ITER_CREATE =
+        downcall("dtlv_list_val_full_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 ADDRESS, ADDRESS));
+
+    public static int dtlv_list_val_full_iter_create(MemorySegment iter, MemorySegment cur,
+            MemorySegment key, MemorySegment val) {
+        try {
+            return (int) DTLV_LIST_VAL_FULL_ITER_CREATE.invokeExact(iter, cur, key, val);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_FULL_ITER_RESET =
+        downcall("dtlv_list_val_full_iter_reset", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 ADDRESS, ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_val_full_iter_reset(MemorySegment iter, MemorySegment cur,
+            MemorySegment key, MemorySegment val) {
+        try {
+            return (int) DTLV_LIST_VAL_FULL_ITER_RESET.invokeExact(iter, cur, key, val);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_FULL_ITER_SET_ORDER =
+        downcall("dtlv_list_val_full_iter_set_order", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 JAVA_INT, JAVA_LONG), TRIVIAL);
+
+    public static int dtlv_list_val_full_iter_set_order(MemorySegment iter, int forward,
+            long limit) {
+        try {
+            return (int) DTLV_LIST_VAL_FULL_ITER_SET_ORDER.invokeExact(iter, forward, limit);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_FULL_ITER_SEEK =
+        downcall("dtlv_list_val_full_iter_seek", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_list_val_full_iter_seek(MemorySegment iter, MemorySegment k) {
+        try {
+            return (int) DTLV_LIST_VAL_FULL_ITER_SEEK.invokeExact(iter, k);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_FULL_ITER_HAS_NEXT =
+        downcall("dtlv_list_val_full_iter_has_next", FunctionDescriptor.of(JAVA_INT,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_val_full_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_LIST_VAL_FULL_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_FULL_ITER_NEXT_BATCH =
+        downcall("dtlv_list_val_full_iter_next_batch", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS, JAVA_LONG, JAVA_INT, ADDRESS));
+
+    public static int dtlv_list_val_full_iter_next_batch(MemorySegment iter, MemorySegment buf,
+            long buf_len, int max_items, MemorySegment used) {
+        try {
+            return (int) DTLV_LIST_VAL_FULL_ITER_NEXT_BATCH.invokeExact(iter, buf, buf_len,
+                max_items, used);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_FULL_ITER_SEEK_BATCH =
+        downcall("dtlv_list_val_full_iter_seek_batch", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS, ADDRESS, JAVA_LONG, ADDRESS));
+
+    public static int dtlv_list_val_full_iter_seek_batch(MemorySegment iter, MemorySegment k,
+            MemorySegment buf, long buf_len, MemorySegment used) {
+        try {
+            return (int) DTLV_LIST_VAL_FULL_ITER_SEEK_BATCH.invokeExact(iter, k, buf, buf_len,
+                used);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_FULL_ITER_DESTROY =
+        downcall("dtlv_list_val_full_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_list_val_full_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_LIST_VAL_FULL_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_VAL_COUNT =
+        downcall("dtlv_list_val_count", FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS,
+                 ADDRESS), TRIVIAL);
+
+    public static long dtlv_list_val_count(MemorySegment cur, MemorySegment key,
+            MemorySegment val) {
+        try {
+            return (long) DTLV_LIST_VAL_COUNT.invokeExact(cur, key, val);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_KEY_RANGE_FULL_VAL_ITER_CREATE =
+        downcall("dtlv_list_key_range_full_val_iter_create", FunctionDescriptor.of(JAVA_INT,
+                 ADDRESS, ADDRESS, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_list_key_range_full_val_iter_create(MemorySegment iter,
+            MemorySegment cur, MemorySegment key, MemorySegment val, int kstart, int kend,
+            MemorySegment start_key, MemorySegment end_key) {
+        try {
+            return (int) DTLV_LIST_KEY_RANGE_FULL_VAL_ITER_CREATE.invokeExact(iter, cur, key, val,
+                kstart, kend, start_key, end_key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_KEY_RANGE_FULL_VAL_ITER_RESET =
+        downcall("dtlv_list_key_range_full_val_iter_reset", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_key_range_full_val_iter_reset(MemorySegment iter, MemorySegment cur,
+            MemorySegment key, MemorySegment val, int kstart, int kend, MemorySegment start_key,
+            MemorySegment end_key) {
+        try {
+            return (int) DTLV_LIST_KEY_RANGE_FULL_VAL_ITER_RESET.invokeExact(iter, cur, key, val,
+                kstart, kend, start_key, end_key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_KEY_RANGE_FULL_VAL_ITER_HAS_NEXT =
+        downcall("dtlv_list_key_range_full_val_iter_has_next", FunctionDescriptor.of(JAVA_INT,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_key_range_full_val_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_LIST_KEY_RANGE_FULL_VAL_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_KEY_RANGE_FULL_VAL_ITER_DESTROY =
+        downcall("dtlv_list_key_range_full_val_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_list_key_range_full_val_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_LIST_KEY_RANGE_FULL_VAL_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_RANK_SAMPLE_ITER_CREATE =
+        downcall("dtlv_list_rank_sample_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS, JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+
+    public static int dtlv_list_rank_sample_iter_create(MemorySegment iter, MemorySegment indices,
+            int samples, MemorySegment cur, MemorySegment key, MemorySegment val,
+            MemorySegment start_key, MemorySegment end_key) {
+        try {
+            return (int) DTLV_LIST_RANK_SAMPLE_ITER_CREATE.invokeExact(iter, indices, samples, cur,
+                key, val, start_key, end_key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_RANK_SAMPLE_ITER_RESET =
+        downcall("dtlv_list_rank_sample_iter_reset", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS, JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+
+    public static int dtlv_list_rank_sample_iter_reset(MemorySegment iter, MemorySegment indices,
+            int samples, MemorySegment cur, MemorySegment key, MemorySegment val,
+            MemorySegment start_key, MemorySegment end_key) {
+        try {
+            return (int) DTLV_LIST_RANK_SAMPLE_ITER_RESET.invokeExact(iter, indices, samples, cur,
+                key, val, start_key, end_key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_RANK_SAMPLE_ITER_HAS_NEXT =
+        downcall("dtlv_list_rank_sample_iter_has_next", FunctionDescriptor.of(JAVA_INT,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_list_rank_sample_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_LIST_RANK_SAMPLE_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LIST_RANK_SAMPLE_ITER_DESTROY =
+        downcall("dtlv_list_rank_sample_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_list_rank_sample_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_LIST_RANK_SAMPLE_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_PARTITION_RANGE =
+        downcall("dtlv_partition_range", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_partition_range(MemorySegment cur, MemorySegment start_key,
+            MemorySegment end_key, int parts, MemorySegment splits, MemorySegment n) {
+        try {
+            return (int) DTLV_PARTITION_RANGE.invokeExact(cur, start_key, end_key, parts, splits,
+                n);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_AGGREGATE =
+        downcall("dtlv_aggregate", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_INT, JAVA_INT, JAVA_LONG, ADDRESS));
+
+    public static int dtlv_aggregate(MemorySegment cur, MemorySegment start_key,
+            MemorySegment end_key, int decode, int from_key, long offset, MemorySegment result) {
+        try {
+            return (int) DTLV_AGGREGATE.invokeExact(cur, start_key, end_key, decode, from_key,
+                offset, result);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_AGGREGATE_PARALLEL =
+        downcall("dtlv_aggregate_parallel", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 ADDRESS, JAVA_INT, JAVA_INT, JAVA_LONG, JAVA_INT, ADDRESS));
+
+    public static int dtlv_aggregate_parallel(MemorySegment cur, MemorySegment start_key,
+            MemorySegment end_key, int decode, int from_key, long offset, int threads,
+            MemorySegment result) {
+        try {
+            return (int) DTLV_AGGREGATE_PARALLEL.invokeExact(cur, start_key, end_key, decode,
+                from_key, offset, threads, result);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MERGE_JOIN_ITER_CREATE =
+        downcall("dtlv_merge_join_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 ADDRESS, ADDRESS, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS,
+                 ADDRESS));
+
+    public static int dtlv_merge_join_iter_create(MemorySegment iter, MemorySegment cur1,
+            MemorySegment cur2, MemorySegment key, MemorySegment val1, MemorySegment val2, int dups,
+            int start, int end, MemorySegment start_key, MemorySegment end_key) {
+        try {
+            return (int) DTLV_MERGE_JOIN_ITER_CREATE.invokeExact(iter, cur1, cur2, key, val1, val2,
+                dups, start, end, start_key, end_key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MERGE_JOIN_ITER_HAS_NEXT =
+        downcall("dtlv_merge_join_iter_has_next", FunctionDescriptor.of(JAVA_INT,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_merge_join_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_MERGE_JOIN_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MERGE_JOIN_ITER_DESTROY =
+        downcall("dtlv_merge_join_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_merge_join_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_MERGE_JOIN_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LEAPFROG_ITER_CREATE =
+        downcall("dtlv_leapfrog_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT,
+                 ADDRESS, ADDRESS, ADDRESS));
+
+    public static int dtlv_leapfrog_iter_create(MemorySegment iter, int n, MemorySegment curs,
+            MemorySegment keys, MemorySegment val) {
+        try {
+            return (int) DTLV_LEAPFROG_ITER_CREATE.invokeExact(iter, n, curs, keys, val);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LEAPFROG_ITER_HAS_NEXT =
+        downcall("dtlv_leapfrog_iter_has_next", FunctionDescriptor.of(JAVA_INT, ADDRESS), TRIVIAL);
+
+    public static int dtlv_leapfrog_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_LEAPFROG_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LEAPFROG_ITER_SEEK =
+        downcall("dtlv_leapfrog_iter_seek", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_leapfrog_iter_seek(MemorySegment iter, MemorySegment target) {
+        try {
+            return (int) DTLV_LEAPFROG_ITER_SEEK.invokeExact(iter, target);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LEAPFROG_ITER_RESET =
+        downcall("dtlv_leapfrog_iter_reset", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS), TRIVIAL);
+
+    public static int dtlv_leapfrog_iter_reset(MemorySegment iter, MemorySegment keys) {
+        try {
+            return (int) DTLV_LEAPFROG_ITER_RESET.invokeExact(iter, keys);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LEAPFROG_ITER_DESTROY =
+        downcall("dtlv_leapfrog_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_leapfrog_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_LEAPFROG_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_SKIP_SCAN_ITER_CREATE =
+        downcall("dtlv_skip_scan_iter_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 ADDRESS, ADDRESS, JAVA_LONG, ADDRESS, ADDRESS));
+
+    public static int dtlv_skip_scan_iter_create(MemorySegment iter, MemorySegment cur,
+            MemorySegment key, MemorySegment val, long prefix_len, MemorySegment lo,
+            MemorySegment hi) {
+        try {
+            return (int) DTLV_SKIP_SCAN_ITER_CREATE.invokeExact(iter, cur, key, val, prefix_len, lo,
+                hi);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_SKIP_SCAN_ITER_HAS_NEXT =
+        downcall("dtlv_skip_scan_iter_has_next", FunctionDescriptor.of(JAVA_INT, ADDRESS), TRIVIAL);
+
+    public static int dtlv_skip_scan_iter_has_next(MemorySegment iter) {
+        try {
+            return (int) DTLV_SKIP_SCAN_ITER_HAS_NEXT.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_SKIP_SCAN_ITER_DESTROY =
+        downcall("dtlv_skip_scan_iter_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_skip_scan_iter_destroy(MemorySegment iter) {
+        try {
+            DTLV_SKIP_SCAN_ITER_DESTROY.invokeExact(iter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_POOL_CREATE =
+        downcall("dtlv_reader_pool_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT, ADDRESS, JAVA_INT));
+
+    public static int dtlv_reader_pool_create(MemorySegment pool, MemorySegment env, int n,
+            MemorySegment dbis, int capacity) {
+        try {
+            return (int) DTLV_READER_POOL_CREATE.invokeExact(pool, env, n, dbis, capacity);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_POOL_ACQUIRE =
+        downcall("dtlv_reader_pool_acquire", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_reader_pool_acquire(MemorySegment pool, MemorySegment reader) {
+        try {
+            return (int) DTLV_READER_POOL_ACQUIRE.invokeExact(pool, reader);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_POOL_RELEASE =
+        downcall("dtlv_reader_pool_release", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS));
+
+    public static void dtlv_reader_pool_release(MemorySegment pool, MemorySegment reader) {
+        try {
+            DTLV_READER_POOL_RELEASE.invokeExact(pool, reader);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_TXN =
+        downcall("dtlv_reader_txn", FunctionDescriptor.of(ADDRESS, ADDRESS), TRIVIAL);
+
+    public static MemorySegment dtlv_reader_txn(MemorySegment reader) {
+        try {
+            return (MemorySegment) DTLV_READER_TXN.invokeExact(reader);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_CURSOR =
+        downcall("dtlv_reader_cursor", FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_INT), TRIVIAL);
+
+    public static MemorySegment dtlv_reader_cursor(MemorySegment pool, MemorySegment reader,
+            int i) {
+        try {
+            return (MemorySegment) DTLV_READER_CURSOR.invokeExact(pool, reader, i);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_IS_STALE =
+        downcall("dtlv_reader_is_stale", FunctionDescriptor.of(JAVA_INT, ADDRESS), TRIVIAL);
+
+    public static int dtlv_reader_is_stale(MemorySegment reader) {
+        try {
+            return (int) DTLV_READER_IS_STALE.invokeExact(reader);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_REFRESH =
+        downcall("dtlv_reader_refresh", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_reader_refresh(MemorySegment pool, MemorySegment reader) {
+        try {
+            return (int) DTLV_READER_REFRESH.invokeExact(pool, reader);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_POOL_DESTROY =
+        downcall("dtlv_reader_pool_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_reader_pool_destroy(MemorySegment pool) {
+        try {
+            DTLV_READER_POOL_DESTROY.invokeExact(pool);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_WRITE_COMBINER_CREATE =
+        downcall("dtlv_write_combiner_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT));
+
+    public static int dtlv_write_combiner_create(MemorySegment combiner, MemorySegment env,
+            int max_batches) {
+        try {
+            return (int) DTLV_WRITE_COMBINER_CREATE.invokeExact(combiner, env, max_batches);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_WRITE_COMBINER_SUBMIT =
+        downcall("dtlv_write_combiner_submit", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_LONG));
+
+    public static int dtlv_write_combiner_submit(MemorySegment combiner, MemorySegment ops,
+            long len) {
+        try {
+            return (int) DTLV_WRITE_COMBINER_SUBMIT.invokeExact(combiner, ops, len);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_WRITE_COMBINER_STATS =
+        downcall("dtlv_write_combiner_stats", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, ADDRESS));
+
+    public static void dtlv_write_combiner_stats(MemorySegment combiner, MemorySegment commits,
+            MemorySegment batches) {
+        try {
+            DTLV_WRITE_COMBINER_STATS.invokeExact(combiner, commits, batches);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_WRITE_COMBINER_DESTROY =
+        downcall("dtlv_write_combiner_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_write_combiner_destroy(MemorySegment combiner) {
+        try {
+            DTLV_WRITE_COMBINER_DESTROY.invokeExact(combiner);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_BULK_LOADER_CREATE =
+        downcall("dtlv_bulk_loader_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT, JAVA_LONG, JAVA_LONG));
+
+    public static int dtlv_bulk_loader_create(MemorySegment loader, MemorySegment env, int dbi,
+            long budget, long chunk) {
+        try {
+            return (int) DTLV_BULK_LOADER_CREATE.invokeExact(loader, env, dbi, budget, chunk);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_BULK_LOADER_ADD =
+        downcall("dtlv_bulk_loader_add", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_LONG));
+
+    public static int dtlv_bulk_loader_add(MemorySegment loader, MemorySegment records, long len) {
+        try {
+            return (int) DTLV_BULK_LOADER_ADD.invokeExact(loader, records, len);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_BULK_LOADER_FINISH =
+        downcall("dtlv_bulk_loader_finish", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_bulk_loader_finish(MemorySegment loader, MemorySegment written) {
+        try {
+            return (int) DTLV_BULK_LOADER_FINISH.invokeExact(loader, written);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_BULK_LOADER_DESTROY =
+        downcall("dtlv_bulk_loader_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_bulk_loader_destroy(MemorySegment loader) {
+        try {
+            DTLV_BULK_LOADER_DESTROY.invokeExact(loader);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MULTI_GET =
+        downcall("dtlv_multi_get", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS, ADDRESS));
+
+    public static int dtlv_multi_get(MemorySegment cur, int n, MemorySegment keys,
+            MemorySegment vals, MemorySegment found) {
+        try {
+            return (int) DTLV_MULTI_GET.invokeExact(cur, n, keys, vals, found);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MULTI_GET_BATCH =
+        downcall("dtlv_multi_get_batch", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS, JAVA_LONG, ADDRESS));
+
+    public static int dtlv_multi_get_batch(MemorySegment cur, int n, MemorySegment keys,
+            MemorySegment buf, long buf_len, MemorySegment used) {
+        try {
+            return (int) DTLV_MULTI_GET_BATCH.invokeExact(cur, n, keys, buf, buf_len, used);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_PUT_BATCH =
+        downcall("dtlv_put_batch", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 JAVA_LONG, JAVA_INT, ADDRESS));
+
+    public static int dtlv_put_batch(MemorySegment txn, int dbi, MemorySegment records, long len,
+            int flags, MemorySegment written) {
+        try {
+            return (int) DTLV_PUT_BATCH.invokeExact(txn, dbi, records, len, flags, written);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MAP_GROWTH_CREATE =
+        downcall("dtlv_map_growth_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_DOUBLE, JAVA_LONG));
+
+    public static int dtlv_map_growth_create(MemorySegment growth, MemorySegment env, double factor,
+            long ceiling) {
+        try {
+            return (int) DTLV_MAP_GROWTH_CREATE.invokeExact(growth, env, factor, ceiling);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MAP_GROWTH_GROW =
+        downcall("dtlv_map_growth_grow", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int dtlv_map_growth_grow(MemorySegment growth) {
+        try {
+            return (int) DTLV_MAP_GROWTH_GROW.invokeExact(growth);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MAP_GROWTH_TXN_BEGIN =
+        downcall("dtlv_map_growth_txn_begin", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT,
+                 ADDRESS));
+
+    public static int dtlv_map_growth_txn_begin(MemorySegment growth, int flags,
+            MemorySegment txn) {
+        try {
+            return (int) DTLV_MAP_GROWTH_TXN_BEGIN.invokeExact(growth, flags, txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MAP_GROWTH_TXN_END =
+        downcall("dtlv_map_growth_txn_end", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS));
+
+    public static void dtlv_map_growth_txn_end(MemorySegment growth, MemorySegment txn) {
+        try {
+            DTLV_MAP_GROWTH_TXN_END.invokeExact(growth, txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MAP_GROWTH_WRITE =
+        downcall("dtlv_map_growth_write", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_LONG));
+
+    public static int dtlv_map_growth_write(MemorySegment growth, MemorySegment ops, long len) {
+        try {
+            return (int) DTLV_MAP_GROWTH_WRITE.invokeExact(growth, ops, len);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_WRITE_COMBINER_SET_GROWTH =
+        downcall("dtlv_write_combiner_set_growth", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS));
+
+    public static void dtlv_write_combiner_set_growth(MemorySegment combiner,
+            MemorySegment growth) {
+        try {
+            DTLV_WRITE_COMBINER_SET_GROWTH.invokeExact(combiner, growth);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_MAP_GROWTH_DESTROY =
+        downcall("dtlv_map_growth_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_map_growth_destroy(MemorySegment growth) {
+        try {
+            DTLV_MAP_GROWTH_DESTROY.invokeExact(growth);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_ENV_COPY_SINK =
+        downcall("dtlv_env_copy_sink", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_LONG,
+                 ADDRESS, ADDRESS));
+
+    public static int dtlv_env_copy_sink(MemorySegment env, int flags, long rate,
+            MemorySegment sink, MemorySegment ctx) {
+        try {
+            return (int) DTLV_ENV_COPY_SINK.invokeExact(env, flags, rate, sink, ctx);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_ENV_COPY_FD =
+        downcall("dtlv_env_copy_fd", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT,
+                 JAVA_LONG));
+
+    public static int dtlv_env_copy_fd(MemorySegment env, int fd, int flags, long rate) {
+        try {
+            return (int) DTLV_ENV_COPY_FD.invokeExact(env, fd, flags, rate);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_ENV_DIFF_BACKUP =
+        downcall("dtlv_env_diff_backup", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_LONG, ADDRESS, ADDRESS, ADDRESS));
+
+    public static int dtlv_env_diff_backup(MemorySegment env, MemorySegment manifest, long rate,
+            MemorySegment sink, MemorySegment ctx, MemorySegment pages) {
+        try {
+            return (int) DTLV_ENV_DIFF_BACKUP.invokeExact(env, manifest, rate, sink, ctx, pages);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_BACKUP_RESTORE =
+        downcall("dtlv_backup_restore", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT,
+                 ADDRESS));
+
+    public static int dtlv_backup_restore(MemorySegment path, int n, MemorySegment deltas) {
+        try {
+            return (int) DTLV_BACKUP_RESTORE.invokeExact(path, n, deltas);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_METRICS_CREATE =
+        downcall("dtlv_metrics_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT));
+
+    public static int dtlv_metrics_create(MemorySegment metrics, MemorySegment env, int max_dbs) {
+        try {
+            return (int) DTLV_METRICS_CREATE.invokeExact(metrics, env, max_dbs);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_METRICS_SNAPSHOT =
+        downcall("dtlv_metrics_snapshot", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_LONG, ADDRESS));
+
+    public static int dtlv_metrics_snapshot(MemorySegment metrics, MemorySegment out, long len,
+            MemorySegment used) {
+        try {
+            return (int) DTLV_METRICS_SNAPSHOT.invokeExact(metrics, out, len, used);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_METRICS_RESET =
+        downcall("dtlv_metrics_reset", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_metrics_reset(MemorySegment metrics) {
+        try {
+            DTLV_METRICS_RESET.invokeExact(metrics);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_METRICS_DESTROY =
+        downcall("dtlv_metrics_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_metrics_destroy(MemorySegment metrics) {
+        try {
+            DTLV_METRICS_DESTROY.invokeExact(metrics);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_GET =
+        downcall("dtlv_get", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_get(MemorySegment txn, int dbi, MemorySegment key, MemorySegment data) {
+        try {
+            return (int) DTLV_GET.invokeExact(txn, dbi, key, data);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_PUT =
+        downcall("dtlv_put", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT));
+
+    public static int dtlv_put(MemorySegment txn, int dbi, MemorySegment key, MemorySegment data,
+            int flags) {
+        try {
+            return (int) DTLV_PUT.invokeExact(txn, dbi, key, data, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_DEL =
+        downcall("dtlv_del", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_del(MemorySegment txn, int dbi, MemorySegment key, MemorySegment data) {
+        try {
+            return (int) DTLV_DEL.invokeExact(txn, dbi, key, data);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_CURSOR_GET =
+        downcall("dtlv_cursor_get", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_INT));
+
+    public static int dtlv_cursor_get(MemorySegment cur, MemorySegment key, MemorySegment data,
+            int op) {
+        try {
+            return (int) DTLV_CURSOR_GET.invokeExact(cur, key, data, op);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_CURSOR_PUT =
+        downcall("dtlv_cursor_put", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_INT));
+
+    public static int dtlv_cursor_put(MemorySegment cur, MemorySegment key, MemorySegment data,
+            int flags) {
+        try {
+            return (int) DTLV_CURSOR_PUT.invokeExact(cur, key, data, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_CURSOR_DEL =
+        downcall("dtlv_cursor_del", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+
+    public static int dtlv_cursor_del(MemorySegment cur, int flags) {
+        try {
+            return (int) DTLV_CURSOR_DEL.invokeExact(cur, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_TXN_COMMIT =
+        downcall("dtlv_txn_commit", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int dtlv_txn_commit(MemorySegment txn) {
+        try {
+            return (int) DTLV_TXN_COMMIT.invokeExact(txn);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_ENV_SYNC =
+        downcall("dtlv_env_sync", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+
+    public static int dtlv_env_sync(MemorySegment env, int force) {
+        try {
+            return (int) DTLV_ENV_SYNC.invokeExact(env, force);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_LIST =
+        downcall("dtlv_reader_list", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS, ADDRESS, ADDRESS));
+
+    public static int dtlv_reader_list(MemorySegment env, int max, MemorySegment pids,
+            MemorySegment tids, MemorySegment txnids, MemorySegment lags) {
+        try {
+            return (int) DTLV_READER_LIST.invokeExact(env, max, pids, tids, txnids, lags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_REAPER_CREATE =
+        downcall("dtlv_reader_reaper_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT, JAVA_LONG));
+
+    public static int dtlv_reader_reaper_create(MemorySegment reaper, MemorySegment env,
+            int interval_ms, long max_lag) {
+        try {
+            return (int) DTLV_READER_REAPER_CREATE.invokeExact(reaper, env, interval_ms, max_lag);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_REAPER_STATS =
+        downcall("dtlv_reader_reaper_stats", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS));
+
+    public static void dtlv_reader_reaper_stats(MemorySegment reaper, MemorySegment stats) {
+        try {
+            DTLV_READER_REAPER_STATS.invokeExact(reaper, stats);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_READER_REAPER_DESTROY =
+        downcall("dtlv_reader_reaper_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_reader_reaper_destroy(MemorySegment reaper) {
+        try {
+            DTLV_READER_REAPER_DESTROY.invokeExact(reaper);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_ENV_ANALYZE =
+        downcall("dtlv_env_analyze", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT));
+
+    public static int dtlv_env_analyze(MemorySegment analysis, MemorySegment env, int flags) {
+        try {
+            return (int) DTLV_ENV_ANALYZE.invokeExact(analysis, env, flags);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_ENV_ANALYSIS_ENV =
+        downcall("dtlv_env_analysis_env", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS));
+
+    public static void dtlv_env_analysis_env(MemorySegment analysis, MemorySegment stats) {
+        try {
+            DTLV_ENV_ANALYSIS_ENV.invokeExact(analysis, stats);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_ENV_ANALYSIS_DBS =
+        downcall("dtlv_env_analysis_dbs", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int dtlv_env_analysis_dbs(MemorySegment analysis) {
+        try {
+            return (int) DTLV_ENV_ANALYSIS_DBS.invokeExact(analysis);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_ENV_ANALYSIS_DB =
+        downcall("dtlv_env_analysis_db", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS,
+                 ADDRESS));
+
+    public static int dtlv_env_analysis_db(MemorySegment analysis, int i, MemorySegment name,
+            MemorySegment stats) {
+        try {
+            return (int) DTLV_ENV_ANALYSIS_DB.invokeExact(analysis, i, name, stats);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_ENV_ANALYSIS_DESTROY =
+        downcall("dtlv_env_analysis_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_env_analysis_destroy(MemorySegment analysis) {
+        try {
+            DTLV_ENV_ANALYSIS_DESTROY.invokeExact(analysis);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // usearch
+
+    private static final MethodHandle USEARCH_VERSION =
+        downcall("usearch_version", FunctionDescriptor.of(ADDRESS));
+
+    public static MemorySegment usearch_version() {
+        try {
+            return (MemorySegment) USEARCH_VERSION.invokeExact();
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_INIT =
+        downcall("usearch_init", FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS));
+
+    public static MemorySegment usearch_init(MemorySegment options, MemorySegment error) {
+        try {
+            return (MemorySegment) USEARCH_INIT.invokeExact(options, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_FREE =
+        downcall("usearch_free", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS));
+
+    public static void usearch_free(MemorySegment index, MemorySegment error) {
+        try {
+            USEARCH_FREE.invokeExact(index, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_MEMORY_USAGE =
+        downcall("usearch_memory_usage", FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS));
+
+    public static long usearch_memory_usage(MemorySegment index, MemorySegment error) {
+        try {
+            return (long) USEARCH_MEMORY_USAGE.invokeExact(index, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_SERIALIZED_LENGTH =
+        downcall("usearch_serialized_length", FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS));
+
+    public static long usearch_serialized_length(MemorySegment index, MemorySegment error) {
+        try {
+            return (long) USEARCH_SERIALIZED_LENGTH.invokeExact(index, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_SAVE =
+        downcall("usearch_save", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, ADDRESS));
+
+    public static void usearch_save(MemorySegment index, MemorySegment path, MemorySegment error) {
+        try {
+            USEARCH_SAVE.invokeExact(index, path, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_LOAD =
+        downcall("usearch_load", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, ADDRESS));
+
+    public static void usearch_load(MemorySegment index, MemorySegment path, MemorySegment error) {
+        try {
+            USEARCH_LOAD.invokeExact(index, path, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_VIEW =
+        downcall("usearch_view", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, ADDRESS));
+
+    public static void usearch_view(MemorySegment index, MemorySegment path, MemorySegment error) {
+        try {
+            USEARCH_VIEW.invokeExact(index, path, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_SAVE_BUFFER =
+        downcall("usearch_save_buffer", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, JAVA_LONG,
+                 ADDRESS));
+
+    public static void usearch_save_buffer(MemorySegment index, MemorySegment buffer, long length,
+            MemorySegment error) {
+        try {
+            USEARCH_SAVE_BUFFER.invokeExact(index, buffer, length, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_LOAD_BUFFER =
+        downcall("usearch_load_buffer", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, JAVA_LONG,
+                 ADDRESS));
+
+    public static void usearch_load_buffer(MemorySegment index, MemorySegment buffer, long length,
+            MemorySegment error) {
+        try {
+            USEARCH_LOAD_BUFFER.invokeExact(index, buffer, length, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_VIEW_BUFFER =
+        downcall("usearch_view_buffer", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, JAVA_LONG,
+                 ADDRESS));
+
+    public static void usearch_view_buffer(MemorySegment index, MemorySegment buffer, long length,
+            MemorySegment error) {
+        try {
+            USEARCH_VIEW_BUFFER.invokeExact(index, buffer, length, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_SIZE =
+        downcall("usearch_size", FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS));
+
+    public static long usearch_size(MemorySegment index, MemorySegment error) {
+        try {
+            return (long) USEARCH_SIZE.invokeExact(index, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_CAPACITY =
+        downcall("usearch_capacity", FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS));
+
+    public static long usearch_capacity(MemorySegment index, MemorySegment error) {
+        try {
+            return (long) USEARCH_CAPACITY.invokeExact(index, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_DIMENSIONS =
+        downcall("usearch_dimensions", FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS));
+
+    public static long usearch_dimensions(MemorySegment index, MemorySegment error) {
+        try {
+            return (long) USEARCH_DIMENSIONS.invokeExact(index, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_CONNECTIVITY =
+        downcall("usearch_connectivity", FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS));
+
+    public static long usearch_connectivity(MemorySegment index, MemorySegment error) {
+        try {
+            return (long) USEARCH_CONNECTIVITY.invokeExact(index, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_RESERVE =
+        downcall("usearch_reserve", FunctionDescriptor.ofVoid(ADDRESS, JAVA_LONG, ADDRESS));
+
+    public static void usearch_reserve(MemorySegment index, long capacity, MemorySegment error) {
+        try {
+            USEARCH_RESERVE.invokeExact(index, capacity, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_CHANGE_EXPANSION_ADD =
+        downcall("usearch_change_expansion_add", FunctionDescriptor.ofVoid(ADDRESS, JAVA_LONG,
+                 ADDRESS));
+
+    public static void usearch_change_expansion_add(MemorySegment index, long expansion,
+            MemorySegment error) {
+        try {
+            USEARCH_CHANGE_EXPANSION_ADD.invokeExact(index, expansion, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_CHANGE_EXPANSION_SEARCH =
+        downcall("usearch_change_expansion_search", FunctionDescriptor.ofVoid(ADDRESS, JAVA_LONG,
+                 ADDRESS));
+
+    public static void usearch_change_expansion_search(MemorySegment index, long expansion,
+            MemorySegment error) {
+        try {
+            USEARCH_CHANGE_EXPANSION_SEARCH.invokeExact(index, expansion, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_CHANGE_THREADS_ADD =
+        downcall("usearch_change_threads_add", FunctionDescriptor.ofVoid(ADDRESS, JAVA_LONG,
+                 ADDRESS));
+
+    public static void usearch_change_threads_add(MemorySegment index, long threads,
+            MemorySegment error) {
+        try {
+            USEARCH_CHANGE_THREADS_ADD.invokeExact(index, threads, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_CHANGE_THREADS_SEARCH =
+        downcall("usearch_change_threads_search", FunctionDescriptor.ofVoid(ADDRESS, JAVA_LONG,
+                 ADDRESS));
+
+    public static void usearch_change_threads_search(MemorySegment index, long threads,
+            MemorySegment error) {
+        try {
+            USEARCH_CHANGE_THREADS_SEARCH.invokeExact(index, threads, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_ADD =
+        downcall("usearch_add", FunctionDescriptor.ofVoid(ADDRESS, JAVA_LONG, ADDRESS, JAVA_INT,
+                 ADDRESS));
+
+    public static void usearch_add(MemorySegment index, long key, MemorySegment vector,
+            int vector_kind, MemorySegment error) {
+        try {
+            USEARCH_ADD.invokeExact(index, key, vector, vector_kind, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_CONTAINS =
+        downcall("usearch_contains", FunctionDescriptor.of(JAVA_BOOLEAN, ADDRESS, JAVA_LONG,
+                 ADDRESS));
+
+    public static boolean usearch_contains(MemorySegment index, long key, MemorySegment error) {
+        try {
+            return (boolean) USEARCH_CONTAINS.invokeExact(index, key, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_COUNT =
+        downcall("usearch_count", FunctionDescriptor.of(JAVA_LONG, ADDRESS, JAVA_LONG, ADDRESS));
+
+    public static long usearch_count(MemorySegment index, long key, MemorySegment error) {
+        try {
+            return (long) USEARCH_COUNT.invokeExact(index, key, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_SEARCH =
+        downcall("usearch_search", FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS, JAVA_INT,
+                 JAVA_LONG, ADDRESS, ADDRESS, ADDRESS));
+
+    public static long usearch_search(MemorySegment index, MemorySegment query_vector,
+            int query_kind, long count, MemorySegment keys, MemorySegment distances,
+            MemorySegment error) {
+        try {
+            return (long) USEARCH_SEARCH.invokeExact(index, query_vector, query_kind, count, keys,
+                distances, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_GET =
+        downcall("usearch_get", FunctionDescriptor.of(JAVA_LONG, ADDRESS, JAVA_LONG, JAVA_LONG,
+                 ADDRESS, JAVA_INT, ADDRESS));
+
+    public static long usearch_get(MemorySegment index, long key, long count, MemorySegment vector,
+            int vector_kind, MemorySegment error) {
+        try {
+            return (long) USEARCH_GET.invokeExact(index, key, count, vector, vector_kind, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_REMOVE =
+        downcall("usearch_remove", FunctionDescriptor.of(JAVA_LONG, ADDRESS, JAVA_LONG, ADDRESS));
+
+    public static long usearch_remove(MemorySegment index, long key, MemorySegment error) {
+        try {
+            return (long) USEARCH_REMOVE.invokeExact(index, key, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_RENAME =
+        downcall("usearch_rename", FunctionDescriptor.of(JAVA_LONG, ADDRESS, JAVA_LONG, JAVA_LONG,
+                 ADDRESS));
+
+    public static long usearch_rename(MemorySegment index, long from, long to,
+            MemorySegment error) {
+        try {
+            return (long) USEARCH_RENAME.invokeExact(index, from, to, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle USEARCH_DISTANCE =
+        downcall("usearch_distance", FunctionDescriptor.of(JAVA_FLOAT, ADDRESS, ADDRESS, JAVA_INT,
+                 JAVA_LONG, JAVA_INT, ADDRESS));
+
+    public static float usearch_distance(MemorySegment vector_first, MemorySegment vector_second,
+            int scalar_kind, long dimensions, int metric_kind, MemorySegment error) {
+        try {
+            return (float) USEARCH_DISTANCE.invokeExact(vector_first, vector_second, scalar_kind,
+                dimensions, metric_kind, error);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // llama.cpp
+
+    private static final MethodHandle DTLV_LLAMA_EMBEDDER_CREATE =
+        downcall("dtlv_llama_embedder_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT));
+
+    public static int dtlv_llama_embedder_create(MemorySegment embedder, MemorySegment model_path,
+            int n_ctx, int n_batch, int n_threads, int normalize) {
+        try {
+            return (int) DTLV_LLAMA_EMBEDDER_CREATE.invokeExact(embedder, model_path, n_ctx,
+                n_batch, n_threads, normalize);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_EMBEDDER_N_EMBD =
+        downcall("dtlv_llama_embedder_n_embd", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int dtlv_llama_embedder_n_embd(MemorySegment embedder) {
+        try {
+            return (int) DTLV_LLAMA_EMBEDDER_N_EMBD.invokeExact(embedder);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_TOKEN_COUNT =
+        downcall("dtlv_llama_token_count", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+
+    public static int dtlv_llama_token_count(MemorySegment embedder, MemorySegment text) {
+        try {
+            return (int) DTLV_LLAMA_TOKEN_COUNT.invokeExact(embedder, text);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_EMBEDDER_N_CTX =
+        downcall("dtlv_llama_embedder_n_ctx", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int dtlv_llama_embedder_n_ctx(MemorySegment embedder) {
+        try {
+            return (int) DTLV_LLAMA_EMBEDDER_N_CTX.invokeExact(embedder);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_TOKENIZE =
+        downcall("dtlv_llama_tokenize", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_INT));
+
+    public static int dtlv_llama_tokenize(MemorySegment embedder, MemorySegment text,
+            MemorySegment tokens, int n_tokens_max) {
+        try {
+            return (int) DTLV_LLAMA_TOKENIZE.invokeExact(embedder, text, tokens, n_tokens_max);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_DETOKENIZE =
+        downcall("dtlv_llama_detokenize", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT, ADDRESS, JAVA_INT));
+
+    public static int dtlv_llama_detokenize(MemorySegment embedder, MemorySegment tokens,
+            int n_tokens, MemorySegment text, int text_len_max) {
+        try {
+            return (int) DTLV_LLAMA_DETOKENIZE.invokeExact(embedder, tokens, n_tokens, text,
+                text_len_max);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_EMBED =
+        downcall("dtlv_llama_embed", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                 JAVA_LONG));
+
+    public static int dtlv_llama_embed(MemorySegment embedder, MemorySegment text,
+            MemorySegment output, long output_len) {
+        try {
+            return (int) DTLV_LLAMA_EMBED.invokeExact(embedder, text, output, output_len);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_EMBED_BATCH =
+        downcall("dtlv_llama_embed_batch", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT, ADDRESS, JAVA_LONG));
+
+    public static int dtlv_llama_embed_batch(MemorySegment embedder, MemorySegment texts,
+            int n_texts, MemorySegment output, long output_len) {
+        try {
+            return (int) DTLV_LLAMA_EMBED_BATCH.invokeExact(embedder, texts, n_texts, output,
+                output_len);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_EMBEDDER_DESTROY =
+        downcall("dtlv_llama_embedder_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_llama_embedder_destroy(MemorySegment embedder) {
+        try {
+            DTLV_LLAMA_EMBEDDER_DESTROY.invokeExact(embedder);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_GENERATOR_CREATE =
+        downcall("dtlv_llama_generator_create", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                 JAVA_INT, JAVA_INT, JAVA_INT));
+
+    public static int dtlv_llama_generator_create(MemorySegment generator, MemorySegment model_path,
+            int n_ctx, int n_batch, int n_threads) {
+        try {
+            return (int) DTLV_LLAMA_GENERATOR_CREATE.invokeExact(generator, model_path, n_ctx,
+                n_batch, n_threads);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_GENERATOR_N_CTX =
+        downcall("dtlv_llama_generator_n_ctx", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+
+    public static int dtlv_llama_generator_n_ctx(MemorySegment generator) {
+        try {
+            return (int) DTLV_LLAMA_GENERATOR_N_CTX.invokeExact(generator);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_GENERATOR_TOKEN_COUNT =
+        downcall("dtlv_llama_generator_token_count", FunctionDescriptor.of(JAVA_INT, ADDRESS,
+                 ADDRESS));
+
+    public static int dtlv_llama_generator_token_count(MemorySegment generator,
+            MemorySegment text) {
+        try {
+            return (int) DTLV_LLAMA_GENERATOR_TOKEN_COUNT.invokeExact(generator, text);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_GENERATE =
+        downcall("dtlv_llama_generate", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT,
+                 ADDRESS, JAVA_LONG));
+
+    public static int dtlv_llama_generate(MemorySegment generator, MemorySegment prompt,
+            int n_predict, MemorySegment output, long output_len) {
+        try {
+            return (int) DTLV_LLAMA_GENERATE.invokeExact(generator, prompt, n_predict, output,
+                output_len);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_SUMMARIZE =
+        downcall("dtlv_llama_summarize", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT,
+                 ADDRESS, JAVA_LONG));
+
+    public static int dtlv_llama_summarize(MemorySegment generator, MemorySegment text,
+            int n_predict, MemorySegment output, long output_len) {
+        try {
+            return (int) DTLV_LLAMA_SUMMARIZE.invokeExact(generator, text, n_predict, output,
+                output_len);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static final MethodHandle DTLV_LLAMA_GENERATOR_DESTROY =
+        downcall("dtlv_llama_generator_destroy", FunctionDescriptor.ofVoid(ADDRESS));
+
+    public static void dtlv_llama_generator_destroy(MemorySegment generator) {
+        try {
+            DTLV_LLAMA_GENERATOR_DESTROY.invokeExact(generator);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+}
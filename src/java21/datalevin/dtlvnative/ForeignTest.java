@@ -0,0 +1,158 @@
+package datalevin.dtlvnative;
+
+import java.io.*;
+import java.lang.foreign.*;
+import java.nio.file.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.bytedeco.javacpp.BytePointer;
+
+/**
+ * Smoke test of DTLVForeign. It uses the FFM API, a preview API in Java 21,
+ * so it is kept apart from Test, which only loads it reflectively. The jar
+ * has a variant for Java 22 and later, where the API is final.
+ */
+public class ForeignTest {
+
+    static void testForeign() {
+
+        System.err.println("Testing foreign function binding ...");
+
+        if (!DTLVForeign.isAvailable()) {
+            Test.pass("Skipped foreign function binding test, symbols are not exported.");
+            return;
+        }
+
+        String dir = "db-foreign";
+        MemorySegment env = MemorySegment.NULL;
+        MemorySegment txn = MemorySegment.NULL;
+        MemorySegment cursor = MemorySegment.NULL;
+        MemorySegment iter = MemorySegment.NULL;
+
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment holder = arena.allocate(ValueLayout.ADDRESS);
+            int result = DTLVForeign.mdb_env_create(holder);
+            if (result != 0) {
+                System.err.println("Failed to create foreign env: " + result);
+                return;
+            }
+            env = holder.get(ValueLayout.ADDRESS, 0);
+
+            result = DTLVForeign.mdb_env_set_maxdbs(env, 5);
+            if (result != 0) {
+                System.err.println("Failed to set max dbs for foreign env: " + result);
+                return;
+            }
+
+            try {
+                Files.createDirectories(Paths.get(dir));
+            } catch (IOException e) {
+                System.err.println("Failed to create directory: " + dir);
+                e.printStackTrace();
+                return;
+            }
+
+            result = DTLVForeign.mdb_env_open(env, arena.allocateUtf8String(dir),
+                                              DTLV.MDB_NOLOCK, 0664);
+            if (result != 0) {
+                System.err.println("Failed to open foreign env: " + result);
+                return;
+            }
+
+            result = DTLVForeign.mdb_txn_begin(env, MemorySegment.NULL, 0, holder);
+            if (result != 0) {
+                System.err.println("Failed to begin foreign txn: " + result);
+                return;
+            }
+            txn = holder.get(ValueLayout.ADDRESS, 0);
+
+            MemorySegment dbiHolder = arena.allocate(ValueLayout.JAVA_INT);
+            result = DTLVForeign.mdb_dbi_open(txn, arena.allocateUtf8String("foreign"),
+                                              DTLV.MDB_CREATE, dbiHolder);
+            if (result != 0) {
+                System.err.println("Failed to open foreign dbi: " + result);
+                return;
+            }
+            int dbi = dbiHolder.get(ValueLayout.JAVA_INT, 0);
+
+            for (String k : new String[] { "c", "a", "b" }) {
+                MemorySegment kval = DTLVForeign.allocateVal(
+                    arena, arena.allocateArray(ValueLayout.JAVA_BYTE,
+                                               k.getBytes(StandardCharsets.UTF_8)));
+                MemorySegment vval = DTLVForeign.allocateVal(
+                    arena, arena.allocateArray(ValueLayout.JAVA_BYTE,
+                                               ("v" + k).getBytes(StandardCharsets.UTF_8)));
+                result = DTLVForeign.mdb_put(txn, dbi, kval, vval, 0);
+                if (result != 0) {
+                    System.err.println("Failed to put foreign data: " + result);
+                    return;
+                }
+            }
+
+            MemorySegment key = DTLVForeign.allocateVal(arena);
+            MemorySegment val = DTLVForeign.allocateVal(arena);
+
+            MemorySegment getKey = DTLVForeign.allocateVal(
+                arena, arena.allocateArray(ValueLayout.JAVA_BYTE, new byte[] { 'b' }));
+            result = DTLVForeign.mdb_get(txn, dbi, getKey, val);
+            Test.expect(result == 0, "Foreign mdb_get should find the key");
+            String got = new String(DTLVForeign.mvData(val).toArray(ValueLayout.JAVA_BYTE),
+                                    StandardCharsets.UTF_8);
+            Test.expect(got.equals("vb"), "Foreign mdb_get value mismatch: " + got);
+
+            List<BytePointer> allocations = new ArrayList<>();
+            DTLV.MDB_val cppVal = new DTLV.MDB_val();
+            try {
+                Test.fillValWithString(cppVal, "javacpp", allocations);
+                got = new String(DTLVForeign.mvData(cppVal).toArray(ValueLayout.JAVA_BYTE),
+                                 StandardCharsets.UTF_8);
+                Test.expect(got.equals("javacpp"),
+                            "Foreign view of a JavaCPP MDB_val mismatch: " + got);
+            } finally {
+                cppVal.close();
+                for (BytePointer ptr : allocations)
+                    ptr.close();
+            }
+
+            result = DTLVForeign.mdb_cursor_open(txn, dbi, holder);
+            if (result != 0) {
+                System.err.println("Failed to open foreign cursor: " + result);
+                return;
+            }
+            cursor = holder.get(ValueLayout.ADDRESS, 0);
+
+            result = DTLVForeign.dtlv_key_iter_create(
+                holder, cursor, key, val, DTLV.DTLV_TRUE, DTLV.DTLV_TRUE,
+                DTLV.DTLV_TRUE, MemorySegment.NULL, MemorySegment.NULL);
+            if (result != 0) {
+                System.err.println("Failed to create foreign key iterator: " + result);
+                return;
+            }
+            iter = holder.get(ValueLayout.ADDRESS, 0);
+
+            List<String> keys = new ArrayList<>();
+            while (DTLVForeign.dtlv_key_iter_has_next(iter) == DTLV.DTLV_TRUE) {
+                keys.add(new String(DTLVForeign.mvData(key).toArray(ValueLayout.JAVA_BYTE),
+                                    StandardCharsets.UTF_8));
+            }
+            Test.expect(keys.equals(Arrays.asList("a", "b", "c")),
+                   "Foreign key iterator mismatch: " + keys);
+
+            Test.pass("Passed foreign function binding test.");
+        } finally {
+            if (!iter.equals(MemorySegment.NULL))
+                DTLVForeign.dtlv_key_iter_destroy(iter);
+            if (!cursor.equals(MemorySegment.NULL))
+                DTLVForeign.mdb_cursor_close(cursor);
+            if (!txn.equals(MemorySegment.NULL))
+                DTLVForeign.mdb_txn_abort(txn);
+            if (!env.equals(MemorySegment.NULL))
+                DTLVForeign.mdb_env_close(env);
+            Test.deleteDirectoryFiles(dir);
+        }
+    }
+
+    public static void main(String[] args) {
+        Test.runTest("foreign function binding", ForeignTest::testForeign);
+    }
+}